@@ -6,12 +6,19 @@ import static ahrd.model.ReferenceGoAnnotations.parseReferenceGoAnnotations;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.xml.sax.SAXException;
 
@@ -19,13 +26,16 @@ import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingInterproResultException;
 import ahrd.exception.MissingProteinException;
 import ahrd.model.BlastResult;
-import ahrd.model.GOterm;
+import ahrd.model.FastaReader;
+import ahrd.model.GeneOntology;
+import ahrd.model.InterproHierarchy;
 import ahrd.model.InterproResult;
 import ahrd.model.Protein;
+import ahrd.model.ReferenceAnnotationTable;
+import ahrd.model.ReferenceGoAnnotationStore;
 import ahrd.view.FastaOutputWriter;
 import ahrd.view.IOutputWriter;
 import ahrd.view.OutputWriter;
-import nu.xom.ParsingException;
 
 public class AHRD {
 
@@ -33,11 +43,11 @@ public class AHRD {
 
 	private Map<String, Protein> proteins;
 	private Map<String, Double> descriptionScoreBitScoreWeights = new HashMap<String, Double>();
-	private Map<String, Set<String>> referenceGoAnnotations;
+	private ReferenceGoAnnotationStore referenceGoAnnotations;
 	private Set<String> uniqueBlastResultShortAccessions;
 	private long timestamp;
 	private long memorystamp;
-	private Map<String, GOterm> goDB;
+	private GeneOntology geneOntology;
 
 	protected long takeTime() {
 		// Measure time:
@@ -111,17 +121,102 @@ public class AHRD {
 		// Gene Ontology term annotations:
 		if (getSettings().hasGeneOntologyAnnotations()) {
 			this.setUniqueBlastResultShortAccessions(new HashSet<String>());
-			this.setReferenceGoAnnotations(new HashMap<String, Set<String>>());
+			this.setReferenceGoAnnotations(new ReferenceGoAnnotationStore.Builder().build());
 		}
 	}
 
 	public void initializeProteins() throws IOException, MissingAccessionException {
-		setProteins(Protein.initializeProteins(getSettings().getProteinsFasta()));
+		setProteins(Protein.initializeProteins(
+				new FastaReader(getSettings().getPathToProteinsFasta(), getSettings().doOutputFasta())));
 	}
 
+	/**
+	 * Reads the sequence similarity search results and the Blast-Databases. If
+	 * the Settings request more than a single thread and there is more than
+	 * one Blast-Database, the databases are read in parallel, see
+	 * <code>parseBlastResultsInParallel</code>.
+	 * 
+	 * @throws IOException
+	 * @throws MissingProteinException
+	 * @throws SAXException
+	 */
 	public void parseBlastResults() throws IOException, MissingProteinException, SAXException {
-		for (String blastDatabase : getSettings().getBlastDatabases()) {
-			BlastResult.readBlastResults(getProteins(), blastDatabase, getUniqueBlastResultShortAccessions());
+		if (getSettings().getThreads() > 1 && getSettings().getBlastDatabases().size() > 1) {
+			parseBlastResultsInParallel(
+					Math.min(getSettings().getThreads(), getSettings().getBlastDatabases().size()));
+		} else {
+			for (String blastDatabase : getSettings().getBlastDatabases()) {
+				BlastResult.readBlastResults(getProteins(), blastDatabase, getUniqueBlastResultShortAccessions());
+			}
+		}
+	}
+
+	/**
+	 * Reads each Blast-Database's results on its own worker thread. While
+	 * doing so the Proteins only collect their BlastResults. Once all
+	 * databases have been read, the Proteins' scores are measured in database
+	 * order, so the result is identical to the sequential run. Each worker
+	 * collects the unique short accessions in its own Set, these are merged
+	 * afterwards. The threads requested in the Settings are divided among the
+	 * nThreads workers, so that the chunked parsing of the individual
+	 * databases never runs more threads than requested in total.
+	 * 
+	 * @param nThreads
+	 * @throws IOException
+	 * @throws MissingProteinException
+	 */
+	protected void parseBlastResultsInParallel(int nThreads) throws IOException, MissingProteinException {
+		final Settings runSettings = getSettings();
+		for (Protein prot : getProteins().values())
+			prot.setDeferScoreMeasurement(true);
+		ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<Set<String>>> parsedDatabases = new ArrayList<Future<Set<String>>>();
+			int threadsPerWorker = Math.max(1, getSettings().getThreads() / nThreads);
+			int workersWithExtraThread = Math.max(0, getSettings().getThreads() - threadsPerWorker * nThreads);
+			for (final String blastDatabase : getSettings().getBlastDatabases()) {
+				final int databaseThreads = (parsedDatabases.size() < workersWithExtraThread) ? threadsPerWorker + 1
+						: threadsPerWorker;
+				parsedDatabases.add(workers.submit(new Callable<Set<String>>() {
+					public Set<String> call() throws Exception {
+						setSettings(runSettings);
+						Set<String> uniqueShortAccessions = (getUniqueBlastResultShortAccessions() != null)
+								? new HashSet<String>() : null;
+						BlastResult.readBlastResults(getProteins(), blastDatabase, uniqueShortAccessions,
+								databaseThreads);
+						return uniqueShortAccessions;
+					}
+				}));
+			}
+			for (Future<Set<String>> parsedDatabase : parsedDatabases) {
+				try {
+					Set<String> uniqueShortAccessions = parsedDatabase.get();
+					if (uniqueShortAccessions != null)
+						getUniqueBlastResultShortAccessions().addAll(uniqueShortAccessions);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for Blast results to be read.", e);
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof MissingProteinException)
+						throw (MissingProteinException) cause;
+					if (cause instanceof IOException)
+						throw (IOException) cause;
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+			for (Protein prot : getProteins().values())
+				prot.measureDeferredScores(getSettings().getBlastDatabases());
+		} finally {
+			workers.shutdownNow();
+			// Do not leave the Proteins deferring their scores, if reading
+			// failed:
+			for (Protein prot : getProteins().values())
+				prot.setDeferScoreMeasurement(false);
 		}
 	}
 
@@ -144,20 +239,44 @@ public class AHRD {
 
 	/**
 	 * Method finds GO term annotations for Proteins in the searched Blast
-	 * databases and stores them in a Map.
+	 * databases and stores them in a compact ReferenceGoAnnotationStore. If all
+	 * Blast databases have reference
+	 * annotation tables holding GO terms, these are read instead of the
+	 * reference GOA file.
 	 * 
 	 * @throws IOException
 	 */
 	public void setUpReferenceGoAnnotations() throws IOException {
 		if (getSettings().hasGeneOntologyAnnotations()) {
-			setReferenceGoAnnotations(parseReferenceGoAnnotations(getUniqueBlastResultShortAccessions()));
+			ReferenceGoAnnotationStore goa = ReferenceAnnotationTable
+					.parseReferenceGoAnnotations(getSettings().getBlastDatabases(), getUniqueBlastResultShortAccessions());
+			if (goa == null)
+				goa = parseReferenceGoAnnotations(getUniqueBlastResultShortAccessions());
+			setReferenceGoAnnotations(goa);
+		}
+	}
+
+	/**
+	 * Reads the Gene Ontology required to output the annotated GO terms as
+	 * requested by the parameter 'go_terms_output'. If it is missing, a
+	 * warning is printed and the GO terms are output as they are.
+	 * 
+	 * @throws IOException
+	 */
+	public void setUpGeneOntology() throws IOException {
+		if (!getSettings().hasGeneOntologyDatabase()) {
+			System.err.println("WARNING: Parameter '" + Settings.GO_TERMS_OUTPUT_KEY + "' requires the Gene Ontology '"
+					+ Settings.GENE_ONTOLOGY_DATABASE_KEY + "'. GO terms are written as they are.");
+			return;
 		}
+		setGeneOntology(GeneOntology.parse(getSettings().getPathToGeneOntologyDatabase()));
 	}
 
 	public void filterBestScoringBlastResults(Protein prot) {
 		for (String blastDatabaseName : prot.getBlastResults().keySet()) {
 			prot.getBlastResults().put(blastDatabaseName,
-					BlastResult.filterBestScoringBlastResults(prot.getBlastResults().get(blastDatabaseName), 200));
+					BlastResult.filterBestScoringBlastResults(prot.getBlastResults().get(blastDatabaseName),
+							BlastResult.MAX_BLAST_RESULTS_PER_DATABASE));
 		}
 	}
 
@@ -169,10 +288,9 @@ public class AHRD {
 	 * @throws MissingAccessionException
 	 * @throws MissingProteinException
 	 * @throws SAXException
-	 * @throws ParsingException
 	 */
 	public void setup(boolean writeLogMsgs)
-			throws IOException, MissingAccessionException, MissingProteinException, SAXException, ParsingException {
+			throws IOException, MissingAccessionException, MissingProteinException, SAXException {
 		if (writeLogMsgs)
 			System.out.println("Started AHRD...\n");
 
@@ -197,10 +315,22 @@ public class AHRD {
 					+ "sec, currently occupying " + takeMemoryUsage() + " MB");
 		}
 
+		// The Gene Ontology, if the annotated GO terms are to be propagated
+		// or reduced:
+		if (getSettings().hasGeneOntologyAnnotations() && getSettings().getGoTermsOutput() != null) {
+			setUpGeneOntology();
+			if (writeLogMsgs)
+				System.out.println("...parsed the Gene Ontology in " + takeTime() + "sec, currently occupying "
+						+ takeMemoryUsage() + " MB");
+		}
+
 		// one single InterproResult-File
 		if (getSettings().hasValidInterproDatabaseAndResultFile()) {
-			InterproResult.initialiseInterproDb();
-			parseInterproResult();
+			// Read the Interpro-Result-File once, and keep only the entries
+			// of the Interpro-Database it references:
+			Map<String, Set<String>> interproIds = InterproResult.readInterproIds(getProteins());
+			InterproResult.initialiseInterproDb(InterproResult.referencedInterproIds(interproIds));
+			InterproResult.assignInterproResults(getProteins(), interproIds);
 			if (writeLogMsgs)
 				System.out.println("...parsed interpro results in " + takeTime() + "sec, currently occupying "
 						+ takeMemoryUsage() + " MB");
@@ -208,40 +338,133 @@ public class AHRD {
 	}
 
 	/**
-	 * Assign a HumanReadableDescription to each Protein
+	 * Assign a HumanReadableDescription to each Protein. If the Settings
+	 * request more than a single thread, the Proteins are scored in parallel by
+	 * a fixed pool of worker threads. As each Protein is scored independently
+	 * of all others, the result is identical to the sequential run.
 	 * 
 	 * @throws MissingInterproResultException
 	 * @throws IOException
 	 * @throws SQLException
 	 */
 	public void assignHumanReadableDescriptions() throws MissingInterproResultException, IOException, SQLException {
-		for (String protAcc : getProteins().keySet()) {
-			Protein prot = getProteins().get(protAcc);
-			// Find best scoring Blast-Hit's Description-Line (based on
-			// evalue):
-			filterBestScoringBlastResults(prot);
-			// Tokenize each BlastResult's Description-Line and
-			// assign the Tokens their Scores:
-			// tokenizeBlastResultDescriptionLines(prot);
-			prot.getTokenScoreCalculator().assignTokenScores();
-			// Tell informative from non-informative Tokens.
-			// Assign each non-informative a new Score :=
-			// currentScore - (Token-High-Score / 2)
-			prot.getTokenScoreCalculator().filterTokenScores();
-			// Find the highest scoring Blast-Result:
-			prot.getDescriptionScoreCalculator().findHighestScoringBlastResult(this.getReferenceGoAnnotations());
-			// If AHRD is requested to annotate Gene Ontology Terms, do so:
-			if (getSettings().hasGeneOntologyAnnotations()
-					&& prot.getDescriptionScoreCalculator().getHighestScoringBlastResult() != null
-					&& getReferenceGoAnnotations().containsKey(
-							prot.getDescriptionScoreCalculator().getHighestScoringBlastResult().getShortAccession())) {
-				prot.setGoResults(getReferenceGoAnnotations()
-						.get(prot.getDescriptionScoreCalculator().getHighestScoringBlastResult().getShortAccession()));
+		if (getSettings().getThreads() > 1 && getProteins().size() > 1) {
+			assignHumanReadableDescriptionsInParallel(getSettings().getThreads());
+		} else {
+			InterproHierarchy interproHierarchy = InterproResult.getInterproHierarchy();
+			for (Protein prot : getProteins().values()) {
+				assignHumanReadableDescription(prot, interproHierarchy);
+			}
+		}
+	}
+
+	/**
+	 * Scores the Proteins using a fixed pool of <code>nThreads</code> worker
+	 * threads. Because the Settings are held in a thread-local singleton, each
+	 * worker is handed the Settings of the calling thread before it starts
+	 * scoring.
+	 * 
+	 * @param nThreads
+	 * @throws MissingInterproResultException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	protected void assignHumanReadableDescriptionsInParallel(int nThreads)
+			throws MissingInterproResultException, IOException, SQLException {
+		final Settings runSettings = getSettings();
+		final InterproHierarchy interproHierarchy = InterproResult.getInterproHierarchy();
+		ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<Void>> scoredProteins = new ArrayList<Future<Void>>(getProteins().size());
+			for (final Protein prot : getProteins().values()) {
+				scoredProteins.add(workers.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						setSettings(runSettings);
+						assignHumanReadableDescription(prot, interproHierarchy);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> scoredProtein : scoredProteins) {
+				try {
+					scoredProtein.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for Proteins to be scored.", e);
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof MissingInterproResultException)
+						throw (MissingInterproResultException) cause;
+					if (cause instanceof IOException)
+						throw (IOException) cause;
+					if (cause instanceof SQLException)
+						throw (SQLException) cause;
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Assign a HumanReadableDescription to the argument Protein. Only the
+	 * argument Protein's own data is modified, so this method can safely be
+	 * invoked for different Proteins concurrently.
+	 * 
+	 * @param prot
+	 * @throws MissingInterproResultException
+	 */
+	public void assignHumanReadableDescription(Protein prot) throws MissingInterproResultException {
+		assignHumanReadableDescription(prot, InterproResult.getInterproHierarchy());
+	}
+
+	/**
+	 * Like <code>assignHumanReadableDescription(Protein)</code>, but filters
+	 * the InterproResults with the argument hierarchy, which is resolved once
+	 * for all Proteins.
+	 * 
+	 * @param prot
+	 * @param interproHierarchy
+	 * @throws MissingInterproResultException
+	 */
+	public void assignHumanReadableDescription(Protein prot, InterproHierarchy interproHierarchy)
+			throws MissingInterproResultException {
+		// Find best scoring Blast-Hit's Description-Line (based on
+		// evalue):
+		filterBestScoringBlastResults(prot);
+		// Tokenize each BlastResult's Description-Line and
+		// assign the Tokens their Scores:
+		// tokenizeBlastResultDescriptionLines(prot);
+		prot.getTokenScoreCalculator().assignTokenScores();
+		// Tell informative from non-informative Tokens.
+		// Assign each non-informative a new Score :=
+		// currentScore - (Token-High-Score / 2)
+		prot.getTokenScoreCalculator().filterTokenScores();
+		// Find the highest scoring Blast-Result:
+		prot.getDescriptionScoreCalculator().findHighestScoringBlastResult(this.getReferenceGoAnnotations());
+		// If AHRD is requested to annotate Gene Ontology Terms, do so:
+		if (getSettings().hasGeneOntologyAnnotations()
+				&& prot.getDescriptionScoreCalculator().getHighestScoringBlastResult() != null
+				&& getReferenceGoAnnotations() != null) {
+			Set<String> goTerms = getReferenceGoAnnotations()
+					.get(prot.getDescriptionScoreCalculator().getHighestScoringBlastResult().getShortAccession());
+			if (goTerms != null && getGeneOntology() != null) {
+				if (Settings.PROPAGATED_GO_TERMS.equals(getSettings().getGoTermsOutput()))
+					goTerms = getGeneOntology().propagate(goTerms);
+				else if (Settings.MOST_SPECIFIC_GO_TERMS.equals(getSettings().getGoTermsOutput()))
+					goTerms = getGeneOntology().mostSpecific(goTerms);
 			}
-			// filter for each protein's most-informative
-			// interpro-results
-			InterproResult.filterForMostInforming(prot);
-		}		
+			if (goTerms != null)
+				prot.setGoResults(goTerms);
+		}
+		// filter for each protein's most-informative
+		// interpro-results
+		InterproResult.filterForMostInforming(prot, interproHierarchy);
 	}
 
 	public Map<String, Protein> getProteins() {
@@ -260,11 +483,11 @@ public class AHRD {
 		this.descriptionScoreBitScoreWeights = descriptionScoreBitScoreWeights;
 	}
 
-	public Map<String, Set<String>> getReferenceGoAnnotations() {
+	public ReferenceGoAnnotationStore getReferenceGoAnnotations() {
 		return referenceGoAnnotations;
 	}
 
-	public void setReferenceGoAnnotations(Map<String, Set<String>> referenceGoAnnotations) {
+	public void setReferenceGoAnnotations(ReferenceGoAnnotationStore referenceGoAnnotations) {
 		this.referenceGoAnnotations = referenceGoAnnotations;
 	}
 
@@ -276,12 +499,12 @@ public class AHRD {
 		this.uniqueBlastResultShortAccessions = uniqueBlastResultShortAccessions;
 	}
 
-	public Map<String, GOterm> getGoDB() {
-		return goDB;
+	public GeneOntology getGeneOntology() {
+		return geneOntology;
 	}
 
-	public void setGoDB(Map<String, GOterm> goDB) {
-		this.goDB = goDB;
+	public void setGeneOntology(GeneOntology geneOntology) {
+		this.geneOntology = geneOntology;
 	}
 
 }
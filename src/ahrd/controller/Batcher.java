@@ -185,6 +185,16 @@ public class Batcher {
 				blastDbYml.put(Settings.FASTA_HEADER_REGEX_KEY,
 						inputBlastDb.get(Settings.FASTA_HEADER_REGEX_KEY));
 			}
+			// Pass on the optional index and reference annotation table of
+			// the Blast database, if given. They are shared by all batches:
+			if (inputBlastDb.containsKey(Settings.BLAST_DATABASE_INDEX_KEY)) {
+				blastDbYml.put(Settings.BLAST_DATABASE_INDEX_KEY,
+						inputBlastDb.get(Settings.BLAST_DATABASE_INDEX_KEY));
+			}
+			if (inputBlastDb.containsKey(Settings.REFERENCE_ANNOTATION_TABLE_KEY)) {
+				blastDbYml.put(Settings.REFERENCE_ANNOTATION_TABLE_KEY,
+						inputBlastDb.get(Settings.REFERENCE_ANNOTATION_TABLE_KEY));
+			}
 			// Weight:
 			blastDbYml.put(Settings.DESCRIPTION_SCORE_BIT_SCORE_WEIGHT,
 					inputBlastDb
@@ -209,6 +219,10 @@ public class Batcher {
 					Settings.INTERPRO_RESULT_KEY,
 					generatePathToFile(batchName, INTERPRO_RESULTS_DIR_KEY,
 							INTERPRO_RESULTS_FILE_KEY));
+			// All batches share the snapshot of the Interpro-Database:
+			if (getInput().get(Settings.INTERPRO_DATABASE_SNAPSHOT_KEY) != null)
+				batchYml.put(Settings.INTERPRO_DATABASE_SNAPSHOT_KEY,
+						getInput().get(Settings.INTERPRO_DATABASE_SNAPSHOT_KEY));
 		}
 
 		// Gene-Ontology-Result, if given:
@@ -219,6 +233,17 @@ public class Batcher {
 					generatePathToFile(batchName,
 							GENE_ONTOLOGY_RESULTS_DIR_KEY,
 							GENE_ONTOLOGY_RESULTS_FILE_KEY));
+			if (getInput().get(Settings.GENE_ONTOLOGY_INDEX_KEY) != null)
+				batchYml.put(Settings.GENE_ONTOLOGY_INDEX_KEY,
+						getInput().get(Settings.GENE_ONTOLOGY_INDEX_KEY));
+			// All batches share the Gene Ontology and write their GO terms
+			// alike:
+			if (getInput().get(Settings.GENE_ONTOLOGY_DATABASE_KEY) != null)
+				batchYml.put(Settings.GENE_ONTOLOGY_DATABASE_KEY,
+						getInput().get(Settings.GENE_ONTOLOGY_DATABASE_KEY));
+			if (getInput().get(Settings.GO_TERMS_OUTPUT_KEY) != null)
+				batchYml.put(Settings.GO_TERMS_OUTPUT_KEY,
+						getInput().get(Settings.GO_TERMS_OUTPUT_KEY));
 		}
 
 		// Output-File:
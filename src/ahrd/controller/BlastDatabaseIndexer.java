@@ -0,0 +1,99 @@
+package ahrd.controller;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Settings.setSettings;
+
+import java.io.IOException;
+
+import ahrd.model.BlastDatabaseIndex;
+import ahrd.model.ReferenceAnnotationTable;
+import ahrd.model.ReferenceGoAnnotationsIndex;
+
+/**
+ * Builds the index of each Blast-Database for which the input parameter
+ * 'database_index' is set, and writes the reference annotation table of each
+ * Blast-Database for which the input parameter 'annotation_table' is set. AHRD
+ * runs using the same input then look up their Hits in these instead of
+ * scanning the Blast-Databases. If the input parameter 'gene_ontology_index'
+ * is set, the reference GO annotations are indexed, too. See
+ * <code>BlastDatabaseIndex</code>, <code>ReferenceAnnotationTable</code> and
+ * <code>ReferenceGoAnnotationsIndex</code> for details.
+ */
+public class BlastDatabaseIndexer {
+
+	public BlastDatabaseIndexer(String pathToInputYml) throws IOException {
+		super();
+		setSettings(new Settings(pathToInputYml));
+	}
+
+	/**
+	 * Builds the indices of all Blast-Databases that have the parameter
+	 * 'database_index' set.
+	 *
+	 * @throws IOException
+	 */
+	public void buildIndices() throws IOException {
+		for (String blastDbName : getSettings().getSortedBlastDatabases()) {
+			String pathToIndex = getSettings().getPathToBlastDatabaseIndex(blastDbName);
+			if (pathToIndex == null || pathToIndex.equals(""))
+				continue;
+			long start = System.currentTimeMillis();
+			long entries = BlastDatabaseIndex.build(getSettings().getPathToBlastDatabase(blastDbName),
+					getSettings().getFastaHeaderRegex(blastDbName), pathToIndex);
+			System.out.println("Indexed " + entries + " entries of Blast database '" + blastDbName + "' into '"
+					+ pathToIndex + "' in " + (System.currentTimeMillis() - start) / 1000 + "sec.");
+		}
+	}
+
+	/**
+	 * Writes the reference annotation tables of all Blast-Databases that have
+	 * the parameter 'annotation_table' set.
+	 *
+	 * @throws IOException
+	 */
+	public void writeReferenceAnnotationTables() throws IOException {
+		for (String blastDbName : getSettings().getSortedBlastDatabases()) {
+			String pathToTable = getSettings().getPathToReferenceAnnotationTable(blastDbName);
+			if (pathToTable == null || pathToTable.equals(""))
+				continue;
+			long start = System.currentTimeMillis();
+			long rows = ReferenceAnnotationTable.write(blastDbName, pathToTable);
+			System.out.println("Wrote " + rows + " reference annotations of Blast database '" + blastDbName
+					+ "' into '" + pathToTable + "' in " + (System.currentTimeMillis() - start) / 1000 + "sec.");
+		}
+	}
+
+	/**
+	 * Builds the index of the reference GO annotations, if the parameter
+	 * 'gene_ontology_index' is set.
+	 *
+	 * @throws IOException
+	 */
+	public void buildGeneOntologyIndex() throws IOException {
+		String pathToIndex = getSettings().getPathToGeneOntologyIndex();
+		if (pathToIndex == null || pathToIndex.equals("") || !getSettings().hasGeneOntologyAnnotations())
+			return;
+		long start = System.currentTimeMillis();
+		long annotations = ReferenceGoAnnotationsIndex.build(getSettings().getPathToGeneOntologyResults(),
+				getSettings().getReferenceGoRegex(), pathToIndex);
+		System.out.println("Indexed " + annotations + " reference GO annotations into '" + pathToIndex + "' in "
+				+ (System.currentTimeMillis() - start) / 1000 + "sec.");
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		System.out.println("Usage:\njava -cp ahrd.jar ahrd.controller.BlastDatabaseIndexer input.yml\n");
+
+		try {
+			BlastDatabaseIndexer indexer = new BlastDatabaseIndexer(args[0]);
+			indexer.buildIndices();
+			indexer.writeReferenceAnnotationTables();
+			indexer.buildGeneOntologyIndex();
+		} catch (Exception e) {
+			System.err.println("We are sorry, an unexpected ERROR occurred:");
+			e.printStackTrace(System.err);
+		}
+	}
+}
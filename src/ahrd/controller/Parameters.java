@@ -7,11 +7,13 @@ import static ahrd.controller.Utils.randomSaveSubtract;
 import static ahrd.controller.Utils.roundToNDecimalPlaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The following parameters are those subject to optimization. They are stored
@@ -27,6 +29,18 @@ public class Parameters implements Cloneable {
 	private Double tokenScoreOverlapScoreWeight;
 
 	private Map<String, Map<String, String>> blastDbParameters = new HashMap<String, Map<String, String>>();
+	/**
+	 * The Blast-Database-Weights are looked up once per BlastResult. So they
+	 * are parsed only once and remembered until they are set anew.
+	 */
+	private Map<String, Integer> blastDbWeights = new ConcurrentHashMap<String, Integer>();
+	/**
+	 * The same weights indexed by the Blast-Databases' indices in the run,
+	 * see <code>Settings.getBlastDatabaseIndex(String)</code>. NaN marks a
+	 * weight not yet looked up. Published arrays are never changed, a new one
+	 * is published instead.
+	 */
+	private volatile double[] blastDbWeightsByIndex = new double[0];
 	/**
 	 * If we test different settings in the parameter-space, remember the
 	 * average evaluation-score (objective-function).
@@ -325,6 +339,7 @@ public class Parameters implements Cloneable {
 			}
 		}
 		clone.blastDbParameters = blastDbSettings;
+		clone.blastDbWeights = new ConcurrentHashMap<String, Integer>(this.blastDbWeights);
 		return clone;
 	}
 
@@ -384,13 +399,42 @@ public class Parameters implements Cloneable {
 	}
 
 	public Integer getBlastDbWeight(String blastDatabaseName) {
-		return Integer.parseInt(getParametersOfBlastDb(blastDatabaseName).get(
-				Settings.BLAST_DB_WEIGHT_KEY));
+		Integer bdbw = blastDbWeights.get(blastDatabaseName);
+		if (bdbw == null) {
+			bdbw = Integer.parseInt(getParametersOfBlastDb(blastDatabaseName)
+					.get(Settings.BLAST_DB_WEIGHT_KEY));
+			blastDbWeights.put(blastDatabaseName, bdbw);
+		}
+		return bdbw;
+	}
+
+	/**
+	 * Looks up the weight of the Blast-Database of the argument index in the
+	 * run without boxing or hashing, once it has been looked up by name.
+	 * 
+	 * @param blastDatabaseIndex
+	 * @return The Blast-Database-Weight
+	 */
+	public double getBlastDbWeight(byte blastDatabaseIndex) {
+		double[] weights = blastDbWeightsByIndex;
+		if (blastDatabaseIndex < weights.length && !Double.isNaN(weights[blastDatabaseIndex]))
+			return weights[blastDatabaseIndex];
+		synchronized (this) {
+			weights = blastDbWeightsByIndex;
+			double[] newWeights = Arrays.copyOf(weights, Math.max(weights.length, blastDatabaseIndex + 1));
+			Arrays.fill(newWeights, weights.length, newWeights.length, Double.NaN);
+			newWeights[blastDatabaseIndex] = getBlastDbWeight(
+					getSettings().getBlastDatabaseName(blastDatabaseIndex));
+			blastDbWeightsByIndex = newWeights;
+			return newWeights[blastDatabaseIndex];
+		}
 	}
 
 	public void setBlastDbWeight(String blastDatabaseName, String bdbw) {
 		getParametersOfBlastDb(blastDatabaseName).put(
 				Settings.BLAST_DB_WEIGHT_KEY, bdbw);
+		blastDbWeights.remove(blastDatabaseName);
+		blastDbWeightsByIndex = new double[0];
 	}
 
 	public Double getDescriptionScoreBitScoreWeight(String blastDatabaseName) {
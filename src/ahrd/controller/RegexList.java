@@ -0,0 +1,107 @@
+package ahrd.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the regular expressions of a Blacklist or Filter in compiled form, so
+ * that they are compiled once instead of each time a Description or Token is
+ * checked. Instances are immutable and can be shared between threads.
+ *
+ * To check a String against a Blacklist in a single pass, all regular
+ * expressions that can safely be put into one alternation are combined. Each
+ * is wrapped into its own non-capturing group, which also scopes leading
+ * inline flags like <code>(?i)</code> to that very regular expression.
+ * Regular expressions using back-references, named groups, the comments
+ * flag or an unterminated quotation are matched separately, because their
+ * meaning could change inside an alternation.
+ */
+public class RegexList {
+
+	/**
+	 * Detects regular expressions that must not be combined with others:
+	 * Back-References and named groups depend on group numbering and names,
+	 * in comments mode a '#' would swallow the closing parenthesis, and so
+	 * would a quotation <code>\Q</code> not terminated by <code>\E</code>.
+	 */
+	private static final Pattern NOT_COMBINABLE = Pattern
+			.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z-]*x|\\\\Q(?s:(?!.*\\\\E))");
+
+	/**
+	 * Neither blacklists nor filters anything.
+	 */
+	public static final RegexList EMPTY = new RegexList(new ArrayList<String>());
+
+	private final List<String> regexes;
+	private final List<Pattern> patterns;
+	private final Pattern combinedPattern;
+	private final List<Pattern> separatePatterns;
+
+	public RegexList(List<String> regexes) {
+		super();
+		this.regexes = Collections.unmodifiableList(new ArrayList<String>(regexes));
+		List<Pattern> patterns = new ArrayList<Pattern>(regexes.size());
+		List<Pattern> separatePatterns = new ArrayList<Pattern>();
+		StringBuilder combined = new StringBuilder();
+		for (String regex : regexes) {
+			Pattern p = Pattern.compile(regex);
+			patterns.add(p);
+			if (NOT_COMBINABLE.matcher(regex).find()) {
+				separatePatterns.add(p);
+			} else {
+				if (combined.length() > 0)
+					combined.append('|');
+				combined.append("(?:").append(regex).append(')');
+			}
+		}
+		this.patterns = Collections.unmodifiableList(patterns);
+		this.separatePatterns = Collections.unmodifiableList(separatePatterns);
+		this.combinedPattern = (combined.length() > 0) ? Pattern.compile(combined.toString()) : null;
+	}
+
+	/**
+	 * @param input
+	 * @return TRUE if and only if any of the regular expressions is found in
+	 *         the argument input.
+	 */
+	public boolean findsAny(String input) {
+		if (combinedPattern != null && combinedPattern.matcher(input).find())
+			return true;
+		for (Pattern p : separatePatterns) {
+			if (p.matcher(input).find())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces the matches of each regular expression in turn. As a later
+	 * regular expression sees the result of the earlier ones, the order of the
+	 * Filter is retained here and no combined alternation is used.
+	 *
+	 * @param input
+	 * @param replacement
+	 * @return The argument input with all matches replaced.
+	 */
+	public String replaceAll(String input, String replacement) {
+		String result = input;
+		for (Pattern p : patterns) {
+			result = p.matcher(result).replaceAll(replacement);
+		}
+		return result;
+	}
+
+	public List<String> getRegexes() {
+		return regexes;
+	}
+
+	public List<Pattern> getPatterns() {
+		return patterns;
+	}
+
+	public boolean isEmpty() {
+		return regexes.isEmpty();
+	}
+}
@@ -12,10 +12,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 
 import com.esotericsoftware.yamlbeans.YamlReader;
 
+import ahrd.model.TokenDictionary;
+
 /**
  * Using the <em>thread-local</em> singleton-pattern to hold in a central place
  * all AHRD's current settings. This eases greatly access of input-values from
@@ -46,12 +50,20 @@ public class Settings implements Cloneable {
 	public static final String BLAST_DB_WEIGHT_KEY = "weight";
 	public static final String BLAST_RESULT_FILE_KEY = "file";
 	public static final String BLAST_DATABASE_KEY = "database";
+	public static final String BLAST_DATABASE_INDEX_KEY = "database_index";
+	public static final String REFERENCE_ANNOTATION_TABLE_KEY = "annotation_table";
 	public static final String BLAST_BLACKLIST_KEY = "blacklist";
 	public static final String BLAST_FILTER_KEY = "filter";
 	public static final String TOKEN_BLACKLIST_KEY = "token_blacklist";
 	public static final String INTERPRO_DATABASE_KEY = "interpro_database";
 	public static final String INTERPRO_RESULT_KEY = "interpro_result";
+	public static final String INTERPRO_DATABASE_SNAPSHOT_KEY = "interpro_database_snapshot";
 	public static final String GENE_ONTOLOGY_RESULT_KEY = "gene_ontology_result";
+	public static final String GENE_ONTOLOGY_INDEX_KEY = "gene_ontology_index";
+	public static final String GENE_ONTOLOGY_DATABASE_KEY = "gene_ontology_database";
+	public static final String GO_TERMS_OUTPUT_KEY = "go_terms_output";
+	public static final String PROPAGATED_GO_TERMS = "propagated";
+	public static final String MOST_SPECIFIC_GO_TERMS = "most_specific";
 	public static final String OUTPUT_KEY = "output";
 	public static final String SIMULATED_ANNEALING_PATH_LOG_KEY = "path_log";
 	public static final String WRITE_SCORES_TO_OUTPUT = "write_scores_to_output";
@@ -88,6 +100,7 @@ public class Settings implements Cloneable {
 	public static final String SEQ_SIM_SEARCH_TABLE_SUBJECT_END_COL_KEY = "seq_sim_search_table_subject_end_col";
 	public static final String SEQ_SIM_SEARCH_TABLE_E_VALUE_COL_KEY = "seq_sim_search_table_e_value_col";
 	public static final String SEQ_SIM_SEARCH_TABLE_BIT_SCORE_COL_KEY = "seq_sim_search_table_bit_score_col";
+	public static final String SEQ_SIM_SEARCH_TABLE_STREAM_KEY = "seq_sim_search_table_stream";
 	public static final String FASTA_HEADER_REGEX_KEY = "fasta_header_regex";
 	public static final Pattern DEFAULT_FASTA_HEADER_REGEX = Pattern
 			.compile("^>(?<accession>\\S+)\\s+(?<description>.+?)\\s+(((OS|os)=.+)|((GN|gn)=.+))?$");
@@ -98,6 +111,7 @@ public class Settings implements Cloneable {
 			.compile("^UniProtKB\\s+(?<shortAccession>\\S+)\\s+\\S+\\s+(?<goTerm>GO:\\d{7})");
 	public static final String PREFER_REFERENCE_WITH_GO_ANNOS_KEY = "prefer_reference_with_go_annos";
 	public static final String EVALUATE_VALID_TAKENS_KEY = "evaluate_valid_tokens";
+	public static final String THREADS_KEY = "threads";
 	public static final String DEFAULT_LINE_SEP = "(\r|\n)+"; 
 
 	/**
@@ -106,14 +120,36 @@ public class Settings implements Cloneable {
 	private String pathToProteinsFasta;
 	private String pathToReferencesFasta;
 	private String pathToReferencesDescriptionBlacklist;
-	private List<String> referencesDescriptionBlacklist;
 	private String pathToReferencesDescriptionFilter;
-	private List<String> referencesDescriptionFilter;
 	private String pathToReferencesTokenBlacklist;
-	private List<String> referencesTokenBlacklist = new ArrayList<String>();
+	private RegexList referencesDescriptionBlacklistPatterns;
+	private RegexList referencesDescriptionFilterPatterns;
+	private RegexList referencesTokenBlacklistPatterns = RegexList.EMPTY;
 	private String pathToInterproDatabase;
 	private String pathToInterproResults;
+	/**
+	 * Binary snapshot of the Interpro-Database, written on first use and read
+	 * instead of the XML afterwards, if requested.
+	 */
+	private String pathToInterproDatabaseSnapshot;
 	private String pathToGeneOntologyResults;
+	/**
+	 * Index of the reference Gene Ontology annotations, as written by
+	 * <code>BlastDatabaseIndexer</code>, if requested.
+	 */
+	private String pathToGeneOntologyIndex;
+	/**
+	 * The Gene Ontology in OBO format, e.g. go-basic.obo, required to
+	 * propagate or reduce the annotated GO terms as requested by
+	 * <code>goTermsOutput</code>.
+	 */
+	private String pathToGeneOntologyDatabase;
+	/**
+	 * Either <code>PROPAGATED_GO_TERMS</code>,
+	 * <code>MOST_SPECIFIC_GO_TERMS</code> or NULL to output the annotated GO
+	 * terms as they are.
+	 */
+	private String goTermsOutput;
 	private String pathToOutput;
 	/**
 	 * File to write the AHRD-Scores of each BlastHit's Description into, if
@@ -141,10 +177,20 @@ public class Settings implements Cloneable {
 	 */
 	private Double fMeasureBetaParameter = 1.0;
 	private Map<String, Map<String, String>> blastDbSettings = new HashMap<String, Map<String, String>>();
+	/**
+	 * The compiled FASTA header and short accession regular expressions of
+	 * each Blast-Database. A regular expression is compiled again, only if the
+	 * respective Blast-Database setting has been changed.
+	 */
+	private Map<String, Pattern> fastaHeaderRegexes = new ConcurrentHashMap<String, Pattern>();
+	private Map<String, Pattern> shortAccessionRegexes = new ConcurrentHashMap<String, Pattern>();
 	private List<String> sortedBlastDatabaseNames;
-	private Map<String, List<String>> blastResultsBlacklists = new HashMap<String, List<String>>();
-	private Map<String, List<String>> blastResultsFilter = new HashMap<String, List<String>>();
-	private Map<String, List<String>> tokenBlacklists = new HashMap<String, List<String>>();
+	/**
+	 * The above Blacklists and Filters compiled once per Blast-Database:
+	 */
+	private Map<String, RegexList> blastResultsBlacklistPatterns = new HashMap<String, RegexList>();
+	private Map<String, RegexList> blastResultsFilterPatterns = new HashMap<String, RegexList>();
+	private Map<String, RegexList> tokenBlacklistPatterns = new HashMap<String, RegexList>();
 	private String pathToBlast2GoAnnotations;
 	/**
 	 * For the <strong>simulated annealing</strong> algorithm, this will be
@@ -216,6 +262,12 @@ public class Settings implements Cloneable {
 	private Integer seqSimSearchTableSubjectEndCol = 9;
 	private Integer seqSimSearchTableEValueCol = 10;
 	private Integer seqSimSearchTableBitScoreCol = 11;
+	/**
+	 * If set to TRUE, only the best High Scoring Pairs of each query are kept
+	 * in memory while the search result tables are read. See
+	 * SequenceSimilarityTabularSearchResultParser for details.
+	 */
+	private boolean streamSeqSimSearchTable = false;
 	private Pattern referenceGoRegex;
 	/**
 	 * If set to true AHRD will choose the highest scoring BlastResult WITH GO
@@ -228,6 +280,23 @@ public class Settings implements Cloneable {
 	 * pass the Blacklisting. Otherwise all Tokens are submitted to evaluation.
 	 */
 	private Boolean evaluateValidTokens = true;
+	/**
+	 * Number of worker threads used to score the query proteins in parallel.
+	 * Default is one, i.e. all proteins are scored sequentially in the calling
+	 * thread.
+	 */
+	private Integer threads = 1;
+	/**
+	 * The Tokens of this run's Descriptions. Clones share it, as they belong
+	 * to the same run.
+	 */
+	private TokenDictionary tokenDictionary = new TokenDictionary();
+	/**
+	 * Names of this run's Blast-Databases, indexed by the byte BlastResults
+	 * store instead of the name. Clones share it, as they belong to the same
+	 * run.
+	 */
+	private List<String> blastDatabaseNames = new CopyOnWriteArrayList<String>();
 
 	/**
 	 * Construct from contents of file 'AHRD_input.yml'.
@@ -252,7 +321,12 @@ public class Settings implements Cloneable {
 		setPathToProteinsFasta((String) input.get(PROTEINS_FASTA_KEY));
 		setPathToInterproDatabase((String) input.get(INTERPRO_DATABASE_KEY));
 		setPathToInterproResults((String) input.get(INTERPRO_RESULT_KEY));
+		setPathToInterproDatabaseSnapshot((String) input.get(INTERPRO_DATABASE_SNAPSHOT_KEY));
 		setPathToGeneOntologyResults((String) input.get(GENE_ONTOLOGY_RESULT_KEY));
+		setPathToGeneOntologyIndex((String) input.get(GENE_ONTOLOGY_INDEX_KEY));
+		setPathToGeneOntologyDatabase((String) input.get(GENE_ONTOLOGY_DATABASE_KEY));
+		if (input.get(GO_TERMS_OUTPUT_KEY) != null)
+			setGoTermsOutput(input.get(GO_TERMS_OUTPUT_KEY).toString());
 		setPathToOutput((String) input.get(OUTPUT_KEY));
 		if (input.get(HRD_SCORES_OUTPUT_PATH) != null && !input.get(HRD_SCORES_OUTPUT_PATH).equals(""))
 			setPathToHRDScoresOutput((String) input.get(HRD_SCORES_OUTPUT_PATH));
@@ -269,10 +343,12 @@ public class Settings implements Cloneable {
 		// Generate the Blacklists and Filters for each Blast-Database from
 		// their appropriate files:
 		for (String blastDatabaseName : getBlastDatabases()) {
-			this.blastResultsBlacklists.put(blastDatabaseName,
-					fromFile(getPathToBlastResultsBlackList(blastDatabaseName)));
-			this.blastResultsFilter.put(blastDatabaseName, fromFile(getPathToBlastResultsFilter(blastDatabaseName)));
-			this.tokenBlacklists.put(blastDatabaseName, fromFile(getPathToTokenBlacklist(blastDatabaseName)));
+			setBlastResultsBlackList(blastDatabaseName, fromFile(getPathToBlastResultsBlackList(blastDatabaseName)));
+			setBlastResultsFilter(blastDatabaseName, fromFile(getPathToBlastResultsFilter(blastDatabaseName)));
+			setTokenBlackList(blastDatabaseName, fromFile(getPathToTokenBlacklist(blastDatabaseName)));
+			// Compile the regular expressions used to parse the database:
+			getFastaHeaderRegex(blastDatabaseName);
+			getShortAccessionRegex(blastDatabaseName);
 			// Set Database-Weights and Description-Score-Bit-Score-Weight:
 			this.getParameters().setBlastDbWeight(blastDatabaseName,
 					this.getBlastDbSettings(blastDatabaseName).get(Settings.BLAST_DB_WEIGHT_KEY));
@@ -351,6 +427,10 @@ public class Settings implements Cloneable {
 			setSeqSimSearchTableBitScoreCol(
 					Integer.parseInt(input.get(SEQ_SIM_SEARCH_TABLE_BIT_SCORE_COL_KEY).toString()));
 		}
+		if (input.get(SEQ_SIM_SEARCH_TABLE_STREAM_KEY) != null
+				&& Boolean.parseBoolean(input.get(SEQ_SIM_SEARCH_TABLE_STREAM_KEY).toString())) {
+			setStreamSeqSimSearchTable(true);
+		}
 		// Enable parsing of custom (non UniprotKB) go annotation (GOA) files:
 		if (input.get(REFERENCE_GO_REGEX_KEY) != null) {
 			setReferenceGoRegex(Pattern.compile(input.get(REFERENCE_GO_REGEX_KEY).toString()));
@@ -373,14 +453,18 @@ public class Settings implements Cloneable {
 			this.setPathToReferencesTokenBlacklist(input.get(REFERENCES_TOKEN_BLACKLIST_KEY).toString());
 			this.setReferencesTokenBlacklist(fromFile(getPathToReferencesTokenBlacklist()));
 		}
+		if (input.get(THREADS_KEY) != null) {
+			setThreads(Integer.parseInt(input.get(THREADS_KEY).toString()));
+		}
 	}
 
 	/**
 	 * Returns a clone of this instance. <strong>Only</strong> all primitive
-	 * fields and the Blast-Database-Parameters are actually cloned. All other
-	 * fields still refer to <strong>the same objects</strong>.
-	 * <em>So be very careful using this method.</em> It has been written in
-	 * this manner to fulfill requirements and minimize memory-usage.
+	 * fields, the Blast-Database-Parameters and the caches of compiled regular
+	 * expressions are actually cloned. All other fields still refer to
+	 * <strong>the same objects</strong>. <em>So be very careful using this
+	 * method.</em> It has been written in this manner to fulfill requirements
+	 * and minimize memory-usage.
 	 */
 	public Settings clone() {
 		Settings clone;
@@ -400,6 +484,8 @@ public class Settings implements Cloneable {
 			}
 		}
 		clone.setBlastDbSettings(blastDbSettings);
+		clone.fastaHeaderRegexes = new ConcurrentHashMap<String, Pattern>(this.fastaHeaderRegexes);
+		clone.shortAccessionRegexes = new ConcurrentHashMap<String, Pattern>(this.shortAccessionRegexes);
 		// Clone the Parameters subject to optimization:
 		clone.setParameters(this.getParameters().clone());
 		return clone;
@@ -478,43 +564,137 @@ public class Settings implements Cloneable {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_DATABASE_KEY);
 	}
 
+	/**
+	 * @param blastDatabaseName
+	 * @return The path to the index of the argument Blast-Database, as built
+	 *         by <code>BlastDatabaseIndexer</code>, or NULL if none is set.
+	 */
+	public String getPathToBlastDatabaseIndex(String blastDatabaseName) {
+		return getBlastDbSettings(blastDatabaseName).get(BLAST_DATABASE_INDEX_KEY);
+	}
+
+	/**
+	 * @param blastDatabaseName
+	 * @return The path to the reference annotation table of the argument
+	 *         Blast-Database, as written by <code>BlastDatabaseIndexer</code>,
+	 *         or NULL if none is set.
+	 */
+	public String getPathToReferenceAnnotationTable(String blastDatabaseName) {
+		return getBlastDbSettings(blastDatabaseName).get(REFERENCE_ANNOTATION_TABLE_KEY);
+	}
+
 	public Pattern getFastaHeaderRegex(String blastDatabaseName) {
-		return (getBlastDbSettings(blastDatabaseName).containsKey(FASTA_HEADER_REGEX_KEY))
-				? Pattern.compile(getBlastDbSettings(blastDatabaseName).get(FASTA_HEADER_REGEX_KEY).toString())
-				: DEFAULT_FASTA_HEADER_REGEX;
+		return getBlastDbRegex(blastDatabaseName, FASTA_HEADER_REGEX_KEY, DEFAULT_FASTA_HEADER_REGEX,
+				fastaHeaderRegexes);
 	}
 
 	public Pattern getShortAccessionRegex(String blastDatabaseName) {
-		return (getBlastDbSettings(blastDatabaseName).containsKey(SHORT_ACCESSION_REGEX_KEY))
-				? Pattern.compile(getBlastDbSettings(blastDatabaseName).get(SHORT_ACCESSION_REGEX_KEY).toString())
-				: DEFAULT_SHORT_ACCESSION_REGEX;
+		return getBlastDbRegex(blastDatabaseName, SHORT_ACCESSION_REGEX_KEY, DEFAULT_SHORT_ACCESSION_REGEX,
+				shortAccessionRegexes);
+	}
+
+	/**
+	 * Looks up the compiled regular expression set for the argument
+	 * Blast-Database and key. The regular expression is compiled only, if it
+	 * is not found in the argument cache or has been changed since.
+	 * 
+	 * @param blastDatabaseName
+	 * @param key
+	 * @param defaultRegex
+	 *            - Returned, if the Blast-Database has no such setting
+	 * @param compiledRegexes
+	 *            - The cache of compiled regular expressions
+	 * @return Pattern
+	 */
+	private Pattern getBlastDbRegex(String blastDatabaseName, String key, Pattern defaultRegex,
+			Map<String, Pattern> compiledRegexes) {
+		String regex = getBlastDbSettings(blastDatabaseName).get(key);
+		if (regex == null)
+			return defaultRegex;
+		Pattern p = compiledRegexes.get(blastDatabaseName);
+		if (p == null || !p.pattern().equals(regex)) {
+			p = Pattern.compile(regex);
+			compiledRegexes.put(blastDatabaseName, p);
+		}
+		return p;
 	}
 
 	private String getPathToBlastResultsBlackList(String blastDatabaseName) {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_BLACKLIST_KEY);
 	}
 
+	/**
+	 * @param blastDatabaseName
+	 * @return The unmodifiable Blacklist of the argument Blast-Database. Use
+	 *         <code>setBlastResultsBlackList(String, List)</code> to change it.
+	 */
 	public List<String> getBlastResultsBlackList(String blastDatabaseName) {
-		return this.blastResultsBlacklists.get(blastDatabaseName);
+		return regexesOf(getBlastResultsBlacklistPatterns(blastDatabaseName));
+	}
+
+	public void setBlastResultsBlackList(String blastDatabaseName, List<String> blastResultsBlackList) {
+		this.blastResultsBlacklistPatterns.put(blastDatabaseName, new RegexList(blastResultsBlackList));
 	}
 
 	private String getPathToBlastResultsFilter(String blastDatabaseName) {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_FILTER_KEY);
 	}
 
+	/**
+	 * @param blastDatabaseName
+	 * @return The unmodifiable Filter of the argument Blast-Database. Use
+	 *         <code>setBlastResultsFilter(String, List)</code> to change it.
+	 */
 	public List<String> getBlastResultsFilter(String blastDatabaseName) {
-		return this.blastResultsFilter.get(blastDatabaseName);
+		return regexesOf(getBlastResultsFilterPatterns(blastDatabaseName));
+	}
+
+	public void setBlastResultsFilter(String blastDatabaseName, List<String> blastResultsFilter) {
+		this.blastResultsFilterPatterns.put(blastDatabaseName, new RegexList(blastResultsFilter));
+	}
+
+	public RegexList getBlastResultsBlacklistPatterns(String blastDatabaseName) {
+		return this.blastResultsBlacklistPatterns.get(blastDatabaseName);
+	}
+
+	public RegexList getBlastResultsFilterPatterns(String blastDatabaseName) {
+		return this.blastResultsFilterPatterns.get(blastDatabaseName);
 	}
 
 	private String getPathToTokenBlacklist(String blastDatabaseName) {
 		return getBlastDbSettings(blastDatabaseName).get(TOKEN_BLACKLIST_KEY);
 	}
 
+	/**
+	 * @param blastDatabaseName
+	 * @return The unmodifiable Token-Blacklist of the argument
+	 *         Blast-Database. Use <code>setTokenBlackList(String, List)</code>
+	 *         to change it.
+	 */
 	public List<String> getTokenBlackList(String blastDatabaseName) {
-		return this.tokenBlacklists.get(blastDatabaseName);
+		return regexesOf(getTokenBlacklistPatterns(blastDatabaseName));
+	}
+
+	public void setTokenBlackList(String blastDatabaseName, List<String> tokenBlackList) {
+		this.tokenBlacklistPatterns.put(blastDatabaseName, new RegexList(tokenBlackList));
 	}
 
-	private String getPathToProteinsFasta() {
+	public RegexList getTokenBlacklistPatterns(String blastDatabaseName) {
+		return this.tokenBlacklistPatterns.get(blastDatabaseName);
+	}
+
+	/**
+	 * The Blacklists and Filters are only held in compiled form, so that the
+	 * regular expressions a caller sees are always the ones in use.
+	 * 
+	 * @param regexList
+	 * @return The unmodifiable regular expressions of the argument, or NULL
+	 */
+	private static List<String> regexesOf(RegexList regexList) {
+		return (regexList != null) ? regexList.getRegexes() : null;
+	}
+
+	public String getPathToProteinsFasta() {
 		return pathToProteinsFasta;
 	}
 
@@ -522,7 +702,7 @@ public class Settings implements Cloneable {
 		return readFile(getPathToProteinsFasta());
 	}
 
-	private String getPathToReferencesFasta() {
+	public String getPathToReferencesFasta() {
 		return pathToReferencesFasta;
 	}
 
@@ -555,6 +735,14 @@ public class Settings implements Cloneable {
 		this.pathToInterproResults = pathToInterproResults;
 	}
 
+	public String getPathToInterproDatabaseSnapshot() {
+		return pathToInterproDatabaseSnapshot;
+	}
+
+	public void setPathToInterproDatabaseSnapshot(String pathToInterproDatabaseSnapshot) {
+		this.pathToInterproDatabaseSnapshot = pathToInterproDatabaseSnapshot;
+	}
+
 	public String getPathToGeneOntologyResults() {
 		return pathToGeneOntologyResults;
 	}
@@ -567,6 +755,45 @@ public class Settings implements Cloneable {
 		this.pathToGeneOntologyResults = pathToGeneOntologyResults;
 	}
 
+	public String getPathToGeneOntologyIndex() {
+		return pathToGeneOntologyIndex;
+	}
+
+	public void setPathToGeneOntologyIndex(String pathToGeneOntologyIndex) {
+		this.pathToGeneOntologyIndex = pathToGeneOntologyIndex;
+	}
+
+	public String getPathToGeneOntologyDatabase() {
+		return pathToGeneOntologyDatabase;
+	}
+
+	public boolean hasGeneOntologyDatabase() {
+		return getPathToGeneOntologyDatabase() != null && (new File(getPathToGeneOntologyDatabase())).exists();
+	}
+
+	public void setPathToGeneOntologyDatabase(String pathToGeneOntologyDatabase) {
+		this.pathToGeneOntologyDatabase = pathToGeneOntologyDatabase;
+	}
+
+	public String getGoTermsOutput() {
+		return goTermsOutput;
+	}
+
+	/**
+	 * @param goTermsOutput
+	 *            - Either <code>PROPAGATED_GO_TERMS</code>,
+	 *            <code>MOST_SPECIFIC_GO_TERMS</code> or NULL
+	 * @throws IllegalArgumentException
+	 *             - If any other value is given
+	 */
+	public void setGoTermsOutput(String goTermsOutput) {
+		if (goTermsOutput != null && !PROPAGATED_GO_TERMS.equals(goTermsOutput)
+				&& !MOST_SPECIFIC_GO_TERMS.equals(goTermsOutput))
+			throw new IllegalArgumentException("Parameter '" + GO_TERMS_OUTPUT_KEY + "' must be either '"
+					+ PROPAGATED_GO_TERMS + "' or '" + MOST_SPECIFIC_GO_TERMS + "', but is '" + goTermsOutput + "'.");
+		this.goTermsOutput = goTermsOutput;
+	}
+
 	public String getPathToOutput() {
 		return pathToOutput;
 	}
@@ -848,6 +1075,14 @@ public class Settings implements Cloneable {
 		this.seqSimSearchTableBitScoreCol = seqSimSearchTableBitScoreCol;
 	}
 
+	public boolean doStreamSeqSimSearchTable() {
+		return streamSeqSimSearchTable;
+	}
+
+	public void setStreamSeqSimSearchTable(boolean streamSeqSimSearchTable) {
+		this.streamSeqSimSearchTable = streamSeqSimSearchTable;
+	}
+
 	/**
 	 * Either returns the custom regular expression pattern used to parse the
 	 * provided reference Gene Ontology annotions (GOA) or returns the default
@@ -903,27 +1138,99 @@ public class Settings implements Cloneable {
 		this.pathToReferencesTokenBlacklist = pathToReferencesTokenBlacklist;
 	}
 
+	/**
+	 * @return The unmodifiable regular expressions, or NULL if none are set.
+	 *         Use <code>setReferencesDescriptionBlacklist(List)</code> to change them.
+	 */
 	public List<String> getReferencesDescriptionBlacklist() {
-		return referencesDescriptionBlacklist;
+		return regexesOf(referencesDescriptionBlacklistPatterns);
 	}
 
 	public void setReferencesDescriptionBlacklist(List<String> referencesDescriptionBlacklist) {
-		this.referencesDescriptionBlacklist = referencesDescriptionBlacklist;
+		this.referencesDescriptionBlacklistPatterns = (referencesDescriptionBlacklist != null)
+				? new RegexList(referencesDescriptionBlacklist) : null;
+	}
+
+	public RegexList getReferencesDescriptionBlacklistPatterns() {
+		return referencesDescriptionBlacklistPatterns;
 	}
 
+	/**
+	 * @return The unmodifiable regular expressions, or NULL if none are set.
+	 *         Use <code>setReferencesDescriptionFilter(List)</code> to change them.
+	 */
 	public List<String> getReferencesDescriptionFilter() {
-		return referencesDescriptionFilter;
+		return regexesOf(referencesDescriptionFilterPatterns);
 	}
 
 	public void setReferencesDescriptionFilter(List<String> referencesDescriptionFilter) {
-		this.referencesDescriptionFilter = referencesDescriptionFilter;
+		this.referencesDescriptionFilterPatterns = (referencesDescriptionFilter != null)
+				? new RegexList(referencesDescriptionFilter) : null;
 	}
 
+	public RegexList getReferencesDescriptionFilterPatterns() {
+		return referencesDescriptionFilterPatterns;
+	}
+
+	/**
+	 * @return The unmodifiable regular expressions, or NULL if none are set.
+	 *         Use <code>setReferencesTokenBlacklist(List)</code> to change them.
+	 */
 	public List<String> getReferencesTokenBlacklist() {
-		return referencesTokenBlacklist;
+		return regexesOf(referencesTokenBlacklistPatterns);
 	}
 
 	public void setReferencesTokenBlacklist(List<String> referencesTokenBlacklist) {
-		this.referencesTokenBlacklist = referencesTokenBlacklist;
+		this.referencesTokenBlacklistPatterns = (referencesTokenBlacklist != null)
+				? new RegexList(referencesTokenBlacklist) : null;
+	}
+
+	public RegexList getReferencesTokenBlacklistPatterns() {
+		return referencesTokenBlacklistPatterns;
+	}
+
+	public Integer getThreads() {
+		return threads;
+	}
+
+	public void setThreads(Integer threads) {
+		if (threads == null || threads < 1)
+			throw new IllegalArgumentException("The number of threads must be at least one, but is: " + threads);
+		this.threads = threads;
+	}
+
+	public TokenDictionary getTokenDictionary() {
+		return tokenDictionary;
+	}
+
+	/**
+	 * @param blastDatabaseName
+	 * @return The index of the argument Blast-Database's name in this run.
+	 *         Unknown names are appended.
+	 */
+	public byte getBlastDatabaseIndex(String blastDatabaseName) {
+		int index = blastDatabaseNames.indexOf(blastDatabaseName);
+		if (index < 0) {
+			synchronized (blastDatabaseNames) {
+				index = blastDatabaseNames.indexOf(blastDatabaseName);
+				if (index < 0) {
+					if (blastDatabaseNames.size() > Byte.MAX_VALUE)
+						throw new IllegalStateException(
+								"More than " + (Byte.MAX_VALUE + 1) + " Blast-Databases are not supported.");
+					blastDatabaseNames.add(blastDatabaseName);
+					index = blastDatabaseNames.size() - 1;
+				}
+			}
+		}
+		return (byte) index;
+	}
+
+	/**
+	 * @param blastDatabaseIndex
+	 * @return The name of the Blast-Database of the argument index in this
+	 *         run
+	 */
+	public String getBlastDatabaseName(byte blastDatabaseIndex) {
+		return blastDatabaseNames.get(blastDatabaseIndex);
 	}
 }
\ No newline at end of file
@@ -9,7 +9,11 @@ import java.util.Random;
 import java.util.Set;
 
 import ahrd.exception.MissingInterproResultException;
+import ahrd.model.BlastResult;
+import ahrd.model.DescriptionScoringKernel;
 import ahrd.model.EvaluationScoreCalculator;
+import ahrd.model.InterproHierarchy;
+import ahrd.model.InterproResult;
 import ahrd.model.Protein;
 import ahrd.view.TrainerOutputWriter;
 
@@ -20,6 +24,7 @@ public class Trainer extends Evaluator {
 	private Integer bestParametersFoundAtTemperature;
 	private TrainerOutputWriter outWriter;
 	private Set<Parameters> testedParameters;
+	private DescriptionScoringKernel descriptionScoringKernel;
 	/**
 	 * The average of AHRD's maximum evaluation score for each Protein. This is
 	 * the maximum of the evaluation scores calculated for all Descriptions of
@@ -92,6 +97,8 @@ public class Trainer extends Evaluator {
 	 */
 	public void train() throws MissingInterproResultException, IOException,
 			SQLException {
+		if (getDescriptionScoringKernel() == null)
+			setUpDescriptionScoringKernel();
 		while (getSettings().getTemperature() > 0) {
 			// If we run simulated annealing remembering tested Parameters and
 			// their scores,
@@ -104,9 +111,10 @@ public class Trainer extends Evaluator {
 						getAlreadyTestedParameters(getSettings()
 								.getParameters()));
 			} else {
-				// Iterate over all Proteins and assign the best scoring Human
+				// Iterate over all Proteins and find the best scoring Human
 				// Readable Description
-				assignHumanReadableDescriptions();
+				getDescriptionScoringKernel().assignHighestScoringBlastResults(
+						getSettings().getParameters());
 				// Evaluate AHRD's performance for each Protein:
 				calculateEvaluationScores();
 				// Estimate average performance of current Parameters:
@@ -137,6 +145,31 @@ public class Trainer extends Evaluator {
 		}
 	}
 
+	/**
+	 * Measures the Parameter-independent scores of all Proteins' BlastResults
+	 * once, so that each iteration only needs to score the current Parameters.
+	 * Afterwards the Proteins are reduced to their best scoring BlastResults
+	 * and most informative InterproResults, as
+	 * <code>assignHumanReadableDescription</code> would do in every iteration,
+	 * and the Parameter-independent evaluation scores of the remaining
+	 * BlastResults are cached.
+	 * 
+	 * @throws MissingInterproResultException
+	 */
+	public void setUpDescriptionScoringKernel()
+			throws MissingInterproResultException {
+		setDescriptionScoringKernel(new DescriptionScoringKernel(getProteins()
+				.values(), getSettings().getSortedBlastDatabases(),
+				BlastResult.MAX_BLAST_RESULTS_PER_DATABASE,
+				getReferenceGoAnnotations()));
+		InterproHierarchy interproHierarchy = InterproResult.getInterproHierarchy();
+		for (Protein prot : getProteins().values()) {
+			filterBestScoringBlastResults(prot);
+			InterproResult.filterForMostInforming(prot, interproHierarchy);
+			prot.getEvaluationScoreCalculator().cacheEvaluationScores();
+		}
+	}
+
 	/**
 	 * Each iteration the average evaluation-score is compared with the latest
 	 * far high-score. If the current Settings Score is better, it will become
@@ -338,6 +371,15 @@ public class Trainer extends Evaluator {
 		return testedParameters;
 	}
 
+	public DescriptionScoringKernel getDescriptionScoringKernel() {
+		return descriptionScoringKernel;
+	}
+
+	public void setDescriptionScoringKernel(
+			DescriptionScoringKernel descriptionScoringKernel) {
+		this.descriptionScoringKernel = descriptionScoringKernel;
+	}
+
 	public Double getAvgMaxEvaluationScore() {
 		return avgMaxEvaluationScore;
 	}
@@ -3,10 +3,14 @@ package ahrd.controller;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
@@ -100,4 +104,34 @@ public class Utils {
 		return fromFile;
 	}
 
+	/**
+	 * Computes a SHA-256 digest of the argument parts, e.g. the Blacklists and
+	 * regular expressions a generated file depends on. Elements of
+	 * Collections are digested one by one.
+	 * 
+	 * @param parts
+	 * @return The digest as a hexadecimal String
+	 */
+	public static String digest(Object... parts) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		Charset utf8 = Charset.forName("UTF-8");
+		for (Object part : parts) {
+			if (part instanceof Collection) {
+				for (Object element : (Collection<?>) part) {
+					md.update(String.valueOf(element).getBytes(utf8));
+					md.update((byte) '\n');
+				}
+			} else if (part != null) {
+				md.update(part.toString().getBytes(utf8));
+			}
+			md.update((byte) 0);
+		}
+		return String.format("%064x", new BigInteger(1, md.digest()));
+	}
+
 }
@@ -2,9 +2,10 @@ package ahrd.model;
 
 import static ahrd.model.TokenScoreCalculator.tokenize;
 
-import java.util.ArrayList;
 import java.util.Set;
 
+import ahrd.controller.RegexList;
+
 public class Blast2GoAnnot implements Comparable<Blast2GoAnnot> {
 
 	private String accession;
@@ -27,7 +28,7 @@ public class Blast2GoAnnot implements Comparable<Blast2GoAnnot> {
 		super();
 		setAccession(accession);
 		setDescription(description);
-		setEvaluationTokens(tokenize(getDescription(), new ArrayList<String>()));
+		setEvaluationTokens(tokenize(getDescription(), RegexList.EMPTY));
 	}
 
 	/**
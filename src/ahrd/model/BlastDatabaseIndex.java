@@ -0,0 +1,387 @@
+package ahrd.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent index of a Blast-Database in FASTA format. For each protein in
+ * the database it holds the accession, the offset of its FASTA entry, its
+ * sequence length and its Human Readable Description. The index is built once
+ * with <code>ahrd.controller.BlastDatabaseIndexer</code> and then opened
+ * memory-mapped, so that a run only reads the entries of the Hits it actually
+ * has, instead of scanning the whole database.
+ *
+ * The index file consists of a header, a hash table of record positions using
+ * open addressing, and the records themselves:
+ * <ul>
+ * <li>header: magic number (int), version (int), length of the indexed FASTA
+ * file (long), number of slots in the hash table (long)</li>
+ * <li>hash table: one position (long) per slot, zero for empty slots</li>
+ * <li>record: accession length (int), accession (UTF-8), FASTA offset (long),
+ * sequence length (int), description length (int), description (UTF-8)</li>
+ * </ul>
+ * All numbers are big-endian.
+ */
+public class BlastDatabaseIndex implements Closeable {
+
+	public static final int MAGIC = 0x41485249;
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+	static final int SEGMENT_BITS = 30;
+	static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * A single protein of the indexed Blast-Database.
+	 */
+	public static class Entry implements Comparable<Entry> {
+
+		private String accession;
+		private long fastaOffset;
+		private int sequenceLength;
+		private String description;
+
+		public Entry(String accession, long fastaOffset, int sequenceLength, String description) {
+			super();
+			this.accession = accession;
+			this.fastaOffset = fastaOffset;
+			this.sequenceLength = sequenceLength;
+			this.description = description;
+		}
+
+		/**
+		 * Compares by FASTA offset, i.e. sorts into database order.
+		 */
+		public int compareTo(Entry other) {
+			return Long.compare(getFastaOffset(), other.getFastaOffset());
+		}
+
+		public String getAccession() {
+			return accession;
+		}
+
+		public long getFastaOffset() {
+			return fastaOffset;
+		}
+
+		public int getSequenceLength() {
+			return sequenceLength;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	private RandomAccessFile file;
+	private MappedByteBuffer[] segments;
+	private long fastaLength;
+	private long slotCount;
+
+	/**
+	 * Opens the argument index file memory-mapped and read-only.
+	 *
+	 * @param pathToIndex
+	 * @throws IOException
+	 *             - If the file is not a Blast-Database index of the current
+	 *             version
+	 */
+	public BlastDatabaseIndex(String pathToIndex) throws IOException {
+		super();
+		this.file = new RandomAccessFile(pathToIndex, "r");
+		try {
+			this.segments = map(file.getChannel(), FileChannel.MapMode.READ_ONLY, 0, file.length());
+			if (file.length() < HEADER_SIZE || getInt(0) != MAGIC)
+				throw new IOException("'" + pathToIndex + "' is no Blast-Database index.");
+			if (getInt(4) != VERSION)
+				throw new IOException("Blast-Database index '" + pathToIndex + "' has version " + getInt(4)
+						+ ", but version " + VERSION + " is required. Please build it again.");
+			this.fastaLength = getLong(8);
+			this.slotCount = getLong(16);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the argument Blast-Database in FASTA format and writes its index.
+	 * Accessions and Descriptions are extracted with
+	 * <code>BlastResult.parseFastaHeader</code>. Entries whose header does not
+	 * match the argument regular expression are not indexed. If an accession
+	 * occurs more than once, the first entry is found in the index.
+	 *
+	 * @param pathToFasta
+	 * @param fastaHeaderRegex
+	 * @param pathToIndex
+	 * @return The number of indexed entries
+	 * @throws IOException
+	 */
+	public static long build(String pathToFasta, Pattern fastaHeaderRegex, String pathToIndex) throws IOException {
+		// First pass: count the entries to size the hash table.
+		long headers = 0;
+		FastaLines lines = new FastaLines(pathToFasta);
+		try {
+			while (lines.next())
+				if (lines.isHeader())
+					headers++;
+		} finally {
+			lines.close();
+		}
+		long slotCount = Math.max(1, 2 * headers);
+		long recordsStart = HEADER_SIZE + 8 * slotCount;
+		long indexed = 0;
+
+		// Second pass: write the records and fill in the hash table.
+		RandomAccessFile out = new RandomAccessFile(pathToIndex, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			MappedByteBuffer[] table = map(channel, FileChannel.MapMode.READ_WRITE, 0, recordsStart);
+			putLong(table, 0, ((long) MAGIC << 32) | VERSION);
+			putLong(table, 8, new File(pathToFasta).length());
+			putLong(table, 16, slotCount);
+			channel.position(recordsStart);
+			DataOutputStream records = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			long position = recordsStart;
+			lines = new FastaLines(pathToFasta);
+			try {
+				String[] accAndHrd = null;
+				long fastaOffset = 0;
+				int sequenceLength = 0;
+				boolean hasNext = lines.next();
+				while (hasNext) {
+					if (lines.isHeader()) {
+						accAndHrd = BlastResult.parseFastaHeader(lines.toString(), fastaHeaderRegex);
+						fastaOffset = lines.getOffset();
+						sequenceLength = 0;
+					} else {
+						sequenceLength += lines.trimmedLength();
+					}
+					hasNext = lines.next();
+					if (accAndHrd != null && (!hasNext || lines.isHeader())) {
+						byte[] acc = accAndHrd[0].getBytes(UTF_8);
+						byte[] hrd = accAndHrd[1].getBytes(UTF_8);
+						records.writeInt(acc.length);
+						records.write(acc);
+						records.writeLong(fastaOffset);
+						records.writeInt(sequenceLength);
+						records.writeInt(hrd.length);
+						records.write(hrd);
+						long slot = homeSlot(accAndHrd[0], slotCount);
+						while (getLong(table, HEADER_SIZE + 8 * slot) != 0)
+							slot = (slot + 1) % slotCount;
+						putLong(table, HEADER_SIZE + 8 * slot, position);
+						position += 20 + acc.length + hrd.length;
+						accAndHrd = null;
+						indexed++;
+					}
+				}
+			} finally {
+				lines.close();
+			}
+			records.flush();
+			for (MappedByteBuffer segment : table)
+				segment.force();
+		} finally {
+			out.close();
+		}
+		return indexed;
+	}
+
+	/**
+	 * @param accession
+	 * @return The indexed entry of the argument accession, or NULL if the
+	 *         Blast-Database has no such protein.
+	 */
+	public Entry lookup(String accession) {
+		byte[] acc = accession.getBytes(UTF_8);
+		long slot = homeSlot(accession, slotCount);
+		while (true) {
+			long record = getLong(HEADER_SIZE + 8 * slot);
+			if (record == 0)
+				return null;
+			if (getInt(record) == acc.length && Arrays.equals(getBytes(record + 4, acc.length), acc)) {
+				long pos = record + 4 + acc.length;
+				int descriptionLength = getInt(pos + 12);
+				return new Entry(accession, getLong(pos), getInt(pos + 8),
+						new String(getBytes(pos + 16, descriptionLength), UTF_8));
+			}
+			slot = (slot + 1) % slotCount;
+		}
+	}
+
+	/**
+	 * @return The length of the FASTA file this index has been built from. Used
+	 *         to recognize outdated indices.
+	 */
+	public long getFastaLength() {
+		return fastaLength;
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+
+	static long homeSlot(String accession, long slotCount) {
+		long hash = accession.hashCode() * 0x9E3779B97F4A7C15L;
+		return (hash >>> 1) % slotCount;
+	}
+
+	static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long start, long length)
+			throws IOException {
+		MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+		for (int i = 0; i < segments.length; i++) {
+			long segmentStart = start + i * SEGMENT_SIZE;
+			segments[i] = channel.map(mode, segmentStart, Math.min(SEGMENT_SIZE, start + length - segmentStart));
+		}
+		return segments;
+	}
+
+	static long getLong(MappedByteBuffer[] segments, long pos) {
+		int offset = (int) (pos & (SEGMENT_SIZE - 1));
+		MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_BITS)];
+		if (offset + 8 <= segment.limit())
+			return segment.getLong(offset);
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (getByte(segments, pos + i) & 0xFF);
+		return value;
+	}
+
+	static void putLong(MappedByteBuffer[] segments, long pos, long value) {
+		for (int i = 7; i >= 0; i--) {
+			segments[(int) ((pos + i) >>> SEGMENT_BITS)].put((int) ((pos + i) & (SEGMENT_SIZE - 1)), (byte) value);
+			value >>>= 8;
+		}
+	}
+
+	static byte getByte(MappedByteBuffer[] segments, long pos) {
+		return segments[(int) (pos >>> SEGMENT_BITS)].get((int) (pos & (SEGMENT_SIZE - 1)));
+	}
+
+	private long getLong(long pos) {
+		return getLong(segments, pos);
+	}
+
+	private int getInt(long pos) {
+		return getInt(segments, pos);
+	}
+
+	private byte[] getBytes(long pos, int length) {
+		return getBytes(segments, pos, length);
+	}
+
+	static int getInt(MappedByteBuffer[] segments, long pos) {
+		int value = 0;
+		for (int i = 0; i < 4; i++)
+			value = (value << 8) | (getByte(segments, pos + i) & 0xFF);
+		return value;
+	}
+
+	static byte[] getBytes(MappedByteBuffer[] segments, long pos, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = getByte(segments, pos + i);
+		return bytes;
+	}
+
+	/**
+	 * Reads a FASTA file line by line as bytes, keeping track of each line's
+	 * offset. Lines end at '\n', a preceding '\r' is removed.
+	 */
+	private static class FastaLines implements Closeable {
+
+		private InputStream in;
+		private byte[] buffer = new byte[1 << 16];
+		private int bufferPos = 0;
+		private int bufferLimit = 0;
+		private byte[] line = new byte[256];
+		private int length;
+		private long offset;
+		private long nextOffset = 0;
+
+		public FastaLines(String pathToFasta) throws IOException {
+			this.in = new FileInputStream(pathToFasta);
+		}
+
+		public boolean next() throws IOException {
+			offset = nextOffset;
+			length = 0;
+			boolean endOfLine = false;
+			while (!endOfLine) {
+				if (bufferPos == bufferLimit) {
+					bufferLimit = in.read(buffer);
+					bufferPos = 0;
+					if (bufferLimit <= 0) {
+						bufferLimit = 0;
+						if (nextOffset == offset)
+							return false;
+						break;
+					}
+				}
+				int start = bufferPos;
+				while (bufferPos < bufferLimit && buffer[bufferPos] != '\n')
+					bufferPos++;
+				int n = bufferPos - start;
+				if (length + n > line.length)
+					line = Arrays.copyOf(line, Math.max(line.length * 2, length + n));
+				System.arraycopy(buffer, start, line, length, n);
+				length += n;
+				nextOffset += n;
+				if (bufferPos < bufferLimit) {
+					// Skip the '\n':
+					bufferPos++;
+					nextOffset++;
+					endOfLine = true;
+				}
+			}
+			if (length > 0 && line[length - 1] == '\r')
+				length--;
+			return true;
+		}
+
+		public boolean isHeader() {
+			return length > 0 && line[0] == '>';
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return The length of the current line without leading and trailing
+		 *         white-spaces, as <code>String.trim()</code> would return it.
+		 */
+		public int trimmedLength() {
+			int start = 0, end = length;
+			while (start < end && (line[start] & 0xFF) <= ' ')
+				start++;
+			while (end > start && (line[end - 1] & 0xFF) <= ' ')
+				end--;
+			return end - start;
+		}
+
+		@Override
+		public String toString() {
+			return new String(line, 0, length, Charset.defaultCharset());
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
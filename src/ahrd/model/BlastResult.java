@@ -3,18 +3,19 @@ package ahrd.model;
 import static ahrd.controller.Settings.getSettings;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import ahrd.controller.RegexList;
 import ahrd.controller.Settings;
 import ahrd.exception.MissingProteinException;
 
@@ -31,43 +32,81 @@ public class BlastResult implements Comparable<BlastResult> {
 	public static final String FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME = "description";
 	public static final String SHORT_ACCESSION_GROUP_NAME = "shortAccession";
 	public static final String GO_TERM_GROUP_NAME = "goTerm";
+	/**
+	 * Only this many BlastResults of lowest E-Values are considered per query
+	 * Protein and searched Blast-Database.
+	 */
+	public static final int MAX_BLAST_RESULTS_PER_DATABASE = 200;
 
+	/**
+	 * Marks an unset int field. The respective getter returns NULL.
+	 */
+	private static final int UNSET = Integer.MIN_VALUE;
+	/**
+	 * Bits of <code>setDoubles</code> marking the double fields that have been
+	 * set. NaN is a valid value of these fields, e.g. a description score
+	 * computed from a maximum Bit-Score of zero, and must not be taken for
+	 * unset.
+	 */
+	private static final byte E_VALUE_SET = 1;
+	private static final byte BIT_SCORE_SET = 2;
+	private static final byte DESCRIPTION_SCORE_SET = 4;
+	private static final byte EVALUATION_SCORE_SET = 8;
+
+	/*
+	 * There are hundreds of millions of BlastResults in a large run, so all
+	 * numbers are held in primitive fields. Unset int values are UNSET, unset
+	 * double values have their bit in setDoubles cleared. The getters return
+	 * NULL for unset values.
+	 */
 	private String accession;
 	private String shortAccession;
-	private Double eValue;
+	private double eValue = Double.NaN;
 	private String description;
 	/**
 	 * Query's start position in local alignment
 	 */
-	private Integer queryStart;
+	private int queryStart = UNSET;
 	/**
 	 * Query's stop position in local alignment
 	 */
-	private Integer queryEnd;
+	private int queryEnd = UNSET;
 	/**
 	 * Subject's start position in local alignment
 	 */
-	private Integer subjectStart;
+	private int subjectStart = UNSET;
 	/**
 	 * Subject's stop position in local alignment
 	 */
-	private Integer subjectEnd;
+	private int subjectEnd = UNSET;
 	/**
 	 * Length of subject's amino acid sequence.
 	 */
-	private Integer subjectLength;
-	private Double bitScore;
-	private String blastDatabaseName;
+	private int subjectLength = UNSET;
+	private double bitScore = Double.NaN;
+	/**
+	 * Index of the Blast-Database's name in the run's Settings, see
+	 * <code>Settings.getBlastDatabaseIndex(String)</code>
+	 */
+	private byte blastDatabase;
 	/**
 	 * The descriptionScore is calculated by AHRD.
 	 */
-	private Double descriptionScore;
-	private Set<String> tokens = new HashSet<String>();
+	private double descriptionScore = Double.NaN;
+	/**
+	 * The Description's Tokens, held as their IDs in the run-wide
+	 * <code>TokenDictionary</code>.
+	 */
+	private TokenSet tokens = new TokenSet();
 	/**
 	 * The evaluationScore is calculated while training or evaluating AHRD's
 	 * performance in comparison with the "Best Blast Hit"-Method:
 	 */
-	private Double evaluationScore;
+	private double evaluationScore = Double.NaN;
+	/**
+	 * Which of the double fields are set, see E_VALUE_SET and friends.
+	 */
+	private byte setDoubles;
 	/**
 	 * Evaluation Tokens are <i>not</i> filtered with the TOKEN-BLACKLIST, as we
 	 * want to evaluate <i>all</i> tokens, that are printed out, too. This set
@@ -120,12 +159,13 @@ public class BlastResult implements Comparable<BlastResult> {
 			double bitScore, String blastDatabaseName, Protein protein) {
 		super();
 		setAccession(accession);
-		setEValue(eValue);
-		setQueryStart(queryStart);
-		setQueryEnd(queryEnd);
-		setSubjectStart(subjectStart);
-		setSubjectEnd(subjectEnd);
-		setBitScore(bitScore);
+		this.eValue = eValue;
+		this.queryStart = queryStart;
+		this.queryEnd = queryEnd;
+		this.subjectStart = subjectStart;
+		this.subjectEnd = subjectEnd;
+		this.bitScore = bitScore;
+		this.setDoubles = E_VALUE_SET | BIT_SCORE_SET;
 		setBlastDatabaseName(blastDatabaseName);
 		setProtein(protein);
 	}
@@ -134,14 +174,15 @@ public class BlastResult implements Comparable<BlastResult> {
 			int subjectStart, int subjectEnd, int subjectLength, double bitScore, String blastDatabaseName) {
 		super();
 		setAccession(accession);
-		setEValue(eValue);
+		this.eValue = eValue;
 		setDescription(description);
-		setQueryStart(queryStart);
-		setQueryEnd(queryEnd);
-		setSubjectStart(subjectStart);
-		setSubjectEnd(subjectEnd);
-		setSubjectLength(subjectLength);
-		setBitScore(bitScore);
+		this.queryStart = queryStart;
+		this.queryEnd = queryEnd;
+		this.subjectStart = subjectStart;
+		this.subjectEnd = subjectEnd;
+		this.subjectLength = subjectLength;
+		this.bitScore = bitScore;
+		this.setDoubles = E_VALUE_SET | BIT_SCORE_SET;
 		setBlastDatabaseName(blastDatabaseName);
 	}
 
@@ -159,6 +200,8 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * <li>Extract Human Readable Descriptions (HRDs) and Sequence Lengths from
 	 * Protein Database in FASTA format</li>
 	 * </ul>
+	 * If requested in the Settings the search results are streamed, see
+	 * <code>SequenceSimilarityTabularSearchResultParser</code>.
 	 * 
 	 * @param proteinDb
 	 * @param blastDbName
@@ -170,8 +213,31 @@ public class BlastResult implements Comparable<BlastResult> {
 	 */
 	public static void readBlastResults(Map<String, Protein> proteinDb, String blastDbName,
 			Set<String> uniqueAccessions) throws MissingProteinException, IOException {
-		Map<String, List<BlastResult>> brs = parseBlastResults(proteinDb, blastDbName, uniqueAccessions);
-		parseBlastDatabase(proteinDb, blastDbName, brs);
+		readBlastResults(proteinDb, blastDbName, uniqueAccessions, getSettings().getThreads());
+	}
+
+	/**
+	 * As <code>readBlastResults(proteinDb, blastDbName, uniqueAccessions)</code>,
+	 * but parses the sequence similarity search results with at most nThreads
+	 * threads. Used when several Blast-Databases are read concurrently and
+	 * have to share the requested number of threads.
+	 * 
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @param uniqueAccessions
+	 * @param nThreads
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 */
+	public static void readBlastResults(Map<String, Protein> proteinDb, String blastDbName,
+			Set<String> uniqueAccessions, int nThreads) throws MissingProteinException, IOException {
+		if (getSettings().doStreamSeqSimSearchTable()) {
+			SequenceSimilarityTabularSearchResultParser.readBlastResults(proteinDb, blastDbName, uniqueAccessions);
+		} else {
+			Map<String, List<BlastResult>> brs = parseBlastResults(proteinDb, blastDbName, uniqueAccessions,
+					nThreads);
+			parseBlastDatabase(proteinDb, blastDbName, brs);
+		}
 	}
 
 	/**
@@ -179,7 +245,10 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * searches, and assigns them to the Proteins in argument proteinDb. The
 	 * result file is expected to be in tabular format, that is each line is
 	 * supposed to contain a single High Scoring Pair (HSP). Preferred format is
-	 * 'Blast8' (-m 8).
+	 * 'Blast8' (-m 8). If the Settings request more than a single thread and
+	 * the columns are separated by a single character, the file is parsed in
+	 * chunks by parallel threads, see
+	 * <code>ChunkedTabularSearchResultParser</code>.
 	 * 
 	 * @param proteinDb
 	 * @param blastDbName
@@ -193,6 +262,28 @@ public class BlastResult implements Comparable<BlastResult> {
 	 */
 	public static Map<String, List<BlastResult>> parseBlastResults(Map<String, Protein> proteinDb, String blastDbName,
 			Set<String> uniqueShortAccessions) throws MissingProteinException, IOException {
+		return parseBlastResults(proteinDb, blastDbName, uniqueShortAccessions, getSettings().getThreads());
+	}
+
+	/**
+	 * As <code>parseBlastResults(proteinDb, blastDbName,
+	 * uniqueShortAccessions)</code>, but uses at most nThreads threads instead
+	 * of the number requested in the Settings.
+	 * 
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @param uniqueShortAccessions
+	 * @param nThreads
+	 * @return Map<String,List<BlastResult>> Set of Hit-Accessions (Key) to the
+	 *         full BlastResult(s) (Value)
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 */
+	public static Map<String, List<BlastResult>> parseBlastResults(Map<String, Protein> proteinDb, String blastDbName,
+			Set<String> uniqueShortAccessions, int nThreads) throws MissingProteinException, IOException {
+		if (nThreads > 1 && ChunkedTabularSearchResultParser.separator(getSettings().getSeqSimSearchTableSep()) >= 0)
+			return ChunkedTabularSearchResultParser.parseBlastResults(proteinDb, blastDbName, uniqueShortAccessions,
+					nThreads);
 		Map<String, List<BlastResult>> brs = new HashMap<String, List<BlastResult>>();
 		BufferedReader fastaIn = null;
 		try {
@@ -231,7 +322,9 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * a BlastResult of same accession and for the same query protein is already
 	 * present, and the argument BlastResult has a better Bit-Score, it replaces
 	 * the one of worse Bit-Score. If this is a so far not seen BlastResult,
-	 * regarding Hit-Accession and Query-Accession, it will simply be added.
+	 * regarding Hit-Accession and Query-Accession, it will simply be added. The
+	 * Hits' lists are held as <code>SameHitBlastResults</code>, so that the
+	 * BlastResult of the same query is found in constant time.
 	 * 
 	 * @param brs
 	 * @param br
@@ -239,32 +332,31 @@ public class BlastResult implements Comparable<BlastResult> {
 	 */
 	public static void addBlastResult(Map<String, List<BlastResult>> brs, BlastResult br,
 			Set<String> uniqueShortAccessions) {
-		if (brs.containsKey(br.getAccession())) {
-			boolean isMultipleHsp = false;
-			List<BlastResult> sameHitBrs = brs.get(br.getAccession());
-			for (BlastResult iterBr : sameHitBrs) {
-				// If and only if there is a BlastResult of same Hit and Query
-				// that also has a better Bit-Score, replace the one of lower
-				// Bit-Score with the higher one:
-				if (iterBr.getProtein().equals(br.getProtein())) {
-					isMultipleHsp = true;
-					if (iterBr.getBitScore() < br.getBitScore()) {
-						sameHitBrs.remove(iterBr);
-						sameHitBrs.add(br);
-					}
-				}
-			}
-			// If this a Hit for another Protein, add it:
-			if (!isMultipleHsp) {
-				sameHitBrs.add(br);
-			}
-
-		} else {
+		List<BlastResult> sameHitBrs = brs.get(br.getAccession());
+		if (sameHitBrs == null) {
 			// Add a new List<BlastResult> containing the argument BlastResult
 			// br to the argument Map brs:
-			List<BlastResult> sameHitBrs = new ArrayList<BlastResult>();
+			sameHitBrs = new SameHitBlastResults();
 			sameHitBrs.add(br);
 			brs.put(br.getAccession(), sameHitBrs);
+		} else {
+			int sameQuery = -1;
+			if (sameHitBrs instanceof SameHitBlastResults) {
+				sameQuery = ((SameHitBlastResults) sameHitBrs).indexOf(br.getProtein());
+			} else {
+				for (int i = 0; i < sameHitBrs.size() && sameQuery < 0; i++) {
+					if (sameHitBrs.get(i).getProtein().equals(br.getProtein()))
+						sameQuery = i;
+				}
+			}
+			if (sameQuery < 0) {
+				// This is a Hit for another Protein, add it:
+				sameHitBrs.add(br);
+			} else if (sameHitBrs.get(sameQuery).getBitScore() < br.getBitScore()) {
+				// Multiple HSP of the same Hit and Query, replace the one of
+				// lower Bit-Score with the higher one:
+				sameHitBrs.set(sameQuery, br);
+			}
 		}
 		// Finally, if AHRD is requested to annotate Gene Ontology Terms, we
 		// need to extract all unique short reference protein (BlastResult)
@@ -285,13 +377,15 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * @param fastaAccession
 	 * @param hitAALength
 	 * @param hrd
+	 * @param hitDescriptions
+	 *            - The descriptions of the Blast-Database processed so far
 	 */
 	public static void fastaEntryValuesForBlastHit(Map<String, List<BlastResult>> blastResults, String fastaAccession,
-			Integer hitAALength, String hrd) {
+			Integer hitAALength, String hrd, HitDescription.Cache hitDescriptions) {
+		HitDescription hitDescription = hitDescriptions.get(hrd);
 		for (BlastResult br : blastResults.get(fastaAccession)) {
 			br.setSubjectLength(hitAALength);
-			br.setDescription(hrd);
-			br.generateHRDCandidateForProtein();
+			br.generateHRDCandidateForProtein(hitDescription);
 		}
 	}
 
@@ -301,7 +395,10 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * (Subjects) in the argument blastResults. Each time such a Hit is found
 	 * the mentioned measurements are set in the respective instance of
 	 * BlastResult and subsequently the method 'Protein.addBlastResult' is
-	 * invoked.
+	 * invoked. If a valid index of the protein database is set, only the Hits
+	 * are looked up in it. Otherwise, if an up to date reference annotation
+	 * table of the protein database is set, it is read instead of the database. Only if
+	 * neither is available, the whole database is scanned.
 	 * 
 	 * @param proteinDb
 	 * @param blastDbName
@@ -310,6 +407,96 @@ public class BlastResult implements Comparable<BlastResult> {
 	 */
 	public static void parseBlastDatabase(Map<String, Protein> proteinDb, String blastDbName,
 			Map<String, List<BlastResult>> blastResults) throws IOException {
+		BlastDatabaseIndex index = openBlastDatabaseIndex(blastDbName);
+		String pathToTable = getSettings().getPathToReferenceAnnotationTable(blastDbName);
+		if (index != null) {
+			try {
+				lookUpBlastDatabaseIndex(index, blastResults);
+			} finally {
+				index.close();
+			}
+		} else if (pathToTable != null && new File(pathToTable).exists()
+				&& ReferenceAnnotationTable.isUpToDate(pathToTable, blastDbName)) {
+			ReferenceAnnotationTable.parse(pathToTable, blastResults);
+		} else {
+			if (pathToTable != null && new File(pathToTable).exists())
+				System.err.println("WARNING: The reference annotation table '" + pathToTable
+						+ "' does not match Blast database '" + blastDbName
+						+ "' or its blacklist, filter or regular expressions. Please generate it again."
+						+ " Scanning the database instead.");
+			else if (pathToTable != null && !pathToTable.equals(""))
+				System.err.println("WARNING: Could not find the reference annotation table '" + pathToTable
+						+ "' of Blast database '" + blastDbName + "'. Scanning the database instead.");
+			scanBlastDatabase(blastDbName, blastResults);
+		}
+	}
+
+	/**
+	 * Opens the index set for the argument Blast-Database. If the index does
+	 * not exist, can not be read or has been built from a FASTA file of
+	 * different length, a warning is printed and NULL is returned, so that the
+	 * database is scanned instead.
+	 * 
+	 * @param blastDbName
+	 * @return BlastDatabaseIndex or NULL
+	 */
+	public static BlastDatabaseIndex openBlastDatabaseIndex(String blastDbName) {
+		String pathToIndex = getSettings().getPathToBlastDatabaseIndex(blastDbName);
+		if (pathToIndex == null || pathToIndex.equals(""))
+			return null;
+		BlastDatabaseIndex index = null;
+		try {
+			index = new BlastDatabaseIndex(pathToIndex);
+			if (index.getFastaLength() == new File(getSettings().getPathToBlastDatabase(blastDbName)).length())
+				return index;
+			index.close();
+			System.err.println("WARNING: The index '" + pathToIndex + "' does not match Blast database '"
+					+ blastDbName + "'. Please build it again. Scanning the database instead.");
+		} catch (IOException e) {
+			System.err.println("WARNING: Could not open the index '" + pathToIndex + "' of Blast database '"
+					+ blastDbName + "': " + e.getMessage() + " Scanning the database instead.");
+		}
+		return null;
+	}
+
+	/**
+	 * Looks up the Hit-Accessions of the argument blastResults in the argument
+	 * index. The found Hits are processed in the order of the protein
+	 * database, just as <code>scanBlastDatabase</code> would process them.
+	 * 
+	 * @param index
+	 * @param blastResults
+	 */
+	public static void lookUpBlastDatabaseIndex(BlastDatabaseIndex index,
+			Map<String, List<BlastResult>> blastResults) {
+		List<BlastDatabaseIndex.Entry> hits = new ArrayList<BlastDatabaseIndex.Entry>();
+		for (String hitAcc : blastResults.keySet()) {
+			BlastDatabaseIndex.Entry hit = index.lookup(hitAcc);
+			if (hit != null)
+				hits.add(hit);
+		}
+		Collections.sort(hits);
+		HitDescription.Cache hitDescriptions = null;
+		for (BlastDatabaseIndex.Entry hit : hits) {
+			if (hitDescriptions == null)
+				hitDescriptions = new HitDescription.Cache(
+						blastResults.get(hit.getAccession()).get(0).getBlastDatabaseName(), false);
+			fastaEntryValuesForBlastHit(blastResults, hit.getAccession(), hit.getSequenceLength(),
+					hit.getDescription(), hitDescriptions);
+		}
+	}
+
+	/**
+	 * Reads the whole protein database in FASTA format line by line, and
+	 * processes the entries of those Proteins that are Hits in the argument
+	 * blastResults.
+	 * 
+	 * @param blastDbName
+	 * @param blastResults
+	 * @throws IOException
+	 */
+	public static void scanBlastDatabase(String blastDbName, Map<String, List<BlastResult>> blastResults)
+			throws IOException {
 		// Parse line by line FASTA Blast search DB. Extract Subject Lengths and
 		// Subject HRDs.
 		BufferedReader fastaIn = null;
@@ -319,12 +506,14 @@ public class BlastResult implements Comparable<BlastResult> {
 			String acc = "";
 			Integer hitAALength = new Integer(0);
 			boolean hit = false;
+			Pattern fastaHeaderRegex = getSettings().getFastaHeaderRegex(blastDbName);
+			HitDescription.Cache hitDescriptions = new HitDescription.Cache(blastDbName, false);
 			while ((str = fastaIn.readLine()) != null) {
 				if (str.startsWith(">")) {
 					// Finished reading in the original Fasta-Entry of a
 					// Blast-Hit? If so, process it:
 					if (hit) {
-						fastaEntryValuesForBlastHit(blastResults, acc, hitAALength, hrd);
+						fastaEntryValuesForBlastHit(blastResults, acc, hitAALength, hrd, hitDescriptions);
 						// Clean up to enable processing the next Hit
 						hitAALength = new Integer(0);
 						// Note, that the boolean 'hit' will be set in the
@@ -333,22 +522,22 @@ public class BlastResult implements Comparable<BlastResult> {
 					}
 
 					// Process the current Fasta-Header-Line:
-					Matcher m = getSettings().getFastaHeaderRegex(blastDbName).matcher(str);
-					if (!m.matches()) {
+					String[] accAndHrd = parseFastaHeader(str, fastaHeaderRegex);
+					if (accAndHrd == null) {
 						// Provided REGEX to parse FASTA header does not work in
 						// this case:
 						System.err.println("WARNING: FASTA header line\n" + str.trim()
 								+ "\ndoes not match provided regular expression\n"
-								+ getSettings().getFastaHeaderRegex(blastDbName).toString()
+								+ fastaHeaderRegex.toString()
 								+ "\n. The header and the following entry, including possibly respective matching BLAST Hits, are ignored and discarded.\n"
 								+ "To fix this, please use - Blast database specific - parameter "
 								+ Settings.FASTA_HEADER_REGEX_KEY
 								+ " to provide a regular expression that matches ALL FASTA headers in Blast database '"
 								+ blastDbName + "'.");
-					} else if (blastResults.containsKey(m.group(FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME).trim())) {
+					} else if (blastResults.containsKey(accAndHrd[0])) {
 						// Found the next Blast HIT:
-						acc = m.group(FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME).trim();
-						hrd = m.group(FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME).trim();
+						acc = accAndHrd[0];
+						hrd = accAndHrd[1];
 						// Following lines, until the next header, contain
 						// information to be collected:
 						hit = true;
@@ -366,21 +555,205 @@ public class BlastResult implements Comparable<BlastResult> {
 			// Was the last read FASTA entry a Blast-Hit? If so, it needs
 			// processing:
 			if (hit)
-				fastaEntryValuesForBlastHit(blastResults, acc, hitAALength, hrd);
+				fastaEntryValuesForBlastHit(blastResults, acc, hitAALength, hrd, hitDescriptions);
 		} finally {
 			fastaIn.close();
 		}
 	}
 
+	/**
+	 * Extracts the Accession and the Human Readable Description from the
+	 * argument FASTA header line. If the argument regular expression is
+	 * <code>Settings.DEFAULT_FASTA_HEADER_REGEX</code>, simple headers like
+	 * <code>&gt;sp|ACC|NAME description OS=...</code> are parsed without
+	 * running the regular expression, yielding the very same result.
+	 * 
+	 * @param fastaHeader
+	 * @param fastaHeaderRegex
+	 * @return String[] holding the trimmed Accession and Description, or NULL
+	 *         if the header does not match the regular expression.
+	 */
+	public static String[] parseFastaHeader(String fastaHeader, Pattern fastaHeaderRegex) {
+		if (fastaHeaderRegex == Settings.DEFAULT_FASTA_HEADER_REGEX) {
+			String[] accAndHrd = parseDefaultFastaHeader(fastaHeader);
+			if (accAndHrd != null)
+				return accAndHrd;
+		}
+		Matcher m = fastaHeaderRegex.matcher(fastaHeader);
+		if (!m.matches())
+			return null;
+		return new String[] { m.group(FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME).trim(),
+				m.group(FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME).trim() };
+	}
+
+	/**
+	 * Parses the argument FASTA header exactly as
+	 * <code>Settings.DEFAULT_FASTA_HEADER_REGEX</code> would: The Accession is
+	 * the first word following the '&gt;'. The Description is the shortest
+	 * following text that is succeeded by white-spaces and then either the end
+	 * of the line or an "OS=" or "GN=" field.
+	 * 
+	 * @param fastaHeader
+	 * @return String[] holding the trimmed Accession and Description, or NULL
+	 *         if the header is no simple case and has to be left to the
+	 *         regular expression.
+	 */
+	public static String[] parseDefaultFastaHeader(String fastaHeader) {
+		int length = fastaHeader.length();
+		if (length < 2 || fastaHeader.charAt(0) != '>')
+			return null;
+		// The regular expression's '.' and '$' treat line terminators
+		// specially:
+		for (int i = 0; i < length; i++) {
+			char c = fastaHeader.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+				return null;
+		}
+		int accEnd = 1;
+		while (accEnd < length && !isRegexWhitespace(fastaHeader.charAt(accEnd)))
+			accEnd++;
+		int descStart = accEnd;
+		while (descStart < length && isRegexWhitespace(fastaHeader.charAt(descStart)))
+			descStart++;
+		if (accEnd == 1 || descStart == accEnd || descStart == length)
+			return null;
+		int i = descStart + 1;
+		while (i < length) {
+			if (isRegexWhitespace(fastaHeader.charAt(i))) {
+				int whitespaceEnd = i;
+				while (whitespaceEnd < length && isRegexWhitespace(fastaHeader.charAt(whitespaceEnd)))
+					whitespaceEnd++;
+				if (whitespaceEnd == length || isSpeciesOrGeneField(fastaHeader, whitespaceEnd))
+					return new String[] { fastaHeader.substring(1, accEnd).trim(),
+							fastaHeader.substring(descStart, i).trim() };
+				i = whitespaceEnd;
+			} else {
+				i++;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return TRUE if and only if the argument FASTA header continues at the
+	 *         argument position with a non empty "OS=" or "GN=" field.
+	 */
+	private static boolean isSpeciesOrGeneField(String fastaHeader, int position) {
+		return fastaHeader.length() > position + 3
+				&& (fastaHeader.startsWith("OS=", position) || fastaHeader.startsWith("os=", position)
+						|| fastaHeader.startsWith("GN=", position) || fastaHeader.startsWith("gn=", position));
+	}
+
+	/**
+	 * @return TRUE if and only if the argument character is matched by the
+	 *         regular expression '\s'.
+	 */
+	private static boolean isRegexWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Extracts the short accession exactly as
+	 * <code>Settings.DEFAULT_SHORT_ACCESSION_REGEX</code> would, i.e. the text
+	 * between the first and the second '|'.
+	 * 
+	 * @param accession
+	 * @return The short accession or NULL, if the argument accession does not
+	 *         match.
+	 */
+	public static String parseDefaultShortAccession(String accession) {
+		int start = accession.indexOf('|') + 1;
+		if (start < 2 || start == accession.length() || accession.charAt(start) == '|')
+			return null;
+		int end = accession.indexOf('|', start);
+		return accession.substring(start, (end < 0) ? accession.length() : end);
+	}
+
+	/**
+	 * Selects the argument number of BlastResults with the lowest E-Values. To
+	 * avoid sorting all BlastResults, a bounded max-heap holding the indices of
+	 * the best BlastResults seen so far is used. Ties in E-Value are resolved
+	 * by position in the argument List, the earlier BlastResult wins. Hence
+	 * the result equals the head of the stably sorted argument List.
+	 * 
+	 * @param blastResults
+	 * @param howMany
+	 * @return A new and independent List holding the howMany best
+	 *         BlastResults in ascending order of E-Value, or the argument List
+	 *         itself, if it does not hold more than howMany BlastResults.
+	 */
 	public static List<BlastResult> filterBestScoringBlastResults(List<BlastResult> blastResults, int howMany) {
 		if (blastResults.size() > howMany) {
-			List<BlastResult> sortedBlastResults = new ArrayList<BlastResult>(blastResults);
-			Collections.sort(sortedBlastResults);
-			blastResults = sortedBlastResults.subList(0, howMany);
+			BlastResult[] candidates = blastResults.toArray(new BlastResult[blastResults.size()]);
+			double[] eValues = new double[candidates.length];
+			for (int i = 0; i < candidates.length; i++) {
+				eValues[i] = candidates[i].getEValue();
+			}
+			int[] heap = new int[Math.max(howMany, 0)];
+			int size = 0;
+			for (int i = 0; i < candidates.length && heap.length > 0; i++) {
+				if (size < heap.length) {
+					heap[size] = i;
+					size++;
+					siftUpWorst(heap, size - 1, eValues);
+				} else if (Double.compare(eValues[i], eValues[heap[0]]) < 0) {
+					heap[0] = i;
+					siftDownWorst(heap, 0, size, eValues);
+				}
+			}
+			// Heap-Sort the retained indices into ascending order:
+			for (int end = size - 1; end > 0; end--) {
+				int worst = heap[0];
+				heap[0] = heap[end];
+				heap[end] = worst;
+				siftDownWorst(heap, 0, end, eValues);
+			}
+			List<BlastResult> bestBlastResults = new ArrayList<BlastResult>(size);
+			for (int i = 0; i < size; i++) {
+				bestBlastResults.add(candidates[heap[i]]);
+			}
+			blastResults = bestBlastResults;
 		}
 		return blastResults;
 	}
 
+	/**
+	 * @return TRUE if and only if the candidate at index a has a higher E-Value
+	 *         than the one at index b or, if tied, comes after it.
+	 */
+	private static boolean isWorse(int a, int b, double[] eValues) {
+		int cmp = Double.compare(eValues[a], eValues[b]);
+		return cmp > 0 || (cmp == 0 && a > b);
+	}
+
+	private static void siftUpWorst(int[] heap, int pos, double[] eValues) {
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isWorse(heap[pos], heap[parent], eValues))
+				break;
+			int tmp = heap[pos];
+			heap[pos] = heap[parent];
+			heap[parent] = tmp;
+			pos = parent;
+		}
+	}
+
+	private static void siftDownWorst(int[] heap, int pos, int size, double[] eValues) {
+		while (true) {
+			int worst = 2 * pos + 1;
+			if (worst >= size)
+				break;
+			if (worst + 1 < size && isWorse(heap[worst + 1], heap[worst], eValues))
+				worst++;
+			if (!isWorse(heap[worst], heap[pos], eValues))
+				break;
+			int tmp = heap[pos];
+			heap[pos] = heap[worst];
+			heap[worst] = tmp;
+			pos = worst;
+		}
+	}
+
 	/**
 	 * Sorts unique tokens and returns them concatenated. @NOTE: As this is
 	 * expectedly fast, we do not need to store the generated pattern in the
@@ -405,8 +778,8 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * in this' tokens field.
 	 */
 	public void tokenize() {
-		List<String> tknBlackList = getSettings().getTokenBlackList(getBlastDatabaseName());
-		this.setTokens(TokenScoreCalculator.tokenize(this.getDescription(), tknBlackList));
+		RegexList tknBlackList = getSettings().getTokenBlacklistPatterns(getBlastDatabaseName());
+		this.setTokens(TokenScoreCalculator.tokenizeToTokenSet(this.getDescription(), tknBlackList));
 	}
 
 	/**
@@ -418,7 +791,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 *         the respective blacklist. FALSE otherwise.
 	 */
 	public boolean passesBlacklist(String blastResultDescriptionLine) {
-		List<String> blacklist = getSettings().getBlastResultsBlackList(getBlastDatabaseName());
+		RegexList blacklist = getSettings().getBlastResultsBlacklistPatterns(getBlastDatabaseName());
 		return DescriptionScoreCalculator.passesBlacklist(blastResultDescriptionLine, blacklist);
 	}
 
@@ -431,7 +804,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 *         in which all matches to the respective filters are deleted.
 	 */
 	public String filter(String blastResultDescriptionLine) {
-		List<String> filter = getSettings().getBlastResultsFilter(getBlastDatabaseName());
+		RegexList filter = getSettings().getBlastResultsFilterPatterns(getBlastDatabaseName());
 		return DescriptionScoreCalculator.filter(blastResultDescriptionLine, filter);
 	}
 
@@ -451,7 +824,7 @@ public class BlastResult implements Comparable<BlastResult> {
 		if (getSettings().getEvaluateValidTokens())
 			setEvaluationTokens(getTokens());
 		else
-			setEvaluationTokens(TokenScoreCalculator.tokenize(getDescription(), new ArrayList<String>()));
+			setEvaluationTokens(TokenScoreCalculator.tokenize(getDescription(), RegexList.EMPTY));
 	}
 
 	public boolean isValid() {
@@ -468,7 +841,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * Compares to argument BlastResult by comparing the appropriate E-Values.
 	 */
 	public int compareTo(BlastResult compareBlastResult) {
-		return this.getEValue().compareTo(compareBlastResult.getEValue());
+		return Double.compare(this.eValue, compareBlastResult.eValue);
 	}
 
 	/**
@@ -478,9 +851,10 @@ public class BlastResult implements Comparable<BlastResult> {
 	 *         descriptionScore, tokens and evaluationScore.
 	 */
 	public BlastResult clone() {
-		return new BlastResult(new String(this.getAccession()), new Double(eValue), new String(description),
-				new Integer(queryStart), new Integer(queryEnd), new Integer(subjectStart), new Integer(subjectEnd),
-				new Integer(subjectLength), new Double(bitScore), new String(blastDatabaseName));
+		BlastResult theClone = new BlastResult(getAccession(), eValue, description, queryStart, queryEnd,
+				subjectStart, subjectEnd, subjectLength, bitScore, getBlastDatabaseName());
+		theClone.setDoubles = (byte) (setDoubles & (E_VALUE_SET | BIT_SCORE_SET));
+		return theClone;
 	}
 
 	/**
@@ -490,29 +864,51 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * BlastResults.
 	 */
 	public void generateHRDCandidateForProtein() {
+		generateHRDCandidateForProtein(passesBlacklist(getDescription()), false);
+	}
+
+	/**
+	 * Does the same as <code>generateHRDCandidateForProtein()</code>, but uses
+	 * the argument result of the Blacklist, e.g. as found in a
+	 * <code>ReferenceAnnotationTable</code>.
+	 * 
+	 * @param passesBlacklist
+	 *            - Whether the original description passes the Blacklist
+	 * @param descriptionFiltered
+	 *            - If TRUE, this' description has already been passed through
+	 *            the filter.
+	 */
+	public void generateHRDCandidateForProtein(boolean passesBlacklist, boolean descriptionFiltered) {
+		generateHRDCandidateForProtein(
+				new HitDescription(getBlastDatabaseName(), getDescription(), passesBlacklist, descriptionFiltered));
+	}
+
+	/**
+	 * Does the same as <code>generateHRDCandidateForProtein()</code>, but uses
+	 * the argument already processed description of this' Hit. The filtered
+	 * description and its Tokens are shared, not copied.
+	 * 
+	 * @param hitDescription
+	 */
+	public void generateHRDCandidateForProtein(HitDescription hitDescription) {
 		// For Training-Purposes:
 		if (getSettings().getWriteBestBlastHitsToOutput()) {
 			// Of course we do have to treat this best-blast-hit
 			// differently than the further to process one below, so
 			// clone:
 			BlastResult theClone = clone();
-			// Pass best Blast-Hit's Description through filter:
-			theClone.setDescription(filter(theClone.getDescription()));
-			// Tokenize without filtering tokens through the Blacklist:
-			theClone.setTokens(TokenScoreCalculator.tokenize(theClone.getDescription(), new ArrayList<String>()));
+			// The best Blast-Hit's filtered Description, tokenized without
+			// filtering tokens through the Blacklist:
+			theClone.setDescription(hitDescription.getDescription());
+			theClone.setTokens(hitDescription.getUnfilteredTokens());
 			getProtein().getEvaluationScoreCalculator().addUnchangedBlastResult(getBlastDatabaseName(), theClone);
 		}
-		if (passesBlacklist(getDescription())) {
-			// Pass bestScoringHSP through filter:
-			setDescription(filter(getDescription()));
-			// Tokenize the filtered Description-Line:
-			tokenize();
-			// Pass bestScoringHSP through Blacklist and add it, if it
-			// is still valid:
+		if (hitDescription.passesBlacklist()) {
+			// Filtered and tokenized Description-Line:
+			setDescription(hitDescription.getDescription());
+			setTokens(hitDescription.getTokens());
+			// Add it, if it is still valid:
 			if (isValid()) {
-				// Generate the pattern of the Description's unique
-				// tokens:
-				patternize();
 				// Adds the BlastResult to the getProtein()'s set and
 				// measures the cumulative and total scores later needed
 				// to calculate the Token-Scores:
@@ -533,19 +929,36 @@ public class BlastResult implements Comparable<BlastResult> {
 	public String getShortAccession() {
 		if (shortAccession == null) {
 			Pattern p = getSettings().getShortAccessionRegex(getBlastDatabaseName());
-			Matcher m = p.matcher(getAccession());
-			setShortAccession(getAccession());
-			if (!m.find()) {
+			shortAccession = parseShortAccession(getAccession(), p);
+			if (shortAccession == null) {
+				setShortAccession(getAccession());
 				System.err.println("WARNING: Regular Expression '" + p.toString()
 						+ "' does NOT match - using pattern.find(...) - Blast Hit Accession '" + getAccession()
 						+ "' - continuing with the original accession. This might lead to unrecognized reference GO annotations!");
-			} else {
-				shortAccession = m.group(SHORT_ACCESSION_GROUP_NAME);
 			}
 		}
 		return (shortAccession);
 	}
 
+	/**
+	 * Extracts the short accession from the argument accession without
+	 * logging, see <code>getShortAccession()</code>.
+	 * 
+	 * @param accession
+	 * @param shortAccessionRegex
+	 * @return The short accession, or NULL if the argument regular expression
+	 *         does not match the argument accession.
+	 */
+	public static String parseShortAccession(String accession, Pattern shortAccessionRegex) {
+		if (shortAccessionRegex == Settings.DEFAULT_SHORT_ACCESSION_REGEX) {
+			String shortAccession = parseDefaultShortAccession(accession);
+			if (shortAccession != null)
+				return shortAccession;
+		}
+		Matcher m = shortAccessionRegex.matcher(accession);
+		return m.find() ? m.group(SHORT_ACCESSION_GROUP_NAME) : null;
+	}
+
 	public void setShortAccession(String shortAccession) {
 		this.shortAccession = shortAccession;
 	}
@@ -559,11 +972,12 @@ public class BlastResult implements Comparable<BlastResult> {
 	}
 
 	public Double getEValue() {
-		return eValue;
+		return isSet(E_VALUE_SET) ? eValue : null;
 	}
 
 	public void setEValue(Double value) {
-		eValue = value;
+		eValue = (value != null) ? value : Double.NaN;
+		markSet(E_VALUE_SET, value != null);
 	}
 
 	public String getDescription() {
@@ -575,61 +989,83 @@ public class BlastResult implements Comparable<BlastResult> {
 	}
 
 	public Integer getQueryStart() {
-		return queryStart;
+		return (queryStart != UNSET) ? queryStart : null;
 	}
 
 	public void setQueryStart(Integer start) {
-		this.queryStart = start;
+		this.queryStart = (start != null) ? start : UNSET;
 	}
 
 	public Integer getQueryEnd() {
-		return queryEnd;
+		return (queryEnd != UNSET) ? queryEnd : null;
 	}
 
 	public void setQueryEnd(Integer end) {
-		this.queryEnd = end;
+		this.queryEnd = (end != null) ? end : UNSET;
 	}
 
 	public Double getBitScore() {
-		return bitScore;
+		return isSet(BIT_SCORE_SET) ? bitScore : null;
 	}
 
 	public void setBitScore(Double bitScore) {
-		this.bitScore = bitScore;
+		this.bitScore = (bitScore != null) ? bitScore : Double.NaN;
+		markSet(BIT_SCORE_SET, bitScore != null);
 	}
 
-	public Set<String> getTokens() {
+	public TokenSet getTokens() {
 		return tokens;
 	}
 
+	/**
+	 * @param tokens
+	 *            - Unless already a TokenSet, the tokens are copied into one.
+	 */
 	public void setTokens(Set<String> tokens) {
-		this.tokens = tokens;
+		this.tokens = (tokens instanceof TokenSet) ? (TokenSet) tokens : new TokenSet(tokens);
 	}
 
 	public Double getDescriptionScore() {
-		return descriptionScore;
+		return isSet(DESCRIPTION_SCORE_SET) ? descriptionScore : null;
 	}
 
 	public void setDescriptionScore(Double descriptionScore) {
-		this.descriptionScore = descriptionScore;
+		this.descriptionScore = (descriptionScore != null) ? descriptionScore : Double.NaN;
+		markSet(DESCRIPTION_SCORE_SET, descriptionScore != null);
 	}
 
 	public String getBlastDatabaseName() {
-		return blastDatabaseName;
+		return getSettings().getBlastDatabaseName(blastDatabase);
+	}
+
+	/**
+	 * @return The index of the Blast-Database's name in the run's Settings
+	 */
+	public byte getBlastDatabaseIndex() {
+		return blastDatabase;
 	}
 
 	public void setBlastDatabaseName(String blastDatabaseName) {
 		if (blastDatabaseName == null)
 			throw new IllegalArgumentException("Blast-Database-Name must not be NULL.");
-		this.blastDatabaseName = blastDatabaseName;
+		this.blastDatabase = getSettings().getBlastDatabaseIndex(blastDatabaseName);
 	}
 
 	public Double getEvaluationScore() {
-		return evaluationScore;
+		return isSet(EVALUATION_SCORE_SET) ? evaluationScore : null;
 	}
 
 	public void setEvaluationScore(Double evaluationScore) {
-		this.evaluationScore = evaluationScore;
+		this.evaluationScore = (evaluationScore != null) ? evaluationScore : Double.NaN;
+		markSet(EVALUATION_SCORE_SET, evaluationScore != null);
+	}
+
+	private boolean isSet(byte doubleField) {
+		return (setDoubles & doubleField) != 0;
+	}
+
+	private void markSet(byte doubleField, boolean set) {
+		setDoubles = (byte) (set ? setDoubles | doubleField : setDoubles & ~doubleField);
 	}
 
 	public Set<String> getEvaluationTokens() {
@@ -641,27 +1077,27 @@ public class BlastResult implements Comparable<BlastResult> {
 	}
 
 	public Integer getSubjectStart() {
-		return subjectStart;
+		return (subjectStart != UNSET) ? subjectStart : null;
 	}
 
 	public void setSubjectStart(Integer subjectStart) {
-		this.subjectStart = subjectStart;
+		this.subjectStart = (subjectStart != null) ? subjectStart : UNSET;
 	}
 
 	public Integer getSubjectEnd() {
-		return subjectEnd;
+		return (subjectEnd != UNSET) ? subjectEnd : null;
 	}
 
 	public void setSubjectEnd(Integer subjectEnd) {
-		this.subjectEnd = subjectEnd;
+		this.subjectEnd = (subjectEnd != null) ? subjectEnd : UNSET;
 	}
 
 	public Integer getSubjectLength() {
-		return subjectLength;
+		return (subjectLength != UNSET) ? subjectLength : null;
 	}
 
 	public void setSubjectLength(Integer subjectLength) {
-		this.subjectLength = subjectLength;
+		this.subjectLength = (subjectLength != null) ? subjectLength : UNSET;
 	}
 
 	public Protein getProtein() {
@@ -0,0 +1,513 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Settings.setSettings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ahrd.controller.Settings;
+import ahrd.exception.MissingProteinException;
+
+/**
+ * Parallel counterpart of <code>BlastResult.parseBlastResults</code>. The
+ * tabular sequence similarity search result is cut into chunks of whole lines,
+ * each of which is memory-mapped and parsed by a worker thread. The columns
+ * are parsed directly from the mapped bytes, so no String is created per line
+ * or column, except for the subject accession. The BlastResults of the chunks
+ * are finally merged in the order of the chunks, so that the result is
+ * identical to the one of the sequential parser.
+ *
+ * This parser requires the column separator to be a single character. See
+ * <code>separator</code>.
+ */
+public class ChunkedTabularSearchResultParser {
+
+	/**
+	 * Chunks are not made smaller than this, unless the file is.
+	 */
+	public static final long MIN_CHUNK_SIZE = 1L << 20;
+	/**
+	 * Chunks are mapped in one piece, so they must not be larger than this.
+	 */
+	public static final long MAX_CHUNK_SIZE = 1L << 30;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Pattern ESCAPED_CHAR = Pattern.compile("^\\\\(\\W)$");
+	private static final String REGEX_META_CHARS = ".$^{}[]()|*+?\\";
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private String blastDatabaseName;
+	private byte separator;
+	private int[] columns;
+	private Pattern commentLineRegex;
+	private Map<String, Protein> proteinDb;
+
+	public ChunkedTabularSearchResultParser(String blastDatabaseName, byte separator, Map<String, Protein> proteinDb) {
+		super();
+		this.blastDatabaseName = blastDatabaseName;
+		this.separator = separator;
+		this.proteinDb = proteinDb;
+		this.commentLineRegex = getSettings().getSeqSimSearchTableCommentLineRegex();
+		this.columns = new int[] { getSettings().getSeqSimSearchTableQueryCol(),
+				getSettings().getSeqSimSearchTableSubjectCol(), getSettings().getSeqSimSearchTableEValueCol(),
+				getSettings().getSeqSimSearchTableQueryStartCol(), getSettings().getSeqSimSearchTableQueryEndCol(),
+				getSettings().getSeqSimSearchTableSubjectStartCol(), getSettings().getSeqSimSearchTableSubjectEndCol(),
+				getSettings().getSeqSimSearchTableBitScoreCol() };
+	}
+
+	/**
+	 * @param separatorRegex
+	 *            - The column separator as given in the Settings, i.e. a
+	 *            regular expression
+	 * @return The single character the argument regular expression matches,
+	 *         or -1 if it matches anything else.
+	 */
+	public static int separator(String separatorRegex) {
+		if (separatorRegex == null)
+			return -1;
+		if (separatorRegex.equals("\\t"))
+			return '\t';
+		Matcher escaped = ESCAPED_CHAR.matcher(separatorRegex);
+		if (escaped.matches() && escaped.group(1).charAt(0) < 128)
+			return escaped.group(1).charAt(0);
+		if (separatorRegex.length() == 1 && separatorRegex.charAt(0) < 128
+				&& REGEX_META_CHARS.indexOf(separatorRegex.charAt(0)) < 0)
+			return separatorRegex.charAt(0);
+		return -1;
+	}
+
+	/**
+	 * Parses the tabular sequence similarity search result of the argument
+	 * Blast-Database using <code>nThreads</code> worker threads. The file is
+	 * cut into about four chunks per thread, each at least
+	 * <code>MIN_CHUNK_SIZE</code> bytes large.
+	 *
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @param uniqueShortAccessions
+	 *            - Used only if AHRD is requested to generate Gene Ontology
+	 *            term annotations
+	 * @param nThreads
+	 * @return Map<String,List<BlastResult>> Set of Hit-Accessions (Key) to the
+	 *         full BlastResult(s) (Value)
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 */
+	public static Map<String, List<BlastResult>> parseBlastResults(Map<String, Protein> proteinDb,
+			String blastDbName, Set<String> uniqueShortAccessions, int nThreads)
+			throws MissingProteinException, IOException {
+		long tableSize = new File(getSettings().getPathToBlastResults(blastDbName)).length();
+		return parseBlastResults(proteinDb, blastDbName, uniqueShortAccessions, nThreads,
+				Math.max(MIN_CHUNK_SIZE, tableSize / (4L * nThreads)));
+	}
+
+	/**
+	 * Parses the tabular sequence similarity search result of the argument
+	 * Blast-Database using <code>nThreads</code> worker threads. See
+	 * <code>BlastResult.parseBlastResults</code> for details.
+	 *
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @param uniqueShortAccessions
+	 *            - Used only if AHRD is requested to generate Gene Ontology
+	 *            term annotations
+	 * @param nThreads
+	 * @param chunkSize
+	 *            - The size in bytes the chunks are cut into. Chunks end on
+	 *            the line break following this size.
+	 * @return Map<String,List<BlastResult>> Set of Hit-Accessions (Key) to the
+	 *         full BlastResult(s) (Value)
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 */
+	public static Map<String, List<BlastResult>> parseBlastResults(Map<String, Protein> proteinDb,
+			String blastDbName, Set<String> uniqueShortAccessions, int nThreads, long chunkSize)
+			throws MissingProteinException, IOException {
+		int separator = separator(getSettings().getSeqSimSearchTableSep());
+		if (separator < 0)
+			throw new IllegalArgumentException("Column separator '" + getSettings().getSeqSimSearchTableSep()
+					+ "' is not a single character.");
+		final ChunkedTabularSearchResultParser parser = new ChunkedTabularSearchResultParser(blastDbName,
+				(byte) separator, proteinDb);
+		final Settings runSettings = getSettings();
+		Map<String, List<BlastResult>> brs = new HashMap<String, List<BlastResult>>();
+		FileInputStream tableIn = new FileInputStream(getSettings().getPathToBlastResults(blastDbName));
+		ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+		try {
+			final FileChannel table = tableIn.getChannel();
+			List<Future<List<BlastResult>>> parsedChunks = new ArrayList<Future<List<BlastResult>>>();
+			for (final long[] chunk : chunks(table, chunkSize)) {
+				parsedChunks.add(workers.submit(new Callable<List<BlastResult>>() {
+					public List<BlastResult> call() throws Exception {
+						setSettings(runSettings);
+						return parser.parseChunk(
+								table.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]));
+					}
+				}));
+			}
+			for (Future<List<BlastResult>> parsedChunk : parsedChunks) {
+				try {
+					for (BlastResult br : parsedChunk.get())
+						BlastResult.addBlastResult(brs, br, uniqueShortAccessions);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for Blast results to be parsed.", e);
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof MissingProteinException)
+						throw (MissingProteinException) cause;
+					if (cause instanceof IOException)
+						throw (IOException) cause;
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			workers.shutdownNow();
+			tableIn.close();
+		}
+		return brs;
+	}
+
+	/**
+	 * Cuts the argument file into chunks of whole lines. Each chunk but the
+	 * last ends with the first line break at or after <code>chunkSize</code>
+	 * bytes.
+	 *
+	 * @param file
+	 * @param chunkSize
+	 * @return List of chunks, each given as start (inclusive) and end
+	 *         (exclusive) offset.
+	 * @throws IOException
+	 */
+	public static List<long[]> chunks(FileChannel file, long chunkSize) throws IOException {
+		chunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+		List<long[]> chunks = new ArrayList<long[]>();
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long size = file.size();
+		long start = 0;
+		while (start < size) {
+			long end = start + chunkSize;
+			if (end >= size) {
+				end = size;
+			} else {
+				// Move the end behind the next line break:
+				boolean found = false;
+				long pos = end - 1;
+				while (!found && pos < size) {
+					buffer.clear();
+					int read = file.read(buffer, pos);
+					for (int i = 0; i < read && !found; i++) {
+						if (buffer.get(i) == '\n') {
+							end = pos + i + 1;
+							found = true;
+						}
+					}
+					pos += Math.max(read, 1);
+				}
+				if (!found)
+					end = size;
+			}
+			if (end - start > Integer.MAX_VALUE)
+				throw new IOException("Line starting at byte " + start + " is too long.");
+			chunks.add(new long[] { start, end });
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Parses each line of the argument chunk into a BlastResult.
+	 *
+	 * @param chunk
+	 * @return The chunk's BlastResults in order of their lines
+	 * @throws MissingProteinException
+	 */
+	protected List<BlastResult> parseChunk(ByteBuffer chunk) throws MissingProteinException {
+		List<BlastResult> brs = new ArrayList<BlastResult>();
+		int nCols = 0;
+		for (int col : columns)
+			nCols = Math.max(nCols, col + 1);
+		int[] colStarts = new int[nCols];
+		int[] colEnds = new int[nCols];
+		byte[] line = new byte[1024];
+		LineChars lineChars = new LineChars();
+		Matcher commentLineMatcher = (commentLineRegex != null) ? commentLineRegex.matcher("") : null;
+		byte[] lastQuery = new byte[0];
+		Protein lastProtein = null;
+		int limit = chunk.limit();
+		int lineStart = 0;
+		while (lineStart < limit) {
+			int lineEnd = lineStart;
+			while (lineEnd < limit && chunk.get(lineEnd) != '\n')
+				lineEnd++;
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r')
+				lineEnd--;
+			int length = lineEnd - lineStart;
+			if (length > line.length)
+				line = new byte[Math.max(length, 2 * line.length)];
+			chunk.position(lineStart);
+			chunk.get(line, 0, length);
+			lineStart = next;
+			// If a comment-line-regex is given, skip lines matching it:
+			if (commentLineMatcher != null && commentLineMatcher.reset(lineChars.of(line, length)).matches())
+				continue;
+			// Find the columns' boundaries. As in the sequential parser, which
+			// uses String.split, trailing empty columns do not count, but an
+			// empty line has a single empty column:
+			int contentEnd = length;
+			while (contentEnd > 0 && line[contentEnd - 1] == separator)
+				contentEnd--;
+			int nFields = 0;
+			if (contentEnd > 0 || length == 0) {
+				nFields = 1;
+				colStarts[0] = 0;
+				for (int i = 0; i < contentEnd && nFields <= nCols; i++) {
+					if (line[i] == separator) {
+						colEnds[nFields - 1] = i;
+						if (nFields < nCols)
+							colStarts[nFields] = i + 1;
+						nFields++;
+					}
+				}
+				if (nFields <= nCols)
+					colEnds[nFields - 1] = contentEnd;
+			}
+			// The HSPs of a query usually follow each other:
+			int q = checkColumn(columns[0], nFields, line, length);
+			if (!equals(line, colStarts[q], colEnds[q], lastQuery)) {
+				String queryAccession = new String(line, colStarts[q], colEnds[q] - colStarts[q], UTF8);
+				lastProtein = proteinDb.get(queryAccession);
+				if (lastProtein == null)
+					throw new MissingProteinException(
+							"Could not find Protein for Accession '" + queryAccession + "' in Protein Database.");
+				lastQuery = new byte[colEnds[q] - colStarts[q]];
+				System.arraycopy(line, colStarts[q], lastQuery, 0, lastQuery.length);
+			}
+			for (int c = 1; c < columns.length; c++)
+				checkColumn(columns[c], nFields, line, length);
+			brs.add(new BlastResult(
+					new String(line, colStarts[columns[1]], colEnds[columns[1]] - colStarts[columns[1]], UTF8),
+					parseDouble(line, colStarts[columns[2]], colEnds[columns[2]]),
+					parseInt(line, colStarts[columns[3]], colEnds[columns[3]]),
+					parseInt(line, colStarts[columns[4]], colEnds[columns[4]]),
+					parseInt(line, colStarts[columns[5]], colEnds[columns[5]]),
+					parseInt(line, colStarts[columns[6]], colEnds[columns[6]]),
+					parseDouble(line, colStarts[columns[7]], colEnds[columns[7]]), getBlastDatabaseName(),
+					lastProtein));
+		}
+		return brs;
+	}
+
+	/**
+	 * The sequential parser fails on a line with too few columns with an
+	 * ArrayIndexOutOfBoundsException, and so does this one.
+	 *
+	 * @param col
+	 * @param nFields
+	 * @param line
+	 * @param length
+	 * @return The argument column, if the line has it
+	 */
+	private static int checkColumn(int col, int nFields, byte[] line, int length) {
+		if (col >= nFields)
+			throw new ArrayIndexOutOfBoundsException("Line '" + new String(line, 0, length, UTF8) + "' has only "
+					+ nFields + " columns, but column " + col + " is requested.");
+		return col;
+	}
+
+	private static boolean equals(byte[] line, int from, int to, byte[] other) {
+		if (to - from != other.length)
+			return false;
+		for (int i = 0; i < other.length; i++) {
+			if (line[from + i] != other[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a decimal integer from the argument bytes, like
+	 * <code>Integer.parseInt</code>.
+	 *
+	 * @param bytes
+	 * @param from
+	 *            - inclusive
+	 * @param to
+	 *            - exclusive
+	 * @return int
+	 */
+	public static int parseInt(byte[] bytes, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+		if (i == to || to - i > 10)
+			return Integer.parseInt(new String(bytes, from, to - from, UTF8));
+		long value = 0;
+		for (; i < to; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9)
+				return Integer.parseInt(new String(bytes, from, to - from, UTF8));
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			return Integer.parseInt(new String(bytes, from, to - from, UTF8));
+		return (int) value;
+	}
+
+	/**
+	 * Parses a decimal floating point number from the argument bytes, giving
+	 * exactly the same result as <code>Double.parseDouble</code>. Numbers of
+	 * at most 15 significant digits and a decimal exponent within +/-22 are
+	 * computed directly, as such a computation is exactly rounded. All others
+	 * are handed over to <code>Double.parseDouble</code>. As in
+	 * <code>BlastResult.validateDouble</code> a missing mantissa, e.g.
+	 * 'e-100', is read as one.
+	 *
+	 * @param bytes
+	 * @param from
+	 *            - inclusive
+	 * @param to
+	 *            - exclusive
+	 * @return double
+	 */
+	public static double parseDouble(byte[] bytes, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		int digits = 0;
+		for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++, digits++) {
+			if (mantissa != 0 || bytes[i] != '0')
+				significantDigits++;
+			mantissa = mantissa * 10 + (bytes[i] - '0');
+			if (significantDigits > 15)
+				return parseDoubleSlowly(bytes, from, to);
+		}
+		if (i < to && bytes[i] == '.') {
+			for (i++; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++, digits++) {
+				if (mantissa != 0 || bytes[i] != '0')
+					significantDigits++;
+				mantissa = mantissa * 10 + (bytes[i] - '0');
+				exponent--;
+				if (significantDigits > 15)
+					return parseDoubleSlowly(bytes, from, to);
+			}
+		}
+		if (i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			if (digits == 0) {
+				// See BlastResult.validateDouble:
+				if (i != from)
+					return parseDoubleSlowly(bytes, from, to);
+				mantissa = 1;
+				digits = 1;
+			}
+			i++;
+			boolean negativeExponent = false;
+			if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+				negativeExponent = bytes[i] == '-';
+				i++;
+			}
+			if (i == to || to - i > 4)
+				return parseDoubleSlowly(bytes, from, to);
+			int exp = 0;
+			for (; i < to; i++) {
+				if (bytes[i] < '0' || bytes[i] > '9')
+					return parseDoubleSlowly(bytes, from, to);
+				exp = exp * 10 + (bytes[i] - '0');
+			}
+			exponent += negativeExponent ? -exp : exp;
+		}
+		if (i != to || digits == 0)
+			return parseDoubleSlowly(bytes, from, to);
+		double value;
+		if (mantissa == 0)
+			value = 0.0;
+		else if (exponent >= 0 && exponent < POWERS_OF_TEN.length)
+			value = mantissa * POWERS_OF_TEN[exponent];
+		else if (exponent < 0 && -exponent < POWERS_OF_TEN.length)
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		else
+			return parseDoubleSlowly(bytes, from, to);
+		return negative ? -value : value;
+	}
+
+	private static double parseDoubleSlowly(byte[] bytes, int from, int to) {
+		return Double.parseDouble(BlastResult.validateDouble(new String(bytes, from, to - from, UTF8)));
+	}
+
+	public String getBlastDatabaseName() {
+		return blastDatabaseName;
+	}
+
+	/**
+	 * Presents a line's bytes to the comment-line-regex without decoding a
+	 * String, as long as the line is pure ASCII. Lines holding other
+	 * characters are decoded as UTF-8, so the regex sees the same characters
+	 * as in the sequential parser.
+	 */
+	private static class LineChars implements CharSequence {
+
+		private byte[] bytes;
+		private int length;
+
+		public CharSequence of(byte[] bytes, int length) {
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] < 0)
+					return new String(bytes, 0, length, UTF8);
+			}
+			this.bytes = bytes;
+			this.length = length;
+			return this;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public char charAt(int index) {
+			if (index < 0 || index >= length)
+				throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+			return (char) bytes[index];
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return new String(bytes, 0, length, UTF8);
+		}
+	}
+}
@@ -5,17 +5,21 @@ import static ahrd.controller.Settings.getSettings;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import ahrd.controller.RegexList;
+
 public class DescriptionScoreCalculator {
 
+	private static final Pattern MULTIPLE_WHITESPACES = Pattern.compile("\\s{2,}");
+
 	/**
-	 * Global implementation of the Description Blacklist.
+	 * Global implementation of the Description Blacklist. Compiles the
+	 * argument blacklist on each call, repeated calls should use
+	 * <code>passesBlacklist(String, RegexList)</code> instead.
 	 * 
 	 * @param description
 	 * @param blacklist
@@ -23,17 +27,27 @@ public class DescriptionScoreCalculator {
 	 *         matches the argument description. FALSE otherwise.
 	 */
 	public static boolean passesBlacklist(String description, List<String> blacklist) {
-		boolean passesBlacklist = (description != null && !description.equals(""));
-		for (Iterator<String> i = blacklist.iterator(); (i.hasNext() && passesBlacklist);) {
-			Pattern p = Pattern.compile(i.next());
-			Matcher m = p.matcher(description);
-			passesBlacklist = !m.find();
-		}
-		return passesBlacklist;
+		return passesBlacklist(description, new RegexList(blacklist));
+	}
+
+	/**
+	 * Global implementation of the Description Blacklist using the already
+	 * compiled regular expressions, see
+	 * <code>Settings.getBlastResultsBlacklistPatterns(String)</code>.
+	 * 
+	 * @param description
+	 * @param blacklist
+	 * @return TRUE if and only if none of the regular expressions in blacklist
+	 *         matches the argument description. FALSE otherwise.
+	 */
+	public static boolean passesBlacklist(String description, RegexList blacklist) {
+		return (description != null && !description.equals("") && !blacklist.findsAny(description));
 	}
 
 	/**
-	 * Global implementation of the filter Description function.
+	 * Global implementation of the filter Description function. Compiles the
+	 * argument filter on each call, repeated calls should use
+	 * <code>filter(String, RegexList)</code> instead.
 	 * 
 	 * @param description
 	 * @param filter
@@ -43,14 +57,26 @@ public class DescriptionScoreCalculator {
 	 *         white-spaces are condensed into a single white-spaces.
 	 */
 	public static String filter(String description, List<String> filter) {
-		String filteredDescLine = description;
-		for (Iterator<String> i = filter.iterator(); i.hasNext();) {
-			Pattern p = Pattern.compile(i.next());
-			// Replace with whitespace, so word-boundaries are kept up
-			filteredDescLine = p.matcher(filteredDescLine).replaceAll(" ");
-		}
+		return filter(description, new RegexList(filter));
+	}
+
+	/**
+	 * Global implementation of the filter Description function using the
+	 * already compiled regular expressions, see
+	 * <code>Settings.getBlastResultsFilterPatterns(String)</code>.
+	 * 
+	 * @param description
+	 * @param filter
+	 * @return A modified version of argument description in which all matches
+	 *         to any of the regular expressions in argument filter are deleted.
+	 *         Finally the filtered description is trimmed and multiple
+	 *         white-spaces are condensed into a single white-spaces.
+	 */
+	public static String filter(String description, RegexList filter) {
+		// Replace with whitespace, so word-boundaries are kept up
+		String filteredDescLine = filter.replaceAll(description, " ");
 		// Condense multiple whitespaces into one and trim the description-line:
-		filteredDescLine = filteredDescLine.replaceAll("\\s{2,}", " ").trim();
+		filteredDescLine = MULTIPLE_WHITESPACES.matcher(filteredDescLine).replaceAll(" ").trim();
 		return filteredDescLine;
 	}
 
@@ -69,13 +95,13 @@ public class DescriptionScoreCalculator {
 	 * the highest scoring one.
 	 * 
 	 * @param referenceGoAnnotations
-	 *            Map of BlastResults' shortAccesions as keys and their Sets of
-	 *            annotated GO Terms as values. If NOT null and any of the query
+	 *            Store of BlastResults' shortAccesions and their annotated GO
+	 *            Terms. If NOT null and any of the query
 	 *            proteins' hits of GO Term annotations, AHRD will use the
 	 *            highest scoring BlastResult with GO Terms to annotate the
 	 *            query.
 	 */
-	public void findHighestScoringBlastResult(Map<String, Set<String>> referenceGoAnnotations) {
+	public void findHighestScoringBlastResult(ReferenceGoAnnotationStore referenceGoAnnotations) {
 		BlastResult bestScoringBr = null;
 		Set<Double> scoreRankingWithGoAnnos = new HashSet<Double>();
 		Map<Double, BlastResult> scoreRanking = new HashMap<Double, BlastResult>();
@@ -87,7 +113,7 @@ public class DescriptionScoreCalculator {
 				if (iterBlastResult.getTokens().size() > 0) {
 					scoreRanking.put(iterBlastResult.getDescriptionScore(), iterBlastResult);
 					if (referenceGoAnnotations != null && !referenceGoAnnotations.isEmpty()
-							&& referenceGoAnnotations.containsKey(iterBlastResult.getShortAccession())
+							&& referenceGoAnnotations.contains(iterBlastResult.getShortAccession())
 							&& getSettings().getPreferReferenceWithGoAnnos())
 						scoreRankingWithGoAnnos.add(iterBlastResult.getDescriptionScore());
 				}
@@ -0,0 +1,343 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.roundToNDecimalPlaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ahrd.controller.Parameters;
+
+/**
+ * Finds the highest scoring BlastResult of each Protein for every new
+ * Parameters, as needed by the <code>Trainer</code>, without re-running the
+ * whole scoring of <code>AHRD.assignHumanReadableDescription</code>.
+ *
+ * A Token's cumulative Bit- and Overlap-Scores do not depend on the
+ * Parameters, and its cumulative Blast-Database-Score is the sum of the
+ * Blast-Database-Weights of the BlastResults it occurs in, i.e. the number of
+ * these BlastResults per Blast-Database weighted by the Blast-Database-Weights.
+ * So these counts and sums are measured once, together with each retained
+ * BlastResult's Tokens, Blast-Database and Bit-Score, and held in flat
+ * primitive arrays. Scoring new Parameters then only computes the
+ * Token-Scores, the Token-High-Score and the Description-Scores from these
+ * arrays, exactly as <code>TokenScoreCalculator</code>,
+ * <code>LexicalScoreCalculator</code> and
+ * <code>DescriptionScoreCalculator</code> do.
+ *
+ * The kernel must be built from the Proteins as they are after parsing the
+ * Blast-Results, i.e. before the best scoring BlastResults are filtered.
+ */
+public class DescriptionScoringKernel {
+
+	private Protein[] proteins;
+	private String[] blastDatabaseNames;
+	/**
+	 * Proteins' Tokens are numbered consecutively. The Tokens of Protein
+	 * <code>k</code> are numbered <code>tokenOffsets[k]</code> to
+	 * <code>tokenOffsets[k + 1] - 1</code>.
+	 */
+	private int[] tokenOffsets;
+	private int[] tokenIds;
+	private double[] cumulativeTokenBitScores;
+	private double[] cumulativeTokenOverlapScores;
+	/**
+	 * Per Token and Blast-Database the number of the Protein's BlastResults
+	 * containing the Token: <code>tokenCounts[token * #databases + db]</code>
+	 */
+	private int[] tokenCounts;
+	private double[] totalTokenBitScores;
+	private double[] totalTokenOverlapScores;
+	/**
+	 * Per Protein and Blast-Database the number of the Protein's BlastResults:
+	 * <code>blastResultCounts[protein * #databases + db]</code>
+	 */
+	private int[] blastResultCounts;
+	private double[] maxBitScores;
+	/**
+	 * The retained BlastResults having Tokens are numbered consecutively in
+	 * the order <code>DescriptionScoreCalculator</code> visits them. The
+	 * BlastResults of Protein <code>k</code> are numbered
+	 * <code>blastResultOffsets[k]</code> to
+	 * <code>blastResultOffsets[k + 1] - 1</code>.
+	 */
+	private int[] blastResultOffsets;
+	private BlastResult[] blastResults;
+	private int[] blastResultDatabases;
+	private double[] blastResultBitScores;
+	private boolean[] blastResultHasGoAnnotations;
+	/**
+	 * The Tokens of BlastResult <code>i</code> are held, as numbered above, at
+	 * the positions <code>blastResultTokenOffsets[i]</code> to
+	 * <code>blastResultTokenOffsets[i + 1] - 1</code>.
+	 */
+	private int[] blastResultTokenOffsets;
+	private int[] blastResultTokens;
+	private int maxTokensPerProtein = 0;
+	private int maxBlastResultsPerProtein = 0;
+
+	/**
+	 * Measures all Parameter-independent scores of the argument Proteins.
+	 *
+	 * @param proteins
+	 * @param blastDatabaseNames
+	 * @param howManyBlastResults
+	 *            - The number of best scoring BlastResults per Blast-Database
+	 *            that are retained, see
+	 *            <code>BlastResult.filterBestScoringBlastResults</code>
+	 * @param referenceGoAnnotations
+	 *            - If not NULL and not empty and preferring BlastResults with
+	 *            GO annotations is requested, these are preferred.
+	 */
+	public DescriptionScoringKernel(Collection<Protein> proteins, List<String> blastDatabaseNames,
+			int howManyBlastResults, ReferenceGoAnnotationStore referenceGoAnnotations) {
+		super();
+		int nDbs = blastDatabaseNames.size();
+		this.proteins = proteins.toArray(new Protein[proteins.size()]);
+		this.blastDatabaseNames = blastDatabaseNames.toArray(new String[nDbs]);
+		Map<String, Integer> dbIndices = new HashMap<String, Integer>();
+		for (int d = 0; d < nDbs; d++)
+			dbIndices.put(this.blastDatabaseNames[d], d);
+		boolean preferGoAnnotations = referenceGoAnnotations != null && !referenceGoAnnotations.isEmpty()
+				&& getSettings().getPreferReferenceWithGoAnnos();
+		int nProts = this.proteins.length;
+		tokenOffsets = new int[nProts + 1];
+		blastResultOffsets = new int[nProts + 1];
+		totalTokenBitScores = new double[nProts];
+		totalTokenOverlapScores = new double[nProts];
+		blastResultCounts = new int[nProts * nDbs];
+		maxBitScores = new double[nProts];
+		IntList tokenIdList = new IntList();
+		IntList tokenCountList = new IntList();
+		List<BlastResult> blastResultList = new ArrayList<BlastResult>();
+		IntList blastResultTokenOffsetList = new IntList();
+		IntList blastResultTokenList = new IntList();
+		blastResultTokenOffsetList.add(0);
+		for (int k = 0; k < nProts; k++) {
+			Protein prot = this.proteins[k];
+			TokenScoreCalculator tsc = prot.getTokenScoreCalculator();
+			totalTokenBitScores[k] = tsc.getTotalTokenBitScore();
+			totalTokenOverlapScores[k] = tsc.getTotalTokenOverlapScore();
+			maxBitScores[k] = prot.getDescriptionScoreCalculator().getMaxBitScore();
+			// Number the Tokens of the retained BlastResults:
+			Map<Integer, Integer> localTokens = new HashMap<Integer, Integer>();
+			for (String blastDb : prot.getBlastResults().keySet()) {
+				for (BlastResult br : BlastResult.filterBestScoringBlastResults(prot.getBlastResults().get(blastDb),
+						howManyBlastResults)) {
+					TokenSet tokens = br.getTokens();
+					if (tokens.size() == 0)
+						continue;
+					for (int i = 0; i < tokens.size(); i++) {
+						Integer local = localTokens.get(tokens.getId(i));
+						if (local == null) {
+							local = tokenIdList.size();
+							localTokens.put(tokens.getId(i), local);
+							tokenIdList.add(tokens.getId(i));
+							for (int d = 0; d < nDbs; d++)
+								tokenCountList.add(0);
+						}
+						blastResultTokenList.add(local);
+					}
+					blastResultTokenOffsetList.add(blastResultTokenList.size());
+					blastResultList.add(br);
+				}
+			}
+			// Count the Tokens in all BlastResults the scores have been
+			// measured of:
+			for (String blastDb : prot.getBlastResults().keySet()) {
+				int d = dbIndices.get(blastDb);
+				for (BlastResult br : prot.getBlastResults().get(blastDb)) {
+					blastResultCounts[k * nDbs + d]++;
+					TokenSet tokens = br.getTokens();
+					for (int i = 0; i < tokens.size(); i++) {
+						Integer local = localTokens.get(tokens.getId(i));
+						if (local != null)
+							tokenCountList.increment(local * nDbs + d);
+					}
+				}
+			}
+			tokenOffsets[k + 1] = tokenIdList.size();
+			blastResultOffsets[k + 1] = blastResultList.size();
+			maxTokensPerProtein = Math.max(maxTokensPerProtein, tokenOffsets[k + 1] - tokenOffsets[k]);
+			maxBlastResultsPerProtein = Math.max(maxBlastResultsPerProtein,
+					blastResultOffsets[k + 1] - blastResultOffsets[k]);
+		}
+		tokenIds = tokenIdList.toArray();
+		tokenCounts = tokenCountList.toArray();
+		cumulativeTokenBitScores = new double[tokenIds.length];
+		cumulativeTokenOverlapScores = new double[tokenIds.length];
+		for (int k = 0; k < nProts; k++) {
+			TokenScoreMap cumulativeScores = this.proteins[k].getTokenScoreCalculator().getCumulativeTokenScoreMap();
+			for (int t = tokenOffsets[k]; t < tokenOffsets[k + 1]; t++) {
+				cumulativeTokenBitScores[t] = cumulativeScores.get(tokenIds[t], TokenScoreCalculator.BIT_SCORE);
+				cumulativeTokenOverlapScores[t] = cumulativeScores.get(tokenIds[t],
+						TokenScoreCalculator.OVERLAP_SCORE);
+			}
+		}
+		blastResults = blastResultList.toArray(new BlastResult[blastResultList.size()]);
+		blastResultDatabases = new int[blastResults.length];
+		blastResultBitScores = new double[blastResults.length];
+		blastResultHasGoAnnotations = new boolean[blastResults.length];
+		for (int i = 0; i < blastResults.length; i++) {
+			blastResultDatabases[i] = dbIndices.get(blastResults[i].getBlastDatabaseName());
+			blastResultBitScores[i] = blastResults[i].getBitScore();
+			blastResultHasGoAnnotations[i] = preferGoAnnotations
+					&& referenceGoAnnotations.contains(blastResults[i].getShortAccession());
+		}
+		blastResultTokenOffsets = blastResultTokenOffsetList.toArray();
+		blastResultTokens = blastResultTokenList.toArray();
+	}
+
+	/**
+	 * Scores all Proteins with the argument Parameters and sets each Protein's
+	 * Token-Scores, Token-High-Score, Description-High-Score and highest
+	 * scoring BlastResult, just as <code>AHRD.assignHumanReadableDescription</code>
+	 * would with these Parameters.
+	 *
+	 * @param parameters
+	 */
+	public void assignHighestScoringBlastResults(Parameters parameters) {
+		double bitScoreWeight = parameters.getTokenScoreBitScoreWeight();
+		double databaseScoreWeight = parameters.getTokenScoreDatabaseScoreWeight();
+		double overlapScoreWeight = parameters.getTokenScoreOverlapScoreWeight();
+		double validateSumToOne = roundToNDecimalPlaces(bitScoreWeight + databaseScoreWeight + overlapScoreWeight, 9);
+		// Tolerate rounding error <= 10^-3
+		if (!(validateSumToOne >= 0.999 && validateSumToOne <= 1.001))
+			throw new IllegalArgumentException(
+					"The three weights 'bitScoreWeight', 'databaseScoreWeight', and 'overlapScoreWeight' should sum up to 1, but actually sum up to: "
+							+ (bitScoreWeight + databaseScoreWeight + overlapScoreWeight));
+		int nDbs = blastDatabaseNames.length;
+		double[] blastDbWeights = new double[nDbs];
+		double[] descriptionScoreBitScoreWeights = new double[nDbs];
+		for (int d = 0; d < nDbs; d++) {
+			blastDbWeights[d] = parameters.getBlastDbWeight(blastDatabaseNames[d]);
+			descriptionScoreBitScoreWeights[d] = parameters.getDescriptionScoreBitScoreWeight(blastDatabaseNames[d]);
+		}
+		double[] tokenScores = new double[maxTokensPerProtein];
+		double[] descriptionScores = new double[maxBlastResultsPerProtein];
+		for (int k = 0; k < proteins.length; k++) {
+			int firstToken = tokenOffsets[k];
+			int nTokens = tokenOffsets[k + 1] - firstToken;
+			// Token-Scores:
+			double totalTokenBlastDatabaseScore = 0;
+			for (int d = 0; d < nDbs; d++)
+				totalTokenBlastDatabaseScore += blastDbWeights[d] * blastResultCounts[k * nDbs + d];
+			double tokenHighScore = 0.0;
+			for (int t = 0; t < nTokens; t++) {
+				double cumulativeTokenBlastDatabaseScore = 0;
+				int counts = (firstToken + t) * nDbs;
+				for (int d = 0; d < nDbs; d++)
+					cumulativeTokenBlastDatabaseScore += blastDbWeights[d] * tokenCounts[counts + d];
+				double tokenScore = bitScoreWeight * cumulativeTokenBitScores[firstToken + t] / totalTokenBitScores[k]
+						+ databaseScoreWeight * cumulativeTokenBlastDatabaseScore / totalTokenBlastDatabaseScore
+						+ overlapScoreWeight * cumulativeTokenOverlapScores[firstToken + t]
+								/ totalTokenOverlapScores[k];
+				tokenScores[t] = tokenScore;
+				if (tokenScore > tokenHighScore)
+					tokenHighScore = tokenScore;
+			}
+			// Non-informative Tokens' Scores are diminished by half of the
+			// Token-High-Score:
+			for (int t = 0; t < nTokens; t++) {
+				if (!(tokenScores[t] > tokenHighScore / 2))
+					tokenScores[t] = tokenScores[t] - tokenHighScore / 2;
+			}
+			// Description-Scores:
+			int best = -1;
+			double descriptionHighScore = 0.0;
+			boolean bestHasGoAnnotations = false;
+			double goAnnotatedHighScore = 0.0;
+			for (int i = blastResultOffsets[k]; i < blastResultOffsets[k + 1]; i++) {
+				double summedTokenScores = 0.0;
+				double informativeTokens = 0.0;
+				for (int j = blastResultTokenOffsets[i]; j < blastResultTokenOffsets[i + 1]; j++) {
+					double tokenScore = tokenScores[blastResultTokens[j] - firstToken];
+					summedTokenScores += tokenScore;
+					if (tokenScore > tokenHighScore / 2)
+						informativeTokens += 1.0;
+				}
+				double correctionFactor = ((double) (blastResultTokenOffsets[i + 1] - blastResultTokenOffsets[i]))
+						/ informativeTokens;
+				double descriptionScore = summedTokenScores / tokenHighScore / correctionFactor
+						+ descriptionScoreBitScoreWeights[blastResultDatabases[i]] * blastResultBitScores[i]
+								/ maxBitScores[k];
+				descriptionScores[i - blastResultOffsets[k]] = descriptionScore;
+				// Among equal Description-Scores the last BlastResult wins,
+				// as in DescriptionScoreCalculator:
+				if (best < 0 || Double.compare(descriptionScore, descriptionHighScore) >= 0) {
+					best = i;
+					descriptionHighScore = descriptionScore;
+				}
+				if (blastResultHasGoAnnotations[i] && (!bestHasGoAnnotations
+						|| Double.compare(descriptionScore, goAnnotatedHighScore) > 0)) {
+					bestHasGoAnnotations = true;
+					goAnnotatedHighScore = descriptionScore;
+				}
+			}
+			if (bestHasGoAnnotations) {
+				// The highest scoring BlastResult with GO annotations is
+				// looked up by its Description-Score, so the last BlastResult
+				// of that score wins:
+				descriptionHighScore = goAnnotatedHighScore;
+				for (int i = blastResultOffsets[k]; i < blastResultOffsets[k + 1]; i++)
+					if (Double.compare(descriptionScores[i - blastResultOffsets[k]], descriptionHighScore) == 0)
+						best = i;
+			}
+			assign(proteins[k], firstToken, nTokens, tokenScores, tokenHighScore, best, descriptionHighScore);
+		}
+	}
+
+	private void assign(Protein prot, int firstToken, int nTokens, double[] tokenScores, double tokenHighScore,
+			int best, double descriptionHighScore) {
+		TokenScoreCalculator tsc = prot.getTokenScoreCalculator();
+		for (int t = 0; t < nTokens; t++)
+			tsc.getTokenScoreMap().put(tokenIds[firstToken + t], tokenScores[t]);
+		tsc.setTokenHighScore(tokenHighScore);
+		DescriptionScoreCalculator dsc = prot.getDescriptionScoreCalculator();
+		if (best >= 0) {
+			dsc.setDescriptionHighScore(descriptionHighScore);
+			dsc.setHighestScoringBlastResult(blastResults[best]);
+		} else {
+			dsc.setHighestScoringBlastResult(null);
+		}
+	}
+
+	/**
+	 * @return The number of retained BlastResults having Tokens of all
+	 *         Proteins
+	 */
+	public int size() {
+		return blastResults.length;
+	}
+
+	/**
+	 * Growing array of primitive ints.
+	 */
+	private static class IntList {
+
+		private int[] values = new int[16];
+		private int size = 0;
+
+		public void add(int value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			values[size++] = value;
+		}
+
+		public void increment(int i) {
+			values[i]++;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -12,6 +12,10 @@ import java.util.Set;
 
 public class EvaluationScoreCalculator {
 
+	public static final int EVALUATION_SCORE = 0;
+	public static final int TRUE_POSITIVES_RATE = 1;
+	public static final int FALSE_POSITIVES_RATE = 2;
+
 	private Protein protein;
 	/**
 	 * A ReferenceDescription holds the original Description for Training and
@@ -35,6 +39,13 @@ public class EvaluationScoreCalculator {
 	private Double truePositivesRate;
 	private Double falsePositivesRate;
 	private Double highestPossibleEvaluationScore;
+	/**
+	 * Evaluation-Score, True-Positives-Rate and False-Positives-Rate of each
+	 * of the Protein's BlastResults, see <code>cacheEvaluationScores()</code>.
+	 * NULL unless cached.
+	 */
+	private Map<BlastResult, double[]> cachedEvaluationScores;
+	private Double cachedBestCompetitorEvaluationScore;
 
 	public EvaluationScoreCalculator(Protein protein) {
 		super();
@@ -160,7 +171,7 @@ public class EvaluationScoreCalculator {
 	 * @param BlastResult
 	 *            br
 	 */
-	public void addUnchangedBlastResult(String blastDb, BlastResult br) {
+	public synchronized void addUnchangedBlastResult(String blastDb, BlastResult br) {
 		if (!getUnchangedBlastResults().containsKey(blastDb)
 				|| getUnchangedBlastResults().get(blastDb).getBitScore() < br.getBitScore()) {
 			getUnchangedBlastResults().put(blastDb, br);
@@ -175,7 +186,14 @@ public class EvaluationScoreCalculator {
 	public void assignEvlScrsToCompetitors() {
 		if (getReferenceDescription() != null && getReferenceDescription().getDescription() != null) {
 			// First Competitor is the Description assigned by AHRD itself:
-			if (getProtein().getDescriptionScoreCalculator().getHighestScoringBlastResult() != null) {
+			BlastResult hsbr = getProtein().getDescriptionScoreCalculator().getHighestScoringBlastResult();
+			if (hsbr != null && getCachedEvaluationScores() != null
+					&& getCachedEvaluationScores().containsKey(hsbr)) {
+				double[] scores = getCachedEvaluationScores().get(hsbr);
+				setEvalutionScore(scores[EVALUATION_SCORE]);
+				setTruePositivesRate(scores[TRUE_POSITIVES_RATE]);
+				setFalsePositivesRate(scores[FALSE_POSITIVES_RATE]);
+			} else if (hsbr != null) {
 				// Generate the set of Evaluation-Tokens from the
 				// actually assigned Description, WITHOUT filtering each
 				// Token with the BLACKLIST:
@@ -194,38 +212,87 @@ public class EvaluationScoreCalculator {
 				setTruePositivesRate(0.0);
 				setFalsePositivesRate(0.0);
 			}
-			// Other competitors are the best unchanged BlastHits from all
-			// performed Blast-Database-Searches:
-			Double bestCompEvlScr = 0.0;
-			if (getUnchangedBlastResults().size() > 0) {
-				for (String blastDatabase : getUnchangedBlastResults().keySet()) {
-					BlastResult cmpt = getUnchangedBlastResults().get(blastDatabase);
-					if (cmpt != null) {
-						// Generate the set of Evaluation-Tokens from the
-						// actually assigned Description, WITHOUT filtering each
-						// Token with the BLACKLIST:
-						cmpt.tokenizeForEvaluation();
-						cmpt.setEvaluationScore(
-								fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens()));
-						// Find best performing competitor-method:
-						if (cmpt.getEvaluationScore() > bestCompEvlScr)
-							bestCompEvlScr = cmpt.getEvaluationScore();
-					}
-				}
-			}
-			// Also compare with the Blast2GO-Annotation(s), if present:
-			if (getBlast2GoAnnots() != null) {
-				for (Blast2GoAnnot b2ga : getBlast2GoAnnots()) {
-					b2ga.setEvaluationScore(
-							fBetaScore(b2ga.getEvaluationTokens(), getReferenceDescription().getTokens()));
+			Double bestCompEvlScr = (getCachedBestCompetitorEvaluationScore() != null)
+					? getCachedBestCompetitorEvaluationScore() : bestCompetitorEvaluationScore();
+			// Compare AHRD's performance:
+			setEvalScoreMinBestCompScore(getEvalutionScore() - bestCompEvlScr);
+		}
+	}
+
+	/**
+	 * Scores the competitors, i.e. the best unchanged BlastHits and the
+	 * Blast2GO-Annotations, against the reference.
+	 * 
+	 * @return Double - The best competitor's Evaluation-Score
+	 */
+	private Double bestCompetitorEvaluationScore() {
+		// Other competitors are the best unchanged BlastHits from all
+		// performed Blast-Database-Searches:
+		Double bestCompEvlScr = 0.0;
+		if (getUnchangedBlastResults().size() > 0) {
+			for (String blastDatabase : getUnchangedBlastResults().keySet()) {
+				BlastResult cmpt = getUnchangedBlastResults().get(blastDatabase);
+				if (cmpt != null) {
+					// Generate the set of Evaluation-Tokens from the
+					// actually assigned Description, WITHOUT filtering each
+					// Token with the BLACKLIST:
+					cmpt.tokenizeForEvaluation();
+					cmpt.setEvaluationScore(
+							fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens()));
 					// Find best performing competitor-method:
-					if (b2ga.getEvaluationScore() > bestCompEvlScr)
-						bestCompEvlScr = b2ga.getEvaluationScore();
+					if (cmpt.getEvaluationScore() > bestCompEvlScr)
+						bestCompEvlScr = cmpt.getEvaluationScore();
 				}
 			}
-			// Compare AHRD's performance:
-			setEvalScoreMinBestCompScore(getEvalutionScore() - bestCompEvlScr);
 		}
+		// Also compare with the Blast2GO-Annotation(s), if present:
+		if (getBlast2GoAnnots() != null) {
+			for (Blast2GoAnnot b2ga : getBlast2GoAnnots()) {
+				b2ga.setEvaluationScore(
+						fBetaScore(b2ga.getEvaluationTokens(), getReferenceDescription().getTokens()));
+				// Find best performing competitor-method:
+				if (b2ga.getEvaluationScore() > bestCompEvlScr)
+					bestCompEvlScr = b2ga.getEvaluationScore();
+			}
+		}
+		return bestCompEvlScr;
+	}
+
+	/**
+	 * In training the Evaluation-Score of any of the Protein's BlastResults
+	 * does not depend on the Parameters. Hence the Evaluation-Score,
+	 * True-Positives-Rate and False-Positives-Rate of each BlastResult and the
+	 * best competitor's Evaluation-Score are calculated once, so that
+	 * <code>assignEvlScrsToCompetitors()</code> and
+	 * <code>findHighestPossibleEvaluationScore()</code> only look them up.
+	 * 
+	 * The Protein's BlastResults must already be reduced to the best scoring
+	 * ones, because these provide the Tokens the False-Positives-Rate is
+	 * based on.
+	 */
+	public void cacheEvaluationScores() {
+		if (getReferenceDescription() == null || getReferenceDescription().getDescription() == null)
+			return;
+		Set<String> referenceTokens = getReferenceDescription().getTokens();
+		Set<String> allBlastTokens = new HashSet<String>();
+		for (List<BlastResult> resultsFromBlastDatabase : getProtein().getBlastResults().values())
+			for (BlastResult br : resultsFromBlastDatabase)
+				allBlastTokens.addAll(br.getTokens());
+		Map<BlastResult, double[]> cache = new HashMap<BlastResult, double[]>();
+		for (List<BlastResult> resultsFromBlastDatabase : getProtein().getBlastResults().values()) {
+			for (BlastResult br : resultsFromBlastDatabase) {
+				br.tokenizeForEvaluation();
+				Set<String> evlTkns = br.getEvaluationTokens();
+				double[] scores = new double[3];
+				scores[EVALUATION_SCORE] = fBetaScore(evlTkns, referenceTokens);
+				scores[TRUE_POSITIVES_RATE] = truePositivesRate(evlTkns, referenceTokens);
+				scores[FALSE_POSITIVES_RATE] = falsePositivesRate(evlTkns, referenceTokens, allBlastTokens);
+				br.setEvaluationScore(scores[EVALUATION_SCORE]);
+				cache.put(br, scores);
+			}
+		}
+		setCachedEvaluationScores(cache);
+		setCachedBestCompetitorEvaluationScore(bestCompetitorEvaluationScore());
 	}
 
 	/**
@@ -238,11 +305,14 @@ public class EvaluationScoreCalculator {
 		setHighestPossibleEvaluationScore(0.0);
 		for (List<BlastResult> resultsFromBlastDatabase : getProtein().getBlastResults().values()) {
 			for (BlastResult cmpt : resultsFromBlastDatabase) {
-				// Generate the set of Evaluation-Tokens from the
-				// actually assigned Description, WITHOUT filtering each
-				// Token with the BLACKLIST:
-				cmpt.tokenizeForEvaluation();
-				cmpt.setEvaluationScore(fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens()));
+				if (getCachedEvaluationScores() == null || !getCachedEvaluationScores().containsKey(cmpt)) {
+					// Generate the set of Evaluation-Tokens from the
+					// actually assigned Description, WITHOUT filtering each
+					// Token with the BLACKLIST:
+					cmpt.tokenizeForEvaluation();
+					cmpt.setEvaluationScore(
+							fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens()));
+				}
 				// Find best performing BlastResult-Description:
 				if (cmpt.getEvaluationScore() > getHighestPossibleEvaluationScore())
 					setHighestPossibleEvaluationScore(cmpt.getEvaluationScore());
@@ -343,6 +413,22 @@ public class EvaluationScoreCalculator {
 		this.blast2GoAnnots = blast2GoAnnots;
 	}
 
+	public Map<BlastResult, double[]> getCachedEvaluationScores() {
+		return cachedEvaluationScores;
+	}
+
+	public void setCachedEvaluationScores(Map<BlastResult, double[]> cachedEvaluationScores) {
+		this.cachedEvaluationScores = cachedEvaluationScores;
+	}
+
+	public Double getCachedBestCompetitorEvaluationScore() {
+		return cachedBestCompetitorEvaluationScore;
+	}
+
+	public void setCachedBestCompetitorEvaluationScore(Double cachedBestCompetitorEvaluationScore) {
+		this.cachedBestCompetitorEvaluationScore = cachedBestCompetitorEvaluationScore;
+	}
+
 	public Double getHighestPossibleEvaluationScore() {
 		return highestPossibleEvaluationScore;
 	}
@@ -0,0 +1,118 @@
+package ahrd.model;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a FASTA file one entry at a time. Only the current entry is held in
+ * memory, and its sequence is assembled in a single StringBuilder, so reading
+ * takes time linear in the size of the file. Lines before the first header and
+ * blank lines are ignored. Usage:
+ *
+ * <pre>
+ * FastaReader fasta = new FastaReader(pathToFasta, true);
+ * try {
+ * 	while (fasta.nextEntry()) {
+ * 		fasta.getHeader();
+ * 		fasta.getSequence();
+ * 	}
+ * } finally {
+ * 	fasta.close();
+ * }
+ * </pre>
+ */
+public class FastaReader implements Closeable {
+
+	private BufferedReader in;
+	private boolean readSequences;
+	private String header;
+	private String nextHeader;
+	private StringBuilder sequence = new StringBuilder();
+	private int sequenceLength;
+
+	/**
+	 * @param in
+	 * @param readSequences
+	 *            - If FALSE only the sequences' lengths are counted and
+	 *            <code>getSequence()</code> returns NULL.
+	 */
+	public FastaReader(Reader in, boolean readSequences) {
+		super();
+		this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		this.readSequences = readSequences;
+	}
+
+	public FastaReader(String pathToFasta, boolean readSequences) throws IOException {
+		this(new FileReader(pathToFasta), readSequences);
+	}
+
+	/**
+	 * Advances to the next FASTA entry.
+	 *
+	 * @return TRUE if there is a next entry, FALSE at the end of the file.
+	 * @throws IOException
+	 */
+	public boolean nextEntry() throws IOException {
+		sequence.setLength(0);
+		sequenceLength = 0;
+		String line;
+		if (nextHeader == null) {
+			while ((line = in.readLine()) != null && !line.startsWith(">"))
+				;
+			if (line == null) {
+				header = null;
+				return false;
+			}
+			nextHeader = line.substring(1);
+		}
+		header = nextHeader;
+		nextHeader = null;
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith(">")) {
+				nextHeader = line.substring(1);
+				break;
+			}
+			appendSequenceLine(line);
+		}
+		return true;
+	}
+
+	private void appendSequenceLine(String line) {
+		int start = 0;
+		int end = line.length();
+		while (start < end && line.charAt(start) <= ' ')
+			start++;
+		while (end > start && line.charAt(end - 1) <= ' ')
+			end--;
+		sequenceLength += end - start;
+		if (readSequences)
+			sequence.append(line, start, end);
+	}
+
+	/**
+	 * @return The current entry's header line without the leading '&gt;'
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return The current entry's sequence with line breaks and surrounding
+	 *         white spaces removed, or NULL if this reader does not read
+	 *         sequences.
+	 */
+	public String getSequence() {
+		return readSequences ? sequence.toString() : null;
+	}
+
+	public int getSequenceLength() {
+		return sequenceLength;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
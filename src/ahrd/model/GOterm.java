@@ -14,6 +14,12 @@ public class GOterm {
 	 * GOterm instance. A GOterm is also parental to itself.
 	 */
 	private Set<String> parentAccessions;
+	/**
+	 * The Gene Ontology this term belongs to. If set, the accessions of the
+	 * term's ancestors in it are added to the parentAccessions on first
+	 * request, instead of holding them for all terms of the ontology.
+	 */
+	private GeneOntology geneOntology;
 
 	public GOterm(String accession, String name, String ontology) {
 		super();
@@ -67,12 +73,21 @@ public class GOterm {
 	 * Parental Gene Ontology (GO) term accessions include the accession of the
 	 * GOterm instance. A GOterm is also parental to itself.
 	 */
-	public Set<String> getParentAccessions() {
+	public synchronized Set<String> getParentAccessions() {
+		if (geneOntology != null) {
+			parentAccessions.addAll(geneOntology.ancestorAccessions(getAccession()));
+			geneOntology = null;
+		}
 		return parentAccessions;
 	}
 
-	public void setParentAccessions(Set<String> parentAccessions) {
+	public synchronized void setParentAccessions(Set<String> parentAccessions) {
 		this.parentAccessions = parentAccessions;
+		this.geneOntology = null;
+	}
+
+	synchronized void setGeneOntology(GeneOntology geneOntology) {
+		this.geneOntology = geneOntology;
 	}
 
 }
@@ -0,0 +1,326 @@
+package ahrd.model;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Gene Ontology (GO) as a directed acyclic graph of its terms, read from
+ * an OBO file such as go.obo or go-basic.obo. The terms are numbered and for
+ * each term the positions of all its ancestors along 'is_a' and 'part_of'
+ * relations are computed once. They are held sorted in a single array, in
+ * which the ancestors of the term at position <code>i</code> occupy the
+ * positions <code>ancestorOffsets[i]</code> to
+ * <code>ancestorOffsets[i + 1] - 1</code>. So asking whether one term is
+ * ancestor of another, propagating terms to their ancestors and finding the
+ * most specific of a number of terms do not walk the graph.
+ *
+ * GO terms unknown to the ontology are treated as terms without ancestors.
+ */
+public class GeneOntology {
+
+	public static final String TERM_STANZA = "[Term]";
+	public static final String ID_TAG = "id:";
+	public static final String ALT_ID_TAG = "alt_id:";
+	public static final String NAME_TAG = "name:";
+	public static final String NAMESPACE_TAG = "namespace:";
+	public static final String IS_A_TAG = "is_a:";
+	public static final String RELATIONSHIP_TAG = "relationship:";
+	public static final String PART_OF = "part_of";
+
+	private static final byte UNVISITED = 0;
+	private static final byte VISITING = 1;
+	private static final byte DONE = 2;
+
+	private GOterm[] terms;
+	/**
+	 * Positions of the terms by their accessions and alternative accessions.
+	 */
+	private Map<String, Integer> positions;
+	private int[] ancestorOffsets;
+	private int[] ancestors;
+
+	/**
+	 * Builds the ontology of the argument terms.
+	 *
+	 * @param goTerms
+	 *            - The GO terms keyed by their accessions
+	 * @param alternativeAccessions
+	 *            - Alternative accessions mapped to the accessions of the terms
+	 *            they denote
+	 * @param parentAccessions
+	 *            - The accessions of the terms' direct parents, keyed by the
+	 *            terms' accessions
+	 */
+	public GeneOntology(Map<String, GOterm> goTerms, Map<String, String> alternativeAccessions,
+			Map<String, List<String>> parentAccessions) {
+		super();
+		int n = goTerms.size();
+		terms = goTerms.values().toArray(new GOterm[n]);
+		positions = new HashMap<String, Integer>(2 * (n + alternativeAccessions.size()));
+		for (int i = 0; i < n; i++)
+			positions.put(terms[i].getAccession(), i);
+		for (Map.Entry<String, String> altAcc : alternativeAccessions.entrySet()) {
+			Integer i = positions.get(altAcc.getValue());
+			if (i != null && !positions.containsKey(altAcc.getKey()))
+				positions.put(altAcc.getKey(), i);
+		}
+		int[][] parents = new int[n][];
+		for (int i = 0; i < n; i++) {
+			List<String> parentAccs = parentAccessions.get(terms[i].getAccession());
+			int[] parentsOfTerm = new int[(parentAccs != null) ? parentAccs.size() : 0];
+			int k = 0;
+			for (int j = 0; j < parentsOfTerm.length; j++) {
+				int parent = indexOf(parentAccs.get(j));
+				if (parent >= 0 && parent != i)
+					parentsOfTerm[k++] = parent;
+			}
+			parents[i] = Arrays.copyOf(parentsOfTerm, k);
+		}
+		computeAncestors(parents);
+		// The terms' parental accessions are filled from the ancestors on
+		// request:
+		for (GOterm term : terms)
+			term.setGeneOntology(this);
+	}
+
+	/**
+	 * Computes the ancestors of all terms, parents before children.
+	 */
+	private void computeAncestors(int[][] parents) {
+		int n = terms.length;
+		int[][] closures = new int[n][];
+		byte[] state = new byte[n];
+		BitSet scratch = new BitSet(n);
+		for (int i = 0; i < n; i++)
+			computeAncestors(i, parents, closures, state, scratch);
+		ancestorOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++)
+			ancestorOffsets[i + 1] = ancestorOffsets[i] + closures[i].length;
+		ancestors = new int[ancestorOffsets[n]];
+		for (int i = 0; i < n; i++)
+			System.arraycopy(closures[i], 0, ancestors, ancestorOffsets[i], closures[i].length);
+	}
+
+	private int[] computeAncestors(int i, int[][] parents, int[][] closures, byte[] state, BitSet scratch) {
+		if (state[i] != UNVISITED)
+			// A cyclic relation yields no further ancestors:
+			return (closures[i] != null) ? closures[i] : new int[0];
+		state[i] = VISITING;
+		for (int parent : parents[i])
+			computeAncestors(parent, parents, closures, state, scratch);
+		scratch.clear();
+		for (int parent : parents[i]) {
+			scratch.set(parent);
+			if (closures[parent] != null)
+				for (int a : closures[parent])
+					scratch.set(a);
+		}
+		scratch.clear(i);
+		int[] closure = new int[scratch.cardinality()];
+		int k = 0;
+		for (int a = scratch.nextSetBit(0); a >= 0; a = scratch.nextSetBit(a + 1))
+			closure[k++] = a;
+		closures[i] = closure;
+		state[i] = DONE;
+		return closure;
+	}
+
+	/**
+	 * Reads the Gene Ontology from the argument OBO file line by line. Of each
+	 * term stanza the accession, alternative accessions, name, namespace and
+	 * the 'is_a' and 'part_of' parents are read, all other tags and stanzas
+	 * are skipped.
+	 *
+	 * @param pathToObo
+	 * @return GeneOntology
+	 * @throws IOException
+	 */
+	public static GeneOntology parse(String pathToObo) throws IOException {
+		return parse(new FileReader(pathToObo));
+	}
+
+	public static GeneOntology parse(Reader obo) throws IOException {
+		Map<String, GOterm> goTerms = new LinkedHashMap<String, GOterm>();
+		Map<String, String> alternativeAccessions = new HashMap<String, String>();
+		Map<String, List<String>> parentAccessions = new HashMap<String, List<String>>();
+		BufferedReader in = new BufferedReader(obo);
+		try {
+			boolean inTerm = false;
+			String acc = null, name = null, namespace = null;
+			List<String> altAccs = new ArrayList<String>();
+			List<String> parentAccs = new ArrayList<String>();
+			String line;
+			do {
+				line = in.readLine();
+				String tagLine = (line != null) ? line.trim() : null;
+				boolean newStanza = tagLine == null || tagLine.startsWith("[");
+				if (newStanza) {
+					if (inTerm && acc != null) {
+						goTerms.put(acc, new GOterm(acc, name, namespace));
+						for (String altAcc : altAccs)
+							alternativeAccessions.put(altAcc, acc);
+						if (!parentAccs.isEmpty())
+							parentAccessions.put(acc, new ArrayList<String>(parentAccs));
+					}
+					inTerm = TERM_STANZA.equals(tagLine);
+					acc = name = namespace = null;
+					altAccs.clear();
+					parentAccs.clear();
+				} else if (inTerm) {
+					if (tagLine.startsWith(ID_TAG))
+						acc = tagValue(tagLine, ID_TAG);
+					else if (tagLine.startsWith(ALT_ID_TAG))
+						altAccs.add(tagValue(tagLine, ALT_ID_TAG));
+					else if (tagLine.startsWith(NAME_TAG))
+						name = tagValue(tagLine, NAME_TAG);
+					else if (tagLine.startsWith(NAMESPACE_TAG))
+						namespace = tagValue(tagLine, NAMESPACE_TAG);
+					else if (tagLine.startsWith(IS_A_TAG))
+						parentAccs.add(firstWord(tagValue(tagLine, IS_A_TAG)));
+					else if (tagLine.startsWith(RELATIONSHIP_TAG)) {
+						String[] relation = tagValue(tagLine, RELATIONSHIP_TAG).split("\\s+");
+						if (relation.length > 1 && PART_OF.equals(relation[0]))
+							parentAccs.add(relation[1]);
+					}
+				}
+			} while (line != null);
+		} finally {
+			in.close();
+		}
+		return new GeneOntology(goTerms, alternativeAccessions, parentAccessions);
+	}
+
+	/**
+	 * @return The argument tag line's value, without trailing comments
+	 */
+	private static String tagValue(String tagLine, String tag) {
+		String value = tagLine.substring(tag.length());
+		int comment = value.indexOf(" !");
+		if (comment >= 0)
+			value = value.substring(0, comment);
+		return value.trim();
+	}
+
+	private static String firstWord(String value) {
+		int space = value.indexOf(' ');
+		return (space >= 0) ? value.substring(0, space) : value;
+	}
+
+	/**
+	 * @param accession
+	 * @return The position of the term of the argument accession or
+	 *         alternative accession, or -1 if there is none.
+	 */
+	public int indexOf(String accession) {
+		Integer i = positions.get(accession);
+		return (i != null) ? i : -1;
+	}
+
+	public int size() {
+		return terms.length;
+	}
+
+	/**
+	 * @param accession
+	 * @return The GO term of the argument accession or alternative accession,
+	 *         or NULL if there is none.
+	 */
+	public GOterm getTerm(String accession) {
+		int i = indexOf(accession);
+		return (i >= 0) ? terms[i] : null;
+	}
+
+	/**
+	 * @param accession
+	 * @return The primary accessions of all ancestors of the term of the
+	 *         argument accession or alternative accession. Empty, if the term
+	 *         is unknown.
+	 */
+	public Set<String> ancestorAccessions(String accession) {
+		Set<String> ancestorAccs = new HashSet<String>();
+		int t = indexOf(accession);
+		if (t >= 0)
+			for (int k = ancestorOffsets[t]; k < ancestorOffsets[t + 1]; k++)
+				ancestorAccs.add(terms[ancestors[k]].getAccession());
+		return ancestorAccs;
+	}
+
+	private boolean isAncestor(int ancestor, int term) {
+		return Arrays.binarySearch(ancestors, ancestorOffsets[term], ancestorOffsets[term + 1], ancestor) >= 0;
+	}
+
+	/**
+	 * @param ancestor
+	 * @param term
+	 * @return TRUE if and only if both terms are known and the argument
+	 *         ancestor is reachable from the argument term along 'is_a' and
+	 *         'part_of' relations. A term is not its own ancestor.
+	 */
+	public boolean isAncestor(String ancestor, String term) {
+		int a = indexOf(ancestor);
+		int t = indexOf(term);
+		return a >= 0 && t >= 0 && a != t && isAncestor(a, t);
+	}
+
+	/**
+	 * @param goTerms
+	 * @return The argument GO terms together with all their ancestors. Known
+	 *         terms are reported by their primary accessions.
+	 */
+	public Set<String> propagate(Collection<String> goTerms) {
+		Set<String> propagated = new HashSet<String>();
+		BitSet known = new BitSet(terms.length);
+		for (String goTerm : goTerms) {
+			int t = indexOf(goTerm);
+			if (t < 0) {
+				propagated.add(goTerm);
+				continue;
+			}
+			known.set(t);
+			for (int k = ancestorOffsets[t]; k < ancestorOffsets[t + 1]; k++)
+				known.set(ancestors[k]);
+		}
+		for (int t = known.nextSetBit(0); t >= 0; t = known.nextSetBit(t + 1))
+			propagated.add(terms[t].getAccession());
+		return propagated;
+	}
+
+	/**
+	 * Filters out all those GO terms, that are ancestors of any other of the
+	 * argument GO terms.
+	 *
+	 * @param goTerms
+	 * @return The most specific of the argument GO terms. Known terms are
+	 *         reported by their primary accessions.
+	 */
+	public Set<String> mostSpecific(Collection<String> goTerms) {
+		BitSet ancestorsOfAny = new BitSet(terms.length);
+		for (String goTerm : goTerms) {
+			int t = indexOf(goTerm);
+			if (t >= 0)
+				for (int k = ancestorOffsets[t]; k < ancestorOffsets[t + 1]; k++)
+					ancestorsOfAny.set(ancestors[k]);
+		}
+		Set<String> mostSpecific = new HashSet<String>();
+		for (String goTerm : goTerms) {
+			int t = indexOf(goTerm);
+			if (t < 0)
+				mostSpecific.add(goTerm);
+			else if (!ancestorsOfAny.get(t))
+				mostSpecific.add(terms[t].getAccession());
+		}
+		return mostSpecific;
+	}
+}
@@ -0,0 +1,147 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ahrd.controller.RegexList;
+
+/**
+ * The Human Readable Description (HRD) of a Hit, passed through the Blacklist,
+ * Filter and Tokenizer of its Blast-Database. Many Hits are found for hundreds
+ * of query Proteins, and many Hits share the same description, e.g.
+ * "Uncharacterized protein". So each distinct description is processed once
+ * per Blast-Database, see <code>HitDescription.Cache</code>, and the result is
+ * shared by all respective BlastResults. Hence the Tokens must not be modified.
+ */
+public class HitDescription {
+
+	private boolean passesBlacklist;
+	private String description;
+	private TokenSet tokens;
+	private TokenSet unfilteredTokens;
+
+	/**
+	 * Processes the argument description of a Hit in the argument
+	 * Blast-Database.
+	 *
+	 * @param blastDatabaseName
+	 * @param description
+	 * @param passesBlacklist
+	 *            - Whether the original description passes the Blacklist
+	 * @param descriptionFiltered
+	 *            - If TRUE, the argument description has already been passed
+	 *            through the Filter.
+	 */
+	public HitDescription(String blastDatabaseName, String description, boolean passesBlacklist,
+			boolean descriptionFiltered) {
+		super();
+		this.passesBlacklist = passesBlacklist;
+		this.description = descriptionFiltered ? description
+				: DescriptionScoreCalculator.filter(description,
+						getSettings().getBlastResultsFilterPatterns(blastDatabaseName));
+		if (passesBlacklist)
+			this.tokens = TokenScoreCalculator.tokenizeToTokenSet(this.description,
+					getSettings().getTokenBlacklistPatterns(blastDatabaseName));
+		// For Training-Purposes the best Blast-Hits' descriptions are
+		// tokenized without filtering tokens through the Blacklist:
+		if (getSettings().getWriteBestBlastHitsToOutput())
+			this.unfilteredTokens = new TokenSet(
+					TokenScoreCalculator.tokenize(this.description, RegexList.EMPTY));
+	}
+
+	/**
+	 * @param blastDatabaseName
+	 * @param description
+	 * @return TRUE if and only if the argument description passes the
+	 *         Blacklist of the argument Blast-Database
+	 */
+	public static boolean passesBlacklist(String blastDatabaseName, String description) {
+		return DescriptionScoreCalculator.passesBlacklist(description,
+				getSettings().getBlastResultsBlacklistPatterns(blastDatabaseName));
+	}
+
+	public boolean passesBlacklist() {
+		return passesBlacklist;
+	}
+
+	/**
+	 * @return The filtered description
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return The Tokens of the filtered description that pass the Token
+	 *         Blacklist, or NULL if the description does not pass the
+	 *         Blacklist.
+	 */
+	public TokenSet getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * @return All Tokens of the filtered description, or NULL if the best
+	 *         Blast-Hits are not written to the output.
+	 */
+	public TokenSet getUnfilteredTokens() {
+		return unfilteredTokens;
+	}
+
+	/**
+	 * Processes each distinct description of a single Blast-Database only
+	 * once. Use one Cache per Blast-Database and parse.
+	 */
+	public static class Cache {
+
+		private String blastDatabaseName;
+		private boolean descriptionsFiltered;
+		private Map<String, HitDescription> passing = new HashMap<String, HitDescription>();
+		private Map<String, HitDescription> failing = new HashMap<String, HitDescription>();
+
+		/**
+		 * @param blastDatabaseName
+		 * @param descriptionsFiltered
+		 *            - If TRUE, the descriptions have already been passed
+		 *            through the Filter, e.g. as found in a
+		 *            <code>ReferenceAnnotationTable</code>.
+		 */
+		public Cache(String blastDatabaseName, boolean descriptionsFiltered) {
+			super();
+			this.blastDatabaseName = blastDatabaseName;
+			this.descriptionsFiltered = descriptionsFiltered;
+		}
+
+		/**
+		 * @param description
+		 *            - The original description
+		 * @return The processed argument description
+		 */
+		public HitDescription get(String description) {
+			HitDescription hd = passing.get(description);
+			if (hd == null)
+				hd = failing.get(description);
+			if (hd == null)
+				hd = get(description, passesBlacklist(blastDatabaseName, description));
+			return hd;
+		}
+
+		/**
+		 * @param description
+		 * @param passesBlacklist
+		 *            - Whether the original description passes the Blacklist
+		 * @return The processed argument description
+		 */
+		public HitDescription get(String description, boolean passesBlacklist) {
+			Map<String, HitDescription> processed = passesBlacklist ? passing : failing;
+			HitDescription hd = processed.get(description);
+			if (hd == null) {
+				hd = new HitDescription(blastDatabaseName, description, passesBlacklist, descriptionsFiltered);
+				processed.put(description, hd);
+			}
+			return hd;
+		}
+	}
+}
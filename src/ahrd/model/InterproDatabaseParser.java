@@ -0,0 +1,231 @@
+package ahrd.model;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the Interpro-Database (interpro.xml) with a streaming pull-parser.
+ * Only the current Interpro-Entry is held in memory, instead of the whole
+ * document tree. Of each entry the ID, short name, type, name, parent and
+ * contained entries are read, all other content is skipped.
+ */
+public class InterproDatabaseParser {
+
+	private static final String INTERPRO = "interpro";
+	private static final String NAME = "name";
+	private static final String PARENT_LIST = "parent_list";
+	private static final String CONTAINS = "contains";
+	private static final String REL_REF = "rel_ref";
+	private static final String IPR_REF = "ipr_ref";
+
+	/**
+	 * Reads the entries of the argument Interpro-Database.
+	 *
+	 * @param pathToInterproDatabase
+	 * @param referencedInterproIds
+	 *            - If not NULL, only the entries of these IDs are retained,
+	 *            together with all their ancestors and the entries they
+	 *            contain, so that the relations between the retained entries
+	 *            are complete. As these relations are known only after the
+	 *            whole file has been read, the file is then read twice: First
+	 *            only the IDs, parents and contained entries of all entries,
+	 *            then the full entries of the retained ones.
+	 * @return The entries keyed by their Interpro-IDs
+	 * @throws IOException
+	 */
+	public static Map<String, InterproResult> parse(String pathToInterproDatabase,
+			Set<String> referencedInterproIds) throws IOException {
+		Set<String> retainedIds = null;
+		if (referencedInterproIds != null)
+			retainedIds = retainedIds(parse(pathToInterproDatabase, null, false), referencedInterproIds);
+		return parse(pathToInterproDatabase, retainedIds, true);
+	}
+
+	/**
+	 * @param pathToInterproDatabase
+	 * @param retainedIds
+	 *            - If not NULL, entries of other IDs are skipped
+	 * @param details
+	 *            - If FALSE, only the entries' IDs, parents and contained
+	 *            entries are read
+	 * @return The entries keyed by their Interpro-IDs
+	 * @throws IOException
+	 */
+	private static Map<String, InterproResult> parse(String pathToInterproDatabase, Set<String> retainedIds,
+			boolean details) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(pathToInterproDatabase));
+		try {
+			return parse(in, retainedIds, details);
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not parse Interpro-Database '" + pathToInterproDatabase + "'", e);
+		} finally {
+			in.close();
+		}
+	}
+
+	protected static Map<String, InterproResult> parse(InputStream in) throws XMLStreamException {
+		return parse(in, null, true);
+	}
+
+	private static Map<String, InterproResult> parse(InputStream in, Set<String> retainedIds, boolean details)
+			throws XMLStreamException {
+		Map<String, InterproResult> interproDb = new HashMap<String, InterproResult>();
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// Neither load nor validate against the referenced interpro.dtd:
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		XMLStreamReader xml = factory.createXMLStreamReader(in);
+		try {
+			while (xml.hasNext()) {
+				if (xml.next() == XMLStreamConstants.START_ELEMENT && INTERPRO.equals(xml.getLocalName())) {
+					if (retainedIds != null && !retainedIds.contains(attributeValue(xml, "id")))
+						skipElement(xml);
+					else {
+						InterproResult ipr = parseEntry(xml, details);
+						interproDb.put(ipr.getId(), ipr);
+					}
+				}
+			}
+		} finally {
+			xml.close();
+		}
+		return interproDb;
+	}
+
+	/**
+	 * Reads the Interpro-Entry the argument reader is positioned at, up to and
+	 * including its end tag. Without details, short name, type and name are
+	 * left empty.
+	 */
+	private static InterproResult parseEntry(XMLStreamReader xml, boolean details) throws XMLStreamException {
+		InterproResult ipr = details
+				? new InterproResult(attributeValue(xml, "id"), attributeValue(xml, "short_name"),
+						attributeValue(xml, "type"))
+				: new InterproResult(attributeValue(xml, "id"), "", "");
+		// The list of related entries currently read, directly below the
+		// entry's element:
+		String relations = null;
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String element = xml.getLocalName();
+				if (depth == 2 && NAME.equals(element) && details && ipr.getName() == null) {
+					ipr.setName(elementText(xml));
+					depth--;
+				} else if (depth == 2 && (PARENT_LIST.equals(element) || CONTAINS.equals(element)))
+					relations = element;
+				else if (depth == 3 && relations != null && REL_REF.equals(element)) {
+					String iprRef = xml.getAttributeValue(null, IPR_REF);
+					if (iprRef != null) {
+						// Only the first parent is used:
+						if (PARENT_LIST.equals(relations) && ipr.getParentId() == null)
+							ipr.setParentId(iprRef);
+						else if (CONTAINS.equals(relations))
+							ipr.getContains().add(iprRef);
+					}
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (depth == 2)
+					relations = null;
+				depth--;
+			}
+		}
+		return ipr;
+	}
+
+	private static String attributeValue(XMLStreamReader xml, String attributeName) {
+		String attrVal = xml.getAttributeValue(null, attributeName);
+		return (attrVal != null) ? attrVal : "";
+	}
+
+	/**
+	 * Skips the element the argument reader is positioned at, up to and
+	 * including its end tag.
+	 */
+	private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * @return The text content of the element the argument reader is
+	 *         positioned at, including the text of nested elements. The reader
+	 *         is left at the element's end tag.
+	 */
+	private static String elementText(XMLStreamReader xml) throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+			else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+					|| event == XMLStreamConstants.SPACE)
+				text.append(xml.getText());
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Removes all entries from the argument Interpro-Database, that neither
+	 * are referenced nor are ancestors or contained entries of referenced
+	 * ones.
+	 *
+	 * @param interproDb
+	 * @param referencedInterproIds
+	 */
+	public static void retainReferenced(Map<String, InterproResult> interproDb, Set<String> referencedInterproIds) {
+		Set<String> retained = retainedIds(interproDb, referencedInterproIds);
+		for (Iterator<String> i = interproDb.keySet().iterator(); i.hasNext();) {
+			if (!retained.contains(i.next()))
+				i.remove();
+		}
+	}
+
+	/**
+	 * @param interproDb
+	 * @param referencedInterproIds
+	 * @return The IDs of the argument referenced entries, their ancestors and
+	 *         the entries they contain
+	 */
+	private static Set<String> retainedIds(Map<String, InterproResult> interproDb,
+			Set<String> referencedInterproIds) {
+		Set<String> retained = new HashSet<String>();
+		Deque<String> toVisit = new ArrayDeque<String>(referencedInterproIds);
+		while (!toVisit.isEmpty()) {
+			String id = toVisit.pop();
+			InterproResult ipr = interproDb.get(id);
+			if (ipr != null && retained.add(id)) {
+				if (ipr.getParentId() != null)
+					toVisit.push(ipr.getParentId());
+				for (String containedId : ipr.getContains())
+					toVisit.push(containedId);
+			}
+		}
+		return retained;
+	}
+}
@@ -0,0 +1,144 @@
+package ahrd.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the entries read from an Interpro-Database (interpro.xml),
+ * so that later runs do not need to parse the XML again. A snapshot is only
+ * valid for the very Interpro-Database file it has been written from, which
+ * is recognized by its path, size and time of last modification.
+ *
+ * The snapshot file consists of a header and the entries:
+ * <ul>
+ * <li>header: magic number (int), version (int), size of the
+ * Interpro-Database file (long), its time of last modification (long), its
+ * canonical path (string), number of entries (int)</li>
+ * <li>entry: ID, short name, type, name and parent ID (strings), number of
+ * contained entries (int), their IDs (strings)</li>
+ * </ul>
+ * Strings are stored as their length in bytes (int), -1 for NULL, followed by
+ * their UTF-8 encoding. All numbers are big-endian.
+ */
+public class InterproDatabaseSnapshot {
+
+	public static final int MAGIC = 0x41485250;
+	public static final int VERSION = 1;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Reads the entries from the argument snapshot, memory-mapped.
+	 *
+	 * @param pathToSnapshot
+	 * @param pathToInterproDatabase
+	 * @return The entries keyed by their Interpro-IDs, or NULL if there is no
+	 *         snapshot of the argument Interpro-Database in its current
+	 *         state.
+	 * @throws IOException
+	 */
+	public static Map<String, InterproResult> read(String pathToSnapshot, String pathToInterproDatabase)
+			throws IOException {
+		File snapshot = new File(pathToSnapshot);
+		if (!snapshot.isFile())
+			return null;
+		File interproDatabase = new File(pathToInterproDatabase);
+		RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+		try {
+			MappedByteBuffer in = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			if (in.remaining() < 24 || in.getInt() != MAGIC || in.getInt() != VERSION
+					|| in.getLong() != interproDatabase.length() || in.getLong() != interproDatabase.lastModified()
+					|| !interproDatabase.getCanonicalPath().equals(getString(in)))
+				return null;
+			int entries = in.getInt();
+			Map<String, InterproResult> interproDb = new HashMap<String, InterproResult>(2 * entries);
+			for (int i = 0; i < entries; i++) {
+				InterproResult ipr = new InterproResult(getString(in), getString(in), getString(in));
+				ipr.setName(getString(in));
+				ipr.setParentId(getString(in));
+				int contained = in.getInt();
+				for (int j = 0; j < contained; j++)
+					ipr.getContains().add(getString(in));
+				interproDb.put(ipr.getId(), ipr);
+			}
+			return interproDb;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Interpro-Database snapshot '" + pathToSnapshot + "' is truncated.");
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes the argument entries of the argument Interpro-Database into the
+	 * argument snapshot. The snapshot is first written into a temporary file,
+	 * which then replaces any former snapshot, so that concurrent runs never
+	 * read an incomplete snapshot.
+	 *
+	 * @param interproDb
+	 * @param pathToSnapshot
+	 * @param pathToInterproDatabase
+	 * @throws IOException
+	 */
+	public static void write(Map<String, InterproResult> interproDb, String pathToSnapshot,
+			String pathToInterproDatabase) throws IOException {
+		File snapshot = new File(pathToSnapshot).getAbsoluteFile();
+		File interproDatabase = new File(pathToInterproDatabase);
+		File tmp = File.createTempFile(snapshot.getName(), ".tmp", snapshot.getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(interproDatabase.length());
+				out.writeLong(interproDatabase.lastModified());
+				putString(out, interproDatabase.getCanonicalPath());
+				out.writeInt(interproDb.size());
+				for (InterproResult ipr : interproDb.values()) {
+					putString(out, ipr.getId());
+					putString(out, ipr.getShortName());
+					putString(out, ipr.getType());
+					putString(out, ipr.getName());
+					putString(out, ipr.getParentId());
+					out.writeInt(ipr.getContains().size());
+					for (String containedId : ipr.getContains())
+						putString(out, containedId);
+				}
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(snapshot) && !(snapshot.delete() && tmp.renameTo(snapshot)))
+				throw new IOException("Could not write Interpro-Database snapshot '" + pathToSnapshot + "'.");
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	private static String getString(MappedByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void putString(DataOutputStream out, String s) throws IOException {
+		if (s == null)
+			out.writeInt(-1);
+		else {
+			byte[] bytes = s.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,436 @@
+package ahrd.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import ahrd.exception.MissingInterproResultException;
+
+/**
+ * The transitive closures of the parent and contains relations between the
+ * entries of the Interpro-Memory-Database. For each entry the set of its
+ * ancestors and the set of all entries it contains, directly or indirectly,
+ * are computed once. So <code>InterproResult.isParent</code>,
+ * <code>InterproResult.contains</code> and
+ * <code>InterproResult.filterForMostInforming</code> do not need to walk the
+ * relations recursively for every pair of InterproResults. As in
+ * <code>GeneOntology</code>, the closures are held as the sorted positions of
+ * their entries, all in one array, so memory grows with the size of the
+ * closures, not with the square of the number of entries.
+ *
+ * The closures reflect the entries' relations at the time of construction.
+ * After modifying them, a new hierarchy has to be built.
+ */
+public class InterproHierarchy {
+
+	private static final byte UNVISITED = 0;
+	private static final byte VISITING = 1;
+	private static final byte DONE = 2;
+	private static final int[] NONE = new int[0];
+
+	private InterproResult[] entries;
+	private Map<String, Integer> positions = new HashMap<String, Integer>();
+	/**
+	 * The ancestors of entry i are
+	 * <code>ancestors[ancestorOffsets[i]]</code> to
+	 * <code>ancestors[ancestorOffsets[i + 1] - 1]</code>, in ascending order.
+	 * Likewise for the contained entries.
+	 */
+	private int[] ancestorOffsets;
+	private int[] ancestors;
+	private int[] containedOffsets;
+	private int[] contained;
+	/**
+	 * For each entry the first Interpro-ID referenced within its closure that
+	 * is missing in the Interpro-Memory-Database, or NULL.
+	 */
+	private String[] missingAncestors;
+	private String[] missingContained;
+
+	/**
+	 * Computes the closures of all entries of the argument
+	 * Interpro-Memory-Database.
+	 *
+	 * @param interproDb
+	 */
+	public InterproHierarchy(Map<String, InterproResult> interproDb) {
+		super();
+		int n = interproDb.size();
+		entries = interproDb.values().toArray(new InterproResult[n]);
+		for (int i = 0; i < n; i++)
+			positions.put(entries[i].getId(), i);
+		missingAncestors = new String[n];
+		missingContained = new String[n];
+		BitSet scratch = new BitSet(n);
+		int[][] closures = new int[n][];
+		byte[] state = new byte[n];
+		for (int i = 0; i < n; i++)
+			computeAncestors(i, closures, state, scratch);
+		ancestorOffsets = offsets(closures);
+		ancestors = concat(closures, ancestorOffsets);
+		closures = new int[n][];
+		state = new byte[n];
+		for (int i = 0; i < n; i++)
+			computeContained(i, closures, state, scratch);
+		containedOffsets = offsets(closures);
+		contained = concat(closures, containedOffsets);
+	}
+
+	private static int[] offsets(int[][] closures) {
+		int[] offsets = new int[closures.length + 1];
+		for (int i = 0; i < closures.length; i++)
+			offsets[i + 1] = offsets[i] + closures[i].length;
+		return offsets;
+	}
+
+	private static int[] concat(int[][] closures, int[] offsets) {
+		int[] all = new int[offsets[closures.length]];
+		for (int i = 0; i < closures.length; i++)
+			System.arraycopy(closures[i], 0, all, offsets[i], closures[i].length);
+		return all;
+	}
+
+	/**
+	 * @param scratch
+	 * @param i
+	 * @return The positions set in the argument scratch, except the argument
+	 *         entry's own, in ascending order. The scratch is cleared.
+	 */
+	private static int[] toClosure(BitSet scratch, int i) {
+		scratch.clear(i);
+		int[] closure = new int[scratch.cardinality()];
+		int k = 0;
+		for (int a = scratch.nextSetBit(0); a >= 0; a = scratch.nextSetBit(a + 1))
+			closure[k++] = a;
+		scratch.clear();
+		return closure;
+	}
+
+	private int[] computeAncestors(int i, int[][] closures, byte[] state, BitSet scratch) {
+		if (state[i] != UNVISITED)
+			// A cyclic relation yields the closure computed so far:
+			return (closures[i] != null) ? closures[i] : NONE;
+		state[i] = VISITING;
+		int parent = -1;
+		String parentId = entries[i].getParentId();
+		if (parentId != null) {
+			parent = indexOf(parentId);
+			if (parent < 0)
+				missingAncestors[i] = parentId;
+			else {
+				computeAncestors(parent, closures, state, scratch);
+				missingAncestors[i] = missingAncestors[parent];
+			}
+		}
+		if (parent >= 0) {
+			scratch.set(parent);
+			if (closures[parent] != null)
+				for (int a : closures[parent])
+					scratch.set(a);
+		}
+		closures[i] = toClosure(scratch, i);
+		state[i] = DONE;
+		return closures[i];
+	}
+
+	private int[] computeContained(int i, int[][] closures, byte[] state, BitSet scratch) {
+		if (state[i] != UNVISITED)
+			return (closures[i] != null) ? closures[i] : NONE;
+		state[i] = VISITING;
+		int[] containees = new int[entries[i].getContains().size()];
+		int nContainees = 0;
+		for (String containedId : entries[i].getContains()) {
+			int containee = indexOf(containedId);
+			if (containee < 0) {
+				if (missingContained[i] == null)
+					missingContained[i] = containedId;
+			} else {
+				computeContained(containee, closures, state, scratch);
+				if (missingContained[i] == null)
+					missingContained[i] = missingContained[containee];
+				containees[nContainees++] = containee;
+			}
+		}
+		for (int c = 0; c < nContainees; c++) {
+			scratch.set(containees[c]);
+			if (closures[containees[c]] != null)
+				for (int a : closures[containees[c]])
+					scratch.set(a);
+		}
+		closures[i] = toClosure(scratch, i);
+		state[i] = DONE;
+		return closures[i];
+	}
+
+	/**
+	 * @param interproId
+	 * @return The position of the entry of the argument Interpro-ID, or -1 if
+	 *         there is none.
+	 */
+	public int indexOf(String interproId) {
+		Integer i = positions.get(interproId);
+		return (i != null) ? i : -1;
+	}
+
+	/**
+	 * @param ipr
+	 * @return The position of the argument InterproResult, or -1 if it is not
+	 *         this very entry of the Interpro-Memory-Database.
+	 */
+	private int indexOf(InterproResult ipr) {
+		int i = indexOf(ipr.getId());
+		return (i >= 0 && entries[i] == ipr) ? i : -1;
+	}
+
+	public int size() {
+		return entries.length;
+	}
+
+	/**
+	 * @param interproDb
+	 * @param iprs
+	 * @return FALSE if entries have been added to or removed from the argument
+	 *         Interpro-Memory-Database, or if it holds other entries for the
+	 *         argument InterproResults' IDs than this hierarchy.
+	 */
+	public boolean isUpToDate(Map<String, InterproResult> interproDb, InterproResult... iprs) {
+		if (interproDb.size() != size())
+			return false;
+		for (InterproResult ipr : iprs) {
+			InterproResult entry = interproDb.get(ipr.getId());
+			if (entry != null) {
+				int i = indexOf(ipr.getId());
+				if (i < 0 || entries[i] != entry)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param ipr
+	 * @return The positions of all ancestors of the argument InterproResult in
+	 *         ascending order.
+	 * @throws MissingInterproResultException
+	 *             - If the argument's parent is not an entry of the
+	 *             Interpro-Memory-Database.
+	 */
+	private int[] ancestorsOf(InterproResult ipr) throws MissingInterproResultException {
+		int i = indexOf(ipr);
+		if (i >= 0)
+			return Arrays.copyOfRange(ancestors, ancestorOffsets[i], ancestorOffsets[i + 1]);
+		// Not an entry itself, so start at its parent:
+		if (ipr.getParentId() == null)
+			return NONE;
+		int parent = entryOf(ipr.getParentId());
+		int[] closure = new int[ancestorOffsets[parent + 1] - ancestorOffsets[parent] + 1];
+		closure[0] = parent;
+		System.arraycopy(ancestors, ancestorOffsets[parent], closure, 1, closure.length - 1);
+		return sortedUnique(closure, closure.length);
+	}
+
+	/**
+	 * @param ipr
+	 * @return The positions of all entries the argument InterproResult
+	 *         contains in ascending order.
+	 * @throws MissingInterproResultException
+	 *             - If a directly contained ID is not an entry of the
+	 *             Interpro-Memory-Database.
+	 */
+	private int[] containedOf(InterproResult ipr) throws MissingInterproResultException {
+		int i = indexOf(ipr);
+		if (i >= 0)
+			return Arrays.copyOfRange(contained, containedOffsets[i], containedOffsets[i + 1]);
+		int[] closure = NONE;
+		int n = 0;
+		for (String containedId : ipr.getContains()) {
+			int containee = entryOf(containedId);
+			int size = containedOffsets[containee + 1] - containedOffsets[containee];
+			if (n + size + 1 > closure.length)
+				closure = Arrays.copyOf(closure, Math.max(2 * closure.length, n + size + 1));
+			closure[n++] = containee;
+			System.arraycopy(contained, containedOffsets[containee], closure, n, size);
+			n += size;
+		}
+		return sortedUnique(closure, n);
+	}
+
+	/**
+	 * @param positions
+	 * @param n
+	 * @return The first n argument positions in ascending order without
+	 *         duplicates
+	 */
+	private static int[] sortedUnique(int[] positions, int n) {
+		if (n == 0)
+			return NONE;
+		Arrays.sort(positions, 0, n);
+		int k = 1;
+		for (int i = 1; i < n; i++) {
+			if (positions[i] != positions[k - 1])
+				positions[k++] = positions[i];
+		}
+		return (k == positions.length) ? positions : Arrays.copyOf(positions, k);
+	}
+
+	private static boolean holds(int[] sortedPositions, int position) {
+		return Arrays.binarySearch(sortedPositions, position) >= 0;
+	}
+
+	private String missingAncestorOf(InterproResult ipr) {
+		int i = indexOf(ipr);
+		if (i >= 0)
+			return missingAncestors[i];
+		if (ipr.getParentId() == null)
+			return null;
+		int parent = indexOf(ipr.getParentId());
+		return (parent >= 0) ? missingAncestors[parent] : ipr.getParentId();
+	}
+
+	private String missingContainedOf(InterproResult ipr) {
+		int i = indexOf(ipr);
+		if (i >= 0)
+			return missingContained[i];
+		for (String containedId : ipr.getContains()) {
+			int containee = indexOf(containedId);
+			if (containee < 0)
+				return containedId;
+			if (missingContained[containee] != null)
+				return missingContained[containee];
+		}
+		return null;
+	}
+
+	private int entryOf(String interproId) throws MissingInterproResultException {
+		int i = indexOf(interproId);
+		if (i < 0)
+			throw missingInterproResult(interproId);
+		return i;
+	}
+
+	private static MissingInterproResultException missingInterproResult(String interproId) {
+		return new MissingInterproResultException(
+				"Could not find Interpro-Result for ID '" + interproId + "' in Memory-Database.");
+	}
+
+	/**
+	 * @param ipr
+	 * @param parent
+	 * @return TRUE if and only if the argument parent is an entry of the
+	 *         Interpro-Memory-Database and among the ancestors of the argument
+	 *         InterproResult.
+	 * @throws MissingInterproResultException
+	 *             - If the parent is not found, because an ancestor of the
+	 *             argument InterproResult is missing.
+	 */
+	public boolean isAncestor(InterproResult ipr, InterproResult parent) throws MissingInterproResultException {
+		int j = indexOf(parent.getId());
+		if (j < 0)
+			return false;
+		if (holds(ancestorsOf(ipr), j))
+			return true;
+		String missing = missingAncestorOf(ipr);
+		if (missing != null)
+			throw missingInterproResult(missing);
+		return false;
+	}
+
+	/**
+	 * @param container
+	 * @param containee
+	 * @return TRUE if and only if the argument containee is an entry of the
+	 *         Interpro-Memory-Database and directly or indirectly contained by
+	 *         the argument container.
+	 * @throws MissingInterproResultException
+	 *             - If the containee is not found, because an InterproResult
+	 *             contained by the container is missing.
+	 */
+	public boolean contains(InterproResult container, InterproResult containee)
+			throws MissingInterproResultException {
+		int j = indexOf(containee.getId());
+		if (j < 0)
+			return false;
+		if (holds(containedOf(container), j))
+			return true;
+		String missing = missingContainedOf(container);
+		if (missing != null)
+			throw missingInterproResult(missing);
+		return false;
+	}
+
+	/**
+	 * Filters out all those InterproResults, who are descendants of or
+	 * contained by any other of the argument InterproResults. Instead of
+	 * comparing each pair of InterproResults, the closures of all argument
+	 * InterproResults are united once.
+	 *
+	 * @param iprs
+	 * @return The most informative of the argument InterproResults
+	 * @throws MissingInterproResultException
+	 *             - If an InterproResult is neither filtered out nor known to
+	 *             be most informative, because the closures involved reference
+	 *             missing Interpro-IDs.
+	 */
+	public Set<InterproResult> mostInforming(Collection<InterproResult> iprs)
+			throws MissingInterproResultException {
+		// The positions of the argument InterproResults, -1 for those not in
+		// the Interpro-Memory-Database:
+		int[] positions = new int[iprs.size()];
+		int[] present = new int[iprs.size()];
+		int nPresent = 0;
+		int[] containedByAny = NONE;
+		int nContained = 0;
+		String missingContainee = null;
+		int incompleteContainers = 0;
+		int k = 0;
+		for (InterproResult ipr : iprs) {
+			positions[k] = indexOf(ipr.getId());
+			if (positions[k] >= 0)
+				present[nPresent++] = positions[k];
+			int[] containedOfIpr = containedOf(ipr);
+			if (nContained + containedOfIpr.length > containedByAny.length)
+				containedByAny = Arrays.copyOf(containedByAny,
+						Math.max(2 * containedByAny.length, nContained + containedOfIpr.length));
+			System.arraycopy(containedOfIpr, 0, containedByAny, nContained, containedOfIpr.length);
+			nContained += containedOfIpr.length;
+			String missing = missingContainedOf(ipr);
+			if (missing != null) {
+				missingContainee = missing;
+				incompleteContainers++;
+			}
+			k++;
+		}
+		present = sortedUnique(present, nPresent);
+		containedByAny = sortedUnique(containedByAny, nContained);
+		Set<InterproResult> mostInformatives = new HashSet<InterproResult>();
+		k = 0;
+		for (InterproResult ipr : iprs) {
+			int i = positions[k++];
+			// The other argument InterproResults are all present ones, except
+			// this one's own entry:
+			boolean hasOthers = present.length > ((i >= 0) ? 1 : 0);
+			boolean hasAncestorAmongOthers = false;
+			for (int a : ancestorsOf(ipr)) {
+				if (a != i && holds(present, a)) {
+					hasAncestorAmongOthers = true;
+					break;
+				}
+			}
+			if (hasAncestorAmongOthers || (i >= 0 && holds(containedByAny, i)))
+				continue;
+			// Unresolvable relations are reported as by the pairwise
+			// comparison:
+			String missingAncestor = missingAncestorOf(ipr);
+			if (missingAncestor != null && hasOthers)
+				throw missingInterproResult(missingAncestor);
+			if (i >= 0 && incompleteContainers > (missingContainedOf(ipr) != null ? 1 : 0))
+				throw missingInterproResult(missingContainee);
+			mostInformatives.add(ipr);
+		}
+		return mostInformatives;
+	}
+}
@@ -1,25 +1,11 @@
 package ahrd.model;
 
 import static ahrd.controller.Settings.getSettings;
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import nu.xom.Attribute;
-import nu.xom.Builder;
-import nu.xom.Document;
-import nu.xom.Element;
-import nu.xom.Nodes;
-import nu.xom.ParsingException;
 
 import ahrd.exception.MissingProteinException;
 import ahrd.exception.MissingInterproResultException;
@@ -39,6 +25,7 @@ public class InterproResult implements Comparable<InterproResult> {
 	private Set<String> contains = new HashSet<String>();
 
 	private static Map<String, InterproResult> interproDb = new HashMap<String, InterproResult>();
+	private static InterproHierarchy interproHierarchy;
 
 	public InterproResult(String id, String shortName, String type) {
 		super();
@@ -47,110 +34,171 @@ public class InterproResult implements Comparable<InterproResult> {
 		setType(type);
 	}
 
-	private static String getAttributeValue(Element element,
-			String attributeName) {
-		String attrVal = "";
-		Attribute attr = element.getAttribute(attributeName);
-		if (attr != null)
-			attrVal = attr.getValue();
-		// else
-		// element.getLocalName() +
-		// "' does not have Attribute '" +
-		// attributeName + "'!"
-		// );
-		return attrVal;
+	/**
+	 * Reads all entries of the Interpro-Database into the
+	 * Interpro-Memory-Database.
+	 * 
+	 * @see InterproDatabaseParser
+	 */
+	public static void initialiseInterproDb() throws IOException {
+		initialiseInterproDb(null);
 	}
 
-	private static String retrieveContentOfFirstChildElement(Element element,
-			String xpathQuery) {
-		String res = null;
-		Nodes resultNodes = element.query(xpathQuery);
-		if (resultNodes.size() > 0) {
-			res = resultNodes.get(0).getValue();
+	/**
+	 * Reads the entries of the Interpro-Database into the
+	 * Interpro-Memory-Database. If a snapshot of the Interpro-Database is
+	 * requested, it is read instead of the Interpro-Database, or written, if
+	 * it does not exist yet or the Interpro-Database has changed.
+	 * 
+	 * @param referencedInterproIds
+	 *            - If not NULL, only these entries, their ancestors and the
+	 *            entries they contain are kept in memory, see
+	 *            <code>referencedInterproIds(interproIds)</code>.
+	 * @throws IOException
+	 */
+	public static void initialiseInterproDb(Set<String> referencedInterproIds)
+			throws IOException {
+		String pathToInterproDb = getSettings().getPathToInterproDatabase();
+		String pathToSnapshot = getSettings()
+				.getPathToInterproDatabaseSnapshot();
+		Map<String, InterproResult> iprs = null;
+		if (pathToSnapshot != null) {
+			try {
+				iprs = InterproDatabaseSnapshot.read(pathToSnapshot,
+						pathToInterproDb);
+			} catch (IOException e) {
+				System.err.println("WARNING: Could not read Interpro-Database snapshot '"
+						+ pathToSnapshot + "':\n" + e.getMessage());
+			}
 		}
-		return res;
-	}
-
-	public static void initialiseInterproDb() throws IOException,
-			ParsingException {
-		Builder parser = new Builder();
-		Document doc = parser.build(new BufferedInputStream(
-				new FileInputStream(new File(getSettings()
-						.getPathToInterproDatabase()))));
-		Nodes ipr_nodes = doc.query("//interpro");
-		for (int i = 0; i < ipr_nodes.size(); i++) {
-			Element ipr_el = (Element) ipr_nodes.get(i);
-			InterproResult ipr = new InterproResult(getAttributeValue(ipr_el,
-					"id"), getAttributeValue(ipr_el, "short_name"),
-					getAttributeValue(ipr_el, "type"));
-			ipr.setName(retrieveContentOfFirstChildElement(ipr_el, "name"));
-			// Retrieve Parent-Id:
-			Nodes resultNodes = ipr_el.query("parent_list");
-			if (resultNodes.size() > 0) {
-				resultNodes = resultNodes.get(0).query("rel_ref");
-				if (resultNodes.size() > 0) {
-					Attribute relRefAttr = ((Element) resultNodes.get(0))
-							.getAttribute("ipr_ref");
-					if (relRefAttr != null)
-						ipr.setParentId(relRefAttr.getValue());
+		if (iprs == null && pathToSnapshot == null) {
+			// Only the retained entries are built in full:
+			iprs = InterproDatabaseParser.parse(pathToInterproDb,
+					referencedInterproIds);
+		} else {
+			if (iprs == null) {
+				// The snapshot holds the whole database:
+				iprs = InterproDatabaseParser.parse(pathToInterproDb, null);
+				try {
+					InterproDatabaseSnapshot.write(iprs, pathToSnapshot,
+							pathToInterproDb);
+				} catch (IOException e) {
+					System.err.println("WARNING: Could not write Interpro-Database snapshot '"
+							+ pathToSnapshot + "':\n" + e.getMessage());
 				}
 			}
-			// Initialise contained InterproResults:
-			resultNodes = ipr_el.query("contains");
-			if (resultNodes.size() > 0) {
-				resultNodes = ((Element) resultNodes.get(0)).query("rel_ref");
-				if (resultNodes.size() > 0) {
-					for (int j = 0; j < resultNodes.size(); j++) {
-						Element relRefElmnt = (Element) resultNodes.get(j);
-						Attribute relRefAttr = relRefElmnt
-								.getAttribute("ipr_ref");
-						if (relRefAttr != null) {
-							ipr.getContains().add(relRefAttr.getValue());
-						}
+			if (referencedInterproIds != null)
+				InterproDatabaseParser.retainReferenced(iprs,
+						referencedInterproIds);
+		}
+		getInterproDb().putAll(iprs);
+		initialiseInterproHierarchy();
+	}
+
+	/**
+	 * Computes the closures of the parent and contains relations between all
+	 * entries of the Interpro-Memory-Database. Has to be invoked again after
+	 * modifying the relations of entries already in the database. Entries
+	 * added, removed or replaced are noticed automatically.
+	 */
+	public static synchronized void initialiseInterproHierarchy() {
+		interproHierarchy = new InterproHierarchy(getInterproDb());
+	}
+
+	/**
+	 * @param iprs
+	 * @return The closures of the Interpro-Memory-Database, recomputed if they
+	 *         do not cover the argument InterproResults anymore.
+	 */
+	public static synchronized InterproHierarchy getInterproHierarchy(
+			InterproResult... iprs) {
+		if (interproHierarchy == null
+				|| !interproHierarchy.isUpToDate(getInterproDb(), iprs))
+			initialiseInterproHierarchy();
+		return interproHierarchy;
+	}
+
+	/**
+	 * Reads the Interpro-IDs the Interpro-Result-File assigns to the argument
+	 * Proteins in a single pass. See <code>InterproScanResultParser</code> for
+	 * the supported formats. Lines of Gene-Accessions not in the argument
+	 * proteinDb are skipped.
+	 * 
+	 * @param proteinDb
+	 * @return The Interpro-IDs (Value) keyed by Gene-Accession (Key)
+	 * @throws IOException
+	 */
+	public static Map<String, Set<String>> readInterproIds(Map<String, Protein> proteinDb) throws IOException {
+		Map<String, Set<String>> interproIds = new HashMap<String, Set<String>>();
+		InterproScanResultParser iprScan = new InterproScanResultParser(
+				getSettings().getPathToInterproResults());
+		try {
+			while (iprScan.next()) {
+				String geneAcc = iprScan.getGeneAccession();
+				if (proteinDb.containsKey(geneAcc)) {
+					Set<String> iprIds = interproIds.get(geneAcc);
+					if (iprIds == null) {
+						iprIds = new HashSet<String>();
+						interproIds.put(geneAcc, iprIds);
 					}
+					iprIds.add(iprScan.getInterproId());
 				}
 			}
-			// Add new InterproResult to the Interpro-Memory-Database:
-			getInterproDb().put(ipr.getId(), ipr);
+		} finally {
+			iprScan.close();
 		}
+		return interproIds;
+	}
+
+	/**
+	 * @param interproIds
+	 *            - As returned by <code>readInterproIds(proteinDb)</code>
+	 * @return All Interpro-IDs referenced in the argument interproIds
+	 */
+	public static Set<String> referencedInterproIds(Map<String, Set<String>> interproIds) {
+		Set<String> iprIds = new HashSet<String>();
+		for (Set<String> iprIdsOfGene : interproIds.values())
+			iprIds.addAll(iprIdsOfGene);
+		return iprIds;
 	}
 
 	/**
 	 * Reads in a raw Interpro-Result-File and assigns iteratively
 	 * InterproResult-instances to the Proteins, specified by their
-	 * Gene-Accessions.
+	 * Gene-Accessions. See <code>InterproScanResultParser</code> for the
+	 * supported formats.
 	 * 
 	 * @param proteinDb
 	 * @throws IOException
 	 */
 	public static void parseInterproResult(Map<String, Protein> proteinDb)
 			throws IOException, MissingProteinException {
-		Set<String> missingInterproIds = new HashSet<String>();
+		assignInterproResults(proteinDb, readInterproIds(proteinDb));
+	}
 
-		BufferedReader br = new BufferedReader(new FileReader(new File(
-				getSettings().getPathToInterproResults())));
-		String iterLine = null;
-		while ((iterLine = br.readLine()) != null) {
-			Pattern p = Pattern.compile("(\\S+)\\s+.*\\s(IPR\\d{6})\\s.*");
-			Matcher m = p.matcher(iterLine);
-			if (m.matches()) {
-				String geneAcc = m.group(1);
-				String iprId = m.group(2);
-				if (geneAcc != null && iprId != null && !geneAcc.equals("")
-						&& !iprId.equals("")) {
-					if (proteinDb.containsKey(geneAcc)) {
-						Protein prot = proteinDb.get(geneAcc);
-						InterproResult ipr = null;
-						// WARN, if an Interpro-Result is not found in the
-						// memory-database:
-						if (getInterproDb().containsKey(iprId))
-							ipr = getInterproDb().get(iprId);
-						else
-							missingInterproIds.add(iprId);
-						if (prot != null && ipr != null) {
-							prot.getInterproResults().add(ipr);
-						}
-					}
+	/**
+	 * Assigns the InterproResult-instances of the argument Interpro-IDs from
+	 * the Interpro-Memory-Database to the Proteins, specified by their
+	 * Gene-Accessions.
+	 * 
+	 * @param proteinDb
+	 * @param interproIds
+	 *            - As returned by <code>readInterproIds(proteinDb)</code>
+	 */
+	public static void assignInterproResults(Map<String, Protein> proteinDb,
+			Map<String, Set<String>> interproIds) {
+		Set<String> missingInterproIds = new HashSet<String>();
+		for (String geneAcc : interproIds.keySet()) {
+			Protein prot = proteinDb.get(geneAcc);
+			if (prot != null) {
+				for (String iprId : interproIds.get(geneAcc)) {
+					InterproResult ipr = getInterproDb().get(iprId);
+					// WARN, if an Interpro-Result is not found in the
+					// memory-database:
+					if (ipr != null)
+						prot.getInterproResults().add(ipr);
+					else
+						missingInterproIds.add(iprId);
 				}
 			}
 		}
@@ -158,89 +206,70 @@ public class InterproResult implements Comparable<InterproResult> {
 			System.err
 					.println("Could not find the following Interpro_IDs in Database:\n"
 							+ missingInterproIds);
-		br.close();
 	}
 
 	public static Map<String, InterproResult> getInterproDb() {
 		return interproDb;
 	}
 
-	public static void setInterproDb(Map<String, InterproResult> interproDb) {
+	public static synchronized void setInterproDb(Map<String, InterproResult> interproDb) {
 		InterproResult.interproDb = interproDb;
+		interproHierarchy = null;
 	}
 
 	/**
-	 * Filters out all those Protein's InterproResults, who are parents of or
-	 * contained by any other of the protein's InterproResults. Unfortunately
-	 * this is of O(n^2)!
+	 * Filters out all those Protein's InterproResults, who are children of or
+	 * contained by any other of the protein's InterproResults. Uses the
+	 * precomputed closures of <code>getInterproHierarchy()</code>, so the
+	 * InterproResults are not compared pairwise.
 	 */
 	public static void filterForMostInforming(Protein p)
 			throws MissingInterproResultException {
-		Set<InterproResult> mostInformatives = new HashSet<InterproResult>(p
-				.getInterproResults());
-		for (InterproResult iprToValidate : p.getInterproResults()) {
-			Set<InterproResult> iprsToCompare = new HashSet<InterproResult>(p
-					.getInterproResults());
-			iprsToCompare.remove(iprToValidate);
-			for (InterproResult iprToCompare : iprsToCompare) {
-				if (iprToValidate.isParent(iprToCompare)
-						|| iprToCompare.contains(iprToValidate))
-					mostInformatives.remove(iprToValidate);
-			}
-		}
-		p.setInterproResults(mostInformatives);
+		if (p.getInterproResults().size() > 1)
+			filterForMostInforming(p, getInterproHierarchy(
+					p.getInterproResults().toArray(
+							new InterproResult[p.getInterproResults().size()])));
+	}
+
+	/**
+	 * Like <code>filterForMostInforming(Protein)</code>, but uses the
+	 * argument hierarchy, which callers filtering many Proteins resolve once
+	 * instead of once per Protein. It has to cover the Protein's
+	 * InterproResults, as it does for Proteins assigned their InterproResults
+	 * from the current Interpro-Memory-Database.
+	 * 
+	 * @param p
+	 * @param interproHierarchy
+	 * @throws MissingInterproResultException
+	 */
+	public static void filterForMostInforming(Protein p,
+			InterproHierarchy interproHierarchy)
+			throws MissingInterproResultException {
+		if (p.getInterproResults().size() > 1)
+			p.setInterproResults(interproHierarchy.mostInforming(p
+					.getInterproResults()));
 	}
 
 	public int compareTo(InterproResult iprToComapre) {
 		return this.getId().compareTo(iprToComapre.getId());
 	}
 
+	/**
+	 * Infers if the argument InterproResult is directly or indirectly
+	 * contained by this InterproResult.
+	 */
 	public boolean contains(InterproResult container)
 			throws MissingInterproResultException {
-		boolean isContained = false;
-		if (getInterproDb().containsKey(container.getId())) {
-			isContained = this.getContains().contains(container.getId());
-			// Try to find container recursively
-			// in this Instance's contained InterproResults:
-			if (!isContained && !this.getContains().isEmpty()) {
-				for (String iterContainedId : this.getContains()) {
-					if (!getInterproDb().containsKey(iterContainedId))
-						throw new MissingInterproResultException(
-								"Could not find Interpro-Result for ID '"
-										+ iterContainedId
-										+ "' in Memory-Database.");
-					isContained = getInterproDb().get(iterContainedId)
-							.contains(container);
-					if (isContained)
-						return true;
-				}
-			}
-		}
-		return isContained;
+		return getInterproHierarchy(this, container).contains(this, container);
 	}
 
 	/**
-	 * Recursively infers if the argument InterproResult is among the ancestors
-	 * of this InterproResult.
+	 * Infers if the argument InterproResult is among the ancestors of this
+	 * InterproResult.
 	 */
 	public boolean isParent(InterproResult parent)
 			throws MissingInterproResultException {
-		boolean isParent = false;
-		if (getInterproDb().containsKey(parent.getId())) {
-			isParent = getParentId() != null
-					&& getParentId().equals(parent.getId());
-			// try recursive search
-			if (!isParent && getParentId() != null) {
-				if (!getInterproDb().containsKey(this.getParentId()))
-					throw new MissingInterproResultException(
-							"Could not find Interpro-Result for ID '"
-									+ this.getParentId()
-									+ "' in Memory-Database.");
-				isParent = getInterproDb().get(this.getParentId()).isParent(
-						parent);
-			}
-		}
-		return isParent;
+		return getInterproHierarchy(this, parent).isAncestor(this, parent);
 	}
 
 	/**
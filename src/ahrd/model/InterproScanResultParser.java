@@ -0,0 +1,133 @@
+package ahrd.model;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the Gene-Accessions and their Interpro-IDs from an InterProScan result
+ * file one match at a time. Lines in InterProScan's tab separated column
+ * layout are split at the tabs, the Gene-Accession being held in the first
+ * column and the Interpro-ID in the twelfth. Tab separated lines with fewer
+ * columns, e.g. InterProScan 5 matches without Interpro-Entry, have no
+ * Interpro-ID. Only lines without any tab are matched by a regular expression,
+ * as in legacy raw output. Lines without Interpro-ID are skipped. Usage:
+ *
+ * <pre>
+ * InterproScanResultParser iprScan = new InterproScanResultParser(pathToResults);
+ * try {
+ * 	while (iprScan.next()) {
+ * 		iprScan.getGeneAccession();
+ * 		iprScan.getInterproId();
+ * 	}
+ * } finally {
+ * 	iprScan.close();
+ * }
+ * </pre>
+ */
+public class InterproScanResultParser implements Closeable {
+
+	/**
+	 * Zero based index of the column holding the Interpro-ID.
+	 */
+	public static final int INTERPRO_ID_COLUMN = 11;
+	/**
+	 * Line of a legacy raw Interpro-Result-File, the first group matches the
+	 * Gene Accession, the second the Interpro-ID.
+	 */
+	public static final Pattern LEGACY_LINE = Pattern.compile("(\\S+)\\s+.*\\s(IPR\\d{6})\\s.*");
+
+	private BufferedReader in;
+	private Matcher legacyLine = LEGACY_LINE.matcher("");
+	private String geneAccession;
+	private String interproId;
+
+	public InterproScanResultParser(Reader in) {
+		super();
+		this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+	}
+
+	public InterproScanResultParser(String pathToInterproResults) throws IOException {
+		this(new FileReader(pathToInterproResults));
+	}
+
+	/**
+	 * Advances to the next line assigning an Interpro-ID to a Gene-Accession.
+	 *
+	 * @return TRUE if there is such a line, FALSE at the end of the file.
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (parseLine(line))
+				return true;
+		}
+		geneAccession = null;
+		interproId = null;
+		return false;
+	}
+
+	/**
+	 * @param line
+	 * @return TRUE if and only if the argument line assigns an Interpro-ID to
+	 *         a Gene-Accession.
+	 */
+	protected boolean parseLine(String line) {
+		geneAccession = null;
+		interproId = null;
+		// Find the tabs before and after the Interpro-ID's column:
+		int firstTab = line.indexOf('\t');
+		int from = firstTab;
+		for (int column = 1; column < INTERPRO_ID_COLUMN && from >= 0; column++)
+			from = line.indexOf('\t', from + 1);
+		if (firstTab < 0) {
+			if (legacyLine.reset(line).matches()) {
+				geneAccession = legacyLine.group(1);
+				interproId = legacyLine.group(2);
+			}
+		} else if (from >= 0) {
+			int to = line.indexOf('\t', from + 1);
+			if (to < 0)
+				to = line.length();
+			String id = line.substring(from + 1, to).trim();
+			String acc = line.substring(0, firstTab).trim();
+			if (isInterproId(id) && acc.length() > 0) {
+				geneAccession = acc;
+				interproId = id;
+			}
+		}
+		return interproId != null;
+	}
+
+	/**
+	 * @param id
+	 * @return TRUE if and only if the argument is of the form IPR followed by
+	 *         six digits.
+	 */
+	public static boolean isInterproId(String id) {
+		if (id.length() != 9 || !id.startsWith("IPR"))
+			return false;
+		for (int i = 3; i < 9; i++) {
+			if (id.charAt(i) < '0' || id.charAt(i) > '9')
+				return false;
+		}
+		return true;
+	}
+
+	public String getGeneAccession() {
+		return geneAccession;
+	}
+
+	public String getInterproId() {
+		return interproId;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
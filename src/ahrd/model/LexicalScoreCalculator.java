@@ -25,8 +25,9 @@ public class LexicalScoreCalculator {
 	public double correctionFactor(BlastResult br) {
 		TokenScoreCalculator tsc = getProtein().getTokenScoreCalculator();
 		double noInformativeTokens = 0.0;
-		for (String token : br.getTokens()) {
-			if (tsc.isInformativeToken(token))
+		TokenSet tokens = br.getTokens();
+		for (int i = 0; i < tokens.size(); i++) {
+			if (tsc.isInformativeToken(tokens.getId(i)))
 				noInformativeTokens += 1.0;
 		}
 		return (new Double(br.getTokens().size()).doubleValue() / noInformativeTokens);
@@ -1,8 +1,9 @@
 package ahrd.model;
 
-import static ahrd.controller.Settings.DEFAULT_LINE_SEP;
 import static ahrd.controller.Settings.getSettings;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -26,6 +27,7 @@ public class Protein {
 	private LexicalScoreCalculator lexicalScoreCalculator;
 	private DescriptionScoreCalculator descriptionScoreCalculator;
 	private EvaluationScoreCalculator evaluationScoreCalculator;
+	private boolean deferScoreMeasurement = false;
 
 	public Protein(String accession, Integer sequenceLength) {
 		super();
@@ -69,26 +71,38 @@ public class Protein {
 
 	public static Protein constructFromFastaEntry(String fastaEntry)
 			throws MissingAccessionException {
-		String[] fasta_data = fastaEntry.split(DEFAULT_LINE_SEP);
-		String accession = fasta_data[0].split(" ")[0];
+		FastaReader fasta = new FastaReader(new StringReader(">" + fastaEntry),
+				getSettings().doOutputFasta());
+		try {
+			fasta.nextEntry();
+			return constructFromFastaEntry(fasta);
+		} catch (IOException e) {
+			// Reading from a String does not throw IOExceptions:
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Constructs a Protein from the current entry of the argument FastaReader.
+	 * 
+	 * @param fasta
+	 * @return Protein
+	 * @throws MissingAccessionException
+	 */
+	public static Protein constructFromFastaEntry(FastaReader fasta)
+			throws MissingAccessionException {
+		String accession = fasta.getHeader().trim().split(" ")[0];
 		if (accession == null || accession.equals("")) {
 			throw new MissingAccessionException(
-					"Missing protein-accession in:\n" + fastaEntry);
-		}
-		String[] sequence_parts = new String[fasta_data.length - 1];
-		System.arraycopy(fasta_data, 1, sequence_parts, 0,
-				fasta_data.length - 1);
-		String sequence = "";
-		for (String sequence_part : sequence_parts) {
-			sequence += sequence_part.trim();
+					"Missing protein-accession in:\n" + fasta.getHeader());
 		}
 		// Construct the new Protein, either storing its AA-sequence or just the
 		// sequence's length:
 		Protein p = null;
 		if (getSettings().doOutputFasta())
-			p = new Protein(accession, sequence);
+			p = new Protein(accession, fasta.getSequence());
 		else
-			p = new Protein(accession, sequence.length());
+			p = new Protein(accession, fasta.getSequenceLength());
 		return p;
 	}
 
@@ -100,14 +114,37 @@ public class Protein {
 	 */
 	public static Map<String, Protein> initializeProteins(
 			String fastaFileContent) throws MissingAccessionException {
+		try {
+			return initializeProteins(new FastaReader(new StringReader(
+					fastaFileContent), getSettings().doOutputFasta()));
+		} catch (IOException e) {
+			// Reading from a String does not throw IOExceptions:
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Construct Memory-Database of Proteins, reading the argument FASTA entry
+	 * by entry. The FastaReader is closed afterwards.
+	 * 
+	 * @param fasta
+	 * @return Map of accessions to Proteins
+	 * @throws IOException
+	 * @throws MissingAccessionException
+	 */
+	public static Map<String, Protein> initializeProteins(FastaReader fasta)
+			throws IOException, MissingAccessionException {
 		Map<String, Protein> proteins = new HashMap<String, Protein>();
-		List<String> fastaEntries = splitFasta(fastaFileContent);
-		for (String fastaEntry : fastaEntries) {
-			if (fastaEntry != null && !fastaEntry.trim().equals("")
-					&& !fastaEntry.equals("\n")) {
-				Protein prot = constructFromFastaEntry(fastaEntry);
+		try {
+			while (fasta.nextEntry()) {
+				if (fasta.getHeader().trim().equals("")
+						&& fasta.getSequenceLength() == 0)
+					continue;
+				Protein prot = constructFromFastaEntry(fasta);
 				proteins.put(prot.accession, prot);
 			}
+		} finally {
+			fasta.close();
 		}
 		return proteins;
 	}
@@ -132,20 +169,46 @@ public class Protein {
 	 * total scores later needed to calculate the Token-Scores. Also finds the
 	 * highest BitScore and Description-Line-Frequency. The argument BlastResult
 	 * is expected to have passed Blacklist and Filter and is expected to have
-	 * been token- and patternized.
+	 * been token- and patternized. If score measurement is deferred, see
+	 * <code>setDeferScoreMeasurement</code>, the BlastResult is only added.
+	 * BlastResults of different Blast-Databases may be added concurrently.
 	 * 
 	 * @param BlastResult
 	 */
-	public void addBlastResult(BlastResult br) {
+	public synchronized void addBlastResult(BlastResult br) {
 		String blastDb = br.getBlastDatabaseName();
 		if (!getBlastResults().containsKey(blastDb)) {
 			getBlastResults().put(blastDb, new ArrayList<BlastResult>());
 		}
 		getBlastResults().get(blastDb).add(br);
-		// Measure TokenScore related cumulative Scores:
-		getTokenScoreCalculator().measureCumulativeScores(br);
-		// Measure TokenScore related total Scores:
-		getTokenScoreCalculator().measureTotalScores(br);
+		if (!isDeferScoreMeasurement())
+			measureScores(br);
+	}
+
+	/**
+	 * Measures the scores of all BlastResults added while score measurement
+	 * was deferred and stops deferring it. The Blast-Databases are processed
+	 * in the argument order, so that the scores are summed up exactly as if
+	 * the databases' results had been added one database after the other.
+	 * 
+	 * @param blastDatabaseNames
+	 */
+	public synchronized void measureDeferredScores(Collection<String> blastDatabaseNames) {
+		if (isDeferScoreMeasurement()) {
+			setDeferScoreMeasurement(false);
+			for (String blastDb : blastDatabaseNames) {
+				List<BlastResult> brs = getBlastResults().get(blastDb);
+				if (brs != null) {
+					for (BlastResult br : brs)
+						measureScores(br);
+				}
+			}
+		}
+	}
+
+	private void measureScores(BlastResult br) {
+		// Measure TokenScore related cumulative and total Scores:
+		getTokenScoreCalculator().measureScores(br);
 		// Measure highest BitScore:
 		getDescriptionScoreCalculator().measureMaxBitScore(br.getBitScore());
 	}
@@ -266,4 +329,18 @@ public class Protein {
 	public void setSequence(String sequence) {
 		this.sequence = sequence;
 	}
+
+	public boolean isDeferScoreMeasurement() {
+		return deferScoreMeasurement;
+	}
+
+	/**
+	 * @param deferScoreMeasurement
+	 *            - If TRUE, BlastResults added to this Protein are not scored
+	 *            until <code>measureDeferredScores</code> is invoked.
+	 */
+	public void setDeferScoreMeasurement(boolean deferScoreMeasurement) {
+		this.deferScoreMeasurement = deferScoreMeasurement;
+	}
+
 }
@@ -0,0 +1,282 @@
+package ahrd.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact store of the best High Scoring Pairs (HSPs) a single query Protein
+ * has in a single sequence similarity search. Only the <code>capacity</code>
+ * HSPs with the lowest E-Values are retained. Multiple HSPs of the same
+ * subject (Hit) are merged, retaining the one with the best Bit-Score. All
+ * values are held in primitive arrays, so that no BlastResult needs to be
+ * instantiated for HSPs that are discarded anyway.
+ *
+ * Ties in E-Value are resolved deterministically: The HSP read first wins.
+ */
+public class QueryHighScoringPairs {
+
+	private static final int INITIAL_SIZE = 8;
+	private static final int FREE = -1;
+
+	private int capacity;
+	private int size = 0;
+	private int nextReadOrder = 0;
+	private String[] subjects;
+	private int[] subjectHashes;
+	private double[] eValues;
+	private double[] bitScores;
+	private int[] queryStarts;
+	private int[] queryEnds;
+	private int[] subjectStarts;
+	private int[] subjectEnds;
+	private int[] readOrders;
+	/**
+	 * Max-Heap of slot indices. The root holds the worst retained HSP, i.e. the
+	 * one with the highest E-Value or, if tied, the one read last.
+	 */
+	private int[] heap;
+	/**
+	 * Position of each slot in the above heap.
+	 */
+	private int[] heapPositions;
+	/**
+	 * Slot of the last added or updated HSP. Multiple HSPs of the same subject
+	 * usually follow each other in the search result table, so this is looked
+	 * up first.
+	 */
+	private int lastSlot = -1;
+	/**
+	 * Open addressing table of the slots, hashed by their subjects. Its length
+	 * is a power of two and at least twice the number of slots.
+	 */
+	private int[] index;
+
+	public QueryHighScoringPairs(int capacity) {
+		super();
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least one, but is: " + capacity);
+		this.capacity = capacity;
+		int initialSize = Math.min(INITIAL_SIZE, capacity);
+		this.subjects = new String[initialSize];
+		this.subjectHashes = new int[initialSize];
+		this.eValues = new double[initialSize];
+		this.bitScores = new double[initialSize];
+		this.queryStarts = new int[initialSize];
+		this.queryEnds = new int[initialSize];
+		this.subjectStarts = new int[initialSize];
+		this.subjectEnds = new int[initialSize];
+		this.readOrders = new int[initialSize];
+		this.heap = new int[initialSize];
+		this.heapPositions = new int[initialSize];
+		rebuildIndex();
+	}
+
+	/**
+	 * Offers a parsed HSP. If an HSP of the same subject is already retained,
+	 * the one of higher Bit-Score is kept. Otherwise the HSP is retained, if
+	 * there is still room or if it has a lower E-Value than the worst retained
+	 * HSP, which is then discarded.
+	 *
+	 * @return boolean - TRUE if and only if the argument HSP is retained.
+	 */
+	public boolean add(String subject, double eValue, int queryStart, int queryEnd, int subjectStart, int subjectEnd,
+			double bitScore) {
+		int readOrder = nextReadOrder++;
+		int hash = subject.hashCode();
+		int slot = findSlot(subject, hash);
+		if (slot >= 0) {
+			// Multiple HSP of an already retained subject:
+			if (bitScores[slot] < bitScore) {
+				set(slot, subject, hash, eValue, queryStart, queryEnd, subjectStart, subjectEnd, bitScore,
+						readOrders[slot]);
+				siftUp(heapPositions[slot]);
+				siftDown(heapPositions[slot]);
+				return true;
+			}
+			return false;
+		}
+		if (size < capacity) {
+			if (size == subjects.length)
+				grow(Math.min(2 * subjects.length, capacity));
+			slot = size;
+			set(slot, subject, hash, eValue, queryStart, queryEnd, subjectStart, subjectEnd, bitScore, readOrder);
+			index[indexPosition(subject, hash)] = slot;
+			heap[size] = slot;
+			heapPositions[slot] = size;
+			size++;
+			siftUp(size - 1);
+			return true;
+		}
+		// Replace the worst retained HSP, if the argument one is better:
+		slot = heap[0];
+		if (eValue < eValues[slot]) {
+			unindex(slot);
+			set(slot, subject, hash, eValue, queryStart, queryEnd, subjectStart, subjectEnd, bitScore, readOrder);
+			index[indexPosition(subject, hash)] = slot;
+			siftDown(0);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Instantiates a BlastResult for each retained HSP. The order is the
+	 * order in which the HSPs were first read.
+	 *
+	 * @param blastDatabaseName
+	 * @param protein
+	 *            - The query
+	 * @return List<BlastResult>
+	 */
+	public List<BlastResult> toBlastResults(String blastDatabaseName, Protein protein) {
+		Integer[] slots = new Integer[size];
+		for (int i = 0; i < size; i++)
+			slots[i] = i;
+		Arrays.sort(slots, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(readOrders[a], readOrders[b]);
+			}
+		});
+		List<BlastResult> brs = new ArrayList<BlastResult>(size);
+		for (int slot : slots) {
+			brs.add(new BlastResult(subjects[slot], eValues[slot], queryStarts[slot], queryEnds[slot],
+					subjectStarts[slot], subjectEnds[slot], bitScores[slot], blastDatabaseName, protein));
+		}
+		return brs;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	private int findSlot(String subject, int hash) {
+		if (lastSlot >= 0 && subjectHashes[lastSlot] == hash && subjects[lastSlot].equals(subject))
+			return lastSlot;
+		return index[indexPosition(subject, hash)];
+	}
+
+	private int home(int hash) {
+		int h = hash * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (index.length - 1);
+	}
+
+	/**
+	 * @return The position in the index holding the slot of the argument
+	 *         subject, or the free position it would be stored in.
+	 */
+	private int indexPosition(String subject, int hash) {
+		int mask = index.length - 1;
+		int pos = home(hash);
+		while (index[pos] != FREE
+				&& !(subjectHashes[index[pos]] == hash && subjects[index[pos]].equals(subject)))
+			pos = (pos + 1) & mask;
+		return pos;
+	}
+
+	/**
+	 * Removes the argument slot from the index, shifting back the entries
+	 * following it in its probe sequence.
+	 */
+	private void unindex(int slot) {
+		int mask = index.length - 1;
+		int free = indexPosition(subjects[slot], subjectHashes[slot]);
+		int pos = free;
+		while (true) {
+			pos = (pos + 1) & mask;
+			if (index[pos] == FREE)
+				break;
+			int home = home(subjectHashes[index[pos]]);
+			// Move the entry back, unless its home lies cyclically in
+			// (free, pos]:
+			boolean stays = (free <= pos) ? (free < home && home <= pos) : (free < home || home <= pos);
+			if (!stays) {
+				index[free] = index[pos];
+				free = pos;
+			}
+		}
+		index[free] = FREE;
+	}
+
+	private void rebuildIndex() {
+		index = new int[Integer.highestOneBit(subjects.length) << 2];
+		Arrays.fill(index, FREE);
+		for (int slot = 0; slot < size; slot++)
+			index[indexPosition(subjects[slot], subjectHashes[slot])] = slot;
+	}
+
+	private void set(int slot, String subject, int hash, double eValue, int queryStart, int queryEnd,
+			int subjectStart, int subjectEnd, double bitScore, int readOrder) {
+		subjects[slot] = subject;
+		subjectHashes[slot] = hash;
+		eValues[slot] = eValue;
+		bitScores[slot] = bitScore;
+		queryStarts[slot] = queryStart;
+		queryEnds[slot] = queryEnd;
+		subjectStarts[slot] = subjectStart;
+		subjectEnds[slot] = subjectEnd;
+		readOrders[slot] = readOrder;
+		lastSlot = slot;
+	}
+
+	/**
+	 * @return TRUE if and only if the HSP in slot a is worse than the one in
+	 *         slot b, i.e. has a higher E-Value or was read later.
+	 */
+	private boolean isWorse(int a, int b) {
+		return eValues[a] > eValues[b] || (eValues[a] == eValues[b] && readOrders[a] > readOrders[b]);
+	}
+
+	private void siftUp(int pos) {
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isWorse(heap[pos], heap[parent]))
+				break;
+			swap(pos, parent);
+			pos = parent;
+		}
+	}
+
+	private void siftDown(int pos) {
+		while (true) {
+			int left = 2 * pos + 1;
+			if (left >= size)
+				break;
+			int worst = left;
+			if (left + 1 < size && isWorse(heap[left + 1], heap[left]))
+				worst = left + 1;
+			if (!isWorse(heap[worst], heap[pos]))
+				break;
+			swap(pos, worst);
+			pos = worst;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int tmp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = tmp;
+		heapPositions[heap[i]] = i;
+		heapPositions[heap[j]] = j;
+	}
+
+	private void grow(int length) {
+		subjects = Arrays.copyOf(subjects, length);
+		subjectHashes = Arrays.copyOf(subjectHashes, length);
+		eValues = Arrays.copyOf(eValues, length);
+		bitScores = Arrays.copyOf(bitScores, length);
+		queryStarts = Arrays.copyOf(queryStarts, length);
+		queryEnds = Arrays.copyOf(queryEnds, length);
+		subjectStarts = Arrays.copyOf(subjectStarts, length);
+		subjectEnds = Arrays.copyOf(subjectEnds, length);
+		readOrders = Arrays.copyOf(readOrders, length);
+		heap = Arrays.copyOf(heap, length);
+		heapPositions = Arrays.copyOf(heapPositions, length);
+		rebuildIndex();
+	}
+}
@@ -0,0 +1,398 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import ahrd.controller.Utils;
+
+/**
+ * Reference annotation table of a Blast-Database. It is generated once per
+ * release of the Blast-Database from the FASTA file and holds everything AHRD
+ * needs to know about each reference protein, in tab separated columns:
+ * <ol>
+ * <li>accession</li>
+ * <li>sequence length</li>
+ * <li>1 if the original description passes the description blacklist, 0
+ * otherwise</li>
+ * <li>description, already passed through the description filter</li>
+ * <li>short accession</li>
+ * <li>comma separated Gene Ontology terms (optional)</li>
+ * </ol>
+ * The column names are preceded by '#'. The GO terms column is present if
+ * and only if the table was generated with reference GO annotations. Tabs and
+ * backslashes in descriptions are escaped. Reading this table, the sequence
+ * residues are never read and no regular expression has to be matched again.
+ *
+ * As the table holds the results of the Blacklist, Filter and regular
+ * expressions, it is only used as long as these and the FASTA file are
+ * unchanged, see <code>isUpToDate</code>. The respective signature precedes
+ * the column names, followed by the signature of the reference GO annotations,
+ * if present.
+ */
+public class ReferenceAnnotationTable {
+
+	public static final String HEADER = "#accession\tlength\tpasses_blacklist\tdescription\tshort_accession";
+	public static final String GO_TERMS_COLUMN = "\tgo_terms";
+	public static final String SIGNATURE = "#signature";
+	public static final String GO_SIGNATURE = "#go_signature";
+	private static final Pattern GO_TERMS_SEPARATOR = Pattern.compile(",");
+
+	/**
+	 * Reads the FASTA file of the argument Blast-Database and writes its
+	 * reference annotation table. Descriptions are passed through the
+	 * Blast-Database's blacklist and filter. If AHRD is set up to annotate Gene
+	 * Ontology terms, the reference GO annotations are added.
+	 *
+	 * @param blastDbName
+	 * @param pathToTable
+	 * @return The number of written table rows
+	 * @throws IOException
+	 */
+	public static long write(String blastDbName, String pathToTable) throws IOException {
+		ReferenceGoAnnotationStore goa = null;
+		if (getSettings().hasGeneOntologyAnnotations())
+			goa = ReferenceGoAnnotations.parseReferenceGoAnnotations(shortAccessions(blastDbName));
+		long rows = 0;
+		long unmatchedShortAccessions = 0;
+		BufferedReader fastaIn = null;
+		BufferedWriter tableOut = null;
+		try {
+			fastaIn = new BufferedReader(new FileReader(getSettings().getPathToBlastDatabase(blastDbName)));
+			tableOut = new BufferedWriter(new FileWriter(pathToTable));
+			tableOut.write(signature(blastDbName) + "\n");
+			if (goa != null)
+				tableOut.write(goSignature() + "\n");
+			tableOut.write(HEADER + (goa != null ? GO_TERMS_COLUMN : "") + "\n");
+			Pattern fastaHeaderRegex = getSettings().getFastaHeaderRegex(blastDbName);
+			Pattern shortAccessionRegex = getSettings().getShortAccessionRegex(blastDbName);
+			String[] accAndHrd = null;
+			int length = 0;
+			String str;
+			while ((str = fastaIn.readLine()) != null) {
+				if (str.startsWith(">")) {
+					if (accAndHrd != null) {
+						if (!writeRow(tableOut, blastDbName, accAndHrd, length, shortAccessionRegex, goa))
+							unmatchedShortAccessions++;
+						rows++;
+					}
+					accAndHrd = BlastResult.parseFastaHeader(str, fastaHeaderRegex);
+					length = 0;
+				} else if (accAndHrd != null) {
+					length += str.trim().length();
+				}
+			}
+			if (accAndHrd != null) {
+				if (!writeRow(tableOut, blastDbName, accAndHrd, length, shortAccessionRegex, goa))
+					unmatchedShortAccessions++;
+				rows++;
+			}
+		} finally {
+			if (fastaIn != null)
+				fastaIn.close();
+			if (tableOut != null)
+				tableOut.close();
+		}
+		if (unmatchedShortAccessions > 0)
+			System.err.println("WARNING: Regular Expression '" + getSettings().getShortAccessionRegex(blastDbName)
+					+ "' does NOT match the accessions of " + unmatchedShortAccessions + " of " + rows
+					+ " proteins in Blast-Database '" + blastDbName
+					+ "' - continuing with their original accessions. This might lead to unrecognized reference GO annotations!");
+		return rows;
+	}
+
+	/**
+	 * @param blastDbName
+	 * @return The short accessions of all proteins in the argument
+	 *         Blast-Database
+	 * @throws IOException
+	 */
+	protected static Set<String> shortAccessions(String blastDbName) throws IOException {
+		Set<String> shortAccs = new HashSet<String>();
+		BufferedReader fastaIn = null;
+		try {
+			fastaIn = new BufferedReader(new FileReader(getSettings().getPathToBlastDatabase(blastDbName)));
+			Pattern fastaHeaderRegex = getSettings().getFastaHeaderRegex(blastDbName);
+			Pattern shortAccessionRegex = getSettings().getShortAccessionRegex(blastDbName);
+			String str;
+			while ((str = fastaIn.readLine()) != null) {
+				if (str.startsWith(">")) {
+					String[] accAndHrd = BlastResult.parseFastaHeader(str, fastaHeaderRegex);
+					if (accAndHrd != null)
+						shortAccs.add(shortAccession(accAndHrd[0], shortAccessionRegex));
+				}
+			}
+		} finally {
+			if (fastaIn != null)
+				fastaIn.close();
+		}
+		return shortAccs;
+	}
+
+	/**
+	 * Unmatched accessions are kept as they are, like
+	 * <code>BlastResult.getShortAccession()</code> does, but without a warning
+	 * for each. <code>write</code> warns once for the whole Blast-Database.
+	 * 
+	 * @param accession
+	 * @param shortAccessionRegex
+	 * @return The short accession of the argument accession
+	 */
+	private static String shortAccession(String accession, Pattern shortAccessionRegex) {
+		String shortAccession = BlastResult.parseShortAccession(accession, shortAccessionRegex);
+		return (shortAccession != null) ? shortAccession : accession;
+	}
+
+	/**
+	 * @return TRUE if and only if the short accession regular expression
+	 *         matches the written protein's accession
+	 */
+	private static boolean writeRow(BufferedWriter tableOut, String blastDbName, String[] accAndHrd, int length,
+			Pattern shortAccessionRegex, ReferenceGoAnnotationStore goa) throws IOException {
+		BlastResult br = new BlastResult(blastDbName, accAndHrd[0], accAndHrd[1]);
+		String shortAccession = BlastResult.parseShortAccession(br.getAccession(), shortAccessionRegex);
+		br.setShortAccession((shortAccession != null) ? shortAccession : br.getAccession());
+		tableOut.write(br.getAccession());
+		tableOut.write('\t');
+		tableOut.write(Integer.toString(length));
+		tableOut.write('\t');
+		tableOut.write(br.passesBlacklist(br.getDescription()) ? '1' : '0');
+		tableOut.write('\t');
+		tableOut.write(escape(br.filter(br.getDescription())));
+		tableOut.write('\t');
+		tableOut.write(br.getShortAccession());
+		if (goa != null) {
+			tableOut.write('\t');
+			int id = goa.idOf(br.getShortAccession());
+			for (int i = 0; id >= 0 && i < goa.goTermCount(id); i++) {
+				if (i > 0)
+					tableOut.write(',');
+				tableOut.write(ReferenceGoAnnotationStore.decodeGoTerm(goa.goTerm(id, i)));
+			}
+		}
+		tableOut.write('\n');
+		return shortAccession != null;
+	}
+
+	/**
+	 * Sets the sequence length, short accession and filtered description of
+	 * all Hits in the argument blastResults found in the argument reference
+	 * annotation table. Subsequently the respective BlastResults are added to
+	 * their query Proteins, see
+	 * <code>BlastResult.generateHRDCandidateForProtein</code>.
+	 *
+	 * @param pathToTable
+	 * @param blastResults
+	 * @throws IOException
+	 */
+	public static void parse(String pathToTable, Map<String, List<BlastResult>> blastResults) throws IOException {
+		BufferedReader tableIn = null;
+		HitDescription.Cache hitDescriptions = null;
+		try {
+			tableIn = new BufferedReader(new FileReader(pathToTable));
+			String row;
+			while ((row = tableIn.readLine()) != null) {
+				int accEnd = row.indexOf('\t');
+				if (row.startsWith("#") || accEnd < 0)
+					continue;
+				List<BlastResult> hits = blastResults.get(row.substring(0, accEnd));
+				if (hits != null) {
+					String[] cols = row.split("\t", -1);
+					Integer length = Integer.valueOf(cols[1]);
+					boolean passesBlacklist = cols[2].equals("1");
+					if (hitDescriptions == null)
+						hitDescriptions = new HitDescription.Cache(hits.get(0).getBlastDatabaseName(), true);
+					HitDescription hitDescription = hitDescriptions.get(unescape(cols[3]), passesBlacklist);
+					for (BlastResult br : hits) {
+						br.setSubjectLength(length);
+						br.setShortAccession(cols[4]);
+						br.generateHRDCandidateForProtein(hitDescription);
+					}
+				}
+			}
+		} finally {
+			if (tableIn != null)
+				tableIn.close();
+		}
+	}
+
+	/**
+	 * @param blastDbName
+	 * @return The signature of the FASTA file of the argument Blast-Database,
+	 *         i.e. its length and modification time, and of the Blacklist,
+	 *         Filter and regular expressions applied to its headers.
+	 */
+	public static String signature(String blastDbName) {
+		File fasta = new File(getSettings().getPathToBlastDatabase(blastDbName));
+		return SIGNATURE + "\t" + fasta.length() + "\t" + fasta.lastModified() + "\t"
+				+ Utils.digest(getSettings().getBlastResultsBlackList(blastDbName),
+						getSettings().getBlastResultsFilter(blastDbName),
+						getSettings().getFastaHeaderRegex(blastDbName).pattern(),
+						getSettings().getShortAccessionRegex(blastDbName).pattern());
+	}
+
+	/**
+	 * @return The signature of the reference GOA file, i.e. its length and
+	 *         modification time, and of the regular expression parsing it.
+	 */
+	public static String goSignature() {
+		File goa = new File(getSettings().getPathToGeneOntologyResults());
+		return GO_SIGNATURE + "\t" + goa.length() + "\t" + goa.lastModified() + "\t"
+				+ Utils.digest(getSettings().getReferenceGoRegex().pattern());
+	}
+
+	/**
+	 * @param pathToTable
+	 * @return The lines preceding the rows of the argument reference
+	 *         annotation table, i.e. those starting with '#'.
+	 * @throws IOException
+	 */
+	private static List<String> header(String pathToTable) throws IOException {
+		List<String> header = new ArrayList<String>();
+		BufferedReader tableIn = null;
+		try {
+			tableIn = new BufferedReader(new FileReader(pathToTable));
+			String line;
+			while ((line = tableIn.readLine()) != null && line.startsWith("#"))
+				header.add(line);
+		} finally {
+			if (tableIn != null)
+				tableIn.close();
+		}
+		return header;
+	}
+
+	/**
+	 * @param pathToTable
+	 * @param blastDbName
+	 * @return TRUE if and only if the argument reference annotation table has
+	 *         been generated from the current FASTA file of the argument
+	 *         Blast-Database with the current Blacklist, Filter and regular
+	 *         expressions.
+	 * @throws IOException
+	 */
+	public static boolean isUpToDate(String pathToTable, String blastDbName) throws IOException {
+		return header(pathToTable).contains(signature(blastDbName));
+	}
+
+	/**
+	 * @param pathToTable
+	 * @return TRUE if and only if the argument reference annotation table has
+	 *         the Gene Ontology terms column.
+	 * @throws IOException
+	 */
+	public static boolean hasGoTerms(String pathToTable) throws IOException {
+		return header(pathToTable).contains(HEADER + GO_TERMS_COLUMN);
+	}
+
+	/**
+	 * @param pathToTable
+	 * @param blastDbName
+	 * @return TRUE if and only if the argument reference annotation table is
+	 *         up to date and has the Gene Ontology terms column, taken from the
+	 *         current reference GOA file with the current regular expression.
+	 * @throws IOException
+	 */
+	public static boolean hasUpToDateGoTerms(String pathToTable, String blastDbName) throws IOException {
+		List<String> header = header(pathToTable);
+		return header.contains(signature(blastDbName)) && header.contains(goSignature())
+				&& header.contains(HEADER + GO_TERMS_COLUMN);
+	}
+
+	/**
+	 * Escapes backslashes and tabs, so that a description can be written into
+	 * a single column.
+	 */
+	public static String escape(String description) {
+		if (description.indexOf('\\') < 0 && description.indexOf('\t') < 0)
+			return description;
+		return description.replace("\\", "\\\\").replace("\t", "\\t");
+	}
+
+	/**
+	 * Reverts <code>escape</code>.
+	 */
+	public static String unescape(String column) {
+		if (column.indexOf('\\') < 0)
+			return column;
+		StringBuilder description = new StringBuilder(column.length());
+		for (int i = 0; i < column.length(); i++) {
+			char c = column.charAt(i);
+			if (c == '\\' && i + 1 < column.length()) {
+				char escaped = column.charAt(++i);
+				description.append(escaped == 't' ? '\t' : escaped);
+			} else {
+				description.append(c);
+			}
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Reads the reference Gene Ontology term annotations from the argument
+	 * reference annotation table, instead of the much larger GOA file. Just
+	 * as <code>ReferenceGoAnnotations.parseReferenceGoAnnotations</code> only
+	 * the annotations of the argument short accessions are extracted.
+	 *
+	 * @param pathToTable
+	 * @param uniqueShortAccessions
+	 * @param goa
+	 *            - The found annotations are added to it.
+	 * @throws IOException
+	 */
+	public static void parseReferenceGoAnnotations(String pathToTable, Set<String> uniqueShortAccessions,
+			ReferenceGoAnnotationStore.Builder goa) throws IOException {
+		BufferedReader tableIn = null;
+		try {
+			tableIn = new BufferedReader(new FileReader(pathToTable));
+			String row;
+			while ((row = tableIn.readLine()) != null) {
+				if (row.startsWith("#"))
+					continue;
+				String[] cols = row.split("\t", -1);
+				if (cols.length > 5 && !cols[5].equals("") && uniqueShortAccessions.contains(cols[4])) {
+					for (String goTerm : GO_TERMS_SEPARATOR.split(cols[5]))
+						goa.add(cols[4], goTerm);
+				}
+			}
+		} finally {
+			if (tableIn != null)
+				tableIn.close();
+		}
+	}
+
+	/**
+	 * @param blastDbNames
+	 * @param uniqueShortAccessions
+	 * @return The reference GO annotations of the argument short accessions,
+	 *         read from the reference annotation tables of the argument
+	 *         Blast-Databases, or NULL if any of them has no such table with
+	 *         up to date GO terms.
+	 * @throws IOException
+	 */
+	public static ReferenceGoAnnotationStore parseReferenceGoAnnotations(Set<String> blastDbNames,
+			Set<String> uniqueShortAccessions) throws IOException {
+		for (String blastDbName : blastDbNames) {
+			String pathToTable = getSettings().getPathToReferenceAnnotationTable(blastDbName);
+			if (pathToTable == null || !new File(pathToTable).exists()
+					|| !hasUpToDateGoTerms(pathToTable, blastDbName))
+				return null;
+		}
+		ReferenceGoAnnotationStore.Builder goa = new ReferenceGoAnnotationStore.Builder();
+		for (String blastDbName : blastDbNames)
+			parseReferenceGoAnnotations(getSettings().getPathToReferenceAnnotationTable(blastDbName),
+					uniqueShortAccessions, goa);
+		return goa.build();
+	}
+}
@@ -30,19 +30,20 @@ public class ReferenceDescription {
 		if (getSettings().getReferencesDescriptionBlacklist() != null
 				&& !getSettings().getReferencesDescriptionBlacklist().isEmpty()) {
 			if (!DescriptionScoreCalculator.passesBlacklist(rd.getDescription(),
-					getSettings().getReferencesDescriptionBlacklist())) {
+					getSettings().getReferencesDescriptionBlacklistPatterns())) {
 				// Does NOT pass blacklist
 				rd.setDescription("");
 			} else if (getSettings().getReferencesDescriptionFilter() != null
 					&& !getSettings().getReferencesDescriptionFilter().isEmpty()) {
 				// Passes Blacklist AND is requested to be filtered:
 				rd.setDescription(DescriptionScoreCalculator.filter(rd.getDescription(),
-						getSettings().getReferencesDescriptionFilter()));
+						getSettings().getReferencesDescriptionFilterPatterns()));
 			}
 		}
 		// Tokenize, and if requested in Settings retain only those tokens that
 		// pass the Blacklist:
-		rd.setTokens(TokenScoreCalculator.tokenize(rd.getDescription(), getSettings().getReferencesTokenBlacklist()));
+		rd.setTokens(TokenScoreCalculator.tokenize(rd.getDescription(),
+				getSettings().getReferencesTokenBlacklistPatterns()));
 		return rd;
 	}
 
@@ -0,0 +1,318 @@
+package ahrd.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact read-only store of the reference Gene Ontology term annotations
+ * (GOA), mapping BlastResults' short accessions to their GO terms. Instead of
+ * a Map of HashSets of Strings, the short accessions are interned to
+ * consecutive integer IDs and each GO term is encoded as the integer of its
+ * numeric part, e.g. 'GO:0003824' as 3824. The GO terms of all short
+ * accessions are held in a single array, in which the terms of the short
+ * accession of ID <code>i</code> occupy the positions
+ * <code>offsets[i]</code> to <code>offsets[i + 1] - 1</code> in ascending
+ * order (compressed sparse rows). GO terms are returned in their canonical
+ * form of seven zero-padded digits, see <code>decodeGoTerm</code>.
+ */
+public class ReferenceGoAnnotationStore {
+
+	public static final String GO_TERM_PREFIX = "GO:";
+	public static final int GO_TERM_DIGITS = 7;
+
+	/**
+	 * Short accessions by their IDs.
+	 */
+	private String[] accessions;
+	/**
+	 * Open addressing hash table of the short accessions' IDs plus one, zero
+	 * for empty slots. Its length is a power of two.
+	 */
+	private int[] slots;
+	private int[] offsets;
+	private int[] goTerms;
+
+	/**
+	 * Stores the argument reference GO annotations.
+	 *
+	 * @param goa
+	 *            - BlastResult short-accessions mapped to Sets of GO terms.
+	 *            GO terms not of the form 'GO:' followed by digits are
+	 *            skipped, see <code>Builder.add</code>.
+	 */
+	public ReferenceGoAnnotationStore(Map<String, Set<String>> goa) {
+		this(builderOf(goa));
+	}
+
+	private static Builder builderOf(Map<String, Set<String>> goa) {
+		Builder builder = new Builder();
+		for (Map.Entry<String, Set<String>> goaOfAcc : goa.entrySet())
+			builder.addAll(goaOfAcc.getKey(), goaOfAcc.getValue());
+		return builder;
+	}
+
+	/**
+	 * Stores the reference GO annotations collected by the argument Builder.
+	 * The annotations are grouped by short accession with a counting sort,
+	 * then each accession's GO terms are sorted and duplicates removed.
+	 *
+	 * @param builder
+	 */
+	private ReferenceGoAnnotationStore(Builder builder) {
+		super();
+		int n = builder.accessions.size();
+		accessions = builder.accessions.toArray(new String[n]);
+		slots = new int[Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1];
+		for (int id = 0; id < n; id++) {
+			int slot = homeSlot(accessions[id]);
+			while (slots[slot] != 0)
+				slot = (slot + 1) & (slots.length - 1);
+			slots[slot] = id + 1;
+		}
+		offsets = new int[n + 1];
+		for (int i = 0; i < builder.size; i++)
+			offsets[builder.accessionIds[i] + 1]++;
+		for (int id = 0; id < n; id++)
+			offsets[id + 1] += offsets[id];
+		int[] grouped = new int[builder.size];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int i = 0; i < builder.size; i++)
+			grouped[next[builder.accessionIds[i]]++] = builder.goTerms[i];
+		// Sort and remove duplicates in place:
+		int pos = 0;
+		for (int id = 0; id < n; id++) {
+			int start = offsets[id];
+			int end = offsets[id + 1];
+			Arrays.sort(grouped, start, end);
+			offsets[id] = pos;
+			for (int i = start; i < end; i++) {
+				if (i == start || grouped[i] != grouped[i - 1])
+					grouped[pos++] = grouped[i];
+			}
+		}
+		offsets[n] = pos;
+		goTerms = (pos == grouped.length) ? grouped : Arrays.copyOf(grouped, pos);
+	}
+
+	private int homeSlot(String shortAccession) {
+		int hash = shortAccession.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (slots.length - 1);
+	}
+
+	/**
+	 * @param goTerm
+	 *            - e.g. 'GO:0003824'
+	 * @return The numeric part of the argument GO term, e.g. 3824
+	 * @throws IllegalArgumentException
+	 *             - If the argument is not of the form 'GO:' followed by digits
+	 */
+	public static int encodeGoTerm(String goTerm) {
+		if (!goTerm.startsWith(GO_TERM_PREFIX) || goTerm.length() == GO_TERM_PREFIX.length()
+				|| goTerm.length() > GO_TERM_PREFIX.length() + 9)
+			throw new IllegalArgumentException("'" + goTerm + "' is no Gene Ontology term.");
+		int code = 0;
+		for (int i = GO_TERM_PREFIX.length(); i < goTerm.length(); i++) {
+			char c = goTerm.charAt(i);
+			if (c < '0' || c > '9')
+				throw new IllegalArgumentException("'" + goTerm + "' is no Gene Ontology term.");
+			code = 10 * code + (c - '0');
+		}
+		return code;
+	}
+
+	/**
+	 * Only the numeric part of a GO term is stored, so GO terms are returned
+	 * normalised to their canonical form of at least seven digits, padded
+	 * with leading zeros. E.g. an annotation 'GO:3824' is returned as
+	 * 'GO:0003824', as are all other spellings of the same number.
+	 *
+	 * @param code
+	 *            - e.g. 3824
+	 * @return The GO term of the argument numeric part, e.g. 'GO:0003824'
+	 */
+	public static String decodeGoTerm(int code) {
+		String digits = Integer.toString(code);
+		StringBuilder goTerm = new StringBuilder(GO_TERM_PREFIX.length() + GO_TERM_DIGITS);
+		goTerm.append(GO_TERM_PREFIX);
+		for (int i = digits.length(); i < GO_TERM_DIGITS; i++)
+			goTerm.append('0');
+		return goTerm.append(digits).toString();
+	}
+
+	/**
+	 * @param shortAccession
+	 * @return The ID of the argument short accession, or -1 if it has no GO
+	 *         terms.
+	 */
+	public int idOf(String shortAccession) {
+		if (shortAccession == null)
+			return -1;
+		int slot = homeSlot(shortAccession);
+		while (slots[slot] != 0) {
+			if (accessions[slots[slot] - 1].equals(shortAccession))
+				return slots[slot] - 1;
+			slot = (slot + 1) & (slots.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @param shortAccession
+	 * @return TRUE if and only if the argument short accession has GO terms.
+	 */
+	public boolean contains(String shortAccession) {
+		return idOf(shortAccession) >= 0;
+	}
+
+	/**
+	 * @param id
+	 * @return The number of GO terms of the short accession of the argument ID
+	 */
+	public int goTermCount(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	/**
+	 * @param id
+	 * @param i
+	 * @return The encoded i-th GO term of the short accession of the argument
+	 *         ID. See <code>decodeGoTerm</code>.
+	 */
+	public int goTerm(int id, int i) {
+		return goTerms[offsets[id] + i];
+	}
+
+	/**
+	 * @param shortAccession
+	 * @return A new Set of the GO terms of the argument short accession, or
+	 *         NULL if it has none.
+	 */
+	public Set<String> get(String shortAccession) {
+		int id = idOf(shortAccession);
+		if (id < 0)
+			return null;
+		Set<String> goTermsOfAcc = new HashSet<String>();
+		for (int i = offsets[id]; i < offsets[id + 1]; i++)
+			goTermsOfAcc.add(decodeGoTerm(goTerms[i]));
+		return goTermsOfAcc;
+	}
+
+	/**
+	 * @return A new Map of all short accessions to Sets of their GO terms
+	 */
+	public Map<String, Set<String>> toMap() {
+		Map<String, Set<String>> goa = new HashMap<String, Set<String>>();
+		for (String shortAccession : accessions)
+			goa.put(shortAccession, get(shortAccession));
+		return goa;
+	}
+
+	/**
+	 * @return The number of short accessions with GO terms
+	 */
+	public int size() {
+		return accessions.length;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Collects reference GO annotations one at a time, e.g. while scanning the
+	 * GOA file, without holding a Set of GO term Strings per short accession.
+	 * Each annotation takes two ints until <code>build()</code> is invoked.
+	 */
+	public static class Builder {
+
+		private List<String> accessions = new ArrayList<String>();
+		private Map<String, Integer> ids = new HashMap<String, Integer>();
+		private int[] accessionIds = new int[1024];
+		private int[] goTerms = new int[1024];
+		private int size;
+		private int skippedGoTerms;
+		private String firstSkippedGoTerm;
+
+		/**
+		 * @param shortAccession
+		 * @return The ID of the argument short accession, assigned on first
+		 *         use.
+		 */
+		private int id(String shortAccession) {
+			Integer id = ids.get(shortAccession);
+			if (id == null) {
+				id = accessions.size();
+				ids.put(shortAccession, id);
+				accessions.add(shortAccession);
+			}
+			return id;
+		}
+
+		/**
+		 * Adds the argument GO term to the annotations of the argument short
+		 * accession. A GO term not of the form 'GO:' followed by digits is
+		 * skipped, and a single warning about all skipped GO terms is printed
+		 * by <code>build()</code>.
+		 *
+		 * @param shortAccession
+		 * @param goTerm
+		 *            - e.g. 'GO:0003824'
+		 * @return This Builder
+		 */
+		public Builder add(String shortAccession, String goTerm) {
+			int code;
+			try {
+				code = encodeGoTerm(goTerm);
+			} catch (IllegalArgumentException e) {
+				if (skippedGoTerms++ == 0)
+					firstSkippedGoTerm = goTerm;
+				return this;
+			}
+			int id = id(shortAccession);
+			if (size == goTerms.length) {
+				accessionIds = Arrays.copyOf(accessionIds, 2 * size);
+				goTerms = Arrays.copyOf(goTerms, 2 * size);
+			}
+			accessionIds[size] = id;
+			goTerms[size++] = code;
+			return this;
+		}
+
+		/**
+		 * Adds the argument GO terms to the annotations of the argument short
+		 * accession. The short accession is stored even if the argument Set
+		 * is empty.
+		 *
+		 * @param shortAccession
+		 * @param goTermsOfAcc
+		 * @return This Builder
+		 */
+		public Builder addAll(String shortAccession, Set<String> goTermsOfAcc) {
+			id(shortAccession);
+			for (String goTerm : goTermsOfAcc)
+				add(shortAccession, goTerm);
+			return this;
+		}
+
+		/**
+		 * @return The number of annotations skipped, because their GO terms
+		 *         were not of the form 'GO:' followed by digits.
+		 */
+		public int getSkippedGoTerms() {
+			return skippedGoTerms;
+		}
+
+		public ReferenceGoAnnotationStore build() {
+			if (skippedGoTerms > 0)
+				System.err.println("WARNING: Skipped " + skippedGoTerms
+						+ " reference Gene Ontology annotation(s) of malformed terms, e.g. '"
+						+ firstSkippedGoTerm + "'.");
+			return new ReferenceGoAnnotationStore(this);
+		}
+	}
+}
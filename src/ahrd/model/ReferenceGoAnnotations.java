@@ -5,9 +5,6 @@ import static ahrd.controller.Settings.getSettings;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,18 +20,29 @@ public class ReferenceGoAnnotations {
 	 * annotate the query proteins with GO terms. The important restriction is,
 	 * that only those reference GO annotations will be extracted that match one
 	 * of the BlastResults found in the respective Blast searches
-	 * <code>uniqueShortAccessions</code>.
+	 * <code>uniqueShortAccessions</code>. If an index of the GOA is set and
+	 * matches the GOA file, these annotations are looked up in the index
+	 * instead of scanning the whole file.
 	 * 
 	 * @param Set
 	 *            <String> uniqueShortAccessions - The unique short accessions
 	 *            of BlastResults found in the respective Blast searches
-	 * @return Map<String, Set<String>> - BlastResult short-accessions mapped to
-	 *         Sets of GO terms
+	 * @return ReferenceGoAnnotationStore - BlastResult short-accessions mapped
+	 *         to Sets of GO terms
 	 * @throws IOException
 	 */
-	public static Map<String, Set<String>> parseReferenceGoAnnotations(
+	public static ReferenceGoAnnotationStore parseReferenceGoAnnotations(
 			Set<String> uniqueShortAccessions) throws IOException {
-		Map<String, Set<String>> goa = new HashMap<String, Set<String>>();
+		ReferenceGoAnnotationStore.Builder goa = new ReferenceGoAnnotationStore.Builder();
+		ReferenceGoAnnotationsIndex index = openReferenceGoAnnotationsIndex();
+		if (index != null) {
+			try {
+				lookUpReferenceGoAnnotations(index, uniqueShortAccessions, goa);
+				return goa.build();
+			} finally {
+				index.close();
+			}
+		}
 		BufferedReader goaIn = null;
 		try {
 			goaIn = new BufferedReader(new FileReader(getSettings()
@@ -47,30 +55,58 @@ public class ReferenceGoAnnotations {
 					shortAcc = m.group(SHORT_ACCESSION_GROUP_NAME);
 					if (uniqueShortAccessions.contains(shortAcc)) {
 						goTerm = m.group(GO_TERM_GROUP_NAME);
-						addGoAnnotation(goa, shortAcc, goTerm);
+						goa.add(shortAcc, goTerm);
 					}
 				}
 			}
 		} finally {
 			goaIn.close();
 		}
-		return goa;
+		return goa.build();
+	}
+
+	/**
+	 * Opens the index of the reference GOA, if one is set. If the index does
+	 * not exist, can not be read, or has been built from a GOA file of
+	 * different length or modification time or with a different
+	 * reference_go_regex, a warning is printed and NULL is returned, so that
+	 * the GOA file is scanned instead.
+	 * 
+	 * @return ReferenceGoAnnotationsIndex or NULL
+	 */
+	public static ReferenceGoAnnotationsIndex openReferenceGoAnnotationsIndex() {
+		String pathToIndex = getSettings().getPathToGeneOntologyIndex();
+		if (pathToIndex == null || pathToIndex.equals(""))
+			return null;
+		ReferenceGoAnnotationsIndex index = null;
+		try {
+			index = new ReferenceGoAnnotationsIndex(pathToIndex);
+			if (index.isUpToDate(getSettings().getPathToGeneOntologyResults(), getSettings().getReferenceGoRegex()))
+				return index;
+			index.close();
+			System.err.println("WARNING: The index '" + pathToIndex
+					+ "' does not match the reference GO annotations. Please build it again. Scanning them instead.");
+		} catch (IOException e) {
+			System.err.println("WARNING: Could not open the index '" + pathToIndex
+					+ "' of the reference GO annotations: " + e.getMessage() + " Scanning them instead.");
+		}
+		return null;
 	}
 
 	/**
-	 * Adds the Gene Ontology term <code>goTerm</code> to the Set of the
-	 * BlastResult's GO term annotations. In this, the BlastResult is identified
-	 * by its short accession <code>brShortAccession</code>.
+	 * Looks up the GO terms of the argument short accessions in the argument
+	 * index and adds them to the argument Builder.
 	 * 
+	 * @param index
+	 * @param uniqueShortAccessions
 	 * @param goa
-	 * @param brShortAccession
-	 * @param goTerm
 	 */
-	protected static void addGoAnnotation(Map<String, Set<String>> goa,
-			String brShortAccession, String goTerm) {
-		if (!goa.containsKey(brShortAccession)) {
-			goa.put(brShortAccession, new HashSet<String>());
+	public static void lookUpReferenceGoAnnotations(ReferenceGoAnnotationsIndex index,
+			Set<String> uniqueShortAccessions, ReferenceGoAnnotationStore.Builder goa) {
+		for (String shortAcc : uniqueShortAccessions) {
+			Set<String> goTerms = index.lookup(shortAcc);
+			if (goTerms != null)
+				goa.addAll(shortAcc, goTerms);
 		}
-		goa.get(brShortAccession).add(goTerm);
 	}
 }
@@ -0,0 +1,286 @@
+package ahrd.model;
+
+import static ahrd.model.BlastDatabaseIndex.UTF_8;
+import static ahrd.model.BlastDatabaseIndex.getBytes;
+import static ahrd.model.BlastDatabaseIndex.getInt;
+import static ahrd.model.BlastDatabaseIndex.getLong;
+import static ahrd.model.BlastDatabaseIndex.homeSlot;
+import static ahrd.model.BlastDatabaseIndex.map;
+import static ahrd.model.BlastDatabaseIndex.putLong;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ahrd.controller.Utils;
+
+/**
+ * Persistent index of the reference Gene Ontology annotations (GOA), mapping
+ * short accessions to their GO terms. The index is built once per GOA file
+ * with <code>ahrd.controller.BlastDatabaseIndexer</code> and then opened
+ * memory-mapped, so that a run only reads the annotations of the Hits it
+ * actually has, instead of scanning the whole GOA file.
+ *
+ * The index file consists of a header, a hash table of record positions using
+ * open addressing, and the records themselves:
+ * <ul>
+ * <li>header: magic number (int), version (int), length (long) and
+ * modification time (long) of the indexed GOA file, number of slots in the
+ * hash table (long), SHA-256 digest of the regular expression used to read the
+ * GOA file (64 hexadecimal ASCII characters)</li>
+ * <li>hash table: one position (long) per slot, zero for empty slots</li>
+ * <li>record: accession length (int), accession (UTF-8), number of GO terms
+ * (int), per GO term its length (int) and the term (UTF-8)</li>
+ * </ul>
+ * Consecutive annotations of the same accession are written into a single
+ * record. If an accession's annotations are scattered over the GOA file, it
+ * has several records, all of which are united on lookup. All numbers are
+ * big-endian.
+ */
+public class ReferenceGoAnnotationsIndex implements Closeable {
+
+	public static final int MAGIC = 0x4148524F;
+	public static final int VERSION = 2;
+	private static final int DIGEST_SIZE = 64;
+	private static final int HEADER_SIZE = 32 + DIGEST_SIZE;
+
+	private RandomAccessFile file;
+	private MappedByteBuffer[] segments;
+	private long goaLength;
+	private long goaLastModified;
+	private long slotCount;
+	private String referenceGoRegexDigest;
+
+	/**
+	 * Opens the argument index file memory-mapped and read-only.
+	 *
+	 * @param pathToIndex
+	 * @throws IOException
+	 *             - If the file is not a reference GO annotation index of the
+	 *             current version
+	 */
+	public ReferenceGoAnnotationsIndex(String pathToIndex) throws IOException {
+		super();
+		this.file = new RandomAccessFile(pathToIndex, "r");
+		try {
+			this.segments = map(file.getChannel(), FileChannel.MapMode.READ_ONLY, 0, file.length());
+			if (file.length() < HEADER_SIZE || getInt(segments, 0) != MAGIC)
+				throw new IOException("'" + pathToIndex + "' is no reference GO annotation index.");
+			if (getInt(segments, 4) != VERSION)
+				throw new IOException("Reference GO annotation index '" + pathToIndex + "' has version "
+						+ getInt(segments, 4) + ", but version " + VERSION + " is required. Please build it again.");
+			this.goaLength = getLong(segments, 8);
+			this.goaLastModified = getLong(segments, 16);
+			this.slotCount = getLong(segments, 24);
+			this.referenceGoRegexDigest = new String(getBytes(segments, 32, DIGEST_SIZE), UTF_8);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the argument reference GO annotation file and writes its index.
+	 * Short accessions and GO terms are extracted with the argument regular
+	 * expression, as <code>ReferenceGoAnnotations</code> does.
+	 *
+	 * @param pathToGoa
+	 * @param referenceGoRegex
+	 * @param pathToIndex
+	 * @return The number of indexed annotations
+	 * @throws IOException
+	 */
+	public static long build(String pathToGoa, Pattern referenceGoRegex, String pathToIndex) throws IOException {
+		// First pass: count the runs of consecutive annotations of the same
+		// accession to size the hash table.
+		long runs = 0;
+		BufferedReader goaIn = new BufferedReader(new FileReader(pathToGoa));
+		try {
+			Matcher m = referenceGoRegex.matcher("");
+			String line, lastAcc = null;
+			while ((line = goaIn.readLine()) != null) {
+				if (m.reset(line).find()) {
+					String shortAcc = m.group(ReferenceGoAnnotations.SHORT_ACCESSION_GROUP_NAME);
+					if (!shortAcc.equals(lastAcc))
+						runs++;
+					lastAcc = shortAcc;
+				}
+			}
+		} finally {
+			goaIn.close();
+		}
+		long slotCount = Math.max(1, 2 * runs);
+		long recordsStart = HEADER_SIZE + 8 * slotCount;
+		long indexed = 0;
+
+		// Second pass: write one record per run and fill in the hash table.
+		RandomAccessFile out = new RandomAccessFile(pathToIndex, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			MappedByteBuffer[] table = map(channel, FileChannel.MapMode.READ_WRITE, 0, recordsStart);
+			putLong(table, 0, ((long) MAGIC << 32) | VERSION);
+			putLong(table, 8, new File(pathToGoa).length());
+			putLong(table, 16, new File(pathToGoa).lastModified());
+			putLong(table, 24, slotCount);
+			byte[] regexDigest = digest(referenceGoRegex).getBytes(UTF_8);
+			for (int i = 0; i < DIGEST_SIZE; i++)
+				table[0].put(32 + i, regexDigest[i]);
+			channel.position(recordsStart);
+			DataOutputStream records = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			long position = recordsStart;
+			goaIn = new BufferedReader(new FileReader(pathToGoa));
+			try {
+				Matcher m = referenceGoRegex.matcher("");
+				String runAcc = null;
+				Set<String> runTerms = new LinkedHashSet<String>();
+				String line = goaIn.readLine();
+				while (line != null || runAcc != null) {
+					String shortAcc = null;
+					if (line != null && m.reset(line).find())
+						shortAcc = m.group(ReferenceGoAnnotations.SHORT_ACCESSION_GROUP_NAME);
+					if (runAcc != null && (line == null || (shortAcc != null && !shortAcc.equals(runAcc)))) {
+						position += writeRecord(records, table, slotCount, position, runAcc, runTerms);
+						runAcc = null;
+						runTerms.clear();
+					}
+					if (shortAcc != null) {
+						runAcc = shortAcc;
+						if (runTerms.add(m.group(ReferenceGoAnnotations.GO_TERM_GROUP_NAME)))
+							indexed++;
+					}
+					if (line != null)
+						line = goaIn.readLine();
+				}
+			} finally {
+				goaIn.close();
+			}
+			records.flush();
+			for (MappedByteBuffer segment : table)
+				segment.force();
+		} finally {
+			out.close();
+		}
+		return indexed;
+	}
+
+	/**
+	 * Writes the argument run of annotations as a record at the argument
+	 * position and stores the position in the hash table.
+	 *
+	 * @return The size of the written record
+	 */
+	private static long writeRecord(DataOutputStream records, MappedByteBuffer[] table, long slotCount,
+			long position, String shortAcc, Set<String> goTerms) throws IOException {
+		byte[] acc = shortAcc.getBytes(UTF_8);
+		records.writeInt(acc.length);
+		records.write(acc);
+		records.writeInt(goTerms.size());
+		long size = 8 + acc.length;
+		for (String goTerm : goTerms) {
+			byte[] term = goTerm.getBytes(UTF_8);
+			records.writeInt(term.length);
+			records.write(term);
+			size += 4 + term.length;
+		}
+		long slot = homeSlot(shortAcc, slotCount);
+		while (getLong(table, HEADER_SIZE + 8 * slot) != 0)
+			slot = (slot + 1) % slotCount;
+		putLong(table, HEADER_SIZE + 8 * slot, position);
+		return size;
+	}
+
+	/**
+	 * @param shortAccession
+	 * @return The GO terms annotated to the argument short accession, or NULL
+	 *         if it has none.
+	 */
+	public Set<String> lookup(String shortAccession) {
+		byte[] acc = shortAccession.getBytes(UTF_8);
+		Set<String> goTerms = null;
+		long slot = homeSlot(shortAccession, slotCount);
+		long record;
+		while ((record = getLong(segments, HEADER_SIZE + 8 * slot)) != 0) {
+			if (getInt(segments, record) == acc.length
+					&& Arrays.equals(getBytes(segments, record + 4, acc.length), acc)) {
+				if (goTerms == null)
+					goTerms = new HashSet<String>();
+				long pos = record + 4 + acc.length;
+				int terms = getInt(segments, pos);
+				pos += 4;
+				for (int i = 0; i < terms; i++) {
+					int length = getInt(segments, pos);
+					goTerms.add(new String(getBytes(segments, pos + 4, length), UTF_8));
+					pos += 4 + length;
+				}
+			}
+			slot = (slot + 1) % slotCount;
+		}
+		return goTerms;
+	}
+
+	/**
+	 * @param referenceGoRegex
+	 * @return The digest of the argument regular expression, as stored in the
+	 *         header of an index built with it.
+	 */
+	private static String digest(Pattern referenceGoRegex) {
+		return Utils.digest(referenceGoRegex.pattern());
+	}
+
+	/**
+	 * @param pathToGoa
+	 * @param referenceGoRegex
+	 * @return TRUE if and only if this index has been built from the argument
+	 *         GOA file in its current state, i.e. of the same length and
+	 *         modification time, and with the argument regular expression.
+	 */
+	public boolean isUpToDate(String pathToGoa, Pattern referenceGoRegex) {
+		File goa = new File(pathToGoa);
+		return getGoaLength() == goa.length() && getGoaLastModified() == goa.lastModified()
+				&& getReferenceGoRegexDigest().equals(digest(referenceGoRegex));
+	}
+
+	/**
+	 * @return The length of the GOA file this index has been built from. Used
+	 *         to recognize outdated indices.
+	 */
+	public long getGoaLength() {
+		return goaLength;
+	}
+
+	/**
+	 * @return The modification time of the GOA file this index has been built
+	 *         from. Used to recognize outdated indices.
+	 */
+	public long getGoaLastModified() {
+		return goaLastModified;
+	}
+
+	/**
+	 * @return The digest of the regular expression this index has been built
+	 *         with. Used to recognize outdated indices.
+	 */
+	public String getReferenceGoRegexDigest() {
+		return referenceGoRegexDigest;
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,123 @@
+package ahrd.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The BlastResults of a single Hit (subject), at most one per query Protein.
+ * Besides the list itself, the positions of the BlastResults are indexed by
+ * their query Proteins, so that the BlastResult of a given query is found in
+ * constant time, see <code>indexOf(Protein)</code>. As most Hits are found for
+ * only a few queries, the index is built only once a list has grown beyond
+ * <code>LINEAR_SCAN_LIMIT</code> elements. It is an open addressing table of
+ * primitive ints.
+ */
+public class SameHitBlastResults extends AbstractList<BlastResult> implements RandomAccess {
+
+	/**
+	 * Lists of up to this size are scanned instead of indexed.
+	 */
+	public static final int LINEAR_SCAN_LIMIT = 8;
+	private static final int FREE = -1;
+
+	private BlastResult[] elements = new BlastResult[2];
+	private int size = 0;
+	/**
+	 * Positions of the elements, hashed by the identities of their query
+	 * Proteins. NULL as long as the list is short or after an element has been
+	 * removed.
+	 */
+	private int[] index;
+
+	public SameHitBlastResults() {
+		super();
+	}
+
+	/**
+	 * @param query
+	 * @return The position of the BlastResult of the argument query Protein,
+	 *         or -1 if there is none.
+	 */
+	public int indexOf(Protein query) {
+		if (size <= LINEAR_SCAN_LIMIT) {
+			for (int i = 0; i < size; i++) {
+				if (elements[i].getProtein() == query)
+					return i;
+			}
+			return -1;
+		}
+		if (index == null)
+			rebuildIndex();
+		int slot = slot(query);
+		return index[slot];
+	}
+
+	@Override
+	public BlastResult get(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		return elements[i];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean add(BlastResult br) {
+		if (size == elements.length)
+			elements = Arrays.copyOf(elements, 2 * size);
+		elements[size++] = br;
+		modCount++;
+		if (index != null) {
+			if (size * 2 > index.length)
+				index = null;
+			else
+				index[slot(br.getProtein())] = size - 1;
+		}
+		return true;
+	}
+
+	@Override
+	public BlastResult set(int i, BlastResult br) {
+		BlastResult former = get(i);
+		elements[i] = br;
+		if (index != null && former.getProtein() != br.getProtein())
+			index = null;
+		return former;
+	}
+
+	@Override
+	public BlastResult remove(int i) {
+		BlastResult former = get(i);
+		System.arraycopy(elements, i + 1, elements, i, size - i - 1);
+		elements[--size] = null;
+		modCount++;
+		index = null;
+		return former;
+	}
+
+	private void rebuildIndex() {
+		int capacity = Integer.highestOneBit(Math.max(size, 1)) << 2;
+		index = new int[capacity];
+		Arrays.fill(index, FREE);
+		for (int i = 0; i < size; i++)
+			index[slot(elements[i].getProtein())] = i;
+	}
+
+	/**
+	 * @param query
+	 * @return The slot of the index holding the position of the argument
+	 *         query's BlastResult, or the free slot it would be stored in.
+	 */
+	private int slot(Protein query) {
+		int mask = index.length - 1;
+		int hash = System.identityHashCode(query) * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (index[slot] != FREE && elements[index[slot]].getProtein() != query)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+}
@@ -1,5 +1,154 @@
 package ahrd.model;
 
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.model.BlastResult.validateDouble;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ahrd.exception.MissingProteinException;
+
+/**
+ * Streaming parser of tabular sequence similarity search results. In contrast
+ * to <code>BlastResult.parseBlastResults</code> no BlastResult is instantiated
+ * while reading the table. Instead each query's High Scoring Pairs (HSPs) are
+ * held in a compact QueryHighScoringPairs store, that retains only the
+ * <code>maxHspsPerQuery</code> HSPs of lowest E-Values. Only after the whole
+ * table has been read, BlastResults are generated for the retained HSPs, so
+ * that only the subject accessions actually needed are looked up in the
+ * respective protein database in FASTA format.
+ * 
+ * Note, that the best HSPs are selected <em>before</em> the subjects'
+ * descriptions are passed through blacklist and filter. So if some of the
+ * retained Hits' descriptions are blacklisted, fewer candidates remain than
+ * in the default mode.
+ */
 public class SequenceSimilarityTabularSearchResultParser {
 
+	private String blastDatabaseName;
+	private int maxHspsPerQuery;
+	private Map<String, QueryHighScoringPairs> queryHsps = new HashMap<String, QueryHighScoringPairs>();
+
+	public SequenceSimilarityTabularSearchResultParser(String blastDatabaseName, int maxHspsPerQuery) {
+		super();
+		this.blastDatabaseName = blastDatabaseName;
+		this.maxHspsPerQuery = maxHspsPerQuery;
+	}
+
+	/**
+	 * Streaming counterpart of <code>BlastResult.readBlastResults</code>:
+	 * <ul>
+	 * <li>Parse tabular Sequence Similarity Search Results retaining only the
+	 * best HSPs of each query</li>
+	 * <li>Extract Human Readable Descriptions (HRDs) and Sequence Lengths from
+	 * Protein Database in FASTA format</li>
+	 * </ul>
+	 * 
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @param uniqueShortAccessions
+	 *            - Used only if AHRD is requested to generate Gene Ontology
+	 *            term annotations
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 */
+	public static void readBlastResults(Map<String, Protein> proteinDb, String blastDbName,
+			Set<String> uniqueShortAccessions) throws MissingProteinException, IOException {
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				blastDbName, BlastResult.MAX_BLAST_RESULTS_PER_DATABASE);
+		parser.parse(proteinDb);
+		BlastResult.parseBlastDatabase(proteinDb, blastDbName, parser.blastResults(proteinDb, uniqueShortAccessions));
+	}
+
+	/**
+	 * Reads the tabular search result line by line and offers each HSP to the
+	 * respective query's store.
+	 * 
+	 * @param proteinDb
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 */
+	public void parse(Map<String, Protein> proteinDb) throws MissingProteinException, IOException {
+		BufferedReader tableIn = null;
+		try {
+			tableIn = new BufferedReader(new FileReader(getSettings().getPathToBlastResults(getBlastDatabaseName())));
+			String str;
+			while ((str = tableIn.readLine()) != null) {
+				// Only evaluate current line, either if there is no
+				// comment-line-regex given, or if it is given AND it does not
+				// match:
+				if (getSettings().getSeqSimSearchTableCommentLineRegex() == null
+						|| !getSettings().getSeqSimSearchTableCommentLineRegex().matcher(str).matches()) {
+					String[] brFields = str.split(getSettings().getSeqSimSearchTableSep());
+					String queryAccession = brFields[getSettings().getSeqSimSearchTableQueryCol()];
+					QueryHighScoringPairs hsps = getQueryHsps().get(queryAccession);
+					if (hsps == null) {
+						if (!proteinDb.containsKey(queryAccession)) {
+							throw new MissingProteinException(
+									"Could not find Protein for Accession '" + queryAccession + "' in Protein Database.");
+						}
+						hsps = new QueryHighScoringPairs(getMaxHspsPerQuery());
+						getQueryHsps().put(queryAccession, hsps);
+					}
+					hsps.add(brFields[getSettings().getSeqSimSearchTableSubjectCol()],
+							Double.parseDouble(validateDouble(brFields[getSettings().getSeqSimSearchTableEValueCol()])),
+							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableQueryStartCol()]),
+							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableQueryEndCol()]),
+							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableSubjectStartCol()]),
+							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableSubjectEndCol()]),
+							Double.parseDouble(brFields[getSettings().getSeqSimSearchTableBitScoreCol()]));
+				}
+			}
+		} finally {
+			if (tableIn != null)
+				tableIn.close();
+		}
+	}
+
+	/**
+	 * Instantiates the BlastResults of all retained HSPs and groups them by
+	 * their Hit-Accessions, as expected by
+	 * <code>BlastResult.parseBlastDatabase</code>. The compact stores are
+	 * released while doing so.
+	 * 
+	 * @param proteinDb
+	 * @param uniqueShortAccessions
+	 *            - Used only if AHRD is requested to generate Gene Ontology
+	 *            term annotations
+	 * @return Map<String,List<BlastResult>> Set of Hit-Accessions (Key) to the
+	 *         full BlastResult(s) (Value)
+	 */
+	public Map<String, List<BlastResult>> blastResults(Map<String, Protein> proteinDb,
+			Set<String> uniqueShortAccessions) {
+		Map<String, List<BlastResult>> brs = new HashMap<String, List<BlastResult>>();
+		for (Map.Entry<String, QueryHighScoringPairs> hsps : getQueryHsps().entrySet()) {
+			Protein query = proteinDb.get(hsps.getKey());
+			for (BlastResult br : hsps.getValue().toBlastResults(getBlastDatabaseName(), query)) {
+				BlastResult.addBlastResult(brs, br, uniqueShortAccessions);
+			}
+		}
+		setQueryHsps(new HashMap<String, QueryHighScoringPairs>());
+		return brs;
+	}
+
+	public String getBlastDatabaseName() {
+		return blastDatabaseName;
+	}
+
+	public int getMaxHspsPerQuery() {
+		return maxHspsPerQuery;
+	}
+
+	public Map<String, QueryHighScoringPairs> getQueryHsps() {
+		return queryHsps;
+	}
+
+	public void setQueryHsps(Map<String, QueryHighScoringPairs> queryHsps) {
+		this.queryHsps = queryHsps;
+	}
 }
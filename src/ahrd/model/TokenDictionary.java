@@ -0,0 +1,91 @@
+package ahrd.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of the Tokens of a run, see
+ * <code>Settings.getTokenDictionary()</code>. Descriptions of different Blast-Hits share
+ * most of their words, e.g. "protein", "kinase" or "family". Each distinct
+ * Token is held once and assigned a dense integer ID, starting at zero. These
+ * IDs are what BlastResults and TokenScoreCalculators store instead of the
+ * Tokens themselves. The dictionary can be shared between threads.
+ *
+ * IDs are only valid in the dictionary that assigned them, so TokenSets and
+ * TokenScoreMaps keep a reference to theirs. IDs are assigned in the order
+ * Tokens are first seen, which varies between runs if Blast-Results are read
+ * in parallel. So nothing printed or summed up must depend on the order of
+ * the IDs.
+ */
+public class TokenDictionary {
+
+	private ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	/**
+	 * Tokens indexed by their IDs. An element is always written before its ID
+	 * is published in 'ids'.
+	 */
+	private volatile String[] tokens = new String[1024];
+	private int size = 0;
+
+	public TokenDictionary() {
+		super();
+	}
+
+	/**
+	 * @param token
+	 * @return The ID of the argument token. If the token is not yet in this
+	 *         dictionary, it is added and assigned the next free ID.
+	 */
+	public int id(String token) {
+		Integer id = ids.get(token);
+		return (id != null) ? id : addToken(token);
+	}
+
+	/**
+	 * @param token
+	 * @return The ID of the argument token, or -1 if it is not in this
+	 *         dictionary. The token is <em>not</em> added.
+	 */
+	public int lookup(Object token) {
+		Integer id = (token != null) ? ids.get(token) : null;
+		return (id != null) ? id : -1;
+	}
+
+	/**
+	 * @param id
+	 * @return The token assigned the argument ID
+	 */
+	public String token(int id) {
+		return tokens[id];
+	}
+
+	/**
+	 * @param token
+	 * @return The dictionary's instance equal to the argument token. If there
+	 *         is none yet, the argument token is added and returned.
+	 */
+	public String intern(String token) {
+		return token(id(token));
+	}
+
+	/**
+	 * @return The number of distinct tokens in this dictionary
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	private synchronized int addToken(String token) {
+		Integer id = ids.get(token);
+		if (id != null)
+			return id;
+		String[] tkns = tokens;
+		if (size == tkns.length)
+			tkns = Arrays.copyOf(tkns, size * 2);
+		tkns[size] = token;
+		tokens = tkns;
+		ids.put(token, size);
+		return size++;
+	}
+}
@@ -4,65 +4,285 @@ import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Utils.roundToNDecimalPlaces;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import ahrd.controller.RegexList;
 
 /**
  * Functions calculating Token-Scores.
  */
 public class TokenScoreCalculator {
 
-	private Map<String, Double> cumulativeTokenBitScores = new HashMap<String, Double>();
-	private Map<String, Double> cumulativeTokenBlastDatabaseScores = new HashMap<String, Double>();
-	private Map<String, Double> cumulativeTokenOverlapScores = new HashMap<String, Double>();
+	/**
+	 * The characters <code>BlastResult.TOKEN_SPLITTER_REGEX</code> splits at,
+	 * i.e. the listed punctuation characters and the white-spaces matched by
+	 * '\s'.
+	 */
+	private static final boolean[] TOKEN_SEPARATORS = new boolean[128];
+
+	static {
+		for (char c : "-/;\\,:\"'.|() \t\n\u000B\f\r".toCharArray()) {
+			TOKEN_SEPARATORS[c] = true;
+		}
+	}
+
+	/**
+	 * The columns of the cumulative scores' TokenScoreMap.
+	 */
+	public static final int BIT_SCORE = 0;
+	public static final int BLAST_DATABASE_SCORE = 1;
+	public static final int OVERLAP_SCORE = 2;
+
+	/**
+	 * The cumulative and Token-Scores are keyed by the Tokens' IDs in the
+	 * run's <code>TokenDictionary</code>. The three cumulative scores of a
+	 * Token are held in a single map, one column per score.
+	 */
+	private TokenScoreMap cumulativeTokenScores = new TokenScoreMap(3);
 	private double totalTokenBitScore = 0;
 	private double totalTokenBlastDatabaseScore = 0;
 	private double totalTokenOverlapScore = 0;
-	private Map<String, Double> tokenScores = new HashMap<String, Double>();
+	private TokenScoreMap tokenScores = new TokenScoreMap();
+	/**
+	 * Scratch buffer of <code>scoresOf(BlastResult)</code>
+	 */
+	private final double[] scores = new double[3];
 	private Protein protein;
 	// Please enter your initials ___
 	private double tokenHighScore = 0.0;
 
+	/**
+	 * Compiles the argument blacklist on each call. Repeated checks should use
+	 * <code>tokenPassesBlacklist(String, RegexList)</code> instead.
+	 */
 	public static boolean tokenPassesBlacklist(String token, List<String> blacklist) {
-		// No Token passes being NULL or empty String
-		boolean passed = (token != null && !token.equals(""));
-		Iterator<String> i = blacklist.iterator();
-		while (i.hasNext() && passed) {
-			Pattern p = Pattern.compile(i.next());
-			Matcher m = p.matcher(token);
-			// A Match against a blacklisted RegExp lets the token fail:
-			passed = !m.find();
-		}
-		return passed;
+		return tokenPassesBlacklist(token, new RegexList(blacklist));
+	}
+
+	public static boolean tokenPassesBlacklist(String token, RegexList blacklist) {
+		// No Token passes being NULL or empty String. A Match against a
+		// blacklisted RegExp lets the token fail:
+		return (token != null && !token.equals("") && !blacklist.findsAny(token));
 	}
 
 	/**
 	 * Splits the String description into tokens using the regular expressions
 	 * found in <code>BlastResult.TOKEN _SPLITTER_REGEX</code> and then passes
-	 * them through Blacklisting retaining only tokens that pass.
+	 * them through Blacklisting retaining only tokens that pass. Compiles the
+	 * argument Blacklist on each call, repeated calls should use
+	 * <code>tokenize(String, RegexList)</code> instead.
 	 * 
 	 * @param description
 	 * @param tokenBlacklist
 	 * @return An instance of Set holding all tokens extracted from description
 	 */
 	public static Set<String> tokenize(String description, List<String> tokenBlacklist) {
+		return tokenize(description, new RegexList(tokenBlacklist));
+	}
+
+	/**
+	 * Splits the String description into tokens using the regular expressions
+	 * found in <code>BlastResult.TOKEN _SPLITTER_REGEX</code> and then passes
+	 * them through the already compiled Blacklist retaining only tokens that
+	 * pass.
+	 * 
+	 * @param description
+	 * @param tokenBlacklist
+	 * @return An instance of Set holding all tokens extracted from description
+	 */
+	public static Set<String> tokenize(String description, RegexList tokenBlacklist) {
+		return tokenize(description, tokenBlacklist, null);
+	}
+
+	/**
+	 * Splits the String description into tokens at the characters
+	 * <code>BlastResult.TOKEN_SPLITTER_REGEX</code> splits at, and then passes
+	 * them through the already compiled Blacklist retaining only tokens that
+	 * pass. The description is scanned once, without the intermediate arrays
+	 * and sets of <code>String.split(...)</code>. The resulting tokens are
+	 * exactly the same.
+	 * 
+	 * @param description
+	 * @param tokenBlacklist
+	 * @param tokenDictionary
+	 *            - If not NULL, the tokens are interned into it
+	 * @return An instance of Set holding all tokens extracted from description
+	 */
+	public static Set<String> tokenize(String description, RegexList tokenBlacklist,
+			TokenDictionary tokenDictionary) {
 		Set<String> tkns = new HashSet<String>();
-		for (String tokenCandidate : new HashSet<String>(
-				Arrays.asList(description.split(BlastResult.TOKEN_SPLITTER_REGEX)))) {
-			tokenCandidate = tokenCandidate.toLowerCase();
-			if (tokenCandidate != null && !tokenCandidate.equals("")
-					&& tokenPassesBlacklist(tokenCandidate, tokenBlacklist))
-				tkns.add(tokenCandidate);
-		}
+		tokenize(description, tokenBlacklist, tokenDictionary, tkns);
+		return tkns;
+	}
+
+	/**
+	 * Splits the String description into tokens just like
+	 * <code>tokenize(String, RegexList)</code>, but returns them as the IDs
+	 * they are assigned in the run's <code>TokenDictionary</code>.
+	 * 
+	 * @param description
+	 * @param tokenBlacklist
+	 * @return An instance of TokenSet holding all tokens extracted from
+	 *         description
+	 */
+	public static TokenSet tokenizeToTokenSet(String description, RegexList tokenBlacklist) {
+		TokenSet tkns = new TokenSet();
+		tokenize(description, tokenBlacklist, null, tkns);
+		tkns.trimToSize();
 		return tkns;
 	}
 
+	/**
+	 * Adds the tokens in the order the former tokenizer's HashSet returned
+	 * them, so that Token-Scores are summed up in the same order and yield
+	 * exactly the same Description-Scores. That tokenizer added the lowercased
+	 * pieces of <code>String.split(...)</code> to a HashSet in the order a
+	 * HashSet of the raw pieces returned them. A HashSet returns its elements
+	 * by hash bucket and those of a bucket in the order they were added, so
+	 * both orders are derived from the pieces' hash codes, positions and
+	 * number.
+	 */
+	private static void tokenize(String description, RegexList tokenBlacklist, TokenDictionary tokenDictionary,
+			Set<String> tkns) {
+		String[] tokens = new String[8];
+		int nTokens = 0;
+		// Per piece of a token: the token, the piece's hash and its position
+		// among the pieces:
+		int[] pieceTokens = new int[8];
+		int[] pieceHashes = new int[8];
+		int[] piecePositions = new int[8];
+		int nPieces = 0;
+		// The number of pieces String.split(...) returns, i.e. without
+		// trailing empty ones:
+		int nSplitPieces = 0;
+		int length = description.length();
+		int start = 0;
+		for (int position = 0;; position++) {
+			int end = start;
+			int hash = 0;
+			while (end < length && !isTokenSeparator(description.charAt(end))) {
+				hash = 31 * hash + description.charAt(end);
+				end++;
+			}
+			if (end > start) {
+				nSplitPieces = position + 1;
+				String tokenCandidate = description.substring(start, end).toLowerCase();
+				int token = indexOf(tokens, nTokens, tokenCandidate);
+				if (token < 0 && tokenPassesBlacklist(tokenCandidate, tokenBlacklist)) {
+					if (nTokens == tokens.length)
+						tokens = Arrays.copyOf(tokens, nTokens * 2);
+					token = nTokens++;
+					tokens[token] = tokenCandidate;
+				}
+				if (token >= 0) {
+					if (nPieces == pieceTokens.length) {
+						pieceTokens = Arrays.copyOf(pieceTokens, nPieces * 2);
+						pieceHashes = Arrays.copyOf(pieceHashes, nPieces * 2);
+						piecePositions = Arrays.copyOf(piecePositions, nPieces * 2);
+					}
+					pieceTokens[nPieces] = token;
+					pieceHashes[nPieces] = hash;
+					piecePositions[nPieces] = position;
+					nPieces++;
+				}
+			}
+			if (end >= length)
+				break;
+			// Skip the separator, a single punctuation character or a run of
+			// white-spaces:
+			if (isWhiteSpace(description.charAt(end))) {
+				while (end < length && isWhiteSpace(description.charAt(end)))
+					end++;
+			} else {
+				end++;
+			}
+			start = end;
+		}
+		if (nTokens == 0)
+			return;
+		// Order in which the raw pieces' HashSet returned the tokens first:
+		int rawCapacity = hashSetCapacity(Math.max((int) (nSplitPieces / .75f) + 1, 16));
+		long[] firstReturned = new long[nTokens];
+		Arrays.fill(firstReturned, Long.MAX_VALUE);
+		for (int i = 0; i < nPieces; i++) {
+			long returned = ((long) hashBucket(pieceHashes[i], rawCapacity) << 32) | piecePositions[i];
+			if (returned < firstReturned[pieceTokens[i]])
+				firstReturned[pieceTokens[i]] = returned;
+		}
+		int[] order = sortedIndices(firstReturned, nTokens);
+		// Order in which the tokens' HashSet returns them, the capacity
+		// being doubled whenever it is filled by more than three quarters:
+		int capacity = 16;
+		while (nTokens > capacity / 4 * 3)
+			capacity *= 2;
+		long[] returned = new long[nTokens];
+		for (int rank = 0; rank < nTokens; rank++)
+			returned[order[rank]] = ((long) hashBucket(tokens[order[rank]].hashCode(), capacity) << 32) | rank;
+		for (int token : sortedIndices(returned, nTokens))
+			tkns.add((tokenDictionary != null) ? tokenDictionary.intern(tokens[token]) : tokens[token]);
+	}
+
+	private static int indexOf(String[] tokens, int nTokens, String token) {
+		for (int i = 0; i < nTokens; i++)
+			if (tokens[i].equals(token))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @return The number of buckets of a HashSet of the argument initial
+	 *         capacity, i.e. the next power of two.
+	 */
+	private static int hashSetCapacity(int initialCapacity) {
+		return Integer.highestOneBit(initialCapacity - 1) << 1;
+	}
+
+	/**
+	 * @return The bucket a HashSet of the argument capacity puts an element
+	 *         of the argument hash code in.
+	 */
+	private static int hashBucket(int hashCode, int capacity) {
+		return (hashCode ^ (hashCode >>> 16)) & (capacity - 1);
+	}
+
+	/**
+	 * @return The indices of the argument keys in ascending order of the
+	 *         keys. Insertion sort, as a Description has only few tokens.
+	 */
+	private static int[] sortedIndices(long[] keys, int n) {
+		int[] indices = new int[n];
+		for (int i = 0; i < n; i++) {
+			int j = i - 1;
+			while (j >= 0 && keys[indices[j]] > keys[i]) {
+				indices[j + 1] = indices[j];
+				j--;
+			}
+			indices[j + 1] = i;
+		}
+		return indices;
+	}
+
+	/**
+	 * @param c
+	 * @return TRUE if and only if <code>BlastResult.TOKEN_SPLITTER_REGEX</code>
+	 *         splits at the argument character.
+	 */
+	public static boolean isTokenSeparator(char c) {
+		return c < TOKEN_SEPARATORS.length && TOKEN_SEPARATORS[c];
+	}
+
+	/**
+	 * @param c
+	 * @return TRUE if and only if the argument character is a white-space
+	 *         matched by '\s'.
+	 */
+	private static boolean isWhiteSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
 	/**
 	 * Computes the quality of the local sequence alignment between the Query
 	 * and a Subject (see BLAST for details). This quality is assessed as the
@@ -91,11 +311,7 @@ public class TokenScoreCalculator {
 	 * Returns the sum of BlastResult's Tokens' Scores.
 	 */
 	public double descriptionLineSummedTokenScore(BlastResult br) {
-		double sum = 0.0;
-		for (String token : br.getTokens()) {
-			sum += getTokenScores().get(token);
-		}
-		return sum;
+		return sumOfAllTokenScores(br);
 	}
 
 	/**
@@ -109,10 +325,12 @@ public class TokenScoreCalculator {
 			// databases
 			for (BlastResult iterResult : getProtein().getBlastResults().get(iterBlastDb)) {
 				// iterate through tokens in different blast result desc-lines
-				for (String token : iterResult.getTokens()) {
-					if (!(getTokenScores().containsKey(token))) {
-						double tokenscore = tokenScore(token, iterBlastDb);
-						getTokenScores().put(token, new Double(tokenscore));
+				TokenSet tokens = iterResult.getTokens();
+				for (int i = 0; i < tokens.size(); i++) {
+					int token = tokens.getId(i);
+					if (!(getTokenScoreMap().containsKey(token))) {
+						double tokenscore = tokenScore(token);
+						getTokenScoreMap().put(token, tokenscore);
 						// remember highest token score
 						if (tokenscore > getTokenHighScore()) {
 							setTokenHighScore(tokenscore);
@@ -129,9 +347,10 @@ public class TokenScoreCalculator {
 	 * (old TokenScore) - (tokenHighScore / 2).
 	 */
 	public void filterTokenScores() {
-		for (String token : getTokenScores().keySet()) {
-			if (!isInformativeToken(token)) {
-				getTokenScores().put(token, new Double(getTokenScores().get(token) - getTokenHighScore() / 2));
+		TokenScoreMap scores = getTokenScoreMap();
+		for (int slot = 0; slot < scores.capacity(); slot++) {
+			if (scores.idAt(slot) >= 0 && !(scores.scoreAt(slot) > getTokenHighScore() / 2)) {
+				scores.setScoreAt(slot, scores.scoreAt(slot) - getTokenHighScore() / 2);
 			}
 		}
 	}
@@ -147,6 +366,31 @@ public class TokenScoreCalculator {
 		return getTokenScores().get(token) > getTokenHighScore() / 2;
 	}
 
+	/**
+	 * @see #isInformativeToken(String)
+	 * @param token
+	 *            - The Token's ID in the run-wide <code>TokenDictionary</code>
+	 */
+	public boolean isInformativeToken(int token) {
+		return getTokenScoreMap().get(token) > getTokenHighScore() / 2;
+	}
+
+	/**
+	 * Measures both the <em>cumulative</em> and the <em>total</em> scores of
+	 * the argument BlastResult in a single pass. The BlastResult's
+	 * OverlapScore and Blast-Database-Weight are looked up only once.
+	 * 
+	 * @see #measureCumulativeScores(BlastResult)
+	 * @see #measureTotalScores(BlastResult)
+	 * @param BlastResult
+	 *            br
+	 */
+	public void measureScores(BlastResult br) {
+		double[] scores = scoresOf(br);
+		addCumulativeScores(br, scores);
+		addTotalScores(scores);
+	}
+
 	/**
 	 * Once per BlastResult's unique token the following <em>cumulative</em>
 	 * scores are measured: 1. BitScore 2. DatabaseScore 3. OverlapScore
@@ -155,13 +399,7 @@ public class TokenScoreCalculator {
 	 *            br
 	 */
 	public void measureCumulativeScores(BlastResult br) {
-		for (String token : br.getTokens()) {
-			Double overlapScore = TokenScoreCalculator.overlapScore(br.getQueryStart(), br.getQueryEnd(),
-					getProtein().getSequenceLength(), br.getSubjectStart(), br.getSubjectEnd(), br.getSubjectLength());
-			addCumulativeTokenBitScore(token, br.getBitScore());
-			addCumulativeTokenBlastDatabaseScore(token, br.getBlastDatabaseName());
-			addCumulativeTokenOverlapScore(token, overlapScore);
-		}
+		addCumulativeScores(br, scoresOf(br));
 	}
 
 	/**
@@ -172,12 +410,34 @@ public class TokenScoreCalculator {
 	 *            br
 	 */
 	public void measureTotalScores(BlastResult br) {
-		Double overlapScore = TokenScoreCalculator.overlapScore(br.getQueryStart(), br.getQueryEnd(),
+		addTotalScores(scoresOf(br));
+	}
+
+	/**
+	 * @param br
+	 * @return The argument BlastResult's BitScore, Blast-Database-Weight and
+	 *         OverlapScore in the columns of the cumulative scores' map. The
+	 *         returned array is reused by the next call.
+	 */
+	private double[] scoresOf(BlastResult br) {
+		double[] scores = this.scores;
+		scores[BIT_SCORE] = br.getBitScore();
+		scores[BLAST_DATABASE_SCORE] = getSettings().getParameters().getBlastDbWeight(br.getBlastDatabaseIndex());
+		scores[OVERLAP_SCORE] = TokenScoreCalculator.overlapScore(br.getQueryStart(), br.getQueryEnd(),
 				getProtein().getSequenceLength(), br.getSubjectStart(), br.getSubjectEnd(), br.getSubjectLength());
-		setTotalTokenBlastDatabaseScore(
-				getTotalTokenBlastDatabaseScore() + getSettings().getBlastDbWeight(br.getBlastDatabaseName()));
-		setTotalTokenOverlapScore(getTotalTokenOverlapScore() + overlapScore);
-		setTotalTokenBitScore(getTotalTokenBitScore() + br.getBitScore());
+		return scores;
+	}
+
+	private void addCumulativeScores(BlastResult br, double[] scores) {
+		TokenSet tokens = br.getTokens();
+		for (int i = 0; i < tokens.size(); i++)
+			getCumulativeTokenScoreMap().add(tokens.getId(i), scores);
+	}
+
+	private void addTotalScores(double[] scores) {
+		setTotalTokenBitScore(getTotalTokenBitScore() + scores[BIT_SCORE]);
+		setTotalTokenBlastDatabaseScore(getTotalTokenBlastDatabaseScore() + scores[BLAST_DATABASE_SCORE]);
+		setTotalTokenOverlapScore(getTotalTokenOverlapScore() + scores[OVERLAP_SCORE]);
 	}
 
 	/**
@@ -185,6 +445,15 @@ public class TokenScoreCalculator {
 	 * @return token-score
 	 */
 	public double tokenScore(String token, String blastDatabaseName) {
+		return tokenScore(getCumulativeTokenScoreMap().getTokenDictionary().id(token));
+	}
+
+	/**
+	 * @param token
+	 *            - The Token's ID in the run-wide <code>TokenDictionary</code>
+	 * @return token-score
+	 */
+	public double tokenScore(int token) {
 		// Validate:
 		Double bitScoreWeight = getSettings().getTokenScoreBitScoreWeight();
 		Double databaseScoreWeight = getSettings().getTokenScoreDatabaseScoreWeight();
@@ -196,40 +465,35 @@ public class TokenScoreCalculator {
 					"The three weights 'bitScoreWeight', 'databaseScoreWeight', and 'overlapScoreWeight' should sum up to 1, but actually sum up to: "
 							+ (bitScoreWeight + databaseScoreWeight + overlapScoreWeight));
 		// Calculate Token-Score:
-		return (bitScoreWeight * getCumulativeTokenBitScores().get(token) / getTotalTokenBitScore()
-				+ databaseScoreWeight * getCumulativeTokenBlastDatabaseScores().get(token)
+		TokenScoreMap cumulativeScores = getCumulativeTokenScoreMap();
+		return (bitScoreWeight * cumulativeScores.get(token, BIT_SCORE) / getTotalTokenBitScore()
+				+ databaseScoreWeight * cumulativeScores.get(token, BLAST_DATABASE_SCORE)
 						/ getTotalTokenBlastDatabaseScore()
-				+ overlapScoreWeight * getCumulativeTokenOverlapScores().get(token) / getTotalTokenOverlapScore());
+				+ overlapScoreWeight * cumulativeScores.get(token, OVERLAP_SCORE) / getTotalTokenOverlapScore());
 	}
 
 	public void addCumulativeTokenBitScore(String token, double bitScore) {
-		if (!getCumulativeTokenBitScores().containsKey(token))
-			getCumulativeTokenBitScores().put(token, new Double(bitScore));
-		else
-			getCumulativeTokenBitScores().put(token, new Double(bitScore + getCumulativeTokenBitScores().get(token)));
+		getCumulativeTokenScoreMap().add(getCumulativeTokenScoreMap().getTokenDictionary().id(token), BIT_SCORE, bitScore);
 	}
 
 	public void addCumulativeTokenOverlapScore(String token, double overlapScore) {
-		if (!getCumulativeTokenOverlapScores().containsKey(token))
-			getCumulativeTokenOverlapScores().put(token, new Double(overlapScore));
-		else
-			getCumulativeTokenOverlapScores().put(token,
-					new Double(overlapScore + getCumulativeTokenOverlapScores().get(token)));
+		getCumulativeTokenScoreMap().add(getCumulativeTokenScoreMap().getTokenDictionary().id(token), OVERLAP_SCORE, overlapScore);
 	}
 
 	public void addCumulativeTokenBlastDatabaseScore(String token, String blastDatabaseName) {
-		Integer blastDatabaseWeight = getSettings().getBlastDbWeight(blastDatabaseName);
-		if (!getCumulativeTokenBlastDatabaseScores().containsKey(token))
-			getCumulativeTokenBlastDatabaseScores().put(token, new Double(blastDatabaseWeight));
-		else
-			getCumulativeTokenBlastDatabaseScores().put(token,
-					new Double(blastDatabaseWeight + getCumulativeTokenBlastDatabaseScores().get(token)));
+		getCumulativeTokenScoreMap().add(getCumulativeTokenScoreMap().getTokenDictionary().id(token), BLAST_DATABASE_SCORE,
+				getSettings().getBlastDbWeight(blastDatabaseName));
 	}
 
+	/**
+	 * Sums up the Token-Scores in the order of the BlastResult's TokenSet, so
+	 * that the result does not depend on the order Token-IDs were assigned in.
+	 */
 	public double sumOfAllTokenScores(BlastResult blastResult) {
 		double sum = 0.0;
-		for (String token : blastResult.getTokens()) {
-			sum += getTokenScores().get(token);
+		TokenSet tokens = blastResult.getTokens();
+		for (int i = 0; i < tokens.size(); i++) {
+			sum += getTokenScoreMap().get(tokens.getId(i));
 		}
 		return sum;
 	}
@@ -242,28 +506,34 @@ public class TokenScoreCalculator {
 		this.protein = protein;
 	}
 
+	/**
+	 * @return A view of the cumulative Bit-Scores keyed by the Tokens
+	 */
 	public Map<String, Double> getCumulativeTokenBitScores() {
-		return cumulativeTokenBitScores;
-	}
-
-	public void setCumulativeTokenBitScores(Map<String, Double> cumulativeTokenBitScores) {
-		this.cumulativeTokenBitScores = cumulativeTokenBitScores;
+		return getCumulativeTokenScoreMap().asTokenMap(BIT_SCORE);
 	}
 
+	/**
+	 * @return A view of the cumulative Blast-Database-Scores keyed by the
+	 *         Tokens
+	 */
 	public Map<String, Double> getCumulativeTokenBlastDatabaseScores() {
-		return cumulativeTokenBlastDatabaseScores;
-	}
-
-	public void setCumulativeTokenBlastDatabaseScores(Map<String, Double> cumulativeTokenBlastDatabaseScores) {
-		this.cumulativeTokenBlastDatabaseScores = cumulativeTokenBlastDatabaseScores;
+		return getCumulativeTokenScoreMap().asTokenMap(BLAST_DATABASE_SCORE);
 	}
 
+	/**
+	 * @return A view of the cumulative Overlap-Scores keyed by the Tokens
+	 */
 	public Map<String, Double> getCumulativeTokenOverlapScores() {
-		return cumulativeTokenOverlapScores;
+		return getCumulativeTokenScoreMap().asTokenMap(OVERLAP_SCORE);
 	}
 
-	public void setCumulativeTokenOverlapScores(Map<String, Double> cumulativeTokenOverlapScores) {
-		this.cumulativeTokenOverlapScores = cumulativeTokenOverlapScores;
+	/**
+	 * @return The cumulative scores keyed by the Tokens' IDs, in the columns
+	 *         BIT_SCORE, BLAST_DATABASE_SCORE and OVERLAP_SCORE.
+	 */
+	public TokenScoreMap getCumulativeTokenScoreMap() {
+		return cumulativeTokenScores;
 	}
 
 	public double getTotalTokenBitScore() {
@@ -312,19 +582,18 @@ public class TokenScoreCalculator {
 	/**
 	 * Get tokenScores.
 	 * 
-	 * @return tokenScores as Map<String, Double>.
+	 * @return A view of tokenScores as Map<String, Double>.
 	 */
 	public Map<String, Double> getTokenScores() {
-		return tokenScores;
+		return getTokenScoreMap().asTokenMap();
 	}
 
 	/**
-	 * Set tokenScores.
+	 * Get tokenScores keyed by the Tokens' IDs.
 	 * 
-	 * @param tokenScores
-	 *            the value to set.
+	 * @return tokenScores as TokenScoreMap.
 	 */
-	public void setTokenScores(Map<String, Double> tokenScores) {
-		this.tokenScores = tokenScores;
+	public TokenScoreMap getTokenScoreMap() {
+		return tokenScores;
 	}
 }
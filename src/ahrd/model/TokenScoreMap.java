@@ -0,0 +1,306 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Maps Token-IDs of the run's <code>TokenDictionary</code> to primitive
+ * double scores. Uses open addressing with linear probing, so neither keys nor
+ * values are boxed. A map may hold several scores per Token-ID, stored in one
+ * array per column, so that all scores of a Token are found with a single
+ * probe. Unless a column is given, methods refer to the first one.
+ */
+public class TokenScoreMap {
+
+	private static final int FREE = -1;
+
+	private TokenDictionary tokenDictionary;
+	private int[] keys;
+	private double[][] values;
+	private int size = 0;
+
+	public TokenScoreMap() {
+		this(1);
+	}
+
+	/**
+	 * @param columns
+	 *            - The number of scores held per Token-ID of the current
+	 *            run's <code>TokenDictionary</code>
+	 */
+	public TokenScoreMap(int columns) {
+		this(columns, getSettings().getTokenDictionary());
+	}
+
+	/**
+	 * @param columns
+	 *            - The number of scores held per Token-ID
+	 * @param tokenDictionary
+	 *            - The dictionary the Token-IDs refer to
+	 */
+	public TokenScoreMap(int columns, TokenDictionary tokenDictionary) {
+		super();
+		this.tokenDictionary = tokenDictionary;
+		keys = new int[16];
+		Arrays.fill(keys, FREE);
+		values = new double[columns][16];
+	}
+
+	/**
+	 * @return The dictionary the Token-IDs of this map refer to
+	 */
+	public TokenDictionary getTokenDictionary() {
+		return tokenDictionary;
+	}
+
+	public int columns() {
+		return values.length;
+	}
+
+	public boolean containsKey(int id) {
+		return keys[slot(id)] != FREE;
+	}
+
+	/**
+	 * @param id
+	 * @return The score of the argument Token-ID, or NaN if it has none.
+	 */
+	public double get(int id) {
+		return get(id, 0);
+	}
+
+	/**
+	 * @param id
+	 * @param column
+	 * @return The score in the argument column of the argument Token-ID, or
+	 *         NaN if it has none.
+	 */
+	public double get(int id, int column) {
+		int slot = slot(id);
+		return (keys[slot] != FREE) ? values[column][slot] : Double.NaN;
+	}
+
+	public void put(int id, double score) {
+		put(id, 0, score);
+	}
+
+	/**
+	 * Sets the score in the argument column of the argument Token-ID. A
+	 * Token-ID without scores so far is assigned zero in all other columns.
+	 */
+	public void put(int id, int column, double score) {
+		int slot = insert(id);
+		values[column][slot] = score;
+	}
+
+	/**
+	 * Adds the argument score to the one already held for the argument
+	 * Token-ID. A Token-ID without score so far is assigned the argument score.
+	 */
+	public void add(int id, double score) {
+		add(id, 0, score);
+	}
+
+	/**
+	 * Adds the argument score to the one held in the argument column for the
+	 * argument Token-ID.
+	 */
+	public void add(int id, int column, double score) {
+		int slot = insert(id);
+		values[column][slot] += score;
+	}
+
+	/**
+	 * Adds the argument scores to the ones already held for the argument
+	 * Token-ID, one score per column.
+	 * 
+	 * @param id
+	 * @param scores
+	 *            - Holds at least <code>columns()</code> scores
+	 */
+	public void add(int id, double[] scores) {
+		int slot = insert(id);
+		for (int column = 0; column < values.length; column++)
+			values[column][slot] += scores[column];
+	}
+
+	/**
+	 * @param id
+	 * @return The slot of the argument Token-ID, which is added with zero
+	 *         scores, if it is not held yet.
+	 */
+	private int insert(int id) {
+		int slot = slot(id);
+		if (keys[slot] == FREE) {
+			keys[slot] = id;
+			if (++size * 2 > keys.length) {
+				rehash();
+				slot = slot(id);
+			}
+		}
+		return slot;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of slots. Use together with <code>idAt(int)</code>
+	 *         and <code>scoreAt(int)</code> to iterate over all entries.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * @param slot
+	 * @return The Token-ID held in the argument slot, or -1 if it is free.
+	 */
+	public int idAt(int slot) {
+		return keys[slot];
+	}
+
+	public double scoreAt(int slot) {
+		return values[0][slot];
+	}
+
+	public double scoreAt(int slot, int column) {
+		return values[column][slot];
+	}
+
+	public void setScoreAt(int slot, double score) {
+		values[0][slot] = score;
+	}
+
+	/**
+	 * @return A view of this map keyed by the Tokens themselves. Writes
+	 *         through to this map.
+	 */
+	public Map<String, Double> asTokenMap() {
+		return asTokenMap(0);
+	}
+
+	/**
+	 * @param column
+	 * @return A view of the argument column of this map keyed by the Tokens
+	 *         themselves. Writes through to this map.
+	 */
+	public Map<String, Double> asTokenMap(int column) {
+		return new TokenMapView(column);
+	}
+
+	private int slot(int id) {
+		int mask = keys.length - 1;
+		int hash = id * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (keys[slot] != FREE && keys[slot] != id)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		double[][] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		values = new double[oldValues.length][oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				for (int column = 0; column < values.length; column++)
+					values[column][slot] = oldValues[column][i];
+			}
+		}
+	}
+
+	private class TokenMapView extends AbstractMap<String, Double> {
+
+		private int column;
+
+		public TokenMapView(int column) {
+			super();
+			this.column = column;
+		}
+
+		@Override
+		public Double get(Object token) {
+			int id = getTokenDictionary().lookup(token);
+			return (id >= 0 && TokenScoreMap.this.containsKey(id)) ? TokenScoreMap.this.get(id, column) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object token) {
+			int id = getTokenDictionary().lookup(token);
+			return id >= 0 && TokenScoreMap.this.containsKey(id);
+		}
+
+		@Override
+		public Double put(String token, Double score) {
+			Double former = get(token);
+			TokenScoreMap.this.put(getTokenDictionary().id(token), column, score);
+			return former;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Set<Map.Entry<String, Double>> entrySet() {
+			return new AbstractSet<Map.Entry<String, Double>>() {
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, Double>> iterator() {
+					return new Iterator<Map.Entry<String, Double>>() {
+						private int slot = nextUsedSlot(0);
+
+						public boolean hasNext() {
+							return slot < keys.length;
+						}
+
+						public Map.Entry<String, Double> next() {
+							if (slot >= keys.length)
+								throw new NoSuchElementException();
+							final int current = slot;
+							slot = nextUsedSlot(slot + 1);
+							return new AbstractMap.SimpleEntry<String, Double>(
+									getTokenDictionary().token(keys[current]), values[column][current]) {
+								private static final long serialVersionUID = 1L;
+
+								@Override
+								public Double setValue(Double score) {
+									values[column][current] = score;
+									return super.setValue(score);
+								}
+							};
+						}
+
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+		}
+
+		private int nextUsedSlot(int slot) {
+			while (slot < keys.length && keys[slot] == FREE)
+				slot++;
+			return slot;
+		}
+	}
+}
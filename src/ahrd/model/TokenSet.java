@@ -0,0 +1,156 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of Tokens stored as an array of their IDs in the run's
+ * <code>TokenDictionary</code>. A Description has only few Tokens, so this
+ * takes a fraction of the memory of a HashSet and its String entries.
+ * Iteration is in the order the Tokens were added, which unlike the order of
+ * their IDs is the same in each run. Token-Scores are summed up in this order.
+ */
+public class TokenSet extends AbstractSet<String> {
+
+	private static final int[] NO_IDS = new int[0];
+
+	private TokenDictionary tokenDictionary;
+	private int[] ids = NO_IDS;
+	private int size = 0;
+
+	/**
+	 * A set of Tokens of the current run's <code>TokenDictionary</code>.
+	 */
+	public TokenSet() {
+		this(getSettings().getTokenDictionary());
+	}
+
+	public TokenSet(TokenDictionary tokenDictionary) {
+		super();
+		this.tokenDictionary = tokenDictionary;
+	}
+
+	public TokenSet(Collection<String> tokens) {
+		this();
+		addAll(tokens);
+	}
+
+	/**
+	 * @param id
+	 * @return TRUE if and only if the Token of the argument ID was not yet in
+	 *         this set.
+	 */
+	public boolean addId(int id) {
+		if (containsId(id))
+			return false;
+		if (size == ids.length)
+			ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+		ids[size++] = id;
+		return true;
+	}
+
+	public boolean containsId(int id) {
+		return indexOfId(id) >= 0;
+	}
+
+	/**
+	 * @param index
+	 *            - Between zero and <code>size()</code> exclusive
+	 * @return The Token-ID at the argument position
+	 */
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * @return The dictionary the Token-IDs of this set refer to
+	 */
+	public TokenDictionary getTokenDictionary() {
+		return tokenDictionary;
+	}
+
+	/**
+	 * Releases unused capacity, once no more Tokens are to be added.
+	 */
+	public void trimToSize() {
+		if (ids.length > size)
+			ids = (size == 0) ? NO_IDS : Arrays.copyOf(ids, size);
+	}
+
+	@Override
+	public boolean add(String token) {
+		return addId(getTokenDictionary().id(token));
+	}
+
+	@Override
+	public boolean contains(Object token) {
+		int id = getTokenDictionary().lookup(token);
+		return id >= 0 && containsId(id);
+	}
+
+	@Override
+	public boolean remove(Object token) {
+		int id = getTokenDictionary().lookup(token);
+		int pos = (id >= 0) ? indexOfId(id) : -1;
+		if (pos < 0)
+			return false;
+		removeAt(pos);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int next = 0;
+			private boolean removable = false;
+
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			public String next() {
+				if (next >= size)
+					throw new NoSuchElementException();
+				removable = true;
+				return getTokenDictionary().token(ids[next++]);
+			}
+
+			public void remove() {
+				if (!removable)
+					throw new IllegalStateException();
+				removeAt(--next);
+				removable = false;
+			}
+		};
+	}
+
+	/**
+	 * A Description has only few Tokens, so a linear search is fastest.
+	 */
+	private int indexOfId(int id) {
+		for (int i = 0; i < size; i++)
+			if (ids[i] == id)
+				return i;
+		return -1;
+	}
+
+	private void removeAt(int pos) {
+		System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+		size--;
+	}
+}
@@ -6,7 +6,9 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import ahrd.controller.AHRD;
 import ahrd.model.Blast2GoAnnot;
@@ -210,9 +212,20 @@ public class OutputWriter extends AbstractOutputWriter {
 	public String buildTokenSetCell(Protein prot) {
 		String tokenSetCell = "\t";
 
-		for (String token : prot.getTokenScoreCalculator().getTokenScores().keySet()) {
-			tokenSetCell += "[" + token + "->" + formattedNumberToString(prot.getTokenScoreCalculator().getTokenScores().get(token))
-					+ "]";
+		// In the order of a HashMap filled as assignTokenScores fills the
+		// Token-Scores, because the order of their IDs varies between runs:
+		Map<String, Double> scores = prot.getTokenScoreCalculator().getTokenScores();
+		Map<String, Double> tokenScores = new HashMap<String, Double>();
+		for (List<BlastResult> blastResults : prot.getBlastResults().values()) {
+			for (BlastResult br : blastResults) {
+				for (String token : br.getTokens()) {
+					if (!tokenScores.containsKey(token) && scores.containsKey(token))
+						tokenScores.put(token, scores.get(token));
+				}
+			}
+		}
+		for (String token : tokenScores.keySet()) {
+			tokenSetCell += "[" + token + "->" + formattedNumberToString(tokenScores.get(token)) + "]";
 		}
 
 		return tokenSetCell;
@@ -1,21 +1,32 @@
 package ahrd.test;
 
+import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
 import ahrd.controller.AHRD;
+import ahrd.controller.Settings;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingProteinException;
 import ahrd.model.BlastResult;
 import ahrd.model.InterproResult;
 import ahrd.model.Protein;
+import ahrd.model.TokenDictionary;
+import ahrd.model.TokenSet;
 
 public class AhrdTest {
 
@@ -83,4 +94,90 @@ public class AhrdTest {
 			assertTrue(protein.getInterproResults().size() > 0);
 		}
 	}
+
+	@Test
+	public void testParallelAssignmentEqualsSequentialAssignment() throws Exception {
+		ahrd.setup(false);
+		ahrd.assignHumanReadableDescriptions();
+		Map<String, Double> sequentialHighScores = new HashMap<String, Double>();
+		for (Protein prot : ahrd.getProteins().values()) {
+			sequentialHighScores.put(prot.getAccession(),
+					prot.getDescriptionScoreCalculator().getDescriptionHighScore());
+		}
+		// Score the same input again using several worker threads:
+		AHRD parallelAhrd = new AHRD("./test/resources/ahrd_input.yml");
+		getSettings().setThreads(4);
+		parallelAhrd.setup(false);
+		parallelAhrd.assignHumanReadableDescriptions();
+		assertEquals(sequentialHighScores.size(), parallelAhrd.getProteins().size());
+		for (Protein prot : parallelAhrd.getProteins().values()) {
+			assertNotNull(prot.getDescriptionScoreCalculator().getHighestScoringBlastResult());
+			assertEquals(sequentialHighScores.get(prot.getAccession()),
+					prot.getDescriptionScoreCalculator().getDescriptionHighScore());
+		}
+	}
+
+	@Test
+	public void testParallelParsingEqualsSequentialParsing() throws Exception {
+		ahrd.setProteins(TestUtils.mockProteinDb());
+		ahrd.parseBlastResults();
+		// Read the same Blast results again using one thread per database:
+		AHRD parallelAhrd = new AHRD("./test/resources/ahrd_input.yml");
+		getSettings().setThreads(4);
+		parallelAhrd.setProteins(TestUtils.mockProteinDb());
+		parallelAhrd.parseBlastResults();
+		for (Protein prot : parallelAhrd.getProteins().values()) {
+			Protein seqProt = ahrd.getProteins().get(prot.getAccession());
+			assertEquals(seqProt.getBlastResults().keySet(), prot.getBlastResults().keySet());
+			for (String blastDb : prot.getBlastResults().keySet())
+				assertEquals(seqProt.getBlastResults().get(blastDb).size(),
+						prot.getBlastResults().get(blastDb).size());
+			assertEquals(seqProt.getTokenScoreCalculator().getCumulativeTokenBitScores(),
+					prot.getTokenScoreCalculator().getCumulativeTokenBitScores());
+			assertEquals(seqProt.getTokenScoreCalculator().getCumulativeTokenOverlapScores(),
+					prot.getTokenScoreCalculator().getCumulativeTokenOverlapScores());
+			assertEquals(seqProt.getTokenScoreCalculator().getTotalTokenBitScore(),
+					prot.getTokenScoreCalculator().getTotalTokenBitScore(), 0.0);
+			assertEquals(seqProt.getDescriptionScoreCalculator().getMaxBitScore(),
+					prot.getDescriptionScoreCalculator().getMaxBitScore(), 0.0);
+		}
+	}
+
+	@Test
+	public void testFailedParallelParsingStopsDeferringScores() throws Exception {
+		getSettings().setThreads(4);
+		getSettings().getBlastDbSettings().get("tair").put(Settings.BLAST_RESULT_FILE_KEY, "/not/existing/path.txt");
+		ahrd.setProteins(TestUtils.mockProteinDb());
+		try {
+			ahrd.parseBlastResults();
+			fail("Reading a missing Blast result file must fail.");
+		} catch (IOException expected) {
+		}
+		for (Protein prot : ahrd.getProteins().values())
+			assertFalse(prot.isDeferScoreMeasurement());
+	}
+
+	@Test
+	public void testEachRunHasItsOwnTokenDictionary() throws IOException {
+		TokenDictionary tokenDictionary = getSettings().getTokenDictionary();
+		int id = tokenDictionary.id("ahrd");
+		TokenSet tokens = new TokenSet(Arrays.asList("ahrd"));
+		new AHRD("./test/resources/ahrd_input.yml");
+		assertNotSame(tokenDictionary, getSettings().getTokenDictionary());
+		assertEquals(-1, getSettings().getTokenDictionary().lookup("ahrd"));
+		// The former run's Tokens are still valid:
+		assertEquals("ahrd", tokenDictionary.token(id));
+		assertEquals(Arrays.asList("ahrd"), new ArrayList<String>(tokens));
+		assertTrue(tokens.contains("ahrd"));
+	}
+
+	@Test
+	public void testEachRunHasItsOwnBlastDatabaseNames() throws IOException {
+		getSettings().getBlastDatabaseIndex("unknown_db");
+		assertEquals(1, getSettings().getBlastDatabaseIndex("swissprot"));
+		new AHRD("./test/resources/ahrd_input.yml");
+		assertEquals(0, getSettings().getBlastDatabaseIndex("swissprot"));
+		assertEquals("swissprot", getSettings().getBlastDatabaseName((byte) 0));
+	}
+
 }
@@ -1,6 +1,7 @@
 package ahrd.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 
@@ -85,14 +86,32 @@ public class BatcherTest {
 				((Map<String, String>) ((Map<String, Object>) batchYml
 						.get(Settings.BLAST_DBS_KEY)).get("tair"))
 						.get(Settings.FASTA_HEADER_REGEX_KEY));
+		// Verify, that optional database indices and reference annotation
+		// tables are passed on:
+		Map<String, String> tairBlastDb = (Map<String, String>) ((Map<String, Object>) batchYml
+				.get(Settings.BLAST_DBS_KEY)).get("tair");
+		assertEquals("./test/resources/tair_blast_db.index",
+				tairBlastDb.get(Settings.BLAST_DATABASE_INDEX_KEY));
+		assertEquals("./test/resources/tair_blast_db.annotations",
+				tairBlastDb.get(Settings.REFERENCE_ANNOTATION_TABLE_KEY));
+		assertFalse(sprotBlastDb.containsKey(Settings.BLAST_DATABASE_INDEX_KEY));
+		assertFalse(sprotBlastDb.containsKey(Settings.REFERENCE_ANNOTATION_TABLE_KEY));
 		// Interpro:
 		assertEquals("./test/resources/interpro_31.xml",
 				batchYml.get(Settings.INTERPRO_DATABASE_KEY).toString());
 		assertEquals("./test/resources/interpro_results/batch001.raw", batchYml
 				.get(Settings.INTERPRO_RESULT_KEY).toString());
+		assertEquals("./test/resources/interpro_31.snapshot",
+				batchYml.get(Settings.INTERPRO_DATABASE_SNAPSHOT_KEY).toString());
 		// Gene-Ontology:
 		assertEquals("./test/resources/gene_ontology_results/batch001.csv",
 				batchYml.get(Settings.GENE_ONTOLOGY_RESULT_KEY).toString());
+		assertEquals("./test/resources/gene_ontology_results.index",
+				batchYml.get(Settings.GENE_ONTOLOGY_INDEX_KEY).toString());
+		assertEquals("./test/resources/gene_ontology.obo",
+				batchYml.get(Settings.GENE_ONTOLOGY_DATABASE_KEY).toString());
+		assertEquals("most_specific",
+				batchYml.get(Settings.GO_TERMS_OUTPUT_KEY).toString());
 		// Test Output-File:
 		assertEquals("./test/resources/batch001_ahrd_out.csv",
 				batchYml.get(Settings.OUTPUT_KEY));
@@ -2,24 +2,35 @@ package ahrd.test;
 
 import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.controller.Settings;
+import ahrd.controller.Utils;
 import ahrd.exception.MissingProteinException;
+import ahrd.model.BlastDatabaseIndex;
 import ahrd.model.BlastResult;
+import ahrd.model.HitDescription;
 import ahrd.model.Protein;
+import ahrd.model.ReferenceAnnotationTable;
+import ahrd.model.SameHitBlastResults;
 
 public class BlastResultTest {
 
@@ -86,6 +97,91 @@ public class BlastResultTest {
 		assertEquals(1, blastResults.get("accession_2").size());
 	}
 
+	@Test
+	public void testUnsetValuesAreNull() {
+		BlastResult br = new BlastResult("tair", "AT1G01010.1", "NAC domain containing protein 1");
+		assertEquals("tair", br.getBlastDatabaseName());
+		assertNull(br.getEValue());
+		assertNull(br.getBitScore());
+		assertNull(br.getQueryStart());
+		assertNull(br.getSubjectLength());
+		assertNull(br.getDescriptionScore());
+		assertNull(br.getEvaluationScore());
+		br.setSubjectLength(429);
+		br.setEvaluationScore(0.5);
+		assertEquals(Integer.valueOf(429), br.getSubjectLength());
+		assertEquals(Double.valueOf(0.5), br.getEvaluationScore());
+		br.setEvaluationScore(null);
+		assertNull(br.getEvaluationScore());
+		// NaN is a value, not unset:
+		br.setDescriptionScore(Double.NaN);
+		assertTrue(br.getDescriptionScore().isNaN());
+		br.setDescriptionScore(null);
+		assertNull(br.getDescriptionScore());
+		assertNull(new BlastResult("tair", "AT1G01010.1", "NAC domain containing protein 1").clone().getEValue());
+		br.setBlastDatabaseName("swissprot");
+		assertEquals("swissprot", br.getBlastDatabaseName());
+		BlastResult clone = new BlastResult("accession_1", 1.0, "description", 10, 20, 30, 40, 200, 30, "trembl")
+				.clone();
+		assertEquals("trembl", clone.getBlastDatabaseName());
+		assertEquals(Integer.valueOf(40), clone.getSubjectEnd());
+		assertEquals(Double.valueOf(30), clone.getBitScore());
+	}
+
+	@Test
+	public void testHitDescriptionsAreProcessedOncePerDescription() {
+		HitDescription.Cache hitDescriptions = new HitDescription.Cache("swissprot", false);
+		HitDescription hd = hitDescriptions.get("Dicer-like protein 1 OS=Arabidopsis thaliana");
+		assertSame(hd, hitDescriptions.get("Dicer-like protein 1 OS=Arabidopsis thaliana"));
+		assertTrue(hd.passesBlacklist());
+		assertEquals("Dicer-like protein 1", hd.getDescription());
+		assertTrue(hd.getTokens().contains("dicer"));
+		assertFalse(hitDescriptions.get("Uncharacterized protein").passesBlacklist());
+		// All BlastResults of the same description share its Tokens:
+		Map<String, Protein> proteinDb = TestUtils.mockProteinDb();
+		BlastResult br1 = new BlastResult("accession_1", 1.0, 10, 20, 10, 20, 200, "swissprot",
+				proteinDb.get("gene:chr01.502:mRNA:chr01.502"));
+		BlastResult br2 = new BlastResult("accession_1", 1.0, 10, 20, 10, 20, 200, "swissprot",
+				proteinDb.get("gene:chr01.1056:mRNA:chr01.1056"));
+		for (BlastResult br : Arrays.asList(br1, br2)) {
+			br.setSubjectLength(300);
+			br.generateHRDCandidateForProtein(hd);
+		}
+		assertEquals("Dicer-like protein 1", br1.getDescription());
+		assertSame(br1.getTokens(), br2.getTokens());
+		assertTrue(br1.getProtein().getBlastResults().get("swissprot").contains(br1));
+	}
+
+	@Test
+	public void testAddBlastResultOfManyQueries() {
+		Map<String, List<BlastResult>> blastResults = new HashMap<String, List<BlastResult>>();
+		List<Protein> queries = new ArrayList<Protein>();
+		for (int i = 0; i < 100; i++) {
+			Protein query = new Protein("query_" + i, 300);
+			queries.add(query);
+			BlastResult.addBlastResult(blastResults,
+					new BlastResult("accession_1", 1.0, 10, 20, 10, 20, 100 + i, "swissprot", query), null);
+		}
+		// Further HSPs of the same queries, every second one of better
+		// Bit-Score:
+		for (int i = 0; i < 100; i++) {
+			BlastResult.addBlastResult(blastResults, new BlastResult("accession_1", 1.0, 10, 20, 10, 20,
+					(i % 2 == 0) ? 1000 + i : 1, "swissprot", queries.get(i)), null);
+		}
+		List<BlastResult> sameHitBrs = blastResults.get("accession_1");
+		assertEquals(100, sameHitBrs.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(queries.get(i), sameHitBrs.get(i).getProtein());
+			assertEquals((i % 2 == 0) ? 1000.0 + i : 100.0 + i, sameHitBrs.get(i).getBitScore(), 0.0);
+			assertEquals(i, ((SameHitBlastResults) sameHitBrs).indexOf(queries.get(i)));
+		}
+		assertEquals(-1, ((SameHitBlastResults) sameHitBrs).indexOf(new Protein("query_100", 300)));
+		// The index is kept consistent if BlastResults are removed:
+		sameHitBrs.remove(0);
+		assertEquals(-1, ((SameHitBlastResults) sameHitBrs).indexOf(queries.get(0)));
+		assertEquals(98, ((SameHitBlastResults) sameHitBrs).indexOf(queries.get(99)));
+	}
+
 	@Test
 	public void testParseBlastResults() throws MissingProteinException, IOException {
 		Map<String, Protein> protDb = TestUtils.mockProteinDb();
@@ -164,6 +260,75 @@ public class BlastResultTest {
 		assertTrue(!fltrdBrs.contains(br5));
 	}
 
+	@Test
+	public void testFilterBestScoringBlastResultsResolvesTiesLikeStableSort() {
+		List<BlastResult> blastResults = new ArrayList<BlastResult>();
+		double[] eValues = { 1e-10, 0.1, 1e-50, 1e-10, 5.0, 1e-50, 1e-10, 0.0, 1e-10, 1e-10 };
+		for (int i = 0; i < eValues.length; i++) {
+			blastResults.add(new BlastResult("accession_" + i, eValues[i], "description_" + i, 10, 20, 10, 20, 200,
+					30, "swissprot"));
+		}
+		List<BlastResult> sortedBrs = new ArrayList<BlastResult>(blastResults);
+		Collections.sort(sortedBrs);
+		for (int howMany = 1; howMany < eValues.length; howMany++) {
+			List<BlastResult> fltrdBrs = BlastResult.filterBestScoringBlastResults(blastResults, howMany);
+			assertEquals(sortedBrs.subList(0, howMany), fltrdBrs);
+		}
+		// The result is independent of the argument List:
+		List<BlastResult> fltrdBrs = BlastResult.filterBestScoringBlastResults(blastResults, 3);
+		fltrdBrs.clear();
+		assertEquals(eValues.length, blastResults.size());
+		// Nothing needs to be filtered:
+		assertTrue(blastResults == BlastResult.filterBestScoringBlastResults(blastResults, eValues.length));
+	}
+
+	@Test
+	public void testParseDefaultFastaHeaderEqualsRegex() throws IOException {
+		List<String> headers = new ArrayList<String>();
+		for (String path : new String[] { "./test/resources/swissprot_blast_db.fasta",
+				"./test/resources/trembl_blast_db.fasta", "./test/resources/tair_blast_db.fasta",
+				"./test/resources/bgh04634_trembl_database.fasta" }) {
+			for (String line : Utils.readFile(path).split("\n")) {
+				if (line.startsWith(">"))
+					headers.add(line);
+			}
+		}
+		headers.addAll(Arrays.asList(">sp|Q1|N_ARATH Kinase", ">sp|Q1|N_ARATH Kinase  ", ">sp|Q1|N_ARATH  Kinase OS=",
+				">sp|Q1|N_ARATH Kinase OS=A GN=B", ">sp|Q1|N_ARATH Kinase\tgn=B", ">sp|Q1|N_ARATH K",
+				">sp|Q1|N_ARATH Kinase Os=A", ">sp|Q1|N_ARATH OS=A", ">sp|Q1|N_ARATH", ">sp|Q1|N_ARATH   ", "> Kinase",
+				">", ">sp|Q1|N_ARATH Kinase OS=A\r", ">sp|Q1|N_ARATH Kinase\u2028OS=A"));
+		for (String header : headers) {
+			Matcher m = Settings.DEFAULT_FASTA_HEADER_REGEX.matcher(header);
+			String[] accAndHrd = BlastResult.parseFastaHeader(header, Settings.DEFAULT_FASTA_HEADER_REGEX);
+			if (m.matches()) {
+				assertNotNull(header, accAndHrd);
+				assertEquals(header, m.group(BlastResult.FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME).trim(),
+						accAndHrd[0]);
+				assertEquals(header, m.group(BlastResult.FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME).trim(),
+						accAndHrd[1]);
+			} else {
+				assertNull(header, accAndHrd);
+			}
+		}
+		String[] accAndHrd = BlastResult.parseDefaultFastaHeader(
+				">sp|Q9SXB8|Y1133_ARATH Probable leucine-rich repeat receptor-like protein kinase OS=Arabidopsis thaliana GN=At1g51890");
+		assertEquals("sp|Q9SXB8|Y1133_ARATH", accAndHrd[0]);
+		assertEquals("Probable leucine-rich repeat receptor-like protein kinase", accAndHrd[1]);
+	}
+
+	@Test
+	public void testParseDefaultShortAccessionEqualsRegex() {
+		for (String acc : new String[] { "sp|Q9SXB8|Y1133_ARATH", "tr|W9CFB7|W9CFB7_9HELO", "sp|Q9SXB8", "sp|",
+				"|Q9SXB8|", "sp||Q9SXB8", "AT3G03300.2", "" }) {
+			Matcher m = Settings.DEFAULT_SHORT_ACCESSION_REGEX.matcher(acc);
+			if (m.find())
+				assertEquals(acc, m.group(BlastResult.SHORT_ACCESSION_GROUP_NAME),
+						BlastResult.parseDefaultShortAccession(acc));
+			else
+				assertNull(acc, BlastResult.parseDefaultShortAccession(acc));
+		}
+	}
+
 	@Test
 	public void testGetShortAccession() throws IOException {
 		BlastResult br = new BlastResult("sp|Q9SXB8|Y1133_ARATH", 1.0, "description_1", 10, 20, 10, 20, 200, 30,
@@ -270,4 +435,130 @@ public class BlastResultTest {
 		assertEquals("tr|W9CFB7|W9CFB7_9HELO",
 				p1.getEvaluationScoreCalculator().getUnchangedBlastResults().get("trembl").getAccession());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testParseBlastDatabaseWithIndexEqualsScan() throws IOException, MissingProteinException {
+		getSettings().getBlastDbSettings().get("trembl").put("file", "./test/resources/bgh04634_vs_trEMBL.txt");
+		getSettings().getBlastDbSettings().get("trembl").put("database",
+				"./test/resources/bgh04634_trembl_database.fasta");
+		getSettings().setPathToGeneOntologyResults(null);
+		for (String blastDbName : new String[] { "swissprot", "tair", "trembl" }) {
+			File index = File.createTempFile("ahrd_" + blastDbName, ".idx");
+			index.deleteOnExit();
+			BlastDatabaseIndex.build(getSettings().getPathToBlastDatabase(blastDbName),
+					getSettings().getFastaHeaderRegex(blastDbName), index.getPath());
+			// Scan:
+			getSettings().getBlastDbSettings().get(blastDbName).remove(Settings.BLAST_DATABASE_INDEX_KEY);
+			Map<String, Protein> scannedProtDb = TestUtils.mockProteinDb();
+			BlastResult.parseBlastDatabase(scannedProtDb, blastDbName,
+					BlastResult.parseBlastResults(scannedProtDb, blastDbName, null));
+			// Look up in the index:
+			getSettings().getBlastDbSettings().get(blastDbName).put(Settings.BLAST_DATABASE_INDEX_KEY,
+					index.getPath());
+			assertNotNull(BlastResult.openBlastDatabaseIndex(blastDbName));
+			Map<String, Protein> indexedProtDb = TestUtils.mockProteinDb();
+			BlastResult.parseBlastDatabase(indexedProtDb, blastDbName,
+					BlastResult.parseBlastResults(indexedProtDb, blastDbName, null));
+			getSettings().getBlastDbSettings().get(blastDbName).remove(Settings.BLAST_DATABASE_INDEX_KEY);
+			for (String protAcc : scannedProtDb.keySet()) {
+				List<BlastResult> scanned = scannedProtDb.get(protAcc).getBlastResults().get(blastDbName);
+				List<BlastResult> indexed = indexedProtDb.get(protAcc).getBlastResults().get(blastDbName);
+				assertEquals(scanned == null, indexed == null);
+				if (scanned == null)
+					continue;
+				assertEquals(scanned.size(), indexed.size());
+				for (int i = 0; i < scanned.size(); i++) {
+					assertEquals(scanned.get(i).getAccession(), indexed.get(i).getAccession());
+					assertEquals(scanned.get(i).getSubjectLength(), indexed.get(i).getSubjectLength());
+					assertEquals(scanned.get(i).getDescription(), indexed.get(i).getDescription());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBlastDatabaseIndexLookup() throws IOException {
+		File index = File.createTempFile("ahrd_tair", ".idx");
+		index.deleteOnExit();
+		assertEquals(209, BlastDatabaseIndex.build("./test/resources/tair_blast_db.fasta",
+				getSettings().getFastaHeaderRegex("tair"), index.getPath()));
+		BlastDatabaseIndex tairIndex = new BlastDatabaseIndex(index.getPath());
+		try {
+			assertEquals(new File("./test/resources/tair_blast_db.fasta").length(), tairIndex.getFastaLength());
+			assertNull(tairIndex.lookup("AT1G00000.1"));
+		} finally {
+			tairIndex.close();
+		}
+		// An index of another FASTA file is not used:
+		getSettings().getBlastDbSettings().get("swissprot").put(Settings.BLAST_DATABASE_INDEX_KEY, index.getPath());
+		assertNull(BlastResult.openBlastDatabaseIndex("swissprot"));
+	}
+
+	@Test
+	public void testParseBlastDatabaseWithReferenceAnnotationTableEqualsScan()
+			throws IOException, MissingProteinException {
+		getSettings().setPathToGeneOntologyResults(null);
+		getSettings().setWriteBestBlastHitsToOutput(true);
+		for (String blastDbName : new String[] { "swissprot", "tair" }) {
+			File table = File.createTempFile("ahrd_" + blastDbName, ".tsv");
+			table.deleteOnExit();
+			ReferenceAnnotationTable.write(blastDbName, table.getPath());
+			assertTrue(!ReferenceAnnotationTable.hasGoTerms(table.getPath()));
+			// Scan:
+			Map<String, Protein> scannedProtDb = TestUtils.mockProteinDb();
+			BlastResult.parseBlastDatabase(scannedProtDb, blastDbName,
+					BlastResult.parseBlastResults(scannedProtDb, blastDbName, null));
+			// Read the reference annotation table:
+			getSettings().getBlastDbSettings().get(blastDbName).put(Settings.REFERENCE_ANNOTATION_TABLE_KEY,
+					table.getPath());
+			Map<String, Protein> tableProtDb = TestUtils.mockProteinDb();
+			BlastResult.parseBlastDatabase(tableProtDb, blastDbName,
+					BlastResult.parseBlastResults(tableProtDb, blastDbName, null));
+			getSettings().getBlastDbSettings().get(blastDbName).remove(Settings.REFERENCE_ANNOTATION_TABLE_KEY);
+			for (String protAcc : scannedProtDb.keySet()) {
+				List<BlastResult> scanned = scannedProtDb.get(protAcc).getBlastResults().get(blastDbName);
+				List<BlastResult> fromTable = tableProtDb.get(protAcc).getBlastResults().get(blastDbName);
+				assertEquals(scanned == null, fromTable == null);
+				if (scanned == null)
+					continue;
+				assertEquals(scanned.size(), fromTable.size());
+				for (int i = 0; i < scanned.size(); i++) {
+					assertEquals(scanned.get(i).getAccession(), fromTable.get(i).getAccession());
+					assertEquals(scanned.get(i).getSubjectLength(), fromTable.get(i).getSubjectLength());
+					assertEquals(scanned.get(i).getDescription(), fromTable.get(i).getDescription());
+					assertEquals(scanned.get(i).getTokens(), fromTable.get(i).getTokens());
+				}
+				BlastResult scannedBestHit = scannedProtDb.get(protAcc).getEvaluationScoreCalculator()
+						.getUnchangedBlastResults().get(blastDbName);
+				BlastResult tableBestHit = tableProtDb.get(protAcc).getEvaluationScoreCalculator()
+						.getUnchangedBlastResults().get(blastDbName);
+				assertEquals(scannedBestHit.getDescription(), tableBestHit.getDescription());
+			}
+		}
+	}
+
+	@Test
+	public void testReferenceAnnotationTableIsUpToDate() throws IOException {
+		getSettings().setPathToGeneOntologyResults(null);
+		File table = File.createTempFile("ahrd_swissprot", ".tsv");
+		table.deleteOnExit();
+		ReferenceAnnotationTable.write("swissprot", table.getPath());
+		assertTrue(ReferenceAnnotationTable.isUpToDate(table.getPath(), "swissprot"));
+		// Another Blast-Database's table is not used:
+		assertFalse(ReferenceAnnotationTable.isUpToDate(table.getPath(), "tair"));
+		// Nor after changing the blacklist:
+		List<String> blacklist = new ArrayList<String>(getSettings().getBlastResultsBlackList("swissprot"));
+		blacklist.add("(?i)kinase");
+		getSettings().setBlastResultsBlackList("swissprot", blacklist);
+		assertFalse(ReferenceAnnotationTable.isUpToDate(table.getPath(), "swissprot"));
+	}
+
+	@Test
+	public void testReferenceAnnotationTableEscapesTabs() {
+		String description = "Kinase\tdomain \\ family";
+		String escaped = ReferenceAnnotationTable.escape(description);
+		assertTrue(escaped.indexOf('\t') < 0);
+		assertEquals(description, ReferenceAnnotationTable.unescape(escaped));
+		assertEquals("Kinase domain", ReferenceAnnotationTable.unescape("Kinase domain"));
+	}
+}
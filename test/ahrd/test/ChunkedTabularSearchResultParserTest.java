@@ -0,0 +1,179 @@
+package ahrd.test;
+
+import static ahrd.controller.Settings.getSettings;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ahrd.exception.MissingProteinException;
+import ahrd.model.BlastResult;
+import ahrd.model.ChunkedTabularSearchResultParser;
+import ahrd.model.Protein;
+
+public class ChunkedTabularSearchResultParserTest {
+
+	public ChunkedTabularSearchResultParserTest() {
+		super();
+	}
+
+	@Before
+	public void setup() throws IOException {
+		TestUtils.initTestSettings();
+	}
+
+	private void assertParsesAsSequentialParser(String blastDbName, long chunkSize)
+			throws MissingProteinException, IOException {
+		Map<String, List<BlastResult>> parsed = BlastResult.parseBlastResults(TestUtils.mockProteinDb(), blastDbName,
+				null);
+		Map<String, List<BlastResult>> chunked = ChunkedTabularSearchResultParser
+				.parseBlastResults(TestUtils.mockProteinDb(), blastDbName, null, 3, chunkSize);
+		assertEquals(parsed.keySet(), chunked.keySet());
+		for (String hitAcc : parsed.keySet()) {
+			List<BlastResult> parsedBrs = parsed.get(hitAcc);
+			List<BlastResult> chunkedBrs = chunked.get(hitAcc);
+			assertEquals(parsedBrs.size(), chunkedBrs.size());
+			for (int i = 0; i < parsedBrs.size(); i++) {
+				BlastResult p = parsedBrs.get(i);
+				BlastResult c = chunkedBrs.get(i);
+				assertEquals(p.getProtein().getAccession(), c.getProtein().getAccession());
+				assertEquals(p.getEValue(), c.getEValue());
+				assertEquals(p.getBitScore(), c.getBitScore());
+				assertEquals(p.getQueryStart(), c.getQueryStart());
+				assertEquals(p.getQueryEnd(), c.getQueryEnd());
+				assertEquals(p.getSubjectStart(), c.getSubjectStart());
+				assertEquals(p.getSubjectEnd(), c.getSubjectEnd());
+			}
+		}
+	}
+
+	@Test
+	public void testParsesAsSequentialParser() throws MissingProteinException, IOException {
+		for (String blastDbName : getSettings().getBlastDatabases()) {
+			assertParsesAsSequentialParser(blastDbName, 100);
+			assertParsesAsSequentialParser(blastDbName, ChunkedTabularSearchResultParser.MIN_CHUNK_SIZE);
+		}
+		// Multiple HSPs of the same Hit are merged as by the sequential parser:
+		getSettings().getBlastDbSettings().get("trembl").put("file", "./test/resources/bgh04634_vs_trEMBL.txt");
+		assertParsesAsSequentialParser("trembl", 1000);
+	}
+
+	/**
+	 * Writes the argument table into a temporary file and makes it the
+	 * swissprot search result.
+	 */
+	private void useSwissprotTable(String table) throws IOException {
+		File tableFile = File.createTempFile("ahrd_swissprot_table", ".txt");
+		tableFile.deleteOnExit();
+		FileWriter tableOut = new FileWriter(tableFile);
+		try {
+			tableOut.write(table);
+		} finally {
+			tableOut.close();
+		}
+		getSettings().getBlastDbSettings().get("swissprot").put("file", tableFile.getPath());
+	}
+
+	private Exception parseFailure(boolean chunked) throws IOException {
+		try {
+			if (chunked)
+				ChunkedTabularSearchResultParser.parseBlastResults(TestUtils.mockProteinDb(), "swissprot", null, 3,
+						100);
+			else
+				BlastResult.parseBlastResults(TestUtils.mockProteinDb(), "swissprot", null);
+		} catch (MissingProteinException e) {
+			return e;
+		} catch (RuntimeException e) {
+			return e;
+		}
+		return null;
+	}
+
+	private void assertFailsAsSequentialParser() throws IOException {
+		Exception sequential = parseFailure(false);
+		assertNotNull(sequential);
+		Exception chunked = parseFailure(true);
+		assertNotNull(chunked);
+		assertEquals(sequential.getClass(), chunked.getClass());
+	}
+
+	@Test
+	public void testEmptyAndShortLinesFailAsInSequentialParser() throws IOException {
+		String line = "gene:chr01.502:mRNA:chr01.502\tsp|Q3EBC8|DCL2_ARATH\t48.48\t99\t51\t0\t1\t99\t983\t1081\t2e-19\t94.4\n";
+		useSwissprotTable(line + "\n" + line);
+		assertFailsAsSequentialParser();
+		useSwissprotTable(line + "gene:chr01.502:mRNA:chr01.502\tsp|Q3EBC8|DCL2_ARATH\t48.48\t99\n" + line);
+		assertFailsAsSequentialParser();
+		// Trailing empty columns do not count:
+		useSwissprotTable(line + "gene:chr01.502:mRNA:chr01.502\tsp|Q3EBC8|DCL2_ARATH\t\t\t\t\t\t\t\t\t\t\n");
+		assertFailsAsSequentialParser();
+	}
+
+	@Test
+	public void testSkipsCommentLines() throws MissingProteinException, IOException {
+		String line = "gene:chr01.502:mRNA:chr01.502\tsp|Q3EBC8|DCL2_ARATH\t48.48\t99\t51\t0\t1\t99\t983\t1081\t2e-19\t94.4\n";
+		getSettings().setSeqSimSearchTableCommentLineRegex(Pattern.compile("#.*"));
+		useSwissprotTable("# Fields: query, subject\n" + line + "# Query: \u00e4hnlich\n" + line);
+		assertParsesAsSequentialParser("swissprot", 100);
+		assertEquals(1, ChunkedTabularSearchResultParser
+				.parseBlastResults(TestUtils.mockProteinDb(), "swissprot", null, 3, 100).size());
+	}
+
+	@Test
+	public void testChunksEndOnLineBreaks() throws IOException {
+		FileInputStream tableIn = new FileInputStream("./test/resources/swissprot_blast8_tabular.txt");
+		try {
+			List<long[]> chunks = ChunkedTabularSearchResultParser.chunks(tableIn.getChannel(), 100);
+			assertTrue(chunks.size() > 1);
+			assertEquals(0, chunks.get(0)[0]);
+			assertEquals(tableIn.getChannel().size(), chunks.get(chunks.size() - 1)[1]);
+			byte[] oneByte = new byte[1];
+			for (int i = 0; i < chunks.size() - 1; i++) {
+				assertEquals(chunks.get(i)[1], chunks.get(i + 1)[0]);
+				assertTrue(chunks.get(i)[1] - chunks.get(i)[0] >= 100);
+				tableIn.getChannel().read(ByteBuffer.wrap(oneByte), chunks.get(i)[1] - 1);
+				assertEquals('\n', oneByte[0]);
+			}
+		} finally {
+			tableIn.close();
+		}
+	}
+
+	@Test
+	public void testParseNumbers() {
+		String[] doubles = { "0.0", "-0.0", "1", "123.456", "2e-05", "3.5e-120", "1.0E+10", "e-100", "0.1",
+				"781.2", "4.9e-324", "1.7976931348623157E308", "0.000000000000000000001234", "123456789012345678",
+				".5", "+7.25" };
+		for (String d : doubles) {
+			byte[] bytes = ("\t" + d + "\t").getBytes();
+			assertEquals(d, Double.parseDouble(BlastResult.validateDouble(d)),
+					ChunkedTabularSearchResultParser.parseDouble(bytes, 1, bytes.length - 1), 0.0);
+		}
+		String[] ints = { "0", "1", "-17", "2147483647", "-2147483648", "+42" };
+		for (String i : ints) {
+			byte[] bytes = i.getBytes();
+			assertEquals(Integer.parseInt(i), ChunkedTabularSearchResultParser.parseInt(bytes, 0, bytes.length));
+		}
+	}
+
+	@Test
+	public void testSeparator() {
+		assertEquals('\t', ChunkedTabularSearchResultParser.separator("\t"));
+		assertEquals('\t', ChunkedTabularSearchResultParser.separator("\\t"));
+		assertEquals(',', ChunkedTabularSearchResultParser.separator(","));
+		assertEquals('|', ChunkedTabularSearchResultParser.separator("\\|"));
+		assertEquals(-1, ChunkedTabularSearchResultParser.separator("\\s+"));
+		assertEquals(-1, ChunkedTabularSearchResultParser.separator("|"));
+	}
+}
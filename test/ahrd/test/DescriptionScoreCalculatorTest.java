@@ -2,6 +2,7 @@ package ahrd.test;
 
 import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -17,6 +18,7 @@ import org.junit.Test;
 
 import ahrd.model.BlastResult;
 import ahrd.model.Protein;
+import ahrd.model.ReferenceGoAnnotationStore;
 
 public class DescriptionScoreCalculatorTest {
 
@@ -59,6 +61,23 @@ public class DescriptionScoreCalculatorTest {
 		assertEquals(0.9, br.getDescriptionScore(), 0.000000001);
 	}
 
+	@Test
+	public void testFindHighestScoringBlastResultWithNaNDescriptionScore() {
+		Protein p = new Protein("sweet_sheep_protein", 200);
+		p.setLexicalScoreCalculator(new TestUtils.LexicalScoreCalculatorMock(p));
+		// A Bit-Score of zero relative to a maximum Bit-Score of zero is NaN:
+		BlastResult br = TestUtils.mockBlastResult("accession", 1.0, "goat sheep wool", 10, 20, 10, 20, 200, 0.0,
+				"swissprot", new HashSet<String>(Arrays.asList("goat", "sheep", "wool")));
+		List<BlastResult> brs = new ArrayList<BlastResult>();
+		brs.add(br);
+		p.getBlastResults().put("swissprot", brs);
+		p.getDescriptionScoreCalculator().setMaxBitScore(0.0);
+		p.getDescriptionScoreCalculator().findHighestScoringBlastResult(null);
+		assertTrue(br.getDescriptionScore().isNaN());
+		assertTrue(p.getDescriptionScoreCalculator().getDescriptionHighScore().isNaN());
+		assertEquals(br, p.getDescriptionScoreCalculator().getHighestScoringBlastResult());
+	}
+
 	@Test
 	public void testFindHighestScoringBlastResult() {
 		Protein p = TestUtils.mockProteinAndBlastResultsForDescriptionScoreCalculatorTest();
@@ -94,7 +113,7 @@ public class DescriptionScoreCalculatorTest {
 		refGos.put("no_blast_hit_acc_1", new HashSet<String>(Arrays.asList("GO:1234567", "GO:7654321")));
 		refGos.put("no_blast_hit_acc_2", new HashSet<String>(Arrays.asList("GO:1726354", "GO:7162534")));
 		p.getDescriptionScoreCalculator()
-				.findHighestScoringBlastResult(refGos);
+				.findHighestScoringBlastResult(new ReferenceGoAnnotationStore(refGos));
 		assertEquals(1.1, p.getDescriptionScoreCalculator().getDescriptionHighScore(), 0.0000001);
 		assertEquals("description_5 Fly-Wing formation",
 				p.getDescriptionScoreCalculator().getHighestScoringBlastResult().getDescription());
@@ -0,0 +1,78 @@
+package ahrd.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ahrd.model.GOterm;
+import ahrd.model.GeneOntology;
+
+public class GeneOntologyTest {
+
+	private GeneOntology geneOntology;
+
+	@Before
+	public void setUp() throws IOException {
+		geneOntology = GeneOntology.parse("./test/resources/gene_ontology.obo");
+	}
+
+	@Test
+	public void testParse() {
+		// The Typedef stanza is skipped:
+		assertEquals(7, geneOntology.size());
+		GOterm cmp = geneOntology.getTerm("GO:0044237");
+		assertNotNull(cmp);
+		assertEquals("cellular metabolic process", cmp.getName());
+		assertEquals("biological_process", cmp.getOntology());
+		// Alternative accession:
+		assertTrue(cmp == geneOntology.getTerm("GO:0044236"));
+		assertNull(geneOntology.getTerm("part_of"));
+		// Parental accessions include the term itself:
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0044237", "GO:0008152", "GO:0009987", "GO:0008150")),
+				cmp.getParentAccessions());
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0005737", "GO:0005622", "GO:0005575")),
+				geneOntology.getTerm("GO:0005737").getParentAccessions());
+		// Ancestors are answered from the ontology, also for alternative
+		// accessions:
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0008152", "GO:0009987", "GO:0008150")),
+				geneOntology.ancestorAccessions("GO:0044236"));
+		assertTrue(geneOntology.ancestorAccessions("GO:9999999").isEmpty());
+	}
+
+	@Test
+	public void testIsAncestor() {
+		assertTrue(geneOntology.isAncestor("GO:0008150", "GO:0044237"));
+		assertTrue(geneOntology.isAncestor("GO:0009987", "GO:0044236"));
+		// part_of relations are followed:
+		assertTrue(geneOntology.isAncestor("GO:0005622", "GO:0005737"));
+		assertTrue(!geneOntology.isAncestor("GO:0044237", "GO:0008150"));
+		assertTrue(!geneOntology.isAncestor("GO:0044237", "GO:0044237"));
+		assertTrue(!geneOntology.isAncestor("GO:0008150", "GO:0005737"));
+		assertTrue(!geneOntology.isAncestor("GO:0008150", "GO:9999999"));
+	}
+
+	@Test
+	public void testPropagate() {
+		Set<String> propagated = geneOntology.propagate(Arrays.asList("GO:0044236", "GO:0005622", "GO:9999999"));
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0044237", "GO:0008152", "GO:0009987", "GO:0008150",
+				"GO:0005622", "GO:0005575", "GO:9999999")), propagated);
+	}
+
+	@Test
+	public void testMostSpecific() {
+		Set<String> mostSpecific = geneOntology.mostSpecific(Arrays.asList("GO:0008150", "GO:0009987",
+				"GO:0044237", "GO:0005575", "GO:0005737", "GO:0005622", "GO:9999999"));
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0044237", "GO:0005737", "GO:9999999")), mostSpecific);
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0008152", "GO:0009987")),
+				geneOntology.mostSpecific(Arrays.asList("GO:0008152", "GO:0009987", "GO:0008150")));
+	}
+}
@@ -1,16 +1,24 @@
 package ahrd.test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
+import static ahrd.controller.Settings.getSettings;
 import static junit.framework.Assert.*;
 
-import nu.xom.ParsingException;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.model.InterproDatabaseParser;
+import ahrd.model.InterproDatabaseSnapshot;
+import ahrd.model.InterproHierarchy;
 import ahrd.model.InterproResult;
+import ahrd.model.InterproScanResultParser;
 import ahrd.model.Protein;
 
 import ahrd.exception.MissingProteinException;
@@ -23,7 +31,7 @@ public class InterproResultTest {
 	}
 
 	@Before
-	public void initialiseInterproDb() throws IOException, ParsingException {
+	public void initialiseInterproDb() throws IOException {
 		TestUtils.initTestSettings();
 		InterproResult.initialiseInterproDb();
 	}
@@ -141,4 +149,183 @@ public class InterproResultTest {
 		assertTrue(p.getInterproResults().contains(ipr1));
 		assertTrue(p.getInterproResults().contains(ipr2));
 	}
+
+	@Test
+	public void testInterproHierarchyEqualsRecursiveWalk() throws Exception {
+		Map<String, InterproResult> interproDb = InterproResult.getInterproDb();
+		InterproHierarchy h = InterproResult.getInterproHierarchy();
+		int compared = 0;
+		for (InterproResult ipr : interproDb.values()) {
+			// Only compare entries whose relations are all in the database:
+			boolean complete = true;
+			Set<String> ancestorIds = new HashSet<String>();
+			for (String parentId = ipr.getParentId(); complete && parentId != null && ancestorIds.add(parentId);) {
+				complete = interproDb.containsKey(parentId);
+				parentId = complete ? interproDb.get(parentId).getParentId() : null;
+			}
+			Set<String> containedIds = new HashSet<String>();
+			Set<String> toVisit = new HashSet<String>(ipr.getContains());
+			while (complete && !toVisit.isEmpty()) {
+				String id = toVisit.iterator().next();
+				toVisit.remove(id);
+				complete = interproDb.containsKey(id);
+				if (complete && containedIds.add(id))
+					toVisit.addAll(interproDb.get(id).getContains());
+			}
+			if (!complete)
+				continue;
+			for (InterproResult other : interproDb.values()) {
+				if (other == ipr)
+					continue;
+				assertEquals(ancestorIds.contains(other.getId()), h.isAncestor(ipr, other));
+				assertEquals(containedIds.contains(other.getId()), h.contains(ipr, other));
+			}
+			if (!ancestorIds.isEmpty() || !containedIds.isEmpty())
+				compared++;
+		}
+		assertTrue(compared > 0);
+	}
+
+	@Test
+	public void testInterproHierarchy() throws Exception {
+		InterproHierarchy h = InterproResult.getInterproHierarchy();
+		assertEquals(InterproResult.getInterproDb().size(), h.size());
+		InterproResult child = InterproResult.getInterproDb().get("IPR000003");
+		InterproResult grandParent = InterproResult.getInterproDb().get(
+				"IPR013806");
+		InterproResult containee = InterproResult.getInterproDb().get(
+				"IPR000535");
+		assertTrue(h.isAncestor(child, grandParent));
+		assertFalse(h.isAncestor(grandParent, child));
+		assertTrue(h.contains(child, containee));
+		// Added entries are noticed:
+		InterproResult orphan = new InterproResult("IPR:999999", "orphan",
+				"domain");
+		orphan.setParentId("IPR:999998");
+		InterproResult.getInterproDb().put(orphan.getId(), orphan);
+		assertNotSame(h, InterproResult.getInterproHierarchy(orphan));
+		// Missing ancestors are reported:
+		try {
+			orphan.isParent(grandParent);
+			fail("Missing parent 'IPR:999998' should have been reported.");
+		} catch (MissingInterproResultException e) {
+			assertTrue(e.getMessage().contains("IPR:999998"));
+		}
+		InterproResult.getInterproDb().remove(orphan.getId());
+	}
+
+	@Test
+	public void testParseInterproDatabase() throws IOException {
+		Map<String, InterproResult> interproDb = InterproDatabaseParser.parse(
+				"./test/resources/interpro_31.xml", null);
+		assertEquals(13, interproDb.size());
+		InterproResult ipr = interproDb.get("IPR000003");
+		assertEquals("Retinoid X receptor", ipr.getName());
+		assertEquals("IPR001723", ipr.getParentId());
+		assertTrue(ipr.getContains().contains("IPR000536"));
+		// Retain only referenced entries and their relatives:
+		Set<String> referenced = new HashSet<String>();
+		referenced.add("IPR000003");
+		Map<String, InterproResult> retained = InterproDatabaseParser.parse(
+				"./test/resources/interpro_31.xml", referenced);
+		assertTrue(retained.containsKey("IPR000003"));
+		// Ancestors:
+		assertTrue(retained.containsKey("IPR001723"));
+		assertTrue(retained.containsKey("IPR013806"));
+		// Contained:
+		assertTrue(retained.containsKey("IPR000536"));
+		assertTrue(retained.containsKey("IPR000535"));
+		assertFalse(retained.containsKey("IPR000001"));
+		assertTrue(retained.size() < interproDb.size());
+		// Retained entries are read in full:
+		for (InterproResult r : retained.values()) {
+			InterproResult full = interproDb.get(r.getId());
+			assertEquals(full.getName(), r.getName());
+			assertEquals(full.getShortName(), r.getShortName());
+			assertEquals(full.getType(), r.getType());
+			assertEquals(full.getParentId(), r.getParentId());
+			assertEquals(full.getContains(), r.getContains());
+		}
+	}
+
+	@Test
+	public void testReferencedInterproIds() throws IOException {
+		Map<String, Set<String>> interproIds = InterproResult.readInterproIds(TestUtils.mockProteinDb());
+		assertTrue(interproIds.get("gene:chr01.502:mRNA:chr01.502").contains("IPR000535"));
+		Set<String> referenced = InterproResult.referencedInterproIds(interproIds);
+		assertTrue(referenced.contains("IPR000535"));
+		assertTrue(referenced.contains("IPR000006"));
+		assertTrue(referenced.contains("IPR000536"));
+	}
+
+	@Test
+	public void testInterproDatabaseSnapshot() throws IOException {
+		File snapshot = File.createTempFile("interpro", ".snapshot");
+		snapshot.delete();
+		getSettings().setPathToInterproDatabaseSnapshot(snapshot.getPath());
+		try {
+			// Written on first use:
+			InterproResult.initialiseInterproDb();
+			assertTrue(snapshot.length() > 0);
+			Map<String, InterproResult> parsed = InterproDatabaseParser.parse(
+					getSettings().getPathToInterproDatabase(), null);
+			Map<String, InterproResult> read = InterproDatabaseSnapshot.read(
+					snapshot.getPath(),
+					getSettings().getPathToInterproDatabase());
+			assertEquals(parsed.keySet(), read.keySet());
+			for (InterproResult p : parsed.values()) {
+				InterproResult r = read.get(p.getId());
+				assertEquals(p.getShortName(), r.getShortName());
+				assertEquals(p.getType(), r.getType());
+				assertEquals(p.getName(), r.getName());
+				assertEquals(p.getParentId(), r.getParentId());
+				assertEquals(p.getContains(), r.getContains());
+			}
+			// Read on later use:
+			InterproResult.getInterproDb().clear();
+			InterproResult.initialiseInterproDb();
+			assertEquals("IPR001723", InterproResult.getInterproDb()
+					.get("IPR000003").getParentId());
+			// A snapshot of another Interpro-Database is ignored:
+			assertNull(InterproDatabaseSnapshot.read(snapshot.getPath(),
+					"./test/resources/interpro_result.raw"));
+		} finally {
+			getSettings().setPathToInterproDatabaseSnapshot(null);
+			snapshot.delete();
+		}
+	}
+
+	@Test
+	public void testInterproScanResultParser() throws IOException {
+		String results = "gene_1\tD5F4\t567\tHMMPfam\tPF00560\tLRR_1\t262\t283\t0.038\tT\t02-Mar-2011\tIPR000535\tLeucine-rich repeat\n"
+				+ "gene_1\tC8B2\t256\tSeg\tseg\tseg\t27\t45\tNA\t?\t02-Mar-2011\tNULL\tNULL\n"
+				+ "gene_2\tC8B2\t256\tPfam\tPF1\tdesc\t1\t9\t1e-5\tT\t02-Mar-2011\tIPR000006\n"
+				// InterProScan 5 match without Interpro-Entry, i.e. only 11
+				// columns:
+				+ "gene_4\tC8B2\t256\tPfam\tPF2\tsimilar to IPR000999 domain\t1\t9\t1e-5\tT\t02-Mar-2011\n"
+				+ "gene_3 D5F4 567 HMMPfam PF00560 LRR_1 262 283 0.038 T 02-Mar-2011 IPR000536 Leucine-rich repeat\n"
+				+ "not an interpro result\n";
+		InterproScanResultParser iprScan = new InterproScanResultParser(
+				new StringReader(results));
+		try {
+			assertTrue(iprScan.next());
+			assertEquals("gene_1", iprScan.getGeneAccession());
+			assertEquals("IPR000535", iprScan.getInterproId());
+			// Lines without Interpro-ID are skipped:
+			assertTrue(iprScan.next());
+			assertEquals("gene_2", iprScan.getGeneAccession());
+			assertEquals("IPR000006", iprScan.getInterproId());
+			// Legacy lines are matched by the regular expression:
+			assertTrue(iprScan.next());
+			assertEquals("gene_3", iprScan.getGeneAccession());
+			assertEquals("IPR000536", iprScan.getInterproId());
+			assertFalse(iprScan.next());
+		} finally {
+			iprScan.close();
+		}
+		assertTrue(InterproScanResultParser.isInterproId("IPR012345"));
+		assertFalse(InterproScanResultParser.isInterproId("IPR01234"));
+		assertFalse(InterproScanResultParser.isInterproId("IPR01234x"));
+		assertFalse(InterproScanResultParser.isInterproId("NULL"));
+	}
 }
@@ -2,11 +2,13 @@ package ahrd.test;
 
 import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +17,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import ahrd.exception.MissingAccessionException;
+import ahrd.model.FastaReader;
 import ahrd.model.Protein;
 
 public class ProteinTest {
@@ -134,4 +137,47 @@ public class ProteinTest {
 				fastaEntries);
 	}
 
+	@Test
+	public void testFastaReader() throws IOException {
+		String str = "\n>Protein One->Expressed in stupid user\r\nSPGYDASMTDSRSSGISM \r\n  SIGGRSLASEDSDGLTPSAVFSQIMNPKGR\r\n\n>Protein Two\nMADDSKFCFFLVSTFLLLAV\n>Protein Three";
+		FastaReader fasta = new FastaReader(new StringReader(str), true);
+		assertTrue(fasta.nextEntry());
+		assertEquals("Protein One->Expressed in stupid user", fasta.getHeader());
+		assertEquals("SPGYDASMTDSRSSGISMSIGGRSLASEDSDGLTPSAVFSQIMNPKGR", fasta.getSequence());
+		assertEquals(48, fasta.getSequenceLength());
+		assertTrue(fasta.nextEntry());
+		assertEquals("Protein Two", fasta.getHeader());
+		assertEquals("MADDSKFCFFLVSTFLLLAV", fasta.getSequence());
+		assertTrue(fasta.nextEntry());
+		assertEquals("Protein Three", fasta.getHeader());
+		assertEquals("", fasta.getSequence());
+		assertFalse(fasta.nextEntry());
+		fasta.close();
+		// Only count the residues:
+		fasta = new FastaReader(new StringReader(str), false);
+		assertTrue(fasta.nextEntry());
+		assertNull(fasta.getSequence());
+		assertEquals(48, fasta.getSequenceLength());
+		fasta.close();
+	}
+
+	@Test
+	public void testInitialisationOfProteinsFromFastaReader() throws IOException, MissingAccessionException {
+		Map<String, Protein> prot_db = Protein.initializeProteins(
+				new FastaReader(getSettings().getPathToProteinsFasta(), getSettings().doOutputFasta()));
+		assertEquals(Protein.initializeProteins(getSettings().getProteinsFasta()).keySet(), prot_db.keySet());
+		assertEquals(2, prot_db.size());
+		for (Protein prot : prot_db.values())
+			assertTrue(prot.getSequenceLength() > 0);
+	}
+
+	@Test
+	public void testInitialisationOfProteinsFromFastaWithBlankAfterGreaterThan()
+			throws IOException, MissingAccessionException {
+		Map<String, Protein> prot_db = Protein.initializeProteins("> Protein_One Expressed in user\nMADDSKFCF\n");
+		assertEquals(1, prot_db.size());
+		assertNotNull(prot_db.get("Protein_One"));
+		assertEquals(9, prot_db.get("Protein_One").getSequenceLength().intValue());
+	}
+
 }
@@ -23,7 +23,6 @@ import ahrd.exception.MissingProteinException;
 import ahrd.model.Protein;
 import ahrd.model.ReferenceDescription;
 import ahrd.model.TokenScoreCalculator;
-import nu.xom.ParsingException;
 
 public class ReferenceDescriptionTest {
 
@@ -50,7 +49,7 @@ public class ReferenceDescriptionTest {
 
 	@Test
 	public void testSwissprotBatch1ReferenceTokens()
-			throws IOException, MissingAccessionException, MissingProteinException, SAXException, ParsingException {
+			throws IOException, MissingAccessionException, MissingProteinException, SAXException {
 		Evaluator e = new Evaluator("./test/resources/evaluator_filter_references_test.yml");
 		e.initializeProteins();
 		e.setupReferences();
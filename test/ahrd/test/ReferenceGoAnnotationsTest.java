@@ -3,25 +3,36 @@ package ahrd.test;
 import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
-import nu.xom.ParsingException;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
 import ahrd.controller.AHRD;
+import ahrd.controller.Settings;
 import ahrd.controller.Utils;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingInterproResultException;
 import ahrd.exception.MissingProteinException;
 import ahrd.model.Protein;
+import ahrd.model.ReferenceAnnotationTable;
+import ahrd.model.ReferenceGoAnnotationStore;
+import ahrd.model.ReferenceGoAnnotations;
+import ahrd.model.ReferenceGoAnnotationsIndex;
 
 public class ReferenceGoAnnotationsTest {
 
@@ -45,8 +56,7 @@ public class ReferenceGoAnnotationsTest {
 
 	@Test
 	public void testUniqueShortAccessions() throws IOException,
-			MissingAccessionException, MissingProteinException, SAXException,
-			ParsingException {
+			MissingAccessionException, MissingProteinException, SAXException {
 		ahrd.setup(false);
 		assertNotNull(ahrd.getUniqueBlastResultShortAccessions());
 		// Somehow assertEquals does not work on Collections as expected, hence
@@ -65,8 +75,7 @@ public class ReferenceGoAnnotationsTest {
 
 	@Test
 	public void testParseReferenceGoAnnotations() throws IOException,
-			MissingAccessionException, MissingProteinException, SAXException,
-			ParsingException {
+			MissingAccessionException, MissingProteinException, SAXException {
 		ahrd.setup(false);
 		assertNotNull(ahrd.getReferenceGoAnnotations());
 		assertTrue(!ahrd.getReferenceGoAnnotations().isEmpty());
@@ -80,7 +89,7 @@ public class ReferenceGoAnnotationsTest {
 	@Test
 	public void testAnnotatesGoTerms() throws IOException,
 			MissingAccessionException, MissingProteinException, SAXException,
-			ParsingException, MissingInterproResultException, SQLException {
+			MissingInterproResultException, SQLException {
 		ahrd.setup(false);
 		ahrd.assignHumanReadableDescriptions();
 		Protein p = ahrd.getProteins().get("gene:chr01.1056:mRNA:chr01.1056");
@@ -89,4 +98,114 @@ public class ReferenceGoAnnotationsTest {
 		assertTrue(p.getGoResults().contains("GO:0006355"));
 		assertTrue(p.getGoResults().contains("GO:0043401"));
 	}
+
+	@Test
+	public void testParseReferenceGoAnnotationsFromReferenceAnnotationTables()
+			throws IOException, MissingAccessionException,
+			MissingProteinException, SAXException {
+		ahrd.setup(false);
+		Map<String, Set<String>> fromGoa = ahrd.getReferenceGoAnnotations().toMap();
+		for (String blastDbName : getSettings().getBlastDatabases()) {
+			File table = File.createTempFile("ahrd_" + blastDbName, ".tsv");
+			table.deleteOnExit();
+			ReferenceAnnotationTable.write(blastDbName, table.getPath());
+			assertTrue(ReferenceAnnotationTable.hasGoTerms(table.getPath()));
+			getSettings().getBlastDbSettings().get(blastDbName).put(
+					Settings.REFERENCE_ANNOTATION_TABLE_KEY, table.getPath());
+		}
+		ahrd.setUpReferenceGoAnnotations();
+		assertEquals(fromGoa, ahrd.getReferenceGoAnnotations().toMap());
+	}
+
+	@Test
+	public void testParseReferenceGoAnnotationsFromIndex() throws IOException,
+			MissingAccessionException, MissingProteinException, SAXException {
+		ahrd.setup(false);
+		Map<String, Set<String>> fromGoa = ahrd.getReferenceGoAnnotations().toMap();
+		File index = File.createTempFile("ahrd_goa", ".idx");
+		index.deleteOnExit();
+		ReferenceGoAnnotationsIndex.build(getSettings().getPathToGeneOntologyResults(),
+				getSettings().getReferenceGoRegex(), index.getPath());
+		getSettings().setPathToGeneOntologyIndex(index.getPath());
+		ReferenceGoAnnotationsIndex goaIndex = ReferenceGoAnnotations.openReferenceGoAnnotationsIndex();
+		assertNotNull(goaIndex);
+		try {
+			assertNull(goaIndex.lookup("NOT_ANNOTATED"));
+		} finally {
+			goaIndex.close();
+		}
+		assertEquals(fromGoa, ReferenceGoAnnotations
+				.parseReferenceGoAnnotations(ahrd.getUniqueBlastResultShortAccessions()).toMap());
+		// An index built with another reference_go_regex is ignored:
+		Pattern referenceGoRegex = getSettings().getReferenceGoRegex();
+		getSettings().setReferenceGoRegex(Pattern.compile(referenceGoRegex.pattern() + "\\s"));
+		assertNull(ReferenceGoAnnotations.openReferenceGoAnnotationsIndex());
+		getSettings().setReferenceGoRegex(referenceGoRegex);
+		// So is an index of a modified GOA file:
+		File goa = new File(getSettings().getPathToGeneOntologyResults());
+		long lastModified = goa.lastModified();
+		assertTrue(goa.setLastModified(lastModified - 2000));
+		try {
+			assertNull(ReferenceGoAnnotations.openReferenceGoAnnotationsIndex());
+		} finally {
+			goa.setLastModified(lastModified);
+		}
+		// And an index of another GOA file:
+		getSettings().setPathToGeneOntologyResults("./test/resources/interpro_result.raw");
+		assertNull(ReferenceGoAnnotations.openReferenceGoAnnotationsIndex());
+	}
+
+	@Test
+	public void testReferenceGoAnnotationStore() {
+		assertEquals(3824, ReferenceGoAnnotationStore.encodeGoTerm("GO:0003824"));
+		assertEquals("GO:0003824", ReferenceGoAnnotationStore.decodeGoTerm(3824));
+		Map<String, Set<String>> goa = new HashMap<String, Set<String>>();
+		for (int i = 0; i < 100; i++)
+			goa.put("accession_" + i, new HashSet<String>(Arrays.asList("GO:" + (1000000 + i), "GO:0000001")));
+		goa.put("accession_without_gos", new HashSet<String>());
+		ReferenceGoAnnotationStore store = new ReferenceGoAnnotationStore(goa);
+		assertEquals(101, store.size());
+		assertEquals(goa, store.toMap());
+		int id = store.idOf("accession_42");
+		assertTrue(id >= 0);
+		assertEquals(2, store.goTermCount(id));
+		// GO terms are sorted:
+		assertEquals(1, store.goTerm(id, 0));
+		assertEquals(1000042, store.goTerm(id, 1));
+		assertTrue(store.contains("accession_without_gos"));
+		assertTrue(!store.contains("accession_100"));
+		assertTrue(!store.contains(null));
+		assertNull(store.get("accession_100"));
+		assertTrue(new ReferenceGoAnnotationStore(new HashMap<String, Set<String>>()).isEmpty());
+	}
+
+	@Test
+	public void testReferenceGoAnnotationStoreBuilder() {
+		// Annotations of an accession may be scattered and repeated, as in
+		// GOA files listing a GO term once per evidence code:
+		ReferenceGoAnnotationStore store = new ReferenceGoAnnotationStore.Builder().add("acc_2", "GO:0000003")
+				.add("acc_1", "GO:0000002").add("acc_2", "GO:0000001").add("acc_1", "GO:0000002")
+				.add("acc_2", "GO:0000003").build();
+		assertEquals(2, store.size());
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0000002")), store.get("acc_1"));
+		int id = store.idOf("acc_2");
+		assertEquals(2, store.goTermCount(id));
+		assertEquals(1, store.goTerm(id, 0));
+		assertEquals(3, store.goTerm(id, 1));
+		assertTrue(new ReferenceGoAnnotationStore.Builder().build().isEmpty());
+	}
+
+	@Test
+	public void testReferenceGoAnnotationStoreSkipsMalformedGoTerms() {
+		ReferenceGoAnnotationStore.Builder builder = new ReferenceGoAnnotationStore.Builder()
+				.add("acc_1", "GO:0000001").add("acc_1", "IPR000001").add("acc_2", "GO:").add("acc_2", "GO:12ab");
+		assertEquals(3, builder.getSkippedGoTerms());
+		ReferenceGoAnnotationStore store = builder.build();
+		assertEquals(1, store.size());
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0000001")), store.get("acc_1"));
+		assertTrue(!store.contains("acc_2"));
+		// GO terms are normalised to seven digits:
+		store = new ReferenceGoAnnotationStore.Builder().add("acc_1", "GO:3824").build();
+		assertEquals(new HashSet<String>(Arrays.asList("GO:0003824")), store.get("acc_1"));
+	}
 }
@@ -0,0 +1,85 @@
+package ahrd.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import ahrd.controller.RegexList;
+import ahrd.controller.Utils;
+
+public class RegexListTest {
+
+	/**
+	 * The original implementation of the Blacklist, compiling each regular
+	 * expression when needed.
+	 */
+	private static boolean findsAnySeparately(String input, List<String> regexes) {
+		for (String regex : regexes) {
+			if (Pattern.compile(regex).matcher(input).find())
+				return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testFindsAnyEqualsSeparateMatching() throws IOException {
+		List<String> inputs = new ArrayList<String>();
+		for (String line : Utils.readFile("./test/resources/swissprot_blast_db.fasta").split("\n")) {
+			if (line.startsWith(">"))
+				inputs.add(line.substring(line.indexOf(' ') + 1));
+		}
+		inputs.addAll(Arrays.asList("Similar to protein kinase", "putative ORF12", "orf", "Unknown", "", "clone",
+				"Probable transcription factor", "protein", "hypothetical"));
+		for (String path : new String[] { "./test/resources/blacklist_descline.txt",
+				"./test/resources/blacklist_token.txt", "./test/resources/filter_descline_sprot.txt",
+				"./test/resources/filter_descline_tair.txt", "./test/resources/filter_descline_trembl.txt" }) {
+			List<String> regexes = Utils.fromFile(path);
+			RegexList regexList = new RegexList(regexes);
+			for (String input : inputs) {
+				assertEquals(path + " on '" + input + "'", findsAnySeparately(input, regexes),
+						regexList.findsAny(input));
+			}
+		}
+	}
+
+	@Test
+	public void testInlineFlagsAreScopedToTheirRegex() {
+		RegexList regexList = new RegexList(Arrays.asList("(?i)kinase", "Domain"));
+		assertTrue(regexList.findsAny("KINASE"));
+		assertTrue(regexList.findsAny("Domain"));
+		assertTrue(!regexList.findsAny("domain"));
+	}
+
+	@Test
+	public void testBackReferencesAreMatchedSeparately() {
+		RegexList regexList = new RegexList(Arrays.asList("(a)b", "(x)\\1"));
+		assertTrue(regexList.findsAny("ab"));
+		assertTrue(regexList.findsAny("xx"));
+		assertTrue(!regexList.findsAny("xa"));
+	}
+
+	@Test
+	public void testUnterminatedQuotationsAreMatchedSeparately() {
+		RegexList regexList = new RegexList(Arrays.asList("\\Qa.b", "kinase", "\\Qc.d\\E"));
+		assertTrue(regexList.findsAny("a.b"));
+		assertTrue(!regexList.findsAny("axb"));
+		assertTrue(regexList.findsAny("protein kinase"));
+		assertTrue(regexList.findsAny("c.d"));
+	}
+
+	@Test
+	public void testReplaceAllKeepsOrder() {
+		RegexList regexList = new RegexList(Arrays.asList("bc", "ab"));
+		assertEquals("a ", regexList.replaceAll("abc", " "));
+		assertTrue(new RegexList(new ArrayList<String>()).isEmpty());
+		assertTrue(!new RegexList(new ArrayList<String>()).findsAny("abc"));
+	}
+
+}
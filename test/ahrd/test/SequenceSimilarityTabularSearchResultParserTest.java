@@ -1,10 +1,24 @@
 package ahrd.test;
 
+import static ahrd.controller.Settings.getSettings;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.exception.MissingProteinException;
+import ahrd.model.BlastResult;
+import ahrd.model.Protein;
+import ahrd.model.QueryHighScoringPairs;
+import ahrd.model.SequenceSimilarityTabularSearchResultParser;
+
 public class SequenceSimilarityTabularSearchResultParserTest {
 
 	public SequenceSimilarityTabularSearchResultParserTest() {
@@ -15,10 +29,110 @@ public class SequenceSimilarityTabularSearchResultParserTest {
 	public void setup() throws IOException {
 		TestUtils.initTestSettings();
 	}
-	
+
+	@Test
+	public void testParsesSwissprotTable() throws MissingProteinException, IOException {
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				"swissprot", Integer.MAX_VALUE);
+		parser.parse(protDb);
+		Map<String, List<BlastResult>> streamed = parser.blastResults(protDb, null);
+		Map<String, List<BlastResult>> parsed = BlastResult.parseBlastResults(TestUtils.mockProteinDb(),
+				"swissprot", null);
+		// Without a limit the same Hits are found:
+		assertEquals(parsed.keySet(), streamed.keySet());
+		for (String hitAcc : parsed.keySet()) {
+			assertEquals(parsed.get(hitAcc).size(), streamed.get(hitAcc).size());
+		}
+		// The compact stores are released:
+		assertTrue(parser.getQueryHsps().isEmpty());
+	}
+
+	@Test
+	public void testMergesMultipleHsps() throws MissingProteinException, IOException {
+		getSettings().getBlastDbSettings().get("trembl").put("file", "./test/resources/bgh04634_vs_trEMBL.txt");
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser("trembl",
+				1000);
+		parser.parse(protDb);
+		// One HSP is double:
+		assertEquals(498, parser.blastResults(protDb, null).size());
+	}
+
+	@Test
+	public void testRetainsOnlyBestHsps() throws MissingProteinException, IOException {
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		Map<String, List<BlastResult>> parsed = BlastResult.parseBlastResults(protDb, "tair", null);
+		List<Double> allEValues = new ArrayList<Double>();
+		for (List<BlastResult> brs : parsed.values()) {
+			for (BlastResult br : brs) {
+				if (br.getProtein().getAccession().equals("gene:chr01.1056:mRNA:chr01.1056"))
+					allEValues.add(br.getEValue());
+			}
+		}
+		Collections.sort(allEValues);
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser("tair",
+				10);
+		parser.parse(protDb);
+		QueryHighScoringPairs hsps = parser.getQueryHsps().get("gene:chr01.1056:mRNA:chr01.1056");
+		assertEquals(10, hsps.size());
+		List<BlastResult> best = hsps.toBlastResults("tair", protDb.get("gene:chr01.1056:mRNA:chr01.1056"));
+		List<Double> bestEValues = new ArrayList<Double>();
+		for (BlastResult br : best)
+			bestEValues.add(br.getEValue());
+		Collections.sort(bestEValues);
+		assertEquals(allEValues.subList(0, 10), bestEValues);
+	}
+
+	@Test
+	public void testQueryHighScoringPairsResolvesTiesByReadOrder() {
+		QueryHighScoringPairs hsps = new QueryHighScoringPairs(2);
+		assertTrue(hsps.add("subject_1", 1e-10, 1, 10, 1, 10, 50.0));
+		assertTrue(hsps.add("subject_2", 1e-10, 1, 10, 1, 10, 40.0));
+		// Same E-Value, but read later:
+		assertTrue(!hsps.add("subject_3", 1e-10, 1, 10, 1, 10, 60.0));
+		// Better E-Value replaces the worst retained HSP:
+		assertTrue(hsps.add("subject_4", 1e-20, 1, 10, 1, 10, 30.0));
+		// A further HSP of the same subject with a better Bit-Score:
+		assertTrue(hsps.add("subject_4", 1e-15, 2, 12, 2, 12, 35.0));
+		List<BlastResult> brs = hsps.toBlastResults("swissprot", TestUtils.mockProtein());
+		assertEquals(2, brs.size());
+		assertEquals("subject_1", brs.get(0).getAccession());
+		assertEquals("subject_4", brs.get(1).getAccession());
+		assertEquals(Double.valueOf(35.0), brs.get(1).getBitScore());
+		assertEquals(Integer.valueOf(2), brs.get(1).getQueryStart());
+	}
+
+	@Test
+	public void testQueryHighScoringPairsFindsSubjectsAfterReplacements() {
+		QueryHighScoringPairs hsps = new QueryHighScoringPairs(50);
+		// Ever better E-Values, so that each HSP beyond the capacity replaces
+		// the worst retained one:
+		for (int i = 0; i < 500; i++)
+			hsps.add("subject_" + i, 1.0 / (i + 1), 1, 10, 1, 10, 10.0);
+		assertEquals(50, hsps.size());
+		// The retained subjects are found and updated with a better Bit-Score:
+		for (int i = 450; i < 500; i++)
+			assertTrue(hsps.add("subject_" + i, 1.0, 1, 10, 1, 10, 20.0));
+		assertEquals(50, hsps.size());
+		for (BlastResult br : hsps.toBlastResults("swissprot", TestUtils.mockProtein()))
+			assertEquals(Double.valueOf(20.0), br.getBitScore());
+		// Discarded subjects are not found:
+		assertTrue(!hsps.add("subject_0", 1.0, 1, 10, 1, 10, 20.0));
+	}
+
 	@Test
-	public void testParsesSwissprotTable() {
-		assert(true);
+	public void testStreamedReadBlastResults() throws MissingProteinException, IOException {
+		getSettings().setStreamSeqSimSearchTable(true);
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		for (String blastDb : getSettings().getBlastDatabases())
+			BlastResult.readBlastResults(protDb, blastDb, null);
+		Protein p = protDb.get("gene:chr01.1056:mRNA:chr01.1056");
+		assertTrue(p.getBlastResults().containsKey("swissprot"));
+		assertTrue(p.getBlastResults().containsKey("tair"));
+		assertTrue(p.getBlastResults().containsKey("trembl"));
+		for (List<BlastResult> brs : p.getBlastResults().values())
+			assertTrue(brs.size() <= BlastResult.MAX_BLAST_RESULTS_PER_DATABASE);
 	}
 
 }
@@ -3,11 +3,15 @@ package ahrd.test;
 import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Settings.setSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.junit.Before;
@@ -138,6 +142,19 @@ public class SettingsTest {
 				s.getAvgEvaluationScore() != c.getAvgEvaluationScore());
 	}
 
+	@Test
+	public void testCompiledFastaHeaderRegexesAreCached() {
+		Pattern tairRegex = getSettings().getFastaHeaderRegex("tair");
+		assertTrue(tairRegex == getSettings().getFastaHeaderRegex("tair"));
+		assertTrue(tairRegex == getSettings().clone().getFastaHeaderRegex("tair"));
+		assertTrue(Settings.DEFAULT_SHORT_ACCESSION_REGEX == getSettings().getShortAccessionRegex("trembl"));
+		// A changed setting is compiled again:
+		getSettings().getBlastDbSettings().get("tair").put(Settings.FASTA_HEADER_REGEX_KEY,
+				"^>(?<accession>\\S+)\\s+(?<description>.+)$");
+		assertEquals("^>(?<accession>\\S+)\\s+(?<description>.+)$",
+				getSettings().getFastaHeaderRegex("tair").pattern());
+	}
+
 	@Test
 	public void testHasInterproAnnotations() {
 		// Should have Interpro-Annotations with default test-Settings:
@@ -159,4 +176,20 @@ public class SettingsTest {
 				"Path through Parameter-Space should be remembered, but flag is set to FALSE.",
 				getSettings().rememberSimulatedAnnealingPath());
 	}
+
+	@Test
+	public void testBlacklistsStayCompiledAsReturned() {
+		List<String> blacklist = getSettings().getBlastResultsBlackList("swissprot");
+		try {
+			blacklist.add("(?i)kinase");
+			fail("Blacklists must not be modifiable.");
+		} catch (UnsupportedOperationException expected) {
+		}
+		List<String> changed = new ArrayList<String>(blacklist);
+		changed.add("(?i)kinase");
+		getSettings().setBlastResultsBlackList("swissprot", changed);
+		assertEquals(changed, getSettings().getBlastResultsBlackList("swissprot"));
+		assertFalse(getSettings().getBlastResultsBlacklistPatterns("swissprot").findsAny("Protein"));
+		assertTrue(getSettings().getBlastResultsBlacklistPatterns("swissprot").findsAny("Protein Kinase"));
+	}
 }
@@ -15,6 +15,7 @@ import ahrd.controller.Settings;
 import ahrd.model.BlastResult;
 import ahrd.model.LexicalScoreCalculator;
 import ahrd.model.Protein;
+import ahrd.model.ReferenceGoAnnotationStore;
 
 public class TestUtils {
 
@@ -190,10 +191,10 @@ public class TestUtils {
 		return p;
 	}
 
-	public static Map<String, Set<String>> mockReferenceGoAnnotationsForDescriptionScoreCalculatorTest() {
+	public static ReferenceGoAnnotationStore mockReferenceGoAnnotationsForDescriptionScoreCalculatorTest() {
 		Map<String, Set<String>> refGos = new HashMap<String, Set<String>>();
 		refGos.put("accession_1", new HashSet<String>(Arrays.asList("GO:1234567", "GO:7654321")));
 		refGos.put("accession_4", new HashSet<String>(Arrays.asList("GO:1726354", "GO:7162534")));
-		return refGos;
+		return new ReferenceGoAnnotationStore(refGos);
 	}
 }
@@ -7,16 +7,25 @@ import static ahrd.controller.Settings.getSettings;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.controller.RegexList;
+import ahrd.controller.Utils;
 import ahrd.model.BlastResult;
 import ahrd.model.Protein;
+import ahrd.model.TokenDictionary;
 import ahrd.model.TokenScoreCalculator;
+import ahrd.model.TokenScoreMap;
+import ahrd.model.TokenSet;
 
 public class TokenScoreCalculatorTest {
 
@@ -61,8 +70,6 @@ public class TokenScoreCalculatorTest {
 
 	@Test
 	public void testMeasureTotalScores() throws IOException {
-		// Init the test-settings:
-		TestUtils.initTestSettings();
 		Protein p = TestUtils.mockProtein(); // sequence-length = 200
 		p.getTokenScoreCalculator().measureTotalScores(br1);
 		p.getTokenScoreCalculator().measureTotalScores(br2);
@@ -77,8 +84,6 @@ public class TokenScoreCalculatorTest {
 
 	@Test
 	public void testMeasureCumulativeScores() throws IOException {
-		// Init the test-settings:
-		TestUtils.initTestSettings();
 		Protein p = TestUtils.mockProtein(); // sequence-length = 200
 		p.getTokenScoreCalculator().measureCumulativeScores(br1);
 		p.getTokenScoreCalculator().measureCumulativeScores(br2);
@@ -113,6 +118,42 @@ public class TokenScoreCalculatorTest {
 				tsc.getCumulativeTokenOverlapScores().get("token_three"), 0);
 	}
 
+	@Test
+	public void testMeasureScores() throws IOException {
+		Protein p = TestUtils.mockProtein(); // sequence-length = 200
+		Protein q = TestUtils.mockProtein();
+		for (BlastResult br : new BlastResult[] { br1, br2, br3 }) {
+			p.getTokenScoreCalculator().measureScores(br);
+			q.getTokenScoreCalculator().measureCumulativeScores(br);
+			q.getTokenScoreCalculator().measureTotalScores(br);
+		}
+		TokenScoreCalculator fused = p.getTokenScoreCalculator();
+		TokenScoreCalculator separate = q.getTokenScoreCalculator();
+		assertEquals(separate.getTotalTokenBitScore(), fused.getTotalTokenBitScore(), 0.0);
+		assertEquals(separate.getTotalTokenBlastDatabaseScore(), fused.getTotalTokenBlastDatabaseScore(), 0.0);
+		assertEquals(separate.getTotalTokenOverlapScore(), fused.getTotalTokenOverlapScore(), 0.0);
+		assertEquals(separate.getCumulativeTokenBitScores(), fused.getCumulativeTokenBitScores());
+		assertEquals(separate.getCumulativeTokenBlastDatabaseScores(),
+				fused.getCumulativeTokenBlastDatabaseScores());
+		assertEquals(separate.getCumulativeTokenOverlapScores(), fused.getCumulativeTokenOverlapScores());
+		// All three cumulative scores of a Token are held in one map:
+		int tokenTwo = fused.getCumulativeTokenScoreMap().getTokenDictionary().id("token_two");
+		assertEquals(133.54, fused.getCumulativeTokenScoreMap().get(tokenTwo, TokenScoreCalculator.BIT_SCORE), 0.0);
+		assertEquals(60, fused.getCumulativeTokenScoreMap().get(tokenTwo, TokenScoreCalculator.BLAST_DATABASE_SCORE),
+				0.0);
+		assertEquals(0.5800000000000001,
+				fused.getCumulativeTokenScoreMap().get(tokenTwo, TokenScoreCalculator.OVERLAP_SCORE), 0.0);
+		// Changed Blast-Database-Weights are looked up anew:
+		Integer tremblWeight = getSettings().getBlastDbWeight("trembl");
+		try {
+			getSettings().setBlastDbWeight("trembl", "20");
+			assertEquals(20, getSettings().getBlastDbWeight("trembl").intValue());
+			assertEquals(20, getSettings().getParameters().getBlastDbWeight(br3.getBlastDatabaseIndex()), 0.0);
+		} finally {
+			getSettings().setBlastDbWeight("trembl", tremblWeight.toString());
+		}
+	}
+
 	@Test
 	public void testSumOfAllTokenScores() {
 		Protein p = TestUtils.mockProtein();
@@ -131,6 +172,22 @@ public class TokenScoreCalculatorTest {
 				p.getTokenScoreCalculator().sumOfAllTokenScores(two), 0);
 	}
 
+	@Test
+	public void testTokenSetKeepsOrderOfAddition() {
+		// Assign the IDs in alphabetical order:
+		TokenDictionary tokenDictionary = new TokenDictionary();
+		tokenDictionary.id("alpha");
+		tokenDictionary.id("kinase");
+		tokenDictionary.id("zinc");
+		TokenSet tokens = new TokenSet(tokenDictionary);
+		tokens.addAll(Arrays.asList("zinc", "alpha", "kinase", "zinc"));
+		assertEquals(3, tokens.size());
+		assertEquals(Arrays.asList("zinc", "alpha", "kinase"), new ArrayList<String>(tokens));
+		assertEquals(2, tokens.getId(0));
+		assertEquals(0, tokens.getId(1));
+		assertEquals(1, tokens.getId(2));
+	}
+
 	@Test
 	public void testAssignTokenScores() {
 		// Mock Protein
@@ -251,4 +308,137 @@ public class TokenScoreCalculatorTest {
 			fail("Validation of the three weights in the formula Token-Score failed. It is too restrictive, a delta of 0.001 has to be excepted.");
 		}
 	}
+
+	/**
+	 * The former implementation of tokenize using the regular expression.
+	 */
+	public static Set<String> tokenizeWithRegex(String description, List<String> tokenBlacklist) {
+		Set<String> tkns = new HashSet<String>();
+		for (String tokenCandidate : new HashSet<String>(
+				Arrays.asList(description.split(BlastResult.TOKEN_SPLITTER_REGEX)))) {
+			tokenCandidate = tokenCandidate.toLowerCase();
+			if (tokenCandidate != null && !tokenCandidate.equals("")
+					&& TokenScoreCalculator.tokenPassesBlacklist(tokenCandidate, tokenBlacklist))
+				tkns.add(tokenCandidate);
+		}
+		return tkns;
+	}
+
+	@Test
+	public void testTokenizeEqualsRegexSplit() throws IOException {
+		List<String> descriptions = new ArrayList<String>(Arrays.asList("", " ", "--", "Kinase",
+				" (Fragment) protein-kinase/ATPase; \"putative\",x:y 'z'.  a|b\\c\td\u000Be\ff\r\ng ",
+				"\u00c4hnlich PROTEIN\u00a0protein", "a--b..c"));
+		for (String path : new String[] { "./test/resources/swissprot_blast_db.fasta",
+				"./test/resources/tair_blast_db.fasta", "./test/resources/trembl_blast_db.fasta" }) {
+			for (String line : Utils.readFile(path).split("\n")) {
+				if (line.startsWith(">"))
+					descriptions.add(line);
+			}
+		}
+		// Random descriptions of many, partly colliding and differently cased
+		// words:
+		String[] words = { "Protein", "protein", "PROTEIN", "kinase", "Kinase", "family", "domain", "putative",
+				"ATP", "binding", "zinc", "finger", "alpha", "beta", "subunit", "transporter", "Aa", "BB", "C#",
+				"Ab", "BC" };
+		String[] separators = { " ", "-", "/", ";", ",", ":", ".", "|", "(", ")", "  ", ", ", "--" };
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder description = new StringBuilder();
+			int nWords = random.nextInt(40);
+			for (int w = 0; w < nWords; w++)
+				description.append(words[random.nextInt(words.length)] + (random.nextInt(3) == 0 ? w : ""))
+						.append(separators[random.nextInt(separators.length)]);
+			descriptions.add(description.toString());
+		}
+		List<String> tokenBlacklist = getSettings().getTokenBlackList("swissprot");
+		RegexList tokenBlacklistPatterns = getSettings().getTokenBlacklistPatterns("swissprot");
+		for (String description : descriptions) {
+			// The same tokens in the same order:
+			List<String> expected = new ArrayList<String>(tokenizeWithRegex(description, tokenBlacklist));
+			assertEquals(description, expected,
+					new ArrayList<String>(TokenScoreCalculator.tokenize(description, tokenBlacklistPatterns)));
+			assertEquals(description, expected, new ArrayList<String>(
+					TokenScoreCalculator.tokenizeToTokenSet(description, tokenBlacklistPatterns)));
+			assertEquals(description, new ArrayList<String>(tokenizeWithRegex(description, new ArrayList<String>())),
+					new ArrayList<String>(TokenScoreCalculator.tokenize(description, new ArrayList<String>())));
+		}
+	}
+
+	@Test
+	public void testTokenizeInternsTokens() {
+		TokenDictionary tokenDictionary = new TokenDictionary();
+		RegexList noBlacklist = new RegexList(new ArrayList<String>());
+		Set<String> tkns1 = TokenScoreCalculator.tokenize("Protein Kinase", noBlacklist, tokenDictionary);
+		Set<String> tkns2 = TokenScoreCalculator.tokenize(new String("kinase-like PROTEIN"), noBlacklist,
+				tokenDictionary);
+		assertEquals(3, tokenDictionary.size());
+		String kinase1 = null, kinase2 = null;
+		for (String tkn : tkns1)
+			if (tkn.equals("kinase"))
+				kinase1 = tkn;
+		for (String tkn : tkns2)
+			if (tkn.equals("kinase"))
+				kinase2 = tkn;
+		assertTrue(kinase1 == kinase2);
+	}
+
+	@Test
+	public void testTokenDictionaryAssignsDenseIds() {
+		TokenDictionary tokenDictionary = new TokenDictionary();
+		assertEquals(0, tokenDictionary.id("protein"));
+		assertEquals(1, tokenDictionary.id("kinase"));
+		assertEquals(0, tokenDictionary.id(new String("protein")));
+		assertEquals(-1, tokenDictionary.lookup("family"));
+		assertEquals(2, tokenDictionary.size());
+		assertEquals("kinase", tokenDictionary.token(1));
+	}
+
+	@Test
+	public void testTokenScoreMap() {
+		// Use IDs not yet assigned to any Token of the run-wide dictionary:
+		int offset = 1000000;
+		TokenScoreMap scores = new TokenScoreMap();
+		for (int id = offset; id < offset + 1000; id++)
+			scores.put(id, (id - offset) / 2.0);
+		scores.add(offset + 7, 1.5);
+		scores.add(offset + 1000, 0.25);
+		assertEquals(1001, scores.size());
+		assertEquals(5.0, scores.get(offset + 7), 0.0);
+		assertEquals(0.25, scores.get(offset + 1000), 0.0);
+		assertTrue(Double.isNaN(scores.get(offset + 1001)));
+		assertTrue(!scores.containsKey(offset + 1001));
+		Map<String, Double> view = scores.asTokenMap();
+		view.put("token_view", 0.5);
+		assertEquals(1002, view.size());
+		assertEquals(0.5, view.get("token_view"), 0.0);
+		assertEquals(0.5, scores.get(scores.getTokenDictionary().id("token_view")), 0.0);
+		// Several scores per Token-ID:
+		TokenScoreMap columns = new TokenScoreMap(3);
+		for (int id = offset; id < offset + 100; id++)
+			columns.add(id, new double[] { 1.0, 2.0, 3.0 });
+		columns.add(offset, 1, 0.5);
+		columns.put(offset + 100, 2, 4.0);
+		assertEquals(101, columns.size());
+		assertEquals(1.0, columns.get(offset + 99, 0), 0.0);
+		assertEquals(2.5, columns.get(offset, 1), 0.0);
+		assertEquals(3.0, columns.get(offset + 42, 2), 0.0);
+		assertEquals(0.0, columns.get(offset + 100, 0), 0.0);
+		assertEquals(4.0, columns.get(offset + 100, 2), 0.0);
+		assertEquals(101, columns.asTokenMap(2).size());
+	}
+
+	@Test
+	public void testTokenSet() {
+		TokenSet tokens = TokenScoreCalculator.tokenizeToTokenSet("Protein kinase, protein",
+				new RegexList(new ArrayList<String>()));
+		assertEquals(new HashSet<String>(Arrays.asList("protein", "kinase")), tokens);
+		assertTrue(tokens.containsId(tokens.getTokenDictionary().id("kinase")));
+		assertTrue(!tokens.contains("family"));
+		assertTrue(tokens.add("family"));
+		assertTrue(!tokens.add("family"));
+		assertEquals(3, tokens.size());
+		assertTrue(tokens.remove("kinase"));
+		assertEquals(new HashSet<String>(Arrays.asList("protein", "family")), tokens);
+	}
 }
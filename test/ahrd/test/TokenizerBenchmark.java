@@ -0,0 +1,113 @@
+package ahrd.test;
+
+import static ahrd.controller.Settings.getSettings;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ahrd.controller.RegexList;
+import ahrd.controller.Utils;
+import ahrd.model.TokenDictionary;
+import ahrd.model.TokenScoreCalculator;
+
+/**
+ * Compares the throughput of the hand-written tokenizer with the former one
+ * splitting Descriptions with <code>BlastResult.TOKEN_SPLITTER_REGEX</code>.
+ * Each variant is warmed up before it is measured. Not part of the regular
+ * test suite, run it with <code>ant test.benchmark</code>.
+ */
+public class TokenizerBenchmark {
+
+	private static final int WARM_UP_ITERATIONS = 20;
+	private static final int MEASURED_ITERATIONS = 50;
+
+	private List<String> descriptions = new ArrayList<String>();
+	private RegexList tokenBlacklist;
+
+	@Before
+	public void setup() throws IOException {
+		TestUtils.initTestSettings();
+		for (String path : new String[] { "./test/resources/swissprot_blast_db.fasta",
+				"./test/resources/tair_blast_db.fasta", "./test/resources/trembl_blast_db.fasta",
+				"./test/resources/bgh04634_trembl_database.fasta" }) {
+			for (String line : Utils.readFile(path).split("\n")) {
+				if (line.startsWith(">"))
+					descriptions.add(line);
+			}
+		}
+		tokenBlacklist = getSettings().getTokenBlacklistPatterns("swissprot");
+	}
+
+	private long runRegexSplit() {
+		long tokens = 0;
+		for (String description : descriptions)
+			tokens += TokenScoreCalculatorTest.tokenizeWithRegex(description, tokenBlacklist.getRegexes()).size();
+		return tokens;
+	}
+
+	private long runRegexSplitWithCompiledBlacklist() {
+		long tokens = 0;
+		for (String description : descriptions) {
+			for (String tkn : TokenScoreCalculatorTest.tokenizeWithRegex(description, new ArrayList<String>())) {
+				if (TokenScoreCalculator.tokenPassesBlacklist(tkn, tokenBlacklist))
+					tokens++;
+			}
+		}
+		return tokens;
+	}
+
+	private long runHandWritten(TokenDictionary tokenDictionary) {
+		long tokens = 0;
+		for (String description : descriptions)
+			tokens += TokenScoreCalculator.tokenize(description, tokenBlacklist, tokenDictionary).size();
+		return tokens;
+	}
+
+	/**
+	 * Prints the average time of a single iteration.
+	 * 
+	 * @return The number of tokens found in each iteration
+	 */
+	private long measure(String name, int variant) {
+		long tokens = 0;
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++)
+			tokens = run(variant);
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++)
+			tokens = run(variant);
+		double avgMillis = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+		System.out.println(String.format("%-45s %10.3f ms/iteration (%d descriptions, %d tokens)", name, avgMillis,
+				descriptions.size(), tokens));
+		return tokens;
+	}
+
+	private long run(int variant) {
+		switch (variant) {
+		case 0:
+			return runRegexSplit();
+		case 1:
+			return runRegexSplitWithCompiledBlacklist();
+		case 2:
+			return runHandWritten(null);
+		default:
+			return runHandWritten(new TokenDictionary());
+		}
+	}
+
+	@Test
+	public void benchmarkTokenize() {
+		long regex = measure("String.split, Blacklist compiled per token", 0);
+		long compiled = measure("String.split, compiled Blacklist", 1);
+		long handWritten = measure("hand-written tokenizer", 2);
+		long interning = measure("hand-written tokenizer, interning", 3);
+		// All variants find the same number of tokens:
+		assertEquals(regex, compiled);
+		assertEquals(regex, handWritten);
+		assertEquals(regex, interning);
+	}
+}
@@ -1,6 +1,7 @@
 package ahrd.test;
 
 import static ahrd.controller.Settings.getSettings;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -9,9 +10,9 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
-import nu.xom.ParsingException;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -22,6 +23,8 @@ import ahrd.controller.Trainer;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingInterproResultException;
 import ahrd.exception.MissingProteinException;
+import ahrd.model.BlastResult;
+import ahrd.model.EvaluationScoreCalculator;
 import ahrd.model.Protein;
 
 public class TrainerTest {
@@ -30,7 +33,7 @@ public class TrainerTest {
 
 	@Before
 	public void setUp() throws IOException, MissingAccessionException,
-			MissingProteinException, SAXException, ParsingException {
+			MissingProteinException, SAXException {
 		trainer = new Trainer("./test/resources/trainer_input.yml");
 		trainer.setup(false); // false -> Don't log memory and time-usages
 		trainer.setupReferences();
@@ -80,6 +83,109 @@ public class TrainerTest {
 		assertEquals(getSettings().getAvgEvaluationScore(), 0.7, 0.00000000001);
 	}
 
+	@Test
+	public void testDescriptionScoringKernel() throws IOException,
+			MissingAccessionException, MissingProteinException, SAXException,
+			MissingInterproResultException, SQLException {
+		this.trainer.setUpDescriptionScoringKernel();
+		this.trainer.getDescriptionScoringKernel()
+				.assignHighestScoringBlastResults(getSettings().getParameters());
+		// The Trainer's former loop, assigning the Descriptions once:
+		Trainer loop = new Trainer("./test/resources/trainer_input.yml");
+		loop.setup(false);
+		loop.assignHumanReadableDescriptions();
+		assertEqualScores(scoresOfProteins(loop),
+				scoresOfProteins(this.trainer));
+	}
+
+	@Test
+	public void testDescriptionScoringKernelScoresLikeFreshRun()
+			throws IOException, MissingAccessionException,
+			MissingProteinException, SAXException,
+			MissingInterproResultException, SQLException {
+		Parameters p = getSettings().getParameters().clone();
+		p.setTokenScoreBitScoreWeight(0.2);
+		p.setTokenScoreDatabaseScoreWeight(0.5);
+		p.setTokenScoreOverlapScoreWeight(0.3);
+		String blastDb = getSettings().getSortedBlastDatabases().get(0);
+		p.setBlastDbWeight(blastDb, "7");
+		p.setDescriptionScoreBitScoreWeight(blastDb, "0.9");
+		this.trainer.setUpDescriptionScoringKernel();
+		// Score the initial Parameters first, so the kernel has to replace
+		// these scores:
+		this.trainer.getDescriptionScoringKernel()
+				.assignHighestScoringBlastResults(getSettings().getParameters());
+		this.trainer.getDescriptionScoringKernel()
+				.assignHighestScoringBlastResults(p);
+		// A fresh run with the changed Parameters:
+		Trainer fresh = new Trainer("./test/resources/trainer_input.yml");
+		getSettings().setParameters(p.clone());
+		fresh.setup(false);
+		fresh.assignHumanReadableDescriptions();
+		assertEqualScores(scoresOfProteins(fresh),
+				scoresOfProteins(this.trainer));
+	}
+
+	private static void assertEqualScores(Map<String, Object[]> expected,
+			Map<String, Object[]> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, Object[]> expectedScores : expected.entrySet())
+			assertArrayEquals(expectedScores.getValue(),
+					actual.get(expectedScores.getKey()));
+	}
+
+	/**
+	 * @return Per Protein the highest scoring BlastResult's accession,
+	 *         Blast-Database and Bit-Score, the Description- and
+	 *         Token-High-Scores, and the Token-Scores keyed by the Tokens.
+	 */
+	private static Map<String, Object[]> scoresOfProteins(Trainer trainer) {
+		Map<String, Object[]> scores = new HashMap<String, Object[]>();
+		for (Protein prot : trainer.getProteins().values()) {
+			BlastResult hsbr = prot.getDescriptionScoreCalculator()
+					.getHighestScoringBlastResult();
+			scores.put(prot.getAccession(), new Object[] {
+					(hsbr != null) ? hsbr.getAccession() : null,
+					(hsbr != null) ? hsbr.getBlastDatabaseName() : null,
+					(hsbr != null) ? hsbr.getBitScore() : null,
+					(hsbr != null) ? prot.getDescriptionScoreCalculator()
+							.getDescriptionHighScore() : null,
+					prot.getTokenScoreCalculator().getTokenHighScore(),
+					new HashMap<String, Double>(prot.getTokenScoreCalculator()
+							.getTokenScores()) });
+		}
+		return scores;
+	}
+
+	@Test
+	public void testCachedEvaluationScores()
+			throws MissingInterproResultException {
+		this.trainer.setUpDescriptionScoringKernel();
+		this.trainer.getDescriptionScoringKernel()
+				.assignHighestScoringBlastResults(getSettings().getParameters());
+		this.trainer.calculateEvaluationScores();
+		Map<String, Double[]> cachedScores = new HashMap<String, Double[]>();
+		for (Protein prot : this.trainer.getProteins().values()) {
+			EvaluationScoreCalculator e = prot.getEvaluationScoreCalculator();
+			cachedScores.put(prot.getAccession(), new Double[] {
+					e.getEvalutionScore(), e.getTruePositivesRate(),
+					e.getFalsePositivesRate(),
+					e.getEvalScoreMinBestCompScore() });
+			// Score without cache:
+			e.setCachedEvaluationScores(null);
+			e.setCachedBestCompetitorEvaluationScore(null);
+		}
+		this.trainer.calculateEvaluationScores();
+		// test:
+		for (Protein prot : this.trainer.getProteins().values()) {
+			EvaluationScoreCalculator e = prot.getEvaluationScoreCalculator();
+			assertArrayEquals(new Double[] { e.getEvalutionScore(),
+					e.getTruePositivesRate(), e.getFalsePositivesRate(),
+					e.getEvalScoreMinBestCompScore() },
+					cachedScores.get(prot.getAccession()));
+		}
+	}
+
 	@Test
 	public void testRememberSimulatedAnnealingPath()
 			throws MissingInterproResultException, IOException, SQLException {
@@ -222,7 +328,6 @@ public class TrainerTest {
 	 * calculates the average evaluation-score as the pure weighted harmonic
 	 * mean of precision and recall, not as difference to best competitors.
 	 * 
-	 * @throws ParsingException
 	 * @throws SAXException
 	 * @throws MissingProteinException
 	 * @throws MissingAccessionException
@@ -230,8 +335,7 @@ public class TrainerTest {
 	 */
 	@Test
 	public void testEvalScoreWithNoCompetitors() throws IOException,
-			MissingAccessionException, MissingProteinException, SAXException,
-			ParsingException {
+			MissingAccessionException, MissingProteinException, SAXException {
 		// Default should be FALSE
 		assertTrue(!getSettings().getWriteBestBlastHitsToOutput());
 		// After setup the competitor annotations